@@ -0,0 +1,155 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+import com.sun.xml.xsom.XSSchemaSet;
+
+/**
+ * Benchmarks each phase of the conversion separately on generated schemas, see {@link SchemaGenerator}.
+ *
+ * Run with <code>mvn -Pjmh test-compile exec:exec</code>, pass JMH options through <code>-Djmh.args="..."</code> (for instance
+ * <code>-Djmh.args="-prof gc -p typeCount=5000"</code>).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class GeneratedSchema {
+
+		@Param({ "500", "2000" })
+		public int typeCount;
+
+		@Param({ "1", "8" })
+		public int inheritanceDepth;
+
+		@Param({ "1", "8" })
+		public int namespaceCount;
+
+		@Param({ "20" })
+		public int enumSize;
+
+		@Param({ "false", "true" })
+		public boolean splitBySchema;
+
+		@Param({ "false" })
+		public boolean parallelOutput;
+
+		Path directory;
+		Path rootSchema;
+		XSSchemaSet schemaSet;
+
+		@Setup(Level.Trial)
+		public void generate() throws Exception {
+			directory = Files.createTempDirectory("xsd2proto-bench");
+			rootSchema = new SchemaGenerator().typeCount(typeCount)
+					.inheritanceDepth(inheritanceDepth)
+					.namespaceCount(namespaceCount)
+					.enumSize(enumSize)
+					.generate(directory.resolve("xsd"));
+			schemaSet = newParser().parseSchema();
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() throws IOException {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+
+		XSDParser newParser() throws IOException {
+			Path out = Files.createDirectories(directory.resolve("out"));
+			XSDParser parser = new XSDParser(rootSchema.toString(), new HashMap<>());
+			ProtobufMarshaller marshaller = new ProtobufMarshaller();
+			OutputWriter writer = new OutputWriter();
+			writer.setMarshaller(marshaller);
+			writer.setDefaultExtension("proto");
+			writer.setDirectory(out.toString());
+			writer.setDefaultNamespace("bench");
+			writer.setSplitBySchema(splitBySchema);
+			writer.setParallelOutput(parallelOutput);
+			if (!splitBySchema) {
+				writer.setFilename("bench.proto");
+			}
+			parser.setWriter(writer);
+			parser.addMarshaller(marshaller);
+			return parser;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Interpreted {
+		XSDParser parser;
+
+		@Setup(Level.Invocation)
+		public void interpret(GeneratedSchema schema) throws IOException {
+			parser = schema.newParser();
+			parser.interpretResult(schema.schemaSet);
+		}
+
+		@TearDown(Level.Invocation)
+		public void close() throws IOException {
+			parser.getWriter().writeFiles();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Written {
+		XSDParser parser;
+
+		@Setup(Level.Invocation)
+		public void write(GeneratedSchema schema) throws Exception {
+			parser = schema.newParser();
+			parser.interpretResult(schema.schemaSet);
+			parser.writeMap();
+		}
+	}
+
+	@Benchmark
+	public XSSchemaSet parseSchema(GeneratedSchema schema) throws Exception {
+		return schema.newParser().parseSchema();
+	}
+
+	@Benchmark
+	public XSDParser interpretResult(GeneratedSchema schema) throws Exception {
+		XSDParser parser = schema.newParser();
+		parser.interpretResult(schema.schemaSet);
+		return parser;
+	}
+
+	@Benchmark
+	public XSDParser writeMap(Interpreted interpreted) throws Exception {
+		interpreted.parser.writeMap();
+		return interpreted.parser;
+	}
+
+	@Benchmark
+	public XSDParser writeFiles(Written written) throws Exception {
+		written.parser.getWriter().writeFiles();
+		return written.parser;
+	}
+}
@@ -0,0 +1,252 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Base64;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+
+/**
+ * The comparison of {@link SchemaTranscodingBenchmark}: going between XML and protobuf without a transcoder, binding the document to a DOM and
+ * copying it to or from {@link DynamicMessage}s; values are converted with the parsers and formatters of the JDK. It stands in for JAXB and the
+ * classes <code>protoc</code> would generate, which the build does not have, and is slower than them.
+ */
+final class DomTranscoder {
+
+	private final ProtoSchema schema;
+	private final DynamicSchema descriptors;
+	private final DocumentBuilder documents;
+	private final Transformer transformer;
+
+	DomTranscoder(ProtoSchema schema, DynamicSchema descriptors) throws Exception {
+		this.schema = schema;
+		this.descriptors = descriptors;
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		documents = factory.newDocumentBuilder();
+		transformer = TransformerFactory.newInstance().newTransformer();
+	}
+
+	/**
+	 * @param message the model name of the message of the root element
+	 */
+	byte[] toProtobuf(byte[] xml, String message) throws Exception {
+		Document document = documents.parse(new ByteArrayInputStream(xml));
+		return read(schema.getMessage(message), document.getDocumentElement()).toByteArray();
+	}
+
+	/**
+	 * @param message the model name of the message
+	 */
+	void toXml(byte[] encoded, String message, String namespace, String element, OutputStream out) throws Exception {
+		DynamicMessage decoded = DynamicMessage.parseFrom(descriptors.getDescriptor(message), encoded);
+		Document document = documents.newDocument();
+		Element root = document.createElementNS(namespace.isEmpty() ? null : namespace, element);
+		document.appendChild(root);
+		write(schema.getMessage(message), decoded, root);
+		transformer.transform(new DOMSource(document), new StreamResult(out));
+	}
+
+	private DynamicMessage read(ProtoMessage message, Element element) {
+		Descriptor descriptor = descriptors.getDescriptor(message.getName());
+		DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+		for (ProtoField field : message.getFields()) {
+			if (field.getForm() == ProtoField.Form.ATTRIBUTE) {
+				Attr attribute = element.getAttributeNodeNS(field.getXmlNamespace().isEmpty() ? null : field.getXmlNamespace(), field.getXmlName());
+				if (attribute != null) {
+					set(builder, field, descriptor, attribute.getValue());
+				}
+			} else if (field.getForm() == ProtoField.Form.TEXT) {
+				set(builder, field, descriptor, element.getTextContent());
+			}
+		}
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			ProtoField field = message.getField(child.getLocalName());
+			if (field == null || field.getForm() != ProtoField.Form.ELEMENT || field.getKind() == ValueKind.UNSUPPORTED) {
+				continue;
+			}
+			if (field.getKind() == ValueKind.MESSAGE) {
+				add(builder, field, descriptor.findFieldByNumber(field.getNumber()), read(field.getMessage(), (Element) child));
+			} else {
+				set(builder, field, descriptor, child.getTextContent());
+			}
+		}
+		return builder.build();
+	}
+
+	private static void set(DynamicMessage.Builder builder, ProtoField field, Descriptor descriptor, String text) {
+		FieldDescriptor fieldDescriptor = descriptor.findFieldByNumber(field.getNumber());
+		add(builder, field, fieldDescriptor, parse(field, fieldDescriptor, text));
+	}
+
+	private static void add(DynamicMessage.Builder builder, ProtoField field, FieldDescriptor descriptor, Object value) {
+		if (field.isRepeated()) {
+			builder.addRepeatedField(descriptor, value);
+		} else {
+			builder.setField(descriptor, value);
+		}
+	}
+
+	private static Object parse(ProtoField field, FieldDescriptor descriptor, String text) {
+		String value = field.getKind() == ValueKind.STRING || field.getKind() == ValueKind.BYTES ? text : text.trim();
+		switch (field.getKind()) {
+		case STRING:
+			return value;
+		case BYTES:
+			return ByteString.copyFromUtf8(value);
+		case BASE64_BINARY:
+			return ByteString.copyFrom(Base64.getMimeDecoder().decode(value));
+		case HEX_BINARY:
+			byte[] bytes = new byte[value.length() / 2];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) Integer.parseInt(value.substring(2 * i, 2 * i + 2), 16);
+			}
+			return ByteString.copyFrom(bytes);
+		case BYTE:
+			return ByteString.copyFrom(new byte[] { Byte.parseByte(value) });
+		case BOOL:
+			return "true".equals(value) || "1".equals(value);
+		case INT32:
+		case SINT32:
+		case SFIXED32:
+			return Integer.parseInt(value);
+		case UINT32:
+		case FIXED32:
+			return Integer.parseUnsignedInt(value);
+		case INT64:
+		case SINT64:
+		case SFIXED64:
+			return Long.parseLong(value);
+		case UINT64:
+		case FIXED64:
+			return Long.parseUnsignedLong(value);
+		case FLOAT:
+			return Float.parseFloat(value.replace("INF", "Infinity"));
+		case DOUBLE:
+		case DECIMAL:
+			return Double.parseDouble(value.replace("INF", "Infinity"));
+		case DATE:
+			return (int) LocalDate.parse(value, DateTimeFormatter.ISO_DATE).toEpochDay();
+		case TIMESTAMP:
+			TemporalAccessor dateTime = DateTimeFormatter.ISO_DATE_TIME.parseBest(value, OffsetDateTime::from, LocalDateTime::from);
+			Instant instant = dateTime instanceof OffsetDateTime ? ((OffsetDateTime) dateTime).toInstant() : ((LocalDateTime) dateTime).toInstant(ZoneOffset.UTC);
+			return Timestamp.newBuilder().setSeconds(instant.getEpochSecond()).setNanos(instant.getNano()).build();
+		case TIME:
+			TemporalAccessor time = DateTimeFormatter.ISO_TIME.parseBest(value, OffsetTime::from, LocalTime::from);
+			LocalTime local = time instanceof OffsetTime ? ((OffsetTime) time).withOffsetSameInstant(ZoneOffset.UTC).toLocalTime() : (LocalTime) time;
+			return Timestamp.newBuilder().setSeconds(local.toSecondOfDay()).setNanos(local.getNano()).build();
+		case DURATION:
+			java.time.Duration duration = java.time.Duration.parse(value);
+			return Duration.newBuilder().setSeconds(duration.getSeconds()).setNanos(duration.getNano()).build();
+		case ENUM:
+			Integer number = field.getEnumeration().getNumber(value);
+			return descriptor.getEnumType().findValueByNumber(number != null ? number : 0);
+		default:
+			throw new IllegalArgumentException(field.toString());
+		}
+	}
+
+	private void write(ProtoMessage message, DynamicMessage decoded, Element element) {
+		Descriptor descriptor = descriptors.getDescriptor(message.getName());
+		Document document = element.getOwnerDocument();
+		for (ProtoField field : message.getFields()) {
+			FieldDescriptor fieldDescriptor = descriptor.findFieldByNumber(field.getNumber());
+			if (fieldDescriptor == null || !field.isRepeated() && !decoded.hasField(fieldDescriptor)) {
+				continue;
+			}
+			if (field.getForm() == ProtoField.Form.ATTRIBUTE) {
+				element.setAttributeNS(field.getXmlNamespace().isEmpty() ? null : field.getXmlNamespace(), field.getXmlName(),
+						format(field, decoded.getField(fieldDescriptor)));
+			} else if (field.getForm() == ProtoField.Form.TEXT) {
+				element.appendChild(document.createTextNode(format(field, decoded.getField(fieldDescriptor))));
+			} else {
+				int count = field.isRepeated() ? decoded.getRepeatedFieldCount(fieldDescriptor) : 1;
+				for (int i = 0; i < count; i++) {
+					Object value = field.isRepeated() ? decoded.getRepeatedField(fieldDescriptor, i) : decoded.getField(fieldDescriptor);
+					Element child = document.createElementNS(field.getXmlNamespace().isEmpty() ? null : field.getXmlNamespace(), field.getXmlName());
+					element.appendChild(child);
+					if (field.getKind() == ValueKind.MESSAGE) {
+						write(field.getMessage(), (DynamicMessage) value, child);
+					} else {
+						child.setTextContent(format(field, value));
+					}
+				}
+			}
+		}
+	}
+
+	private static String format(ProtoField field, Object value) {
+		switch (field.getKind()) {
+		case STRING:
+			return (String) value;
+		case BYTES:
+			return ((ByteString) value).toStringUtf8();
+		case BASE64_BINARY:
+			return Base64.getEncoder().encodeToString(((ByteString) value).toByteArray());
+		case HEX_BINARY:
+			StringBuilder hex = new StringBuilder();
+			for (byte b : ((ByteString) value).toByteArray()) {
+				hex.append(String.format("%02X", b));
+			}
+			return hex.toString();
+		case BYTE:
+			ByteString bytes = (ByteString) value;
+			return Byte.toString(bytes.isEmpty() ? 0 : bytes.byteAt(0));
+		case UINT32:
+		case FIXED32:
+			return Integer.toUnsignedString((Integer) value);
+		case UINT64:
+		case FIXED64:
+			return Long.toUnsignedString((Long) value);
+		case DECIMAL:
+			return BigDecimal.valueOf((Double) value).stripTrailingZeros().toPlainString();
+		case DATE:
+			return LocalDate.ofEpochDay((Integer) value).toString();
+		case TIMESTAMP:
+			Timestamp timestamp = (Timestamp) value;
+			return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos()).toString();
+		case TIME:
+			Timestamp time = (Timestamp) value;
+			return LocalTime.ofSecondOfDay(Math.floorMod(time.getSeconds(), 86400L)).withNano(time.getNanos()) + "Z";
+		case DURATION:
+			Duration duration = (Duration) value;
+			return java.time.Duration.ofSeconds(duration.getSeconds(), duration.getNanos()).toString();
+		case ENUM:
+			String lexical = field.getEnumeration().getValue(((EnumValueDescriptor) value).getNumber());
+			return lexical != null ? lexical : "";
+		default:
+			return value.toString();
+		}
+	}
+}
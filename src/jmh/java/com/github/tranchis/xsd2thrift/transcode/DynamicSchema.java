@@ -0,0 +1,143 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumDescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumValueDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+
+/**
+ * The protobuf-java descriptors of the messages of a {@link ProtoSchema}, as <code>protoc</code> would compile them from the generated
+ * <code>.proto</code>, for the {@link com.google.protobuf.DynamicMessage}s of {@link DomTranscoder}.
+ *
+ * All types are flattened in one file, named after their model names, enumerations with a suffix; fields of custom types, which the transcoders cannot encode, are left out.
+ */
+final class DynamicSchema {
+
+	private static final String PACKAGE = "bench";
+
+	private final Map<String, Descriptor> messages = new HashMap<>();
+
+	DynamicSchema(ProtoSchema schema) throws DescriptorValidationException {
+		FileDescriptorProto.Builder file = FileDescriptorProto.newBuilder().setName("bench.proto").setPackage(PACKAGE).setSyntax("proto3")
+				.addDependency(Timestamp.getDescriptor().getFile().getName()).addDependency(Duration.getDescriptor().getFile().getName());
+		Set<String> enumerations = new HashSet<>();
+		for (ProtoMessage message : schema.getMessages()) {
+			DescriptorProto.Builder type = file.addMessageTypeBuilder().setName(typeName(message.getName()));
+			for (ProtoField field : message.getFields()) {
+				if (field.getKind() != ValueKind.UNSUPPORTED) {
+					type.addField(field(field));
+				}
+				if (field.getKind() == ValueKind.ENUM && enumerations.add(field.getTypeName())) {
+					file.addEnumType(enumeration(field.getEnumeration()));
+				}
+			}
+		}
+		FileDescriptor descriptor = FileDescriptor.buildFrom(file.build(),
+				new FileDescriptor[] { Timestamp.getDescriptor().getFile(), Duration.getDescriptor().getFile() });
+		for (ProtoMessage message : schema.getMessages()) {
+			messages.put(message.getName(), descriptor.findMessageTypeByName(typeName(message.getName())));
+		}
+	}
+
+	/**
+	 * @param name the model name of a message
+	 */
+	Descriptor getDescriptor(String name) {
+		Descriptor descriptor = messages.get(name);
+		if (descriptor == null) {
+			throw new IllegalArgumentException("Unknown message " + name);
+		}
+		return descriptor;
+	}
+
+	private static FieldDescriptorProto field(ProtoField field) {
+		FieldDescriptorProto.Builder proto = FieldDescriptorProto.newBuilder().setName(field.getProtoName()).setNumber(field.getNumber())
+				.setLabel(field.isRepeated() ? FieldDescriptorProto.Label.LABEL_REPEATED : FieldDescriptorProto.Label.LABEL_OPTIONAL);
+		switch (field.getKind()) {
+		case STRING:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_STRING).build();
+		case BYTES:
+		case BASE64_BINARY:
+		case HEX_BINARY:
+		case BYTE:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_BYTES).build();
+		case BOOL:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_BOOL).build();
+		case INT32:
+		case DATE:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_INT32).build();
+		case INT64:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_INT64).build();
+		case UINT32:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_UINT32).build();
+		case UINT64:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_UINT64).build();
+		case SINT32:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_SINT32).build();
+		case SINT64:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_SINT64).build();
+		case FIXED32:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_FIXED32).build();
+		case FIXED64:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_FIXED64).build();
+		case SFIXED32:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_SFIXED32).build();
+		case SFIXED64:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_SFIXED64).build();
+		case FLOAT:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_FLOAT).build();
+		case DOUBLE:
+		case DECIMAL:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_DOUBLE).build();
+		case TIMESTAMP:
+		case TIME:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName("." + Timestamp.getDescriptor().getFullName()).build();
+		case DURATION:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName("." + Duration.getDescriptor().getFullName()).build();
+		case ENUM:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_ENUM).setTypeName("." + PACKAGE + "." + enumName(field.getTypeName())).build();
+		case MESSAGE:
+			return proto.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName("." + PACKAGE + "." + typeName(field.getTypeName())).build();
+		default:
+			throw new IllegalArgumentException(field.toString());
+		}
+	}
+
+	/**
+	 * Constants are named after their numbers, as lexical values are seldom identifiers and constants share the scope of the package.
+	 */
+	private static EnumDescriptorProto enumeration(ProtoEnum enumeration) {
+		String name = enumName(enumeration.getName());
+		EnumDescriptorProto.Builder proto = EnumDescriptorProto.newBuilder().setName(name);
+		if (enumeration.getValue(0) == null) {
+			proto.addValue(EnumValueDescriptorProto.newBuilder().setName(name + "_UNSPECIFIED").setNumber(0));
+		}
+		for (String value : enumeration.getValues()) {
+			int number = enumeration.getNumber(value);
+			proto.addValue(EnumValueDescriptorProto.newBuilder().setName(name + "_" + number).setNumber(number));
+		}
+		return proto.build();
+	}
+
+	private static String typeName(String name) {
+		return name.replaceAll("[^A-Za-z0-9_]", "_");
+	}
+
+	/**
+	 * Enumerations and messages are in different scopes in the model, but not in protobuf.
+	 */
+	private static String enumName(String name) {
+		return typeName(name) + "_Enum";
+	}
+}
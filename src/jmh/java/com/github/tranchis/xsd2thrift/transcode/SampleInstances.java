@@ -0,0 +1,122 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+
+/**
+ * Fills messages of a {@link ProtoSchema} with a value of each field, and a number of values of each repeated field, nesting messages down to a
+ * depth, so that instances of the schema can be written as XML by {@link ProtobufToXml}.
+ */
+final class SampleInstances {
+
+	private static final int DEPTH = 4;
+
+	private final ProtoSchema schema;
+	private final DynamicSchema descriptors;
+	private final int occurrences;
+
+	/**
+	 * @param occurrences the number of values of repeated fields
+	 */
+	SampleInstances(ProtoSchema schema, DynamicSchema descriptors, int occurrences) {
+		this.schema = schema;
+		this.descriptors = descriptors;
+		this.occurrences = occurrences;
+	}
+
+	/**
+	 * @param name the model name of the message
+	 */
+	DynamicMessage sample(String name) {
+		ProtoMessage message = schema.getMessage(name);
+		if (message == null) {
+			throw new IllegalArgumentException("Unknown message " + name);
+		}
+		return sample(message, 0);
+	}
+
+	private DynamicMessage sample(ProtoMessage message, int depth) {
+		Descriptor descriptor = descriptors.getDescriptor(message.getName());
+		DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+		for (ProtoField field : message.getFields()) {
+			if (field.getKind() == ValueKind.UNSUPPORTED || field.getKind() == ValueKind.MESSAGE && depth == DEPTH) {
+				continue;
+			}
+			FieldDescriptor fieldDescriptor = descriptor.findFieldByNumber(field.getNumber());
+			if (field.isRepeated()) {
+				for (int i = 0; i < occurrences; i++) {
+					Object value = value(field, fieldDescriptor, i, depth);
+					if (value != null) {
+						builder.addRepeatedField(fieldDescriptor, value);
+					}
+				}
+			} else {
+				Object value = value(field, fieldDescriptor, 1, depth);
+				if (value != null) {
+					builder.setField(fieldDescriptor, value);
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param i the index of the value, to vary the values of repeated fields
+	 */
+	private Object value(ProtoField field, FieldDescriptor descriptor, int i, int depth) {
+		switch (field.getKind()) {
+		case STRING:
+			return field.getXmlName() + " " + i;
+		case BYTES:
+			return ByteString.copyFromUtf8(field.getXmlName() + " " + i);
+		case BASE64_BINARY:
+		case HEX_BINARY:
+			return ByteString.copyFrom(new byte[] { (byte) i, 0x2a, (byte) 0xff, 0x10 });
+		case BYTE:
+			return ByteString.copyFrom(new byte[] { (byte) i });
+		case BOOL:
+			return i % 2 == 1;
+		case INT32:
+		case UINT32:
+		case FIXED32:
+		case SFIXED32:
+			return 1000 + i;
+		case SINT32:
+			return -1000 - i;
+		case INT64:
+		case UINT64:
+		case FIXED64:
+		case SFIXED64:
+			return 5_000_000_000L + i;
+		case SINT64:
+			return -5_000_000_000L - i;
+		case FLOAT:
+			return 1.5f + i;
+		case DOUBLE:
+			return 0.25 + i;
+		case DECIMAL:
+			return 12.5 + i;
+		case DATE:
+			return 18_000 + i;
+		case TIMESTAMP:
+			return Timestamp.newBuilder().setSeconds(1_577_934_245L + i * 86_400L).setNanos(500_000_000).build();
+		case TIME:
+			return Timestamp.newBuilder().setSeconds(11_045 + i).build();
+		case DURATION:
+			return Duration.newBuilder().setSeconds(3_600L + i).setNanos(250_000_000).build();
+		case ENUM:
+			List<String> values = field.getEnumeration().getValues();
+			return values.isEmpty() ? null : descriptor.getEnumType().findValueByNumber(field.getEnumeration().getNumber(values.get(i % values.size())));
+		case MESSAGE:
+			return sample(field.getMessage(), depth + 1);
+		default:
+			throw new IllegalArgumentException(field.toString());
+		}
+	}
+}
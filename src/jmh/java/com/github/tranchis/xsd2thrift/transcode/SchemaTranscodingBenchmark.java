@@ -0,0 +1,145 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+
+/**
+ * Benchmarks {@link XmlToProtobuf} and {@link ProtobufToXml} against {@link DomTranscoder}, which binds documents to a DOM copied to or from
+ * {@link DynamicMessage}s, on instances of the schemas of the tests made by {@link SampleInstances}. The <code>DomDynamicMessage</code> methods are
+ * not a JAXB and <code>protoc</code> generated classes baseline: generated classes are faster than DynamicMessages, so their numbers overstate the
+ * gain of the transcoders over generated bindings.
+ *
+ * Each operation transcodes one document: the throughput is in documents per microsecond, the sampled times give the percentiles of the latency
+ * of a document, p99 included, and <code>gc.alloc.rate.norm</code> the bytes allocated per document. Run with
+ * <code>mvn -Pjmh test-compile exec:exec -Djmh.args="-prof gc SchemaTranscodingBenchmark"</code> from the root of the project, which writes the
+ * results as JSON to <code>target/jmh-result.json</code> to be compared from one build to the next. <code>atom.xsd</code> imports
+ * <code>xml.xsd</code> from www.w3.org, which needs network access.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SchemaTranscodingBenchmark {
+
+	@Param({ "shiporder", "recipeml", "atom", "test-datatypes", "ns-person" })
+	public String schema;
+
+	/** the number of values of repeated fields, at each level */
+	@Param({ "3" })
+	public int occurrences;
+
+	private Path directory;
+	private String message;
+	private QName element;
+	private byte[] xml;
+	private byte[] encoded;
+	private XmlToProtobuf transcoder;
+	private ProtobufToXml writer;
+	private DomTranscoder dom;
+	private final XMLOutputFactory outputs = XMLOutputFactory.newInstance();
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		String root;
+		switch (schema) {
+		case "atom":
+			root = "feed";
+			message = "feedType";
+			break;
+		case "test-datatypes":
+			root = "Datatypes";
+			message = "Datatypes";
+			break;
+		case "ns-person":
+			root = "person";
+			message = "personType";
+			break;
+		default:
+			root = schema;
+			message = schema + "Type";
+		}
+		directory = Files.createTempDirectory("xsd2proto-bench");
+		ProtoSchema protoSchema = XmlToProtobufTest.protoSchema(Paths.get("src/test/resources/xsd", schema + ".xsd"), directory);
+		DynamicSchema descriptors = new DynamicSchema(protoSchema);
+		String namespace = protoSchema.getMessage(message).getNamespace();
+		element = new QName(namespace != null ? namespace : "", root);
+		transcoder = new XmlToProtobuf(TranscodingPlan.compile(protoSchema));
+		writer = new ProtobufToXml(protoSchema);
+		dom = new DomTranscoder(protoSchema, descriptors);
+
+		encoded = new SampleInstances(protoSchema, descriptors, occurrences).sample(message).toByteArray();
+		xml = protobufToXml().toByteArray();
+		// both sides must do the same work
+		Descriptor descriptor = descriptors.getDescriptor(message);
+		if (!DynamicMessage.parseFrom(descriptor, xmlToProtobuf().toByteArray()).equals(DynamicMessage.parseFrom(descriptor, xmlToProtobufDomDynamicMessage()))) {
+			throw new IllegalStateException("The transcoder and the DOM read " + schema + " differently");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws Exception {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream xmlToProtobuf() throws Exception {
+		out.reset();
+		transcoder.transcode(new ByteArrayInputStream(xml), message, out);
+		return out;
+	}
+
+	@Benchmark
+	public byte[] xmlToProtobufDomDynamicMessage() throws Exception {
+		return dom.toProtobuf(xml, message);
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream protobufToXml() throws Exception {
+		out.reset();
+		XMLStreamWriter stream = outputs.createXMLStreamWriter(out, "UTF-8");
+		stream.writeStartDocument("UTF-8", "1.0");
+		writer.transcode(encoded, message, element, stream);
+		stream.writeEndDocument();
+		stream.close();
+		return out;
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream protobufToXmlDomDynamicMessage() throws Exception {
+		out.reset();
+		dom.toXml(encoded, message, element.getNamespaceURI(), element.getLocalPart(), out);
+		return out;
+	}
+}
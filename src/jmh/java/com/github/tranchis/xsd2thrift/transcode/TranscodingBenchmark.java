@@ -0,0 +1,114 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks XML to protobuf transcoding of documents of the schema of {@link XmlToProtobufTest}, with more or fewer order lines.
+ *
+ * Run with <code>mvn -Pjmh test-compile exec:exec -Djmh.args="-prof gc TranscodingBenchmark"</code>: <code>gc.alloc.rate.norm</code> should
+ * not grow with <code>lineCount</code> beyond the parser's own allocations. {@link #transcodeLinesInParallel()} splits the same document on its
+ * lines, to compare with the single-threaded transcoding of the whole order, and {@link #transcodeMappedFile()} reads it from a file mapped in
+ * memory, to compare with {@link #transcodeFile()} through StAX.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TranscodingBenchmark {
+
+	@Param({ "10", "1000" })
+	public int lineCount;
+
+	@Param({ "false", "true" })
+	public boolean attributes;
+
+	private Path directory;
+	private byte[] xml;
+	private XmlToProtobuf transcoder;
+	private ParallelTranscoder parallelTranscoder;
+	private MappedXmlToProtobuf mappedTranscoder;
+	private Path file;
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("xsd2proto-bench");
+		TranscodingPlan plan = TranscodingPlan.compile(XmlToProtobufTest.protoSchema(directory));
+		transcoder = new XmlToProtobuf(plan);
+		parallelTranscoder = new ParallelTranscoder(plan);
+		mappedTranscoder = new MappedXmlToProtobuf(plan);
+		String currency = attributes ? " currency='EUR'" : "";
+		StringBuilder document = new StringBuilder("<order xmlns='urn:shop'").append(attributes ? " priority='2'>" : ">")
+				.append("<orderId>A-1</orderId><status>Closed</status><paid>true</paid><placed>2020-01-02T03:04:05.5Z</placed><due>2020-02-01</due>");
+		for (int i = 0; i < lineCount; i++) {
+			document.append("<line><sku>SKU-").append(i).append("</sku><quantity>").append(i % 50).append("</quantity><price").append(currency)
+					.append('>').append(i).append(".25</price></line>");
+		}
+		for (int i = 0; i < lineCount; i++) {
+			document.append("<tag>").append(i).append("</tag>");
+		}
+		xml = document.append("</order>").toString().getBytes(StandardCharsets.UTF_8);
+		file = Files.write(directory.resolve("order.xml"), xml);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws Exception {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public int transcode() throws Exception {
+		out.reset();
+		transcoder.transcode(new ByteArrayInputStream(xml), "Order", out);
+		return out.size();
+	}
+
+	@Benchmark
+	public long transcodeLinesInParallel() throws Exception {
+		out.reset();
+		return parallelTranscoder.transcode(new ByteArrayInputStream(xml), "order/line", "Line", out);
+	}
+
+	@Benchmark
+	public int transcodeFile() throws Exception {
+		out.reset();
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+			transcoder.transcode(in, "Order", out);
+		}
+		return out.size();
+	}
+
+	@Benchmark
+	public int transcodeMappedFile() throws Exception {
+		out.reset();
+		mappedTranscoder.transcode(file, "Order", out);
+		return out.size();
+	}
+}
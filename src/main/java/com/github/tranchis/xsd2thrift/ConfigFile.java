@@ -1,5 +1,6 @@
 package com.github.tranchis.xsd2thrift;
 
+import java.util.List;
 import java.util.Map;
 
 public class ConfigFile {
@@ -15,5 +16,10 @@ public class ConfigFile {
 	public boolean typeInEnums = true;
 	public boolean includeMessageDocs = true;
 	public boolean includeFieldDocs = true;
+	public boolean parallelOutput = false;
+	public boolean incremental = false;
+	public String saveModel;
+	public List<String> catalogs;
+	public String descriptorSetOut;
 	public String xsd;
 }
@@ -0,0 +1,227 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the JVM running between conversions: converts again whenever one of the schema documents or the config file changes, and optionally accepts conversion
+ * jobs from local clients on a localhost port.
+ *
+ * A job is one line holding the arguments of a conversion, as given to {@link Main}, separated by tabs so that paths may contain spaces. Each job is answered
+ * with one line, <code>OK</code> or <code>FAILED</code> followed by the time it took in milliseconds.
+ *
+ * All conversions share one {@link SchemaSetCache}, so schemas are only parsed again when they changed, and run one at a time.
+ */
+public class ConversionDaemon {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConversionDaemon.class);
+
+	/** changes arriving within this delay are converted together, editors often write a file in several steps */
+	private static final long SETTLE_MILLIS = 200;
+
+	private final String[] args;
+	private final boolean watch;
+	private final int port;
+	private final SchemaSetCache cache = new SchemaSetCache();
+	private final Object lock = new Object();
+	private int runs;
+
+	/**
+	 * @param args  arguments of the conversion to watch, as given to {@link Main}
+	 * @param watch convert again on changes
+	 * @param port  localhost port to accept jobs on, or -1
+	 */
+	public ConversionDaemon(String[] args, boolean watch, int port) {
+		this.args = args;
+		this.watch = watch;
+		this.port = port;
+	}
+
+	/**
+	 * Runs until interrupted.
+	 */
+	public void run() throws IOException {
+		if (port >= 0) {
+			acceptJobs();
+		}
+
+		if (!watch) {
+			if (args.length > 0) {
+				convert(args);
+			}
+			try {
+				Thread.currentThread().join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+
+		try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+			Set<Path> directories = new HashSet<>();
+			Set<Path> watched = convert(args);
+			while (!Thread.currentThread().isInterrupted()) {
+				for (Path file : watched) {
+					Path directory = file.toAbsolutePath().getParent();
+					if (directory != null && directories.add(directory)) {
+						directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+								StandardWatchEventKinds.ENTRY_DELETE);
+					}
+				}
+				LOGGER.info("Watching {} files for changes", watched.size());
+
+				if (!awaitChange(watcher, watched)) {
+					return;
+				}
+				watched = convert(args);
+			}
+		}
+	}
+
+	/**
+	 * @return false if interrupted
+	 */
+	private boolean awaitChange(WatchService watcher, Set<Path> watched) {
+		try {
+			boolean changed = false;
+			while (!changed) {
+				changed = drain(watcher.take(), watched);
+			}
+			// let the burst of events settle
+			WatchKey key;
+			while ((key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+				drain(key, watched);
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static boolean drain(WatchKey key, Set<Path> watched) {
+		boolean changed = false;
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				changed = true;
+			} else {
+				Path file = directory.resolve((Path) event.context()).toAbsolutePath();
+				if (watched.contains(file)) {
+					LOGGER.info("{} changed", file);
+					changed = true;
+				}
+			}
+		}
+		key.reset();
+		return changed;
+	}
+
+	/**
+	 * @return the files the conversion depends on
+	 */
+	private Set<Path> convert(String[] args) {
+		synchronized (lock) {
+			int run = ++runs;
+			long start = System.nanoTime();
+			boolean success = Main.run(args, cache);
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			if (success) {
+				LOGGER.info("Run {} finished in {} ms", run, millis);
+			} else {
+				LOGGER.warn("Run {} failed after {} ms", run, millis);
+			}
+
+			Set<Path> files = new HashSet<>();
+			for (String arg : args) {
+				if (arg.startsWith("--configFile=")) {
+					files.add(Paths.get(arg.split("=")[1]).toAbsolutePath());
+				}
+			}
+			if (args.length > 0 && !args[args.length - 1].startsWith("--")) {
+				File input = new File(args[args.length - 1]);
+				files.add(input.toPath().toAbsolutePath());
+				for (Path file : cache.getFiles(input)) {
+					files.add(file.toAbsolutePath());
+				}
+			}
+			return files;
+		}
+	}
+
+	/**
+	 * Accepts jobs on the port on a background thread, until the returned socket is closed.
+	 */
+	ServerSocket acceptJobs() throws IOException {
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(() -> serve(server), "xsd2proto-jobs");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		LOGGER.info("Accepting conversion jobs on {}", server.getLocalSocketAddress());
+		return server;
+	}
+
+	/**
+	 * @return the arguments of a job line, without empty ones
+	 */
+	static String[] parseJob(String line) {
+		List<String> args = new ArrayList<>();
+		for (String arg : line.split("\t")) {
+			if (!arg.isEmpty()) {
+				args.add(arg);
+			}
+		}
+		return args.toArray(new String[0]);
+	}
+
+	private void serve(ServerSocket server) {
+		while (!server.isClosed()) {
+			try (Socket socket = server.accept();
+					BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+					Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.trim().isEmpty()) {
+						continue;
+					}
+					long start = System.nanoTime();
+					boolean success;
+					synchronized (lock) {
+						success = Main.run(parseJob(line), cache);
+					}
+					long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+					LOGGER.info("Job {} in {} ms", success ? "finished" : "failed", millis);
+					out.write((success ? "OK " : "FAILED ") + millis + "\n");
+					out.flush();
+				}
+			} catch (IOException e) {
+				if (!server.isClosed()) {
+					LOGGER.warn("Job connection failed", e);
+				}
+			}
+		}
+	}
+}
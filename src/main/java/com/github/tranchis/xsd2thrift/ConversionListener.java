@@ -0,0 +1,22 @@
+package com.github.tranchis.xsd2thrift;
+
+/**
+ * Notified of the progress of a conversion, see {@link XSDParser#addListener(ConversionListener)}.
+ *
+ * Called on the converting thread, so implementations should return quickly.
+ */
+public interface ConversionListener {
+
+	/**
+	 * @param report the report of the conversion so far
+	 * @param phase  the phase that just finished
+	 */
+	default void phaseFinished(ConversionReport report, ConversionReport.Phase phase) {
+	}
+
+	/**
+	 * @param report the complete report, counts included
+	 */
+	default void conversionFinished(ConversionReport report) {
+	}
+}
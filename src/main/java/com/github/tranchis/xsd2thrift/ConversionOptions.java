@@ -0,0 +1,314 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The settings of a {@link SchemaConverter}, those of a {@link ConfigFile} that do not touch the file system. Instances are immutable, and made with a
+ * {@link Builder}:
+ *
+ * <pre>
+ * ConversionOptions options = ConversionOptions.builder().namespace("com.example").splitBySchema(true).build();
+ * </pre>
+ */
+public final class ConversionOptions {
+
+	private final String filename;
+	private final String namespace;
+	private final boolean splitBySchema;
+	private final Map<String, String> customTypeMappings;
+	private final Map<String, String> customNameMappings;
+	private final Map<Pattern, String> typePatterns;
+	private final Map<Pattern, String> namePatterns;
+	private final Map<String, String> customImports;
+	private final Map<String, Object> options;
+	private final boolean nestEnums;
+	private final boolean typeInEnums;
+	private final boolean includeMessageDocs;
+	private final boolean includeFieldDocs;
+	private final boolean parallelOutput;
+	private final List<String> catalogs;
+	private final String descriptorSetOut;
+
+	private ConversionOptions(Builder builder) {
+		filename = builder.filename;
+		namespace = builder.namespace;
+		splitBySchema = builder.splitBySchema;
+		customTypeMappings = Collections.unmodifiableMap(new LinkedHashMap<>(builder.customTypeMappings));
+		customNameMappings = Collections.unmodifiableMap(new LinkedHashMap<>(builder.customNameMappings));
+		typePatterns = compile(customTypeMappings);
+		namePatterns = compile(customNameMappings);
+		customImports = Collections.unmodifiableMap(new LinkedHashMap<>(builder.customImports));
+		options = Collections.unmodifiableMap(new LinkedHashMap<>(builder.options));
+		nestEnums = builder.nestEnums;
+		typeInEnums = builder.typeInEnums;
+		includeMessageDocs = builder.includeMessageDocs;
+		includeFieldDocs = builder.includeFieldDocs;
+		parallelOutput = builder.parallelOutput;
+		catalogs = Collections.unmodifiableList(new ArrayList<>(builder.catalogs));
+		descriptorSetOut = builder.descriptorSetOut;
+	}
+
+	private static Map<Pattern, String> compile(Map<String, String> mappings) {
+		Map<Pattern, String> patterns = new LinkedHashMap<>();
+		for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+			patterns.put(Pattern.compile(mapping.getKey()), mapping.getValue());
+		}
+		return Collections.unmodifiableMap(patterns);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return a builder with the settings of a config file, its directory, incremental build, model snapshot and schema excepted
+	 */
+	public static Builder builder(ConfigFile config) {
+		Builder builder = new Builder().filename(config.filename)
+				.namespace(config.namespace)
+				.splitBySchema(config.splitBySchema)
+				.nestEnums(config.nestEnums)
+				.typeInEnums(config.typeInEnums)
+				.includeMessageDocs(config.includeMessageDocs)
+				.includeFieldDocs(config.includeFieldDocs)
+				.parallelOutput(config.parallelOutput)
+				.descriptorSetOut(config.descriptorSetOut);
+		if (config.customTypeMappings != null) {
+			builder.customTypeMappings(config.customTypeMappings);
+		}
+		if (config.customNameMappings != null) {
+			builder.customNameMappings(config.customNameMappings);
+		}
+		if (config.customImports != null) {
+			builder.customImports(config.customImports);
+		}
+		if (config.options != null) {
+			builder.options(config.options);
+		}
+		if (config.catalogs != null) {
+			builder.catalogs(config.catalogs);
+		}
+		return builder;
+	}
+
+	/**
+	 * @return a builder starting from these options
+	 */
+	public Builder toBuilder() {
+		return new Builder().filename(filename)
+				.namespace(namespace)
+				.splitBySchema(splitBySchema)
+				.customTypeMappings(customTypeMappings)
+				.customNameMappings(customNameMappings)
+				.customImports(customImports)
+				.options(options)
+				.nestEnums(nestEnums)
+				.typeInEnums(typeInEnums)
+				.includeMessageDocs(includeMessageDocs)
+				.includeFieldDocs(includeFieldDocs)
+				.parallelOutput(parallelOutput)
+				.catalogs(catalogs)
+				.descriptorSetOut(descriptorSetOut);
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public String getNamespace() {
+		return namespace;
+	}
+
+	public boolean isSplitBySchema() {
+		return splitBySchema;
+	}
+
+	public Map<String, String> getCustomTypeMappings() {
+		return customTypeMappings;
+	}
+
+	public Map<String, String> getCustomNameMappings() {
+		return customNameMappings;
+	}
+
+	Map<Pattern, String> getTypePatterns() {
+		return typePatterns;
+	}
+
+	Map<Pattern, String> getNamePatterns() {
+		return namePatterns;
+	}
+
+	public Map<String, String> getCustomImports() {
+		return customImports;
+	}
+
+	public Map<String, Object> getOptions() {
+		return options;
+	}
+
+	public boolean isNestEnums() {
+		return nestEnums;
+	}
+
+	public boolean isTypeInEnums() {
+		return typeInEnums;
+	}
+
+	public boolean isIncludeMessageDocs() {
+		return includeMessageDocs;
+	}
+
+	public boolean isIncludeFieldDocs() {
+		return includeFieldDocs;
+	}
+
+	public boolean isParallelOutput() {
+		return parallelOutput;
+	}
+
+	public List<String> getCatalogs() {
+		return catalogs;
+	}
+
+	public String getDescriptorSetOut() {
+		return descriptorSetOut;
+	}
+
+	/**
+	 * @return every setting, so that options giving the same output have the same description
+	 */
+	@Override
+	public String toString() {
+		return "filename=" + filename + "\nnamespace=" + namespace + "\nsplitBySchema=" + splitBySchema + "\ncustomTypeMappings=" + customTypeMappings
+				+ "\ncustomNameMappings=" + customNameMappings + "\ncustomImports=" + customImports + "\noptions=" + options + "\nnestEnums=" + nestEnums
+				+ "\ntypeInEnums=" + typeInEnums + "\nincludeMessageDocs=" + includeMessageDocs + "\nincludeFieldDocs=" + includeFieldDocs + "\nparallelOutput="
+				+ parallelOutput + "\ncatalogs=" + catalogs + "\ndescriptorSetOut=" + descriptorSetOut;
+	}
+
+	/**
+	 * Defaults to the defaults of the command line: one file named after the namespace, nested enums, documentation included.
+	 */
+	public static final class Builder {
+		private String filename;
+		private String namespace;
+		private boolean splitBySchema;
+		private Map<String, String> customTypeMappings = new LinkedHashMap<>();
+		private Map<String, String> customNameMappings = new LinkedHashMap<>();
+		private Map<String, String> customImports = new LinkedHashMap<>();
+		private Map<String, Object> options = new LinkedHashMap<>();
+		private boolean nestEnums = true;
+		private boolean typeInEnums = true;
+		private boolean includeMessageDocs = true;
+		private boolean includeFieldDocs = true;
+		private boolean parallelOutput;
+		private List<String> catalogs = new ArrayList<>();
+		private String descriptorSetOut;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param filename the name of the output when it is not split by schema
+		 */
+		public Builder filename(String filename) {
+			this.filename = filename;
+			return this;
+		}
+
+		/**
+		 * @param namespace the package of the output
+		 */
+		public Builder namespace(String namespace) {
+			this.namespace = namespace;
+			return this;
+		}
+
+		public Builder splitBySchema(boolean splitBySchema) {
+			this.splitBySchema = splitBySchema;
+			return this;
+		}
+
+		/**
+		 * @param customTypeMappings output types by regular expression on schema types
+		 */
+		public Builder customTypeMappings(Map<String, String> customTypeMappings) {
+			this.customTypeMappings = new LinkedHashMap<>(customTypeMappings);
+			return this;
+		}
+
+		/**
+		 * @param customNameMappings replacements by regular expression on message and field names
+		 */
+		public Builder customNameMappings(Map<String, String> customNameMappings) {
+			this.customNameMappings = new LinkedHashMap<>(customNameMappings);
+			return this;
+		}
+
+		public Builder customImports(Map<String, String> customImports) {
+			this.customImports = new LinkedHashMap<>(customImports);
+			return this;
+		}
+
+		/**
+		 * @param options file options of the output, such as <code>java_package</code>
+		 */
+		public Builder options(Map<String, Object> options) {
+			this.options = new LinkedHashMap<>(options);
+			return this;
+		}
+
+		public Builder nestEnums(boolean nestEnums) {
+			this.nestEnums = nestEnums;
+			return this;
+		}
+
+		public Builder typeInEnums(boolean typeInEnums) {
+			this.typeInEnums = typeInEnums;
+			return this;
+		}
+
+		public Builder includeMessageDocs(boolean includeMessageDocs) {
+			this.includeMessageDocs = includeMessageDocs;
+			return this;
+		}
+
+		public Builder includeFieldDocs(boolean includeFieldDocs) {
+			this.includeFieldDocs = includeFieldDocs;
+			return this;
+		}
+
+		public Builder parallelOutput(boolean parallelOutput) {
+			this.parallelOutput = parallelOutput;
+			return this;
+		}
+
+		/**
+		 * @param catalogs OASIS XML catalog files resolving the schema documents
+		 */
+		public Builder catalogs(List<String> catalogs) {
+			this.catalogs = new ArrayList<>(catalogs);
+			return this;
+		}
+
+		/**
+		 * @param descriptorSetOut the name of the <code>FileDescriptorSet</code> of the output, none if null
+		 */
+		public Builder descriptorSetOut(String descriptorSetOut) {
+			this.descriptorSetOut = descriptorSetOut;
+			return this;
+		}
+
+		/**
+		 * @throws java.util.regex.PatternSyntaxException if a custom mapping is not a valid regular expression
+		 */
+		public ConversionOptions build() {
+			return new ConversionOptions(this);
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cost of a conversion: wall time and allocated bytes per phase, and the size of the schema model and of the output.
+ *
+ * The phases are, when they run: <code>parse</code> (XSOM), <code>load</code> (a model snapshot given as input), <code>interpret</code>, <code>save</code> (the
+ * model snapshot), <code>write</code> (rendering of the model) and <code>output</code> (imports and files). Allocated bytes are summed over all the threads of
+ * the JVM, so that parallel phases are fully accounted for; conversions running concurrently, as in a batch, overlap. They are -1 where the JVM does not
+ * measure allocations.
+ */
+public class ConversionReport {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final String schema;
+	private final List<Phase> phases = new ArrayList<>();
+	private final List<ConversionListener> listeners = new CopyOnWriteArrayList<>();
+	private boolean upToDate;
+	private int schemas = -1;
+	private Set<String> schemaFiles = Collections.emptySet();
+	private int messages;
+	private int fields;
+	private int enums;
+	private int simpleTypes;
+	private int anonymousTypes = -1;
+	private int files;
+	private int filesWritten;
+
+	ConversionReport(String schema) {
+		this.schema = schema;
+	}
+
+	void addListener(ConversionListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Starts measuring a phase, recorded once {@link Timer#stop()} is called.
+	 */
+	Timer start(String phase) {
+		return new Timer(phase);
+	}
+
+	void finish() {
+		for (ConversionListener listener : listeners) {
+			listener.conversionFinished(this);
+		}
+	}
+
+	/**
+	 * @return the schema file given as input
+	 */
+	public String getSchema() {
+		return schema;
+	}
+
+	public List<Phase> getPhases() {
+		return Collections.unmodifiableList(phases);
+	}
+
+	/**
+	 * @return true if the conversion was skipped by an incremental build
+	 */
+	public boolean isUpToDate() {
+		return upToDate;
+	}
+
+	/**
+	 * @return the target namespaces parsed, or -1 if the model was not interpreted from the schemas by this conversion
+	 */
+	public int getSchemas() {
+		return schemas;
+	}
+
+	/**
+	 * @return the schema documents the model depends on, catalogs included
+	 */
+	public int getDocuments() {
+		return schemaFiles.size();
+	}
+
+	/**
+	 * @return URIs of the schema documents the model depends on, catalogs included
+	 */
+	public Set<String> getSchemaFiles() {
+		return schemaFiles;
+	}
+
+	public int getMessages() {
+		return messages;
+	}
+
+	public int getFields() {
+		return fields;
+	}
+
+	public int getEnums() {
+		return enums;
+	}
+
+	public int getSimpleTypes() {
+		return simpleTypes;
+	}
+
+	/**
+	 * @return the names generated for anonymous types, or -1 if the model was not interpreted from the schemas by this conversion
+	 */
+	public int getAnonymousTypes() {
+		return anonymousTypes;
+	}
+
+	/**
+	 * @return the files generated
+	 */
+	public int getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return the files actually written, less than {@link #getFiles()} when unchanged files are skipped
+	 */
+	public int getFilesWritten() {
+		return filesWritten;
+	}
+
+	void setUpToDate(boolean upToDate) {
+		this.upToDate = upToDate;
+	}
+
+	void setSchemas(int schemas) {
+		this.schemas = schemas;
+	}
+
+	void setModel(Set<String> schemaFiles, int messages, int fields, int enums, int simpleTypes) {
+		this.schemaFiles = Collections.unmodifiableSet(schemaFiles);
+		this.messages = messages;
+		this.fields = fields;
+		this.enums = enums;
+		this.simpleTypes = simpleTypes;
+	}
+
+	void setAnonymousTypes(int anonymousTypes) {
+		this.anonymousTypes = anonymousTypes;
+	}
+
+	void setFiles(int files, int filesWritten) {
+		this.files = files;
+		this.filesWritten = filesWritten;
+	}
+
+	/**
+	 * @return the report as a JSON object
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"schema\": ").append(quote(schema));
+		sb.append(", \"upToDate\": ").append(upToDate);
+		sb.append(", \"phases\": [");
+		for (int i = 0; i < phases.size(); i++) {
+			Phase phase = phases.get(i);
+			sb.append(i > 0 ? ", " : "").append("{\"name\": ").append(quote(phase.name));
+			sb.append(", \"nanos\": ").append(phase.nanos);
+			sb.append(", \"allocatedBytes\": ").append(phase.allocatedBytes).append('}');
+		}
+		sb.append("], \"schemas\": ").append(schemas);
+		sb.append(", \"documents\": ").append(schemaFiles.size());
+		sb.append(", \"messages\": ").append(messages);
+		sb.append(", \"fields\": ").append(fields);
+		sb.append(", \"enums\": ").append(enums);
+		sb.append(", \"simpleTypes\": ").append(simpleTypes);
+		sb.append(", \"anonymousTypes\": ").append(anonymousTypes);
+		sb.append(", \"files\": ").append(files);
+		sb.append(", \"filesWritten\": ").append(filesWritten);
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * @return the reports as a JSON document, <code>{"conversions": [...]}</code>
+	 */
+	public static String toJson(List<ConversionReport> reports) {
+		StringBuilder sb = new StringBuilder("{\"conversions\": [");
+		for (int i = 0; i < reports.size(); i++) {
+			sb.append(i > 0 ? ",\n  " : "\n  ").append(reports.get(i).toJson());
+		}
+		return sb.append(reports.isEmpty() ? "]}\n" : "\n]}\n").toString();
+	}
+
+	private static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static long allocatedBytes() {
+		if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long total = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (allocated > 0) {
+				total += allocated;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * A finished phase.
+	 */
+	public static class Phase {
+		private final String name;
+		private final long nanos;
+		private final long allocatedBytes;
+
+		Phase(String name, long nanos, long allocatedBytes) {
+			this.name = name;
+			this.nanos = nanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the wall time of the phase
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * @return the bytes allocated during the phase, or -1
+		 */
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return name + " " + nanos / 1_000_000 + " ms";
+		}
+	}
+
+	/**
+	 * A phase being measured.
+	 */
+	class Timer {
+		private final String name;
+		private final long start = System.nanoTime();
+		private final long allocated = allocatedBytes();
+
+		private Timer(String name) {
+			this.name = name;
+		}
+
+		void stop() {
+			long nanos = System.nanoTime() - start;
+			long now = allocated < 0 ? -1 : allocatedBytes();
+			Phase phase = new Phase(name, nanos, now < 0 ? -1 : Math.max(0, now - allocated));
+			synchronized (phases) {
+				phases.add(phase);
+			}
+			for (ConversionListener listener : listeners) {
+				listener.phaseFinished(ConversionReport.this, phase);
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.github.tranchis.xsd2thrift;
+
+import javax.xml.XMLConstants;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.sun.xml.xsom.parser.AnnotationContext;
+import com.sun.xml.xsom.parser.AnnotationParser;
+import com.sun.xml.xsom.parser.AnnotationParserFactory;
+
+/**
+ * Annotation parser keeping only the text of <code>xs:documentation</code>, straight from the SAX events, instead of a DOM tree of the whole annotation.
+ *
+ * The annotation of a component becomes a String: all the character data of a documentation element, markup inside it included, and the documentation elements
+ * of an annotation separated by a new line. <code>xs:appinfo</code> is ignored.
+ */
+class DocumentationAnnotationParserFactory implements AnnotationParserFactory {
+
+	@Override
+	public AnnotationParser create() {
+		return new DocumentationParser();
+	}
+
+	private static class DocumentationParser extends AnnotationParser {
+
+		private final StringBuilder text = new StringBuilder();
+		private StringBuilder documentation;
+		/** depth of the current element inside the documentation element, 0 outside of it */
+		private int depth;
+
+		@Override
+		public ContentHandler getContentHandler(AnnotationContext context, String parentElementName, ErrorHandler errorHandler, EntityResolver entityResolver) {
+			return new DefaultHandler() {
+
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attributes) {
+					if (depth > 0) {
+						depth++;
+					} else if ("documentation".equals(localName) && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(uri)) {
+						depth = 1;
+						documentation = new StringBuilder();
+					}
+				}
+
+				@Override
+				public void endElement(String uri, String localName, String qName) {
+					if (depth > 0 && --depth == 0) {
+						if (documentation.length() > 0) {
+							if (text.length() > 0) {
+								text.append('\n');
+							}
+							text.append(documentation);
+						}
+						documentation = null;
+					}
+				}
+
+				@Override
+				public void characters(char[] ch, int start, int length) {
+					if (depth > 0) {
+						documentation.append(ch, start, length);
+					}
+				}
+			};
+		}
+
+		@Override
+		public Object getResult(Object existing) {
+			if (text.length() == 0) {
+				return existing;
+			}
+			return text.toString();
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.github.tranchis.xsd2thrift;
+
+/**
+ * A constraining facet of a simple type, such as <code>maxLength</code> or <code>pattern</code>, detached from the XSOM component graph.
+ */
+public class Facet {
+	private final String name;
+	private final String value;
+
+	public Facet(String name, String value) {
+		this.name = name;
+		this.value = value;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "Facet [name=" + name + ", value=" + value + "]";
+	}
+}
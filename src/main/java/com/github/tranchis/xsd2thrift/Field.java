@@ -31,7 +31,7 @@ public class Field {
 	@Override
 	public String toString() {
 		return "Field [name=" + name + ", typeNamespace=" + typeNamespace + ", type=" + type + ", required=" + required + ", repeat=" + repeat + ", def=" + def
-				+ "]";
+				+ ", xmlNamespace=" + xmlNamespace + ", attribute=" + attribute + "]";
 	}
 
 	private String name;
@@ -41,15 +41,22 @@ public class Field {
 	private boolean required;
 	private boolean repeat;
 	private XmlString def;
+	private String xmlNamespace;
+	private boolean attribute;
 
 	public Field(String name, String typeNamespace, String type, boolean repeat, XmlString def, String doc, boolean required) {
-		this.name = name;
-		this.type = type;
+		// the same names, types and namespaces come back in many messages
+		this.name = intern(name);
+		this.type = intern(type);
 		this.required = required;
 		this.def = def;
 		this.repeat = repeat;
 		this.doc = doc;
-		this.typeNamespace = typeNamespace;
+		this.typeNamespace = intern(typeNamespace);
+	}
+
+	private static String intern(String s) {
+		return s != null ? s.intern() : null;
 	}
 
 	public String getTypeNamespace() {
@@ -104,6 +111,28 @@ public class Field {
 		this.def = def;
 	}
 
+	/**
+	 * @return the namespace URI of the element or attribute, empty if it is unqualified, or null for the simple content of a type
+	 */
+	public String getXmlNamespace() {
+		return xmlNamespace;
+	}
+
+	public void setXmlNamespace(String xmlNamespace) {
+		this.xmlNamespace = intern(xmlNamespace);
+	}
+
+	/**
+	 * @return true if the field is read from an attribute rather than an element
+	 */
+	public boolean isAttribute() {
+		return attribute;
+	}
+
+	public void setAttribute(boolean attribute) {
+		this.attribute = attribute;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
@@ -123,11 +152,22 @@ public class Field {
 				.append(type, field.type)
 				.append(doc, field.doc)
 				.append(def, field.def)
+				.append(xmlNamespace, field.xmlNamespace)
+				.append(attribute, field.attribute)
 				.isEquals();
 	}
 
 	@Override
 	public int hashCode() {
-		return new HashCodeBuilder(17, 37).append(name).append(typeNamespace).append(type).append(doc).append(required).append(repeat).append(def).toHashCode();
+		return new HashCodeBuilder(17, 37).append(name)
+				.append(typeNamespace)
+				.append(type)
+				.append(doc)
+				.append(required)
+				.append(repeat)
+				.append(def)
+				.append(xmlNamespace)
+				.append(attribute)
+				.toHashCode();
 	}
 }
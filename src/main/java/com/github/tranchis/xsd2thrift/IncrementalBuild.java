@@ -0,0 +1,166 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manifest of a previous generation, used to skip generation when nothing it depends on changed.
+ *
+ * The manifest records a fingerprint of the effective configuration, the SHA-256 of every schema document XSOM loaded (the root schema and its whole
+ * include/import closure) and the SHA-256 of every generated file. Generation is up to date when all of them still match.
+ */
+public class IncrementalBuild {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalBuild.class);
+
+	private static final String HEADER = "# xsd2proto incremental manifest v1";
+	private static final String CONFIGURATION = "configuration";
+	private static final String INPUT = "input";
+	private static final String OUTPUT = "output";
+
+	private final Path manifest;
+	private final String configuration;
+
+	/**
+	 * @param manifest      file holding the manifest between runs
+	 * @param configuration description of everything besides the schemas that affects the output, e.g. the configuration file and mappings
+	 */
+	public IncrementalBuild(Path manifest, String configuration) {
+		this.manifest = manifest;
+		this.configuration = digest(configuration);
+	}
+
+	/**
+	 * @param directory output directory, null for the working directory
+	 * @param output    the output file, or the schema when output is split by schema
+	 * @return the manifest file of the generation
+	 */
+	public static Path manifestFor(String directory, String output) {
+		Path dir = directory == null ? Paths.get("") : Paths.get(directory);
+		return dir.resolve("." + Paths.get(output).getFileName() + ".xsd2proto");
+	}
+
+	public Path getManifest() {
+		return manifest;
+	}
+
+	/**
+	 * @return true if a manifest exists and the configuration, the schema documents and the generated files all match it
+	 */
+	public boolean isUpToDate() {
+		if (!Files.isRegularFile(manifest)) {
+			return false;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+			if (!HEADER.equals(reader.readLine())) {
+				LOGGER.debug("Ignoring manifest {} of an unknown version", manifest);
+				return false;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] entry = line.split(" ", 3);
+				if (entry.length < 2) {
+					return false;
+				}
+				String expected = entry[1];
+				String actual;
+				if (CONFIGURATION.equals(entry[0])) {
+					actual = configuration;
+				} else if (INPUT.equals(entry[0]) && entry.length == 3) {
+					actual = SchemaDocumentCache.hash(URI.create(entry[2]));
+				} else if (OUTPUT.equals(entry[0]) && entry.length == 3) {
+					actual = digest(Paths.get(entry[2]).toUri());
+				} else {
+					return false;
+				}
+				if (!expected.equals(actual)) {
+					LOGGER.debug("{} changed since the last generation", entry.length == 3 ? entry[2] : entry[0]);
+					return false;
+				}
+			}
+			return true;
+		} catch (IOException | IllegalArgumentException e) {
+			LOGGER.debug("Unable to check manifest {}", manifest, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Records a generation.
+	 *
+	 * @param inputs  URIs of the schema documents, see {@link XSDParser#getSchemaFiles()}
+	 * @param outputs generated files, see {@link OutputWriter#getOutputFiles()}
+	 */
+	public void save(Collection<String> inputs, Collection<Path> outputs) throws IOException {
+		Map<String, String> inputDigests = new TreeMap<>();
+		for (String input : inputs) {
+			// usually just parsed, so already in memory
+			inputDigests.put(input, SchemaDocumentCache.hash(URI.create(input)));
+		}
+		Map<String, String> outputDigests = new TreeMap<>();
+		for (Path output : outputs) {
+			outputDigests.put(output.toAbsolutePath().toString(), digest(output.toUri()));
+		}
+		try (Writer w = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+			w.write(HEADER + "\n");
+			w.write(CONFIGURATION + " " + configuration + "\n");
+			for (Entry<String, String> input : inputDigests.entrySet()) {
+				w.write(INPUT + " " + input.getValue() + " " + input.getKey() + "\n");
+			}
+			for (Entry<String, String> output : outputDigests.entrySet()) {
+				w.write(OUTPUT + " " + output.getValue() + " " + output.getKey() + "\n");
+			}
+		}
+	}
+
+	private static String digest(URI uri) throws IOException {
+		MessageDigest digest = sha256();
+		try (InputStream in = new DigestInputStream(uri.toURL().openStream(), digest)) {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) != -1) {
+				// digested while reading
+			}
+		} catch (FileNotFoundException e) {
+			return "missing";
+		}
+		return hex(digest.digest());
+	}
+
+	private static String digest(String text) {
+		return hex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
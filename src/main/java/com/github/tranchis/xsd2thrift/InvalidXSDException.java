@@ -7,4 +7,11 @@ public class InvalidXSDException extends Exception {
 	 */
 	private static final long serialVersionUID = -5971010798616188572L;
 
+	public InvalidXSDException() {
+	}
+
+	public InvalidXSDException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
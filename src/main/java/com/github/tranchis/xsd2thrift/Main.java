@@ -23,22 +23,29 @@
  */
 package com.github.tranchis.xsd2thrift;
 
-import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.error.YAMLException;
-
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+
 public class Main {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
@@ -54,7 +61,21 @@ public class Main {
 			+ "  --customNameMappings=cake:kake,...: translate message and field names\n"
 			+ "  --typeInEnums=true|false        : include type as a prefix in enums, defaults to true\n"
 			+ "  --includeMessageDocs=true|false : include documentation of messages in output, defaults to true\n"
-			+ "  --includeFieldDocs=true|false   : include documentation for fields in output, defaults to true\n" + "";
+			+ "  --includeFieldDocs=true|false   : include documentation for fields in output, defaults to true\n"
+			+ "  --parallelOutput=true|false     : with splitBySchema, generate namespace files on all cores, defaults to false\n"
+			+ "  --incremental=true|false        : skip generation when neither the schemas nor the configuration changed since the last run,\n"
+			+ "                                    and only rewrite files whose content changed, defaults to false\n"
+			+ "  --saveModel=FILENAME            : also save the interpreted schema model to FILENAME; giving that file instead of the xsd\n"
+			+ "                                    to a later run regenerates without parsing the schemas again\n"
+			+ "  --catalogs=FILENAME,...         : resolve schema imports and includes through these OASIS XML catalogs first\n"
+			+ "  --descriptorSetOut=FILENAME     : also write the descriptors of the output files to FILENAME, as a serialized\n"
+			+ "                                    FileDescriptorSet, like protoc --descriptor_set_out\n"
+			+ "  --report=FILENAME               : write the time and memory spent per phase, and the size of the model, to FILENAME as JSON\n"
+			+ "  --watch=true|false              : keep running, and convert again whenever the schemas or the config file change\n"
+			+ "  --batch=FILENAME                : convert with each config file listed in this YAML file, the same as giving several\n"
+			+ "                                    --configFile; each config names its xsd, or uses the one given last\n"
+			+ "  --port=NUMBER                   : keep running, and accept conversion jobs on this localhost port, one line of\n"
+			+ "                                    tab-separated arguments per job\n" + "";
 
 	private static void usage(String error) {
 		LOGGER.error(error);
@@ -71,16 +92,183 @@ public class Main {
 	 * @throws Exception
 	 */
 	public static void main(String[] args) {
-		XSDParser xp;
-		HashMap<String, String> map;
-		String xsd, param;
-		int i;
-		ProtobufMarshaller pbm = null;
+		boolean watch = false;
+		int port = -1;
+		List<String> conversion = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith("--watch=")) {
+				watch = Boolean.parseBoolean(arg.split("=")[1]);
+			} else if (arg.startsWith("--port=")) {
+				try {
+					port = Integer.parseInt(arg.split("=")[1]);
+				} catch (NumberFormatException e) {
+					usage(arg + " is not a valid port");
+					return;
+				}
+			} else {
+				conversion.add(arg);
+			}
+		}
 
-		OutputWriter writer;
-		correct = true;
+		if (watch || port >= 0) {
+			try {
+				new ConversionDaemon(conversion.toArray(new String[0]), watch, port).run();
+			} catch (IOException e) {
+				LOGGER.error("Daemon stopped", e);
+			}
+		} else {
+			run(conversion.toArray(new String[0]), null);
+		}
+	}
+
+	/**
+	 * Runs one conversion, or a batch of them.
+	 *
+	 * @param cache parsed schema sets to reuse, or null
+	 * @return true if the output was generated or already up to date
+	 */
+	static boolean run(String[] args, SchemaSetCache cache) {
+		String report = null;
+		List<String> conversionArgs = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith("--report=")) {
+				report = arg.split("=")[1];
+			} else {
+				conversionArgs.add(arg);
+			}
+		}
+
+		List<ConversionReport> reports = new ArrayList<>();
+		boolean success = convert(conversionArgs.toArray(new String[0]), cache, reports);
+		if (report != null) {
+			try {
+				Files.write(Paths.get(report), ConversionReport.toJson(reports).getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				LOGGER.error("Unable to write report " + report, e);
+				success = false;
+			}
+		}
+		return success;
+	}
+
+	private static boolean convert(String[] args, SchemaSetCache cache, List<ConversionReport> reports) {
+		List<String> configFiles = new ArrayList<>();
+		String batch = null;
+		String xsd = null;
+		for (String arg : args) {
+			if (arg.startsWith("--configFile=")) {
+				configFiles.add(arg.split("=")[1]);
+			} else if (arg.startsWith("--batch=")) {
+				batch = arg.split("=")[1];
+			} else if (!arg.startsWith("--")) {
+				xsd = arg;
+			}
+		}
+		if (batch != null || configFiles.size() > 1) {
+			if (configFiles.size() + (batch != null ? 1 : 0) + (xsd != null ? 1 : 0) != args.length) {
+				usage("Only --configFile, --batch, --report and a default xsd can be given for a batch");
+				return false;
+			}
+			if (batch != null) {
+				try {
+					configFiles.addAll(readBatch(batch));
+				} catch (IOException | YAMLException | ClassCastException e) {
+					LOGGER.error("Unable to read batch manifest " + batch, e);
+					return false;
+				}
+			}
+			return runBatch(configFiles, xsd, cache != null ? cache : new SchemaSetCache(), reports);
+		}
+
+		Conversion conversion = prepare(args, cache);
+		if (conversion == null) {
+			return false;
+		}
+		reports.add(conversion.parser.getReport());
+		return conversion.upToDate || conversion.generate();
+	}
+
+	/**
+	 * @return the config files listed in a batch manifest, a YAML sequence of paths relative to the manifest
+	 */
+	private static List<String> readBatch(String batch) throws IOException {
+		Path manifest = Paths.get(batch);
+		List<String> configFiles = new ArrayList<>();
+		try (InputStream in = Files.newInputStream(manifest)) {
+			List<?> entries = (List<?>) new Yaml().load(in);
+			for (Object entry : entries) {
+				Path configFile = manifest.toAbsolutePath().resolveSibling(String.valueOf(entry));
+				configFiles.add(configFile.toString());
+			}
+		}
+		return configFiles;
+	}
+
+	/**
+	 * Runs the conversions of several config files. Every distinct schema, with its element name mappings, is parsed and interpreted once; the outputs are then
+	 * generated concurrently from the shared model.
+	 *
+	 * @param defaultXsd schema of the config files that do not name one
+	 * @param reports    receives the report of every conversion
+	 */
+	static boolean runBatch(List<String> configFiles, String defaultXsd, SchemaSetCache cache, List<ConversionReport> reports) {
+		boolean success = true;
+		Map<String, List<Conversion>> groups = new LinkedHashMap<>();
+		for (String configFile : configFiles) {
+			String xsd = defaultXsd;
+			try (InputStream in = Files.newInputStream(Paths.get(configFile))) {
+				ConfigFile config = new Yaml().loadAs(in, ConfigFile.class);
+				if (config.xsd != null) {
+					xsd = config.xsd;
+				}
+			} catch (IOException | YAMLException e) {
+				LOGGER.error("Unable to read config file " + configFile, e);
+				success = false;
+				continue;
+			}
+			if (xsd == null) {
+				LOGGER.error("No xsd given for config file {}", configFile);
+				success = false;
+				continue;
+			}
+
+			Conversion conversion = prepare(new String[] { "--configFile=" + configFile, xsd }, cache);
+			if (conversion == null) {
+				success = false;
+				continue;
+			}
+			reports.add(conversion.parser.getReport());
+			if (!conversion.upToDate) {
+				groups.computeIfAbsent(conversion.interpretationKey, k -> new ArrayList<>()).add(conversion);
+			}
+		}
 
-		map = new HashMap<>();
+		// XSOM is not meant for concurrent use, interpret one schema at a time
+		List<Conversion> interpreted = new ArrayList<>();
+		for (List<Conversion> group : groups.values()) {
+			XSDParser first = group.get(0).parser;
+			try {
+				first.interpret();
+				for (Conversion conversion : group.subList(1, group.size())) {
+					conversion.parser.setModel(first.getModel(), first.getSchemaFiles());
+					conversion.parser.interpret();
+				}
+				interpreted.addAll(group);
+			} catch (Exception e) {
+				LOGGER.error("Error parsing xsd", e);
+				success = false;
+			}
+		}
+
+		long failed = interpreted.parallelStream().filter(conversion -> !conversion.generate()).count();
+		return success && failed == 0;
+	}
+
+	/**
+	 * @return the types written for the types of the Ecore and XMI schemas
+	 */
+	static HashMap<String, String> xsdMapping() {
+		HashMap<String, String> map = new HashMap<>();
 		map.put("schema_._type", "binary");
 		map.put("EString", "string");
 		map.put("EBoolean", "boolean");
@@ -90,12 +278,32 @@ public class Main {
 		map.put("EFloat", "decimal");
 		map.put("EObject", "binary");
 		map.put("Extension", "binary");
+		return map;
+	}
+
+	/**
+	 * Sets up a conversion from the command line arguments.
+	 *
+	 * @return the conversion, or null if the arguments are not valid
+	 */
+	private static Conversion prepare(String[] args, SchemaSetCache cache) {
+		XSDParser xp;
+		HashMap<String, String> map;
+		String xsd, param;
+		int i;
+		ProtobufMarshaller pbm = null;
+
+		OutputWriter writer;
+		correct = true;
+
+		map = xsdMapping();
 
 		if (args.length == 0 || args[args.length - 1].startsWith("--")) {
 			usage();
 		} else {
 			xsd = args[args.length - 1];
 			xp = new XSDParser(xsd, map);
+			xp.setSchemaSetCache(cache);
 			writer = new OutputWriter();
 			xp.setWriter(writer);
 
@@ -109,6 +317,8 @@ public class Main {
 			Map<Pattern, String> customNameMappings = null;
 			Map<String, String> customImports = null;
 			Map<String, Object> options = null;
+			boolean incremental = false;
+			String configuration = String.join("\n", args);
 
 			if (args.length == 2 && args[0].startsWith("--configFile=")) {
 				Yaml yaml = new Yaml();
@@ -147,6 +357,14 @@ public class Main {
 					xp.setTypeInEnums(config.typeInEnums);
 					xp.setIncludeMessageDocs(config.includeMessageDocs);
 					xp.setIncludeFieldDocs(config.includeFieldDocs);
+					writer.setParallelOutput(config.parallelOutput);
+					incremental = config.incremental;
+					xp.setSaveModel(config.saveModel);
+					if (config.catalogs != null) {
+						xp.setCatalogs(config.catalogs);
+					}
+					writer.setDescriptorSetOut(config.descriptorSetOut);
+					configuration = yaml.dump(config) + xsd;
 
 				} catch (IOException e) {
 					LOGGER.error("Unable to find config file " + configFile, e);
@@ -171,7 +389,7 @@ public class Main {
 						writer.setSplitBySchema("true".equals(param));
 					} else if (args[i].startsWith("--customTypeMappings=")) {
 						param = args[i].split("=")[1];
-						customTypeMappings = new HashMap<Pattern, String>();
+						customTypeMappings = new LinkedHashMap<Pattern, String>();
 						for (String mapping : param.split(",")) {
 							int colon = mapping.indexOf(':');
 							if (colon > -1) {
@@ -182,7 +400,7 @@ public class Main {
 						}
 					} else if (args[i].startsWith("--customNameMappings=")) {
 						param = args[i].split("=")[1];
-						customNameMappings = new HashMap<Pattern, String>();
+						customNameMappings = new LinkedHashMap<Pattern, String>();
 						for (String mapping : param.split(",")) {
 							int colon = mapping.indexOf(':');
 							if (colon > -1) {
@@ -212,6 +430,16 @@ public class Main {
 						xp.setIncludeMessageDocs(Boolean.parseBoolean(args[i].split("=")[1]));
 					} else if (args[i].startsWith("--includeFieldDocs=")) {
 						xp.setIncludeFieldDocs(Boolean.parseBoolean(args[i].split("=")[1]));
+					} else if (args[i].startsWith("--parallelOutput=")) {
+						writer.setParallelOutput(Boolean.parseBoolean(args[i].split("=")[1]));
+					} else if (args[i].startsWith("--saveModel=")) {
+						xp.setSaveModel(args[i].split("=")[1]);
+					} else if (args[i].startsWith("--catalogs=")) {
+						xp.setCatalogs(Arrays.asList(args[i].split("=")[1].split(",")));
+					} else if (args[i].startsWith("--descriptorSetOut=")) {
+						writer.setDescriptorSetOut(args[i].split("=")[1]);
+					} else if (args[i].startsWith("--incremental=")) {
+						incremental = Boolean.parseBoolean(args[i].split("=")[1]);
 					} else {
 						usage();
 					}
@@ -234,16 +462,63 @@ public class Main {
 				pbm.setOptions(options);
 			}
 
-			if (correct) {
-				try {
-					xp.parse();
-					LOGGER.info("Done");
-				} catch (InvalidXSDException e) {
-					LOGGER.error("Error converting xsd to proto: {}", e.getMessage());
-				} catch (Exception e) {
-					LOGGER.error("Error parsing xsd", e);
+			if (!correct) {
+				return null;
+			}
+
+			Conversion conversion = new Conversion(xp, writer);
+			conversion.interpretationKey = new File(xsd).getAbsolutePath() + "\n" + (customNameMappings != null ? customNameMappings.toString() : "") + "\n"
+					+ xp.isDocumented() + "\n" + xp.getCatalogs();
+			if (incremental) {
+				if (writer.isStandardOutput()) {
+					LOGGER.warn("Incremental generation needs an output file or splitBySchema, generating everything");
+				} else {
+					String output = writer.isSplitBySchema() || writer.getFilename() == null ? xsd : writer.getFilename();
+					conversion.build = new IncrementalBuild(IncrementalBuild.manifestFor(writer.getDirectory(), output),
+							configuration + "\n" + Main.class.getPackage().getImplementationVersion());
+					if (conversion.build.isUpToDate()) {
+						LOGGER.info("Up to date, nothing to generate");
+						conversion.upToDate = true;
+						xp.skipUpToDate();
+					}
+					writer.setSkipUnchangedFiles(true);
+				}
+			}
+			return conversion;
+		}
+		return null;
+	}
+
+	/**
+	 * A configured conversion of one schema.
+	 */
+	private static class Conversion {
+		private final XSDParser parser;
+		private final OutputWriter writer;
+		private IncrementalBuild build;
+		private boolean upToDate;
+		/** conversions with the same key get the same model from interpretation */
+		private String interpretationKey;
+
+		Conversion(XSDParser parser, OutputWriter writer) {
+			this.parser = parser;
+			this.writer = writer;
+		}
+
+		boolean generate() {
+			try {
+				parser.parse();
+				if (build != null) {
+					build.save(parser.getSchemaFiles(), writer.getOutputFiles());
 				}
+				LOGGER.info("Done");
+				return true;
+			} catch (InvalidXSDException e) {
+				LOGGER.error("Error converting xsd to proto: {}", e.getMessage());
+			} catch (Exception e) {
+				LOGGER.error("Error parsing xsd", e);
 			}
+			return false;
 		}
 	}
 }
@@ -27,41 +27,87 @@ import java.util.*;
 
 import com.sun.xml.xsom.XmlString;
 
+/**
+ * A message and its fields, inherited fields included.
+ *
+ * Fields are kept in an array in declaration order, with an open-addressing index by name once there are more than a few of them. Names and namespaces are
+ * interned, and {@link #compact(Map)} shares equal fields between messages, so the many messages of a large schema set stay small.
+ */
 public class Message implements Comparable<Message> {
-	private Map<String, Field> map;
-	private Set<String> types;
-	private List<Field> orderedFields;
+	private static final Field[] NO_FIELDS = new Field[0];
+	/** up to this many fields, names are looked up with a linear scan */
+	private static final int INDEX_THRESHOLD = 8;
+
+	private Field[] fields = NO_FIELDS;
+	private int size;
+	/** position + 1 of the field in each slot, 0 for an empty slot; null while the message has few fields */
+	private int[] index;
 	private String name;
 	private String namespace;
 	private String parent;
 	private String doc;
 
 	public Message(String name, String namespace) {
-		this.name = name;
-		this.namespace = namespace;
-		map = new TreeMap<String, Field>();
-		types = new TreeSet<String>();
-		orderedFields = new LinkedList<Field>();
+		this.name = name != null ? name.intern() : null;
+		this.namespace = namespace != null ? namespace.intern() : null;
 	}
 
 	void addFields(List<Field> fields, HashMap<String, String> xsdMapping) {
+		ensureCapacity(size + fields.size());
 		for (Field field : fields) {
-			addField(field.getName(), field.getTypeNamespace(), field.getType(), field.isRequired(), field.isRepeat(), field.getDef(), field.getDoc(),
-					xsdMapping);
+			Field added = addField(field.getName(), field.getTypeNamespace(), field.getType(), field.isRequired(), field.isRepeat(), field.getDef(),
+					field.getDoc(), xsdMapping);
+			copyXmlName(field, added);
 		}
 	}
 
-	public void addField(String name, String type, boolean required, boolean repeat, XmlString def, String doc, Map<String, String> xsdMapping) {
-		addField(name, null, type, required, repeat, def, doc, xsdMapping);
+	/**
+	 * Adds the fields of an ancestor that this message does not have yet. The ancestor's field instances are shared unless the type mapping changes them, and
+	 * the ancestor is left untouched.
+	 */
+	void inheritFields(List<Field> fields, Map<String, String> xsdMapping) {
+		ensureCapacity(size + fields.size());
+		for (Field field : fields) {
+			String type = field.getType();
+			if (getField(field.getName()) != null || type != null && type.endsWith("/XMLSchema")) {
+				continue;
+			}
+			String typeNamespace = field.getTypeNamespace();
+			if (type == null || xsdMapping.containsKey(type) || type.equals(this.name)
+					|| typeNamespace != null && !typeNamespace.equals(NamespaceConverter.convertFromSchema(typeNamespace))) {
+				copyXmlName(field,
+						addField(field.getName(), typeNamespace, type, field.isRequired(), field.isRepeat(), field.getDef(), field.getDoc(), xsdMapping));
+			} else {
+				add(field);
+			}
+		}
 	}
 
-	public void addField(String name, String namespace, String type, boolean required, boolean repeat, XmlString def, String doc,
-			Map<String, String> xsdMapping) {
-		Field f;
+	/**
+	 * Restores the fields of a message read back from a {@link ModelSnapshot}, as they were after interpretation.
+	 */
+	void restore(List<Field> fields) {
+		ensureCapacity(size + fields.size());
+		for (Field field : fields) {
+			if (getField(field.getName()) == null) {
+				add(field);
+			}
+		}
+	}
+
+	public Field addField(String name, String type, boolean required, boolean repeat, XmlString def, String doc, Map<String, String> xsdMapping) {
+		return addField(name, null, type, required, repeat, def, doc, xsdMapping);
+	}
 
-		if (map.get(name) == null) {
+	/**
+	 * @return the field added, or null if the message has a field with that name already
+	 */
+	public Field addField(String name, String namespace, String type, boolean required, boolean repeat, XmlString def, String doc,
+			Map<String, String> xsdMapping) {
+		Field field = null;
+		if (getField(name) == null) {
 			if (type == null) {
-				type = new String(name);
+				type = name;
 			} else {
 				if (xsdMapping.containsKey(type)) {
 					type = xsdMapping.get(type);
@@ -69,15 +115,99 @@ public class Message implements Comparable<Message> {
 					type = "binary";
 				}
 			}
-			f = new Field(name, NamespaceConverter.convertFromSchema(namespace), type, repeat, def, doc, required);
-			map.put(name, f);
-			orderedFields.add(f);
-			if (!type.equals(this.name)) {
-				types.add(type);
+			field = new Field(name, NamespaceConverter.convertFromSchema(namespace), type, repeat, def, doc, required);
+			add(field);
+		}
+		return field;
+	}
+
+	private static void copyXmlName(Field from, Field to) {
+		if (to != null) {
+			to.setXmlNamespace(from.getXmlNamespace());
+			to.setAttribute(from.isAttribute());
+		}
+	}
+
+	/**
+	 * Trims the message once it is complete: equal fields are replaced by the instance found in <code>pool</code>, so fields inherited by many types are stored
+	 * once. The name index stays as it is, so lookups never write: interpreted messages are shared by the conversions of a batch.
+	 */
+	void compact(Map<Field, Field> pool) {
+		if (size < fields.length) {
+			fields = size == 0 ? NO_FIELDS : Arrays.copyOf(fields, size);
+		}
+		for (int i = 0; i < size; i++) {
+			Field field = pool.putIfAbsent(fields[i], fields[i]);
+			if (field != null) {
+				fields[i] = field;
 			}
 		}
 	}
 
+	/**
+	 * @return the field with that name, or null
+	 */
+	public Field getField(String name) {
+		if (index == null) {
+			for (int i = 0; i < size; i++) {
+				if (fields[i].getName().equals(name)) {
+					return fields[i];
+				}
+			}
+			return null;
+		}
+		int mask = index.length - 1;
+		for (int slot = hash(name) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+			Field field = fields[index[slot] - 1];
+			if (field.getName().equals(name)) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+	private void add(Field field) {
+		ensureCapacity(size + 1);
+		fields[size++] = field;
+		if (index == null) {
+			if (size > INDEX_THRESHOLD) {
+				rebuildIndex();
+			}
+		} else if (size * 2 > index.length) {
+			rebuildIndex();
+		} else {
+			insert(index, field.getName(), size);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > fields.length) {
+			fields = Arrays.copyOf(fields, Math.max(capacity, fields.length + (fields.length >> 1) + 1));
+		}
+	}
+
+	private void rebuildIndex() {
+		int[] table = new int[Integer.highestOneBit(size * 4 - 1)];
+		for (int i = 0; i < size; i++) {
+			insert(table, fields[i].getName(), i + 1);
+		}
+		index = table;
+	}
+
+	private static void insert(int[] table, String name, int position) {
+		int mask = table.length - 1;
+		int slot = hash(name) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = position;
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -94,11 +224,24 @@ public class Message implements Comparable<Message> {
 		this.doc = doc;
 	}
 
+	/**
+	 * @return the fields in declaration order, own fields first
+	 */
 	public List<Field> getFields() {
-		return orderedFields;
+		return Collections.unmodifiableList(Arrays.asList(fields).subList(0, size));
 	}
 
+	/**
+	 * @return the types of the fields, sorted, except this message itself
+	 */
 	public Collection<String> getTypes() {
+		Set<String> types = new TreeSet<String>();
+		for (int i = 0; i < size; i++) {
+			String type = fields[i].getType();
+			if (!type.equals(name)) {
+				types.add(type);
+			}
+		}
 		return types;
 	}
 
@@ -0,0 +1,280 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.sun.xml.xsom.XmlString;
+
+/**
+ * Versioned binary form of the interpreted schema model: the message, enumeration and simple type registries built by {@link XSDParser#interpretResult}, so
+ * that output can be regenerated without parsing the schemas again.
+ *
+ * Strings are written once and referenced by index afterwards, counts and references are varints. The name mappings resolved during interpretation are recorded
+ * too, so a snapshot reused with different name mappings can be detected.
+ */
+class ModelSnapshot {
+
+	static final int MAGIC = 0x58534450; // XSDP
+	static final int VERSION = 3;
+
+	final LinkedHashMap<String, Message> messages;
+	final LinkedHashMap<String, Enumeration> enums;
+	final LinkedHashMap<String, SimpleTypeDesc> simpleTypes;
+	final Map<String, String> interpretedNames;
+
+	ModelSnapshot(LinkedHashMap<String, Message> messages, LinkedHashMap<String, Enumeration> enums, LinkedHashMap<String, SimpleTypeDesc> simpleTypes,
+			Map<String, String> interpretedNames) {
+		this.messages = messages;
+		this.enums = enums;
+		this.simpleTypes = simpleTypes;
+		this.interpretedNames = interpretedNames;
+	}
+
+	/**
+	 * @return true if the file starts like a snapshot
+	 */
+	static boolean isSnapshot(File file) {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	void write(OutputStream os) throws IOException {
+		Output out = new Output(new DataOutputStream(new BufferedOutputStream(os, 1 << 16)));
+		out.data.writeInt(MAGIC);
+		out.data.writeShort(VERSION);
+
+		out.writeVarInt(interpretedNames.size());
+		for (Entry<String, String> name : interpretedNames.entrySet()) {
+			out.writeString(name.getKey());
+			out.writeString(name.getValue());
+		}
+
+		out.writeVarInt(messages.size());
+		for (Message message : messages.values()) {
+			out.writeString(message.getName());
+			out.writeString(message.getNamespace());
+			out.writeString(message.getParent());
+			out.writeString(message.getDoc());
+			out.writeVarInt(message.getFields().size());
+			for (Field field : message.getFields()) {
+				out.writeString(field.getName());
+				out.writeString(field.getTypeNamespace());
+				out.writeString(field.getType());
+				out.writeString(field.getDoc());
+				out.data.writeByte((field.isRequired() ? 1 : 0) | (field.isRepeat() ? 2 : 0) | (field.isAttribute() ? 4 : 0));
+				out.writeString(field.getDef() != null ? field.getDef().value : null);
+				out.writeString(field.getXmlNamespace());
+			}
+		}
+
+		out.writeVarInt(enums.size());
+		for (Enumeration en : enums.values()) {
+			out.writeString(en.getName());
+			out.writeString(en.getNamespace());
+			out.writeString(en.getDoc());
+			List<String> values = new ArrayList<>();
+			en.iterator().forEachRemaining(values::add);
+			out.writeVarInt(values.size());
+			for (String value : values) {
+				out.writeString(value);
+			}
+		}
+
+		out.writeVarInt(simpleTypes.size());
+		for (SimpleTypeDesc simpleType : simpleTypes.values()) {
+			out.writeString(simpleType.getName());
+			out.writeString(simpleType.getBaseType());
+			out.writeString(simpleType.getDocumentation());
+			List<Facet> facets = simpleType.getFacets();
+			out.writeVarInt(facets == null ? 0 : facets.size() + 1);
+			if (facets != null) {
+				for (Facet facet : facets) {
+					out.writeString(facet.getName());
+					out.writeString(facet.getValue());
+				}
+			}
+		}
+		out.data.flush();
+	}
+
+	static ModelSnapshot read(InputStream is) throws IOException {
+		Input in = new Input(new DataInputStream(new BufferedInputStream(is, 1 << 16)));
+		if (in.data.readInt() != MAGIC) {
+			throw new IOException("Not a schema model snapshot");
+		}
+		int version = in.data.readUnsignedShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported schema model snapshot version " + version + ", expected " + VERSION);
+		}
+
+		int count = in.readVarInt();
+		Map<String, String> interpretedNames = new HashMap<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			interpretedNames.put(in.readString(), in.readString());
+		}
+
+		count = in.readVarInt();
+		LinkedHashMap<String, Message> messages = new LinkedHashMap<>(count * 2);
+		Map<Field, Field> pool = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			Message message = new Message(in.readString(), in.readString());
+			message.setParent(in.readString());
+			message.setDoc(in.readString());
+			int fieldCount = in.readVarInt();
+			List<Field> fields = new ArrayList<>(fieldCount);
+			for (int f = 0; f < fieldCount; f++) {
+				String name = in.readString();
+				String typeNamespace = in.readString();
+				String type = in.readString();
+				String doc = in.readString();
+				int flags = in.data.readByte();
+				String def = in.readString();
+				Field field = new Field(name, typeNamespace, type, (flags & 2) != 0, def != null ? new XmlString(def) : null, doc, (flags & 1) != 0);
+				field.setXmlNamespace(in.readString());
+				field.setAttribute((flags & 4) != 0);
+				fields.add(field);
+			}
+			message.restore(fields);
+			message.compact(pool);
+			messages.put(message.getName(), message);
+		}
+
+		count = in.readVarInt();
+		LinkedHashMap<String, Enumeration> enums = new LinkedHashMap<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			Enumeration en = new Enumeration(in.readString(), in.readString());
+			en.setDoc(in.readString());
+			int valueCount = in.readVarInt();
+			for (int v = 0; v < valueCount; v++) {
+				en.addString(in.readString());
+			}
+			enums.put(en.getName(), en);
+		}
+
+		count = in.readVarInt();
+		LinkedHashMap<String, SimpleTypeDesc> simpleTypes = new LinkedHashMap<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			SimpleTypeDesc simpleType = new SimpleTypeDesc(in.readString(), in.readString());
+			simpleType.setDocumentation(in.readString());
+			int facetCount = in.readVarInt() - 1;
+			if (facetCount >= 0) {
+				List<Facet> facets = new ArrayList<>(facetCount);
+				for (int f = 0; f < facetCount; f++) {
+					facets.add(new Facet(in.readString(), in.readString()));
+				}
+				simpleType.setFacets(facets);
+			}
+			simpleTypes.put(simpleType.getName(), simpleType);
+		}
+
+		return new ModelSnapshot(messages, enums, simpleTypes, interpretedNames);
+	}
+
+	/**
+	 * @return names whose mapping now differs from the one applied when the snapshot was interpreted
+	 */
+	List<String> changedNameMappings(Map<String, String> current) {
+		List<String> changed = new ArrayList<>();
+		for (Entry<String, String> name : interpretedNames.entrySet()) {
+			String now = current.get(name.getKey());
+			if (now == null ? name.getValue() != null : !now.equals(name.getValue())) {
+				changed.add(name.getKey());
+			}
+		}
+		return changed;
+	}
+
+	private static class Output {
+		private final DataOutputStream data;
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		Output(DataOutputStream data) {
+			this.data = data;
+		}
+
+		void writeVarInt(int value) throws IOException {
+			while ((value & ~0x7f) != 0) {
+				data.writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			data.writeByte(value);
+		}
+
+		/**
+		 * 0 for null, the index + 1 of a string already written, or the next index + 1 followed by the UTF-8 bytes of a new string.
+		 */
+		void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarInt(0);
+				return;
+			}
+			Integer index = strings.get(value);
+			if (index != null) {
+				writeVarInt(index + 1);
+				return;
+			}
+			index = strings.size();
+			strings.put(value, index);
+			writeVarInt(index + 1);
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length);
+			data.write(bytes);
+		}
+	}
+
+	private static class Input {
+		private final DataInputStream data;
+		private final List<String> strings = new ArrayList<>();
+
+		Input(DataInputStream data) {
+			this.data = data;
+		}
+
+		int readVarInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = data.readUnsignedByte();
+				value |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+
+		String readString() throws IOException {
+			int reference = readVarInt();
+			if (reference == 0) {
+				return null;
+			}
+			if (reference <= strings.size()) {
+				return strings.get(reference - 1);
+			}
+			if (reference != strings.size() + 1) {
+				throw new IOException("Malformed string reference " + reference);
+			}
+			byte[] bytes = new byte[readVarInt()];
+			data.readFully(bytes);
+			String value = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(value);
+			return value;
+		}
+	}
+}
@@ -1,10 +1,29 @@
 package com.github.tranchis.xsd2thrift;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class NamespaceConverter {
 
+	/** a schema set only has a handful of namespaces, converted for every field */
+	private static final Map<String, String> CONVERTED = new ConcurrentHashMap<>();
+	/** the table lives as long as the JVM, which converts any number of schema sets in daemon mode or in a build */
+	private static final int MAX_CONVERTED = 1024;
+
 	public static String convertFromSchema(String ns) {
 		if (ns == null)
 			return null;
+		String converted = CONVERTED.get(ns);
+		if (converted == null) {
+			converted = convert(ns);
+			if (CONVERTED.size() < MAX_CONVERTED) {
+				CONVERTED.putIfAbsent(ns, converted);
+			}
+		}
+		return converted;
+	}
+
+	private static String convert(String ns) {
 		if (ns.contains("://")) {
 			ns = ns.substring(ns.indexOf("://") + 3);
 		}
@@ -13,7 +32,7 @@ public class NamespaceConverter {
 			ns = ns.substring(1);
 		if (ns.endsWith("."))
 			ns = ns.substring(0, ns.length() - 1);
-		return ns;
+		return ns.intern();
 	}
 
 }
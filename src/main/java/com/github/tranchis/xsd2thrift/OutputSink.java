@@ -0,0 +1,16 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.IOException;
+
+/**
+ * Receives the generated files instead of the console or the file system, see {@link OutputWriter#setSink(OutputSink)}.
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+	/**
+	 * @param name    the name of the file, relative to the output directory
+	 * @param content the content of the file, in UTF-8 for text files
+	 */
+	void write(String name, byte[] content) throws IOException;
+}
@@ -23,15 +23,27 @@
  */
 package com.github.tranchis.xsd2thrift;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.github.tranchis.xsd2thrift.marshal.DescriptorSetBuilder;
 import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
 
 /**
@@ -39,58 +51,75 @@ import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
  * 
  *         A class to handle the various forms of output - to console, to file, and to namespace-specific files
  *
+ *         Output is collected in memory per file and written once by {@link #writeFiles()}, when all imports are known.
+ *
  */
 public class OutputWriter {
 
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
 	private String filename, directory;
 	private boolean splitBySchema;
-	private OutputStream os;
-	private Map<String, OutputStream> streams;
+	private boolean parallelOutput;
+	private boolean skipUnchangedFiles;
+	private final Set<Path> outputFiles = Collections.synchronizedSet(new TreeSet<Path>());
+	private final AtomicInteger filesWritten = new AtomicInteger();
+	private StringBuilder buffer;
+	private Map<String, StringBuilder> buffers;
 	private ProtobufMarshaller marshaller;
 	private String defaultNamespace;
 	private String defaultExtension;
+	private String descriptorSetOut;
+	private DescriptorSetBuilder descriptorSet;
+	private OutputSink sink;
 	Map<String, Set<String>> inclusions = null;
 
 	public void setDefaultExtension(String defaultExtension) {
 		this.defaultExtension = defaultExtension;
 	}
 
-	public OutputStream getStream(String ns) throws IOException {
-		if (os == null && streams == null) {
-			initializeOutputStream();
+	public StringBuilder getBuffer(String ns) {
+		if (!splitBySchema) {
+			if (buffer == null) {
+				buffer = new StringBuilder();
+			}
+			return buffer;
 		}
-		if (os != null)
-			return os;
+		if (buffers == null) {
+			buffers = new HashMap<String, StringBuilder>();
+		}
+		return buffers.computeIfAbsent(getFileNamespace(ns), k -> new StringBuilder());
+	}
+
+	/**
+	 * @return the namespace of the file the output of a namespace goes to, null when everything goes to one file
+	 */
+	public String getFileNamespace(String ns) {
+		if (!splitBySchema)
+			return null;
+
 		if (ns == null)
 			ns = defaultNamespace;
 
 		if (ns == null)
 			ns = "default";
 
-		return getNamespaceSpecificStream(ns);
+		return ns;
 	}
 
-	private OutputStream getNamespaceSpecificStream(String cleanedNamespace) throws IOException {
-		if (!streams.containsKey(cleanedNamespace)) {
-			OutputStream os = new FileOutputStream(directory() + cleanedNamespace.replace(".", "_") + "." + defaultExtension);
-			streams.put(cleanedNamespace, os);
-			os.write(marshaller.writeHeader(cleanedNamespace).getBytes());
-		}
-		return streams.get(cleanedNamespace);
+	/**
+	 * Also writes the descriptors of the output files to <code>descriptorSetOut</code>, as one serialized <code>FileDescriptorSet</code>.
+	 */
+	public void setDescriptorSetOut(String descriptorSetOut) {
+		this.descriptorSetOut = descriptorSetOut;
+		descriptorSet = descriptorSetOut != null ? new DescriptorSetBuilder() : null;
 	}
 
-	private void initializeOutputStream() throws IOException {
-		if (splitBySchema) {
-			streams = new HashMap<String, OutputStream>();
-		} else {
-			if (filename == null) {
-				os = System.out;
-				os.write(marshaller.writeHeader(defaultNamespace).getBytes());
-			} else {
-				os = new FileOutputStream(directory() + filename);
-				os.write(marshaller.writeHeader(defaultNamespace).getBytes());
-			}
-		}
+	/**
+	 * @return the builder of the descriptors of the output, or null if they are not written
+	 */
+	public DescriptorSetBuilder getDescriptorSet() {
+		return descriptorSet;
 	}
 
 	public void setDefaultNamespace(String defaultNamespace) {
@@ -109,6 +138,28 @@ public class OutputWriter {
 		this.directory = directory;
 	}
 
+	public String getFilename() {
+		return filename;
+	}
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return true if everything goes to the console
+	 */
+	public boolean isStandardOutput() {
+		return sink == null && !splitBySchema && filename == null;
+	}
+
+	/**
+	 * Hands the files to <code>sink</code>, one at a time, instead of writing them: to the directory and file names they would have.
+	 */
+	public void setSink(OutputSink sink) {
+		this.sink = sink;
+	}
+
 	public void setSplitBySchema(boolean splitBySchema) {
 		this.splitBySchema = splitBySchema;
 	}
@@ -117,6 +168,38 @@ public class OutputWriter {
 		return splitBySchema;
 	}
 
+	/**
+	 * When splitting by schema, render and write the namespace files concurrently.
+	 */
+	public void setParallelOutput(boolean parallelOutput) {
+		this.parallelOutput = parallelOutput;
+	}
+
+	public boolean isParallelOutput() {
+		return parallelOutput;
+	}
+
+	/**
+	 * Leave files whose content would not change untouched, so their modification time is preserved.
+	 */
+	public void setSkipUnchangedFiles(boolean skipUnchangedFiles) {
+		this.skipUnchangedFiles = skipUnchangedFiles;
+	}
+
+	/**
+	 * @return the files produced by {@link #writeFiles()}, whether they were rewritten or not
+	 */
+	public Set<Path> getOutputFiles() {
+		return outputFiles;
+	}
+
+	/**
+	 * @return the number of files actually written, see {@link #setSkipUnchangedFiles(boolean)}
+	 */
+	public int getFilesWritten() {
+		return filesWritten.get();
+	}
+
 	public void setMarshaller(ProtobufMarshaller marshaller) {
 		this.marshaller = marshaller;
 	}
@@ -131,63 +214,181 @@ public class OutputWriter {
 		inclusions.get(namespace).add(includeNamespace);
 	}
 
-	public void postProcessNamespacedFilesForIncludes() throws IOException {
+	/**
+	 * Writes every collected file exactly once, with its header and imports.
+	 */
+	public void writeFiles() throws IOException {
+		if (buffers != null) {
+			try {
+				(parallelOutput ? buffers.entrySet().parallelStream() : buffers.entrySet().stream()).forEach(entry -> {
+					try {
+						writeNamespaceFile(entry.getKey(), entry.getValue());
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		} else if (buffer != null) {
+			Collection<String> toInclude = singleFileInclusions();
+			if (isStandardOutput()) {
+				write(Channels.newChannel(System.out), defaultNamespace, toInclude, buffer);
+				System.out.flush();
+			} else {
+				writeFile(Paths.get(directory() + (filename != null ? filename : singleFileName())), defaultNamespace, toInclude, buffer);
+			}
+		}
+		buffer = null;
+		buffers = null;
+		if (descriptorSet != null) {
+			writeDescriptorSet();
+		}
+	}
+
+	private Collection<String> singleFileInclusions() {
+		return inclusions != null && !marshaller.imports.isEmpty() ? marshaller.imports.values() : null;
+	}
 
-		if (streams != null) {
-			Iterator<OutputStream> i = streams.values().iterator();
-			while (i.hasNext()) {
-				OutputStream o = i.next();
-				o.flush();
-				o.close();
+	/**
+	 * Writes the descriptors with the names, packages, imports and options of the files they describe.
+	 */
+	private void writeDescriptorSet() throws IOException {
+		for (Map.Entry<String, DescriptorSetBuilder.File> file : descriptorSet.getFiles().entrySet()) {
+			String namespace = file.getKey();
+			String name;
+			Collection<String> toInclude;
+			if (namespace != null) {
+				name = namespace.replace(".", "_") + "." + defaultExtension;
+				toInclude = inclusions != null ? inclusions.get(namespace) : null;
+			} else {
+				namespace = defaultNamespace;
+				name = filename != null ? Paths.get(filename).getFileName().toString() : singleFileName();
+				toInclude = singleFileInclusions();
 			}
-			if (inclusions != null) {
-				Iterator<String> namespaces = inclusions.keySet().iterator();
-				while (namespaces.hasNext()) {
-					String namespace = namespaces.next();
-					File f = new File(directory() + namespace.replace(".", "_") + "." + defaultExtension);
-					if (f.exists()) {
-						writeIncludes(f, inclusions.get(namespace));
+			List<String> dependencies = new ArrayList<>();
+			if (toInclude != null) {
+				for (String include : toInclude) {
+					String path = marshaller.importPath(include.replace(".", "_"));
+					if (path != null) {
+						dependencies.add(path);
 					}
 				}
 			}
+			dependencies.add(ProtobufMarshaller.VALIDATE_IMPORT);
+			file.getValue().header(name, marshaller.escapeNamespace(namespace), dependencies, marshaller.getOptions());
+		}
+		writeBytes(Paths.get(descriptorSetOut), descriptorSet.build().toByteArray());
+		descriptorSet = new DescriptorSetBuilder();
+	}
+
+	/**
+	 * @return the name of the single file when it has none, as the file of its namespace
+	 */
+	private String singleFileName() {
+		return (defaultNamespace != null ? defaultNamespace.replace(".", "_") : "default") + "." + defaultExtension;
+	}
+
+	private void writeNamespaceFile(String namespace, StringBuilder body) throws IOException {
+		Collection<String> toInclude = inclusions != null ? inclusions.get(namespace) : null;
+		writeFile(Paths.get(directory() + namespace.replace(".", "_") + "." + defaultExtension), namespace, toInclude, body);
+	}
+
+	private void writeFile(Path path, String namespace, Collection<String> toInclude, CharSequence body) throws IOException {
+		if (skipUnchangedFiles || sink != null) {
+			ByteArrayOutputStream content = new ByteArrayOutputStream(body.length() + 1024);
+			write(Channels.newChannel(content), namespace, toInclude, body);
+			writeBytes(path, content.toByteArray());
 		} else {
-			if (inclusions != null && !marshaller.imports.isEmpty()) {
-				Iterator<String> namespaces = inclusions.keySet().iterator();
-				Set<String> requiredImports = new HashSet<>();
-				while (namespaces.hasNext()) {
-					requiredImports.addAll(inclusions.get(namespaces.next()));
+			outputFiles.add(path);
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				write(channel, namespace, toInclude, body);
+			}
+			filesWritten.incrementAndGet();
+		}
+	}
 
-				}
-				requiredImports.retainAll(marshaller.imports.values());
+	private void writeBytes(Path path, byte[] bytes) throws IOException {
+		outputFiles.add(path);
+		if (sink != null) {
+			// the files of a split output may be rendered concurrently
+			synchronized (sink) {
+				sink.write(path.toString().replace(File.separatorChar, '/'), bytes);
+			}
+			filesWritten.incrementAndGet();
+		} else if (!skipUnchangedFiles || !Files.isRegularFile(path) || Files.size(path) != bytes.length || !Arrays.equals(Files.readAllBytes(path), bytes)) {
+			Files.write(path, bytes);
+			filesWritten.incrementAndGet();
+		}
+	}
 
-				File f = new File(filename);
-				if (f.exists()) {
-					writeIncludes(f, marshaller.imports.values());
-				}
+	private void write(WritableByteChannel channel, String namespace, Collection<String> toInclude, CharSequence body) throws IOException {
+		String header = marshaller.writeHeader(namespace);
+		if (toInclude == null) {
+			write(channel, header, body);
+		} else {
+			// imports go right after the second line of the header
+			int split = header.indexOf('\n', header.indexOf('\n') + 1) + 1;
+			StringBuilder includes = new StringBuilder();
+			includes.append(header, 0, split);
+			for (String include : toInclude) {
+				includes.append(marshaller.writeInclude(include.replace(".", "_")));
 			}
+			includes.append('\n');
+			includes.append(header, split, header.length());
+			write(channel, includes, body);
 		}
 	}
 
-	private void writeIncludes(File f, Collection<String> toInclude) throws IOException {
-		Iterator<String> i = toInclude.iterator();
-		BufferedReader reader = new BufferedReader(new FileReader(f));
-		String line = null;
-		StringBuffer output = new StringBuffer();
-		int count = 0;
-		while ((line = reader.readLine()) != null) {
-			output.append(line + "\n");
-			if (count == 1) {
-				while (i.hasNext()) {
-					output.append(marshaller.writeInclude(i.next().replace(".", "_")));
+	private static void write(WritableByteChannel channel, CharSequence... parts) throws IOException {
+		CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+		// the encoder is much faster on array-backed buffers than on a wrapped CharSequence
+		CharBuffer in = CharBuffer.allocate(WRITE_BUFFER_SIZE / 4);
+		for (CharSequence part : parts) {
+			int position = 0;
+			while (position < part.length()) {
+				int count = Math.min(part.length() - position, in.remaining());
+				getChars(part, position, position + count, in.array(), in.arrayOffset() + in.position());
+				in.position(in.position() + count);
+				position += count;
+				in.flip();
+				while (encoder.encode(in, out, false) == CoderResult.OVERFLOW) {
+					drain(out, channel);
 				}
-				output.append("\n");
+				// a trailing high surrogate stays for the next round
+				in.compact();
+			}
+		}
+		in.flip();
+		while (encoder.encode(in, out, true) == CoderResult.OVERFLOW) {
+			drain(out, channel);
+		}
+		while (encoder.flush(out) == CoderResult.OVERFLOW) {
+			drain(out, channel);
+		}
+		drain(out, channel);
+	}
+
+	private static void getChars(CharSequence source, int begin, int end, char[] destination, int offset) {
+		if (source instanceof String) {
+			((String) source).getChars(begin, end, destination, offset);
+		} else if (source instanceof StringBuilder) {
+			((StringBuilder) source).getChars(begin, end, destination, offset);
+		} else {
+			for (int i = begin; i < end; i++) {
+				destination[offset++] = source.charAt(i);
 			}
-			count++;
 		}
-		reader.close();
-		FileWriter writer = new FileWriter(f);
-		writer.append(output.toString());
-		writer.flush();
-		writer.close();
+	}
+
+	private static void drain(ByteBuffer out, WritableByteChannel channel) throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
 	}
 }
@@ -0,0 +1,119 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+
+/**
+ * Converts schemas to <code>.proto</code> files in memory, for applications embedding the conversion rather than running {@link Main}.
+ *
+ * Nothing is written to the console or to the file system, and every conversion has its own parser, marshaller and writer: a converter can run any number of
+ * conversions concurrently. Schema documents read from files or URLs go through the cache of the JVM, which rereads files that changed; documents given in
+ * memory do not.
+ *
+ * Converters given the same {@link SchemaSetCache} parse a root schema file once between them, as long as its documents do not change.
+ *
+ * <pre>
+ * Map&lt;String, byte[]&gt; files = new SchemaConverter(ConversionOptions.builder().namespace("com.example").build()).convert(SchemaSource.of("person.xsd", xsd));
+ * </pre>
+ */
+public class SchemaConverter {
+
+	private final ConversionOptions options;
+	private final SchemaSetCache cache;
+
+	public SchemaConverter(ConversionOptions options) {
+		this(options, null);
+	}
+
+	/**
+	 * @param cache parsed schema sets to share with other converters, or null
+	 */
+	public SchemaConverter(ConversionOptions options, SchemaSetCache cache) {
+		this.options = options;
+		this.cache = cache;
+	}
+
+	public ConversionOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * @param sources the schemas, converted together as one schema set
+	 * @return the content of the generated files, by name in the order of names
+	 */
+	public Map<String, byte[]> convert(SchemaSource... sources) throws Exception {
+		return convert(Arrays.asList(sources));
+	}
+
+	/**
+	 * @see #convert(SchemaSource...)
+	 */
+	public Map<String, byte[]> convert(List<SchemaSource> sources) throws Exception {
+		Map<String, byte[]> files = new TreeMap<>();
+		convert(sources, files::put);
+		return Collections.unmodifiableMap(files);
+	}
+
+	/**
+	 * Hands the generated files to <code>sink</code> as they are written, one at a time.
+	 *
+	 * @param sources the schemas, converted together as one schema set
+	 * @return the report of the conversion, with the schema documents it read
+	 * @throws InvalidXSDException if the schemas cannot be converted
+	 */
+	public ConversionReport convert(List<SchemaSource> sources, OutputSink sink) throws Exception {
+		if (sources.isEmpty()) {
+			throw new IllegalArgumentException("No schema to convert");
+		}
+		SchemaSource root = sources.get(0);
+		// a single schema file is parsed the way the command line does, through the cache
+		boolean file = sources.size() == 1 && root.getContent() == null && "file".equals(root.getSystemId().getScheme());
+		XSDParser parser = new XSDParser(file ? Paths.get(root.getSystemId()).toString() : root.toString(), Main.xsdMapping());
+		if (file) {
+			parser.setSchemaSetCache(cache);
+		} else {
+			parser.setSources(sources);
+		}
+		OutputWriter writer = new OutputWriter();
+		parser.setWriter(writer);
+		ProtobufMarshaller marshaller = new ProtobufMarshaller();
+		parser.addMarshaller(marshaller);
+		writer.setMarshaller(marshaller);
+		writer.setDefaultExtension("proto");
+		writer.setSink(sink);
+
+		writer.setFilename(options.getFilename());
+		writer.setDefaultNamespace(options.getNamespace());
+		writer.setSplitBySchema(options.isSplitBySchema());
+		writer.setParallelOutput(options.isParallelOutput());
+		writer.setDescriptorSetOut(options.getDescriptorSetOut());
+
+		marshaller.setCustomTypeMappings(options.getTypePatterns());
+		marshaller.setCustomNameMappings(options.getNamePatterns());
+		marshaller.setCustomImports(options.getCustomImports());
+		if (!options.getOptions().isEmpty()) {
+			marshaller.setOptions(options.getOptions());
+		}
+
+		parser.setNestEnums(options.isNestEnums());
+		parser.setTypeInEnums(options.isTypeInEnums());
+		parser.setIncludeMessageDocs(options.isIncludeMessageDocs());
+		parser.setIncludeFieldDocs(options.isIncludeFieldDocs());
+		parser.setCatalogs(options.getCatalogs());
+
+		if (file && cache != null) {
+			// XSOM is not meant for concurrent use, interpret the schema sets of the cache one at a time
+			synchronized (cache) {
+				parser.interpret();
+			}
+		}
+		parser.parse();
+		return parser.getReport();
+	}
+}
@@ -0,0 +1,123 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content of the schema documents read in this JVM, keyed by canonical URI, so that every physical document is read once across the conversions of a batch or
+ * of a daemon.
+ *
+ * Local files are read again when their size or modification time changed; other documents, usually remote, are kept for the lifetime of the JVM. Entries carry
+ * the SHA-256 of their content, through which identical copies of a document share one byte array.
+ */
+final class SchemaDocumentCache {
+
+	private static final Map<String, Document> DOCUMENTS = new ConcurrentHashMap<>();
+	private static final Map<String, byte[]> CONTENTS = new ConcurrentHashMap<>();
+
+	private SchemaDocumentCache() {
+	}
+
+	/**
+	 * @return the URI identifying the document: absolute, normalized and, for existing local files, without symbolic links
+	 */
+	static URI canonical(URI uri) {
+		if ("file".equals(uri.getScheme())) {
+			try {
+				return Paths.get(uri).toRealPath().toFile().toURI();
+			} catch (IOException | RuntimeException e) {
+				// missing file, reported by the parser
+			}
+		}
+		return uri.normalize();
+	}
+
+	/**
+	 * @param uri canonical URI of the document
+	 */
+	static byte[] read(URI uri) throws IOException {
+		return document(uri).content;
+	}
+
+	/**
+	 * @param uri canonical URI of the document
+	 * @return the SHA-256 of the content of the document, in hexadecimal
+	 */
+	static String hash(URI uri) throws IOException {
+		return document(uri).hash;
+	}
+
+	private static Document document(URI uri) throws IOException {
+		String key = uri.toString();
+		long stamp = stamp(uri);
+		Document document = DOCUMENTS.get(key);
+		if (document == null || document.stamp != stamp) {
+			byte[] content;
+			try (InputStream in = uri.toURL().openStream()) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+				content = out.toByteArray();
+			}
+			String hash = sha256(content);
+			if (document != null && document.hash.equals(hash)) {
+				// touched but not changed
+				document = new Document(document.content, hash, stamp);
+			} else {
+				byte[] shared = CONTENTS.putIfAbsent(hash, content);
+				if (document != null && !document.hash.equals(hash)) {
+					CONTENTS.remove(document.hash, document.content);
+				}
+				document = new Document(shared != null ? shared : content, hash, stamp);
+			}
+			DOCUMENTS.put(key, document);
+		}
+		return document;
+	}
+
+	private static long stamp(URI uri) {
+		if (!"file".equals(uri.getScheme())) {
+			return 0;
+		}
+		Path path = Paths.get(uri);
+		File file = path.toFile();
+		return file.exists() ? file.lastModified() * 31 + file.length() : -1;
+	}
+
+	private static String sha256(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class Document {
+		private final byte[] content;
+		private final String hash;
+		private final long stamp;
+
+		Document(byte[] content, String hash, long stamp) {
+			this.content = content;
+			this.hash = hash;
+			this.stamp = stamp;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * Resolves schema documents, and the DTDs they declare, through the XML catalogs first, and reads them from the {@link SchemaDocumentCache}.
+ *
+ * Documents are identified by their canonical URI, so XSOM recognises a document imported through different relative paths as the same one and parses it once.
+ * Documents given in memory are served as they are, without going through the cache.
+ */
+class SchemaResolver implements EntityResolver {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SchemaResolver.class);
+
+	private final List<XmlCatalog> catalogs;
+	private final Map<URI, byte[]> documents;
+
+	SchemaResolver(List<XmlCatalog> catalogs) {
+		this(catalogs, Collections.emptyMap());
+	}
+
+	/**
+	 * @param documents content of documents by normalized URI, served instead of reading them
+	 */
+	SchemaResolver(List<XmlCatalog> catalogs, Map<URI, byte[]> documents) {
+		this.catalogs = catalogs;
+		this.documents = documents;
+	}
+
+	/**
+	 * @return the catalog files in use, next catalogs included
+	 */
+	List<URI> getCatalogFiles() throws IOException {
+		List<URI> files = new ArrayList<>();
+		for (XmlCatalog catalog : catalogs) {
+			files.addAll(catalog.getLocations());
+		}
+		return files;
+	}
+
+	@Override
+	public InputSource resolveEntity(String publicId, String systemId) throws IOException {
+		String location = null;
+		for (XmlCatalog catalog : catalogs) {
+			location = systemId != null ? catalog.resolveSystem(systemId) : null;
+			if (location == null && systemId != null) {
+				location = catalog.resolveUri(systemId);
+			}
+			if (location == null && publicId != null) {
+				location = catalog.resolvePublic(publicId);
+				if (location == null) {
+					// the namespace of an xs:import
+					location = catalog.resolveUri(publicId);
+				}
+			}
+			if (location != null) {
+				LOGGER.debug("Catalog resolved {} {} to {}", publicId, systemId, location);
+				break;
+			}
+		}
+		if (location == null) {
+			location = systemId;
+		}
+		if (location == null) {
+			return null;
+		}
+
+		URI uri;
+		try {
+			uri = new URI(location);
+		} catch (URISyntaxException e) {
+			// left to the parser
+			return null;
+		}
+		if (!uri.isAbsolute()) {
+			return null;
+		}
+		byte[] content = documents.get(uri.normalize());
+		if (content != null) {
+			uri = uri.normalize();
+		} else {
+			uri = SchemaDocumentCache.canonical(uri);
+			content = SchemaDocumentCache.read(uri);
+		}
+		InputSource source = new InputSource(new ByteArrayInputStream(content));
+		source.setPublicId(publicId);
+		source.setSystemId(uri.toString());
+		return source;
+	}
+}
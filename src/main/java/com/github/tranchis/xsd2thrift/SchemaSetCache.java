@@ -0,0 +1,113 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.xml.xsom.XSSchemaSet;
+
+/**
+ * Parsed schema sets kept between conversions in the same JVM, keyed by root schema and the catalogs its documents were resolved through.
+ *
+ * An entry is reused as long as none of the schema documents it was built from changed on disk (size and modification time), so a long-running process only
+ * pays for XSOM when the schemas actually change.
+ */
+public class SchemaSetCache {
+
+	private final Map<String, CachedSchemaSet> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * @param documented true if the documentation annotations are needed
+	 * @param catalogs   the catalog files of the parse, see {@link XSDParser#setCatalogs(List)}
+	 * @return the schema set parsed from <code>xsd</code> through <code>catalogs</code>, or null if it was not parsed yet, was parsed without its documentation
+	 *         or one of its documents changed since
+	 */
+	public XSSchemaSet get(File xsd, boolean documented, List<String> catalogs) {
+		String key = key(xsd, catalogs);
+		CachedSchemaSet entry = entries.get(key);
+		if (entry == null || documented && !entry.documented) {
+			return null;
+		}
+		for (Map.Entry<Path, Long> stamp : entry.stamps.entrySet()) {
+			if (stamp(stamp.getKey()) != stamp.getValue()) {
+				entries.remove(key, entry);
+				return null;
+			}
+		}
+		return entry.schemaSet;
+	}
+
+	/**
+	 * @param files      URIs of the schema documents, see {@link XSDParser#getSchemaFiles()}
+	 * @param documented true if the documentation annotations were parsed
+	 */
+	public void put(File xsd, List<String> catalogs, XSSchemaSet schemaSet, Set<String> files, boolean documented) {
+		Map<Path, Long> stamps = new HashMap<>();
+		for (String file : files) {
+			URI uri = URI.create(file);
+			if ("file".equals(uri.getScheme())) {
+				Path path = Paths.get(uri);
+				stamps.put(path, stamp(path));
+			}
+		}
+		entries.put(key(xsd, catalogs), new CachedSchemaSet(xsd.getAbsolutePath(), schemaSet, files, stamps, documented));
+	}
+
+	/**
+	 * @return URIs of the schema documents of the schema set of <code>xsd</code> cached for <code>catalogs</code>
+	 */
+	public Set<String> getSchemaFiles(File xsd, List<String> catalogs) {
+		CachedSchemaSet entry = entries.get(key(xsd, catalogs));
+		return entry != null ? entry.files : new HashSet<>();
+	}
+
+	/**
+	 * @return local files of the cached schema sets of <code>xsd</code>, whatever their catalogs
+	 */
+	public Set<Path> getFiles(File xsd) {
+		Set<Path> files = new HashSet<>();
+		for (CachedSchemaSet entry : entries.values()) {
+			if (entry.xsd.equals(xsd.getAbsolutePath())) {
+				files.addAll(entry.stamps.keySet());
+			}
+		}
+		return files;
+	}
+
+	private static String key(File xsd, List<String> catalogs) {
+		StringBuilder key = new StringBuilder(xsd.getAbsolutePath());
+		for (String catalog : catalogs) {
+			key.append('\n').append(new File(catalog).getAbsolutePath());
+		}
+		return key.toString();
+	}
+
+	private static long stamp(Path path) {
+		File file = path.toFile();
+		// size and time: a rewrite within the timestamp resolution usually changes the size too
+		return file.exists() ? file.lastModified() * 31 + file.length() : -1;
+	}
+
+	private static class CachedSchemaSet {
+		private final String xsd;
+		private final XSSchemaSet schemaSet;
+		private final Set<String> files;
+		private final Map<Path, Long> stamps;
+		private final boolean documented;
+
+		CachedSchemaSet(String xsd, XSSchemaSet schemaSet, Set<String> files, Map<Path, Long> stamps, boolean documented) {
+			this.xsd = xsd;
+			this.schemaSet = schemaSet;
+			this.files = files;
+			this.stamps = stamps;
+			this.documented = documented;
+		}
+	}
+}
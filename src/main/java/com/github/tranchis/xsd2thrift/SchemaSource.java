@@ -0,0 +1,79 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+
+/**
+ * A schema to convert with a {@link SchemaConverter}: a file, a URL, or a document in memory.
+ *
+ * A document in memory is identified by its name, against which its relative includes and imports are resolved, so several documents in memory can import each
+ * other, as <code>person.xsd</code> importing <code>common/address.xsd</code>. Documents given in memory are never read from their location.
+ */
+public final class SchemaSource {
+
+	/**
+	 * base of the documents in memory named by a relative path: XSOM resolves relative locations with {@link URL}, which only knows a few schemes, but the
+	 * files are never read
+	 */
+	static final URI MEMORY_BASE = URI.create("file:/xsd2proto/");
+
+	private final URI systemId;
+	private final byte[] content;
+
+	private SchemaSource(URI systemId, byte[] content) {
+		this.systemId = systemId.normalize();
+		this.content = content;
+	}
+
+	public static SchemaSource of(Path file) {
+		return new SchemaSource(file.toAbsolutePath().toUri(), null);
+	}
+
+	public static SchemaSource of(URI uri) {
+		if (!uri.isAbsolute()) {
+			throw new IllegalArgumentException("The URI of a schema must be absolute: " + uri);
+		}
+		return new SchemaSource(uri, null);
+	}
+
+	public static SchemaSource of(URL url) {
+		try {
+			return of(url.toURI());
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid schema URL " + url, e);
+		}
+	}
+
+	/**
+	 * @param name    a relative path such as <code>common/address.xsd</code>, or an absolute URI the document stands for
+	 * @param content the document, which is copied
+	 */
+	public static SchemaSource of(String name, byte[] content) {
+		URI uri = URI.create(name.replace('\\', '/'));
+		if (!uri.isAbsolute()) {
+			uri = MEMORY_BASE.resolve(uri);
+		}
+		return new SchemaSource(uri, content.clone());
+	}
+
+	/**
+	 * @return the absolute URI of the document
+	 */
+	public URI getSystemId() {
+		return systemId;
+	}
+
+	/**
+	 * @return the document, or null if it is read from its URI
+	 */
+	byte[] getContent() {
+		return content;
+	}
+
+	@Override
+	public String toString() {
+		return systemId.toString();
+	}
+}
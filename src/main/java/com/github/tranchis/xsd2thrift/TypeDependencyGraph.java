@@ -0,0 +1,158 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Dependency graph between messages, built from {@link Message#getTypes()}.
+ *
+ * Strongly connected components are computed with Tarjan's algorithm in O(V+E). Vertices and edges are visited in name order, so every order returned by this
+ * class is deterministic.
+ */
+public class TypeDependencyGraph {
+
+	private final Message[] messages;
+	private final int[][] edges;
+	private final Set<String> unresolvedTypes = new TreeSet<>();
+	private List<List<Message>> components;
+
+	/**
+	 * @param messages messages to order
+	 * @param declared types declared outside of the messages (basic types, enums, simple types), not part of the graph
+	 */
+	public TypeDependencyGraph(Collection<Message> messages, Set<String> declared) {
+		this.messages = new TreeSet<>(messages).toArray(new Message[0]);
+
+		Map<String, Integer> index = new HashMap<>();
+		for (int i = 0; i < this.messages.length; i++) {
+			index.put(this.messages[i].getName(), i);
+		}
+
+		edges = new int[this.messages.length][];
+		for (int i = 0; i < this.messages.length; i++) {
+			Collection<String> types = this.messages[i].getTypes();
+			int[] targets = new int[types.size()];
+			int n = 0;
+			for (String type : types) {
+				Integer target = index.get(type);
+				if (target != null) {
+					targets[n++] = target;
+				} else if (!declared.contains(type)) {
+					unresolvedTypes.add(type);
+				}
+			}
+			edges[i] = Arrays.copyOf(targets, n);
+		}
+	}
+
+	/**
+	 * @return messages sorted by name
+	 */
+	public List<Message> getNameOrder() {
+		return Collections.unmodifiableList(Arrays.asList(messages));
+	}
+
+	/**
+	 * @return messages ordered so that every message comes after the messages it depends on, except within cycles
+	 */
+	public List<Message> getTopologicalOrder() {
+		List<Message> order = new ArrayList<>(messages.length);
+		for (List<Message> component : getComponents()) {
+			order.addAll(component);
+		}
+		return order;
+	}
+
+	/**
+	 * @return the strongly connected components that form a cycle, each sorted by name
+	 */
+	public List<List<Message>> getCycles() {
+		List<List<Message>> cycles = new ArrayList<>();
+		for (List<Message> component : getComponents()) {
+			if (component.size() > 1) {
+				List<Message> cycle = new ArrayList<>(component);
+				Collections.sort(cycle);
+				cycles.add(cycle);
+			}
+		}
+		return cycles;
+	}
+
+	/**
+	 * @return types referenced by the messages but neither declared nor part of the graph
+	 */
+	public Set<String> getUnresolvedTypes() {
+		return unresolvedTypes;
+	}
+
+	/**
+	 * Iterative version of Tarjan's algorithm, components come out in reverse topological order (dependencies first).
+	 */
+	private List<List<Message>> getComponents() {
+		if (components != null) {
+			return components;
+		}
+		int n = messages.length;
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		int[] nextEdge = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+
+		Deque<Integer> stack = new ArrayDeque<>();
+		Deque<Integer> callStack = new ArrayDeque<>();
+		List<List<Message>> result = new ArrayList<>();
+		int counter = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			callStack.push(root);
+			while (!callStack.isEmpty()) {
+				int v = callStack.peek();
+				if (index[v] == -1) {
+					index[v] = lowLink[v] = counter++;
+					stack.push(v);
+					onStack[v] = true;
+				}
+				if (nextEdge[v] < edges[v].length) {
+					int w = edges[v][nextEdge[v]++];
+					if (index[w] == -1) {
+						callStack.push(w);
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+					continue;
+				}
+				callStack.pop();
+				if (!callStack.isEmpty()) {
+					int parent = callStack.peek();
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+				}
+				if (lowLink[v] == index[v]) {
+					List<Message> component = new ArrayList<>();
+					int w;
+					do {
+						w = stack.pop();
+						onStack[w] = false;
+						component.add(messages[w]);
+					} while (w != v);
+					Collections.reverse(component);
+					result.add(component);
+				}
+			}
+		}
+		components = result;
+		return components;
+	}
+}
@@ -23,26 +23,44 @@
  */
 package com.github.tranchis.xsd2thrift;
 
-import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
-import com.sun.xml.xsom.*;
-import com.sun.xml.xsom.impl.ComplexTypeImpl;
-import com.sun.xml.xsom.parser.XSOMParser;
-import com.sun.xml.xsom.util.DomAnnotationParserFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Text;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
-import javax.xml.parsers.SAXParserFactory;
-import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.*;
+import com.github.tranchis.xsd2thrift.jfr.ConversionEvents;
+import com.github.tranchis.xsd2thrift.jfr.ConversionEvents.Kind;
+import com.github.tranchis.xsd2thrift.marshal.DescriptorSetBuilder;
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+import com.github.tranchis.xsd2thrift.transcode.ProtoEnum;
+import com.github.tranchis.xsd2thrift.transcode.ProtoField;
+import com.github.tranchis.xsd2thrift.transcode.ProtoMessage;
+import com.github.tranchis.xsd2thrift.transcode.ProtoSchema;
+import com.github.tranchis.xsd2thrift.transcode.ValueKind;
+import com.sun.xml.xsom.*;
+import com.sun.xml.xsom.impl.ComplexTypeImpl;
+import com.sun.xml.xsom.parser.SchemaDocument;
+import com.sun.xml.xsom.parser.XSOMParser;
 
 public class XSDParser implements ErrorHandler {
 
@@ -62,6 +80,17 @@ public class XSDParser implements ErrorHandler {
 	private boolean typeInEnums = true;
 	private boolean includeMessageDocs = true;
 	private boolean includeFieldDocs = true;
+	private Map<StringBuilder, List<Chunk>> deferred;
+	private int indentLevel;
+	private Set<String> schemaFiles = Collections.emptySet();
+	private Map<String, String> interpretedNames = new HashMap<>();
+	private String saveModel;
+	private SchemaSetCache schemaSetCache;
+	private List<String> catalogs = Collections.emptyList();
+	private List<SchemaSource> sources;
+	private boolean sharedModel;
+	private ConversionReport report;
+	private boolean interpreted;
 
 	public XSDParser(String stFile) {
 		this.xsdMapping = new HashMap<String, String>();
@@ -71,6 +100,7 @@ public class XSDParser implements ErrorHandler {
 	private void init(String stFile) {
 
 		this.f = new File(stFile);
+		report = new ConversionReport(stFile);
 		map = new LinkedHashMap<>();
 		enums = new LinkedHashMap<>();
 		simpleTypes = new LinkedHashMap<>();
@@ -138,33 +168,278 @@ public class XSDParser implements ErrorHandler {
 	}
 
 	public void parse() throws Exception {
+		interpret();
+
+		// TODO: Add optimizations/cleanup/check for duplicates/renaming etc.
+
+		generate();
+	}
+
+	/**
+	 * Builds the model: reads it back from a snapshot given as input, or parses and interprets the schema, unless a model was already given with
+	 * {@link #setModel(ModelSnapshot, Set)}.
+	 */
+	public void interpret() throws Exception {
+		if (interpreted) {
+			return;
+		}
+		if (!sharedModel) {
+			if (sources == null && ModelSnapshot.isSnapshot(f)) {
+				ConversionReport.Timer load = report.start("load");
+				try {
+					loadModel();
+				} finally {
+					load.stop();
+				}
+			} else {
+				XSSchemaSet sset = schemaSetCache != null && sources == null ? schemaSetCache.get(f, isDocumented(), catalogs) : null;
+				if (sset != null) {
+					LOGGER.debug("Reusing the parsed schema set of {}", f);
+					schemaFiles = schemaSetCache.getSchemaFiles(f, catalogs);
+				} else {
+					ConversionReport.Timer parse = report.start("parse");
+					try {
+						sset = parseSchema();
+					} catch (SAXParseException e) {
+						throw new InvalidXSDException(e.getMessage() + " at " + e.getSystemId() + ":" + e.getLineNumber(), e);
+					} finally {
+						parse.stop();
+					}
+					if (schemaSetCache != null && sources == null && sset != null) {
+						schemaSetCache.put(f, catalogs, sset, schemaFiles, isDocumented());
+					}
+				}
+				ConversionReport.Timer interpretation = report.start("interpret");
+				try {
+					interpretResult(sset);
+				} finally {
+					interpretation.stop();
+				}
+				report.setSchemas((int) sset.getSchemas().stream().filter(schema -> !schema.getTargetNamespace().endsWith("/XMLSchema")).count());
+				report.setAnonymousTypes(anonymousCounter);
+			}
+		}
+		interpreted = true;
+		if (saveModel != null) {
+			ConversionReport.Timer save = report.start("save");
+			try {
+				saveModel(Paths.get(saveModel));
+			} finally {
+				save.stop();
+			}
+		}
+	}
 
+	/**
+	 * Writes the output of the model.
+	 */
+	public void generate() throws Exception {
+		ConversionReport.Timer write = report.start("write");
+		try {
+			writeMap();
+		} finally {
+			write.stop();
+		}
+
+		ConversionReport.Timer output = report.start("output");
+		try {
+			writer.writeFiles();
+		} finally {
+			output.stop();
+		}
+
+		int fields = 0;
+		for (Message message : map.values()) {
+			fields += message.getFields().size();
+		}
+		report.setModel(schemaFiles, map.size(), fields, enums.size(), simpleTypes.size());
+		report.setFiles(writer.getOutputFiles().size(), writer.getFilesWritten());
+		report.finish();
+	}
+
+	/**
+	 * Records that the output is up to date, so that nothing is interpreted or generated, and notifies the listeners that the conversion finished.
+	 */
+	void skipUpToDate() {
+		report.setUpToDate(true);
+		report.finish();
+	}
+
+	/**
+	 * Describes the messages and enumerations as they are written, for the transcoders of the {@code transcode} package. Field names and numbers and
+	 * enumeration constants go through the same resolution as the output, so they always match the generated files.
+	 */
+	public ProtoSchema getProtoSchema() throws Exception {
+		interpret();
+		ProtoSchema schema = new ProtoSchema();
+		for (Enumeration en : enums.values()) {
+			ProtoEnum protoEnum = schema.addEnum(new ProtoEnum(en.getName()));
+			int number = enumOrderStart + 1;
+			for (Iterator<String> it = en.iterator(); it.hasNext();) {
+				protoEnum.addValue(it.next(), number++);
+			}
+		}
+		for (Message message : map.values()) {
+			ProtoMessage protoMessage = schema.addMessage(new ProtoMessage(message.getName(), message.getNamespace()));
+			for (ResolvedField resolved : resolveFields(message)) {
+				Field field = resolved.field;
+				ValueKind kind = ValueKind.of(resolved.typeNameSpace + resolved.type, resolved.xsdType);
+				String typeName = null;
+				if (kind == null) {
+					typeName = enums.containsKey(resolved.type) || map.containsKey(resolved.type) ? resolved.type : resolved.xsdType;
+					kind = enums.containsKey(typeName) ? ValueKind.ENUM : map.containsKey(typeName) ? ValueKind.MESSAGE : ValueKind.UNSUPPORTED;
+				}
+				ProtoField.Form form = field.getXmlNamespace() == null && field.getName().equals(field.getType()) ? ProtoField.Form.TEXT
+						: field.isAttribute() ? ProtoField.Form.ATTRIBUTE : ProtoField.Form.ELEMENT;
+				protoMessage.addField(resolved.number, field.getXmlNamespace(), field.getName(), form, marshaller.fieldName(escape(resolved.name)), kind,
+						field.isRepeat(), field.isRequired(), kind == ValueKind.UNSUPPORTED ? null : typeName);
+			}
+		}
+		return schema.link();
+	}
+
+	/**
+	 * @return the interpreted model, to share with parsers of the same schema and name mappings
+	 */
+	ModelSnapshot getModel() {
+		return new ModelSnapshot(map, enums, simpleTypes, interpretedNames);
+	}
+
+	/**
+	 * Uses a model interpreted by another parser. Generation only reads the model, so it can be shared by parsers running concurrently.
+	 */
+	void setModel(ModelSnapshot model, Set<String> schemaFiles) {
+		map = model.messages;
+		enums = model.enums;
+		simpleTypes = model.simpleTypes;
+		interpretedNames = model.interpretedNames;
+		this.schemaFiles = schemaFiles;
+		sharedModel = true;
+	}
+
+	/**
+	 * Runs XSOM over the schema file and everything it includes or imports.
+	 */
+	XSSchemaSet parseSchema() throws SAXException, IOException {
 		SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
 		saxParserFactory.setNamespaceAware(true);
 
 		XSOMParser parser = new XSOMParser(saxParserFactory);
 		parser.setErrorHandler(this);
 
-		parser.setAnnotationParser(new DomAnnotationParserFactory());
+		// without a factory XSOM skips the content of annotations
+		if (isDocumented()) {
+			parser.setAnnotationParser(new DocumentationAnnotationParserFactory());
+		}
 
-		parser.parse(f);
+		List<XmlCatalog> loaded = new ArrayList<>();
+		for (String catalog : catalogs) {
+			loaded.add(XmlCatalog.load(new File(catalog).getAbsoluteFile().toURI()));
+		}
+		Map<URI, byte[]> documents = new HashMap<>();
+		if (sources != null) {
+			for (SchemaSource source : sources) {
+				if (source.getContent() != null) {
+					documents.put(source.getSystemId(), source.getContent());
+				}
+			}
+		}
+		SchemaResolver resolver = new SchemaResolver(loaded, documents);
+		parser.setEntityResolver(resolver);
 
-		interpretResult(parser.getResult());
+		if (sources == null) {
+			parser.parse(resolver.resolveEntity(null, f.toURI().toString()));
+		} else {
+			for (SchemaSource source : sources) {
+				parser.parse(resolver.resolveEntity(null, source.getSystemId().toString()));
+			}
+		}
 
-		// TODO: Add optimizations/cleanup/check for duplicates/renaming etc.
+		XSSchemaSet result = parser.getResult();
+		schemaFiles = new TreeSet<>();
+		for (URI catalog : resolver.getCatalogFiles()) {
+			schemaFiles.add(catalog.toString());
+		}
+		for (SchemaDocument document : parser.getDocuments()) {
+			// skip the built-in schema of XML Schema itself, bundled with XSOM
+			if (!XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(document.getTargetNamespace())) {
+				schemaFiles.add(toURI(document.getSystemId()));
+			}
+		}
+		return result;
+	}
+
+	private static String toURI(String systemId) {
+		try {
+			URI uri = new URI(systemId);
+			if (uri.isAbsolute()) {
+				return uri.toString();
+			}
+		} catch (URISyntaxException e) {
+			// a plain file path
+		}
+		return new File(systemId).toURI().toString();
+	}
 
-		writeMap();
+	/**
+	 * @return URIs of the schema documents loaded by the last parse: the schema file and everything it includes or imports
+	 */
+	public Set<String> getSchemaFiles() {
+		return schemaFiles;
+	}
 
-		writer.postProcessNamespacedFilesForIncludes();
+	/**
+	 * Writes the interpreted model to a snapshot file, which can be given instead of the schema to later runs.
+	 */
+	public void saveModel(Path file) throws IOException {
+		try (OutputStream os = Files.newOutputStream(file)) {
+			new ModelSnapshot(map, enums, simpleTypes, interpretedNames).write(os);
+		}
+		LOGGER.info("Schema model saved to {}", file);
 	}
 
-	private void writeMap() throws Exception {
-		Iterator<Message> messageIterator;
-		Message message;
-		Set<Message> messageSet;
+	/**
+	 * Replaces interpretation by the model read back from the snapshot file.
+	 */
+	private void loadModel() throws IOException {
+		ModelSnapshot snapshot;
+		try (InputStream is = new FileInputStream(f)) {
+			snapshot = ModelSnapshot.read(is);
+		}
+		map = snapshot.messages;
+		enums = snapshot.enums;
+		simpleTypes = snapshot.simpleTypes;
+		interpretedNames = snapshot.interpretedNames;
+		schemaFiles = Collections.singleton(f.toURI().toString());
+
+		Map<String, String> current = new HashMap<>();
+		for (String name : interpretedNames.keySet()) {
+			current.put(name, marshaller.getNameMapping(name));
+		}
+		List<String> changed = snapshot.changedNameMappings(current);
+		if (!changed.isEmpty()) {
+			LOGGER.warn("The snapshot was interpreted with other name mappings for {}, regenerate it from the schema to apply them to type names", changed);
+		}
+		LOGGER.debug("Schema model loaded from {}", f);
+	}
+
+	void writeMap() throws Exception {
+		if (writer.isParallelOutput() && writer.isSplitBySchema()) {
+			// Decide what goes where in order, then render the namespace files concurrently
+			deferred = new IdentityHashMap<>();
+			try {
+				writeMessages();
+				renderDeferred();
+			} finally {
+				deferred = null;
+			}
+		} else {
+			writeMessages();
+		}
+	}
+
+	private void writeMessages() throws InvalidXSDException {
 		Set<String> declared;
-		
-		boolean bModified;
 
 		if (!marshaller.isNestedEnums() || !isNestEnums()) {
 			Iterator<String> ite = enums.keySet().iterator();
@@ -173,65 +448,45 @@ public class XSDParser implements ErrorHandler {
 			}
 		}
 
-		messageSet = new TreeSet<Message>(map.values());
 		declared = new TreeSet<String>(basicTypes);
 		declared.addAll(enums.keySet());
 		declared.addAll(simpleTypes.keySet());
 
-		bModified = true;
-		while (!messageSet.isEmpty()) {
-			message = ((TreeSet<Message>) messageSet).first();
-			writeMessage(message, declared, "");
-			messageSet.removeIf(m -> declared.contains(m.getName()));
-		}
-
-		if (!messageSet.isEmpty()) {
-			// Check if we are missing a type or it's a circular dependency
-			Set<String> requiredTypes = new TreeSet<String>();
-			Set<String> notYetDeclaredTypes = new TreeSet<String>();
-			for (Message s : messageSet) {
-				requiredTypes.addAll(s.getTypes());
-				notYetDeclaredTypes.add(s.getName());
-			}
-			requiredTypes.removeAll(declared);
-			requiredTypes.removeAll(notYetDeclaredTypes);
-			if (requiredTypes.isEmpty()) {
-				// Circular dependencies have been detected
-				if (marshaller.isCircularDependencySupported()) {
-					// Just dump the rest
-					for (Message s : messageSet) {
-						writeMessage(s, declared, "");
-					}
-				} else {
-					// Report circular dependency
-					LOGGER.error(
-							"Source schema contains circular dependencies and the target marshaller does not support them. Refer to the reduced dependency graph below.");
-					for (Message s : messageSet) {
-						s.getTypes().removeAll(declared);
-						LOGGER.error(s.getName() + ": " + s.getTypes());
-					}
-					throw new InvalidXSDException();
-				}
-			} else {
-				// Missing types have been detected
-				LOGGER.error("Source schema contains references missing types");
-				for (Message s : messageSet) {
-					s.getTypes().retainAll(requiredTypes);
-					if (!s.getTypes().isEmpty()) {
-						LOGGER.error(s.getName() + ": " + s.getTypes());
-					}
-				}
-				throw new InvalidXSDException();
+		TypeDependencyGraph graph = new TypeDependencyGraph(map.values(), declared);
+		if (!graph.getUnresolvedTypes().isEmpty()) {
+			LOGGER.debug("Types referenced but not declared, written as binary: {}", graph.getUnresolvedTypes());
+		}
+
+		List<Message> order;
+		List<List<Message>> cycles = graph.getCycles();
+		if (marshaller.isCircularDependencySupported()) {
+			// Forward references are fine, keep messages in name order
+			order = graph.getNameOrder();
+			if (!cycles.isEmpty()) {
+				LOGGER.debug("Source schema contains {} circular dependencies", cycles.size());
+			}
+		} else if (cycles.isEmpty()) {
+			order = graph.getTopologicalOrder();
+		} else {
+			LOGGER.error("Source schema contains circular dependencies and the target marshaller does not support them. Refer to the dependency cycles below.");
+			for (List<Message> cycle : cycles) {
+				LOGGER.error(cycle.stream().map(Message::getName).collect(Collectors.joining(" -> ")));
+			}
+			throw new InvalidXSDException();
+		}
+
+		for (Message message : order) {
+			if (!declared.contains(message.getName())) {
+				writeMessage(message, declared, "");
 			}
 		}
 	}
 
-	private void writeMessage(Message message, Set<String> declared, String messageSubScope) throws IOException {
-		Iterator<Field> itf;
+	private void writeMessage(Message message, Set<String> declared, String messageSubScope) {
 		Field field;
 		String fieldName, fieldType;
 		Set<String> usedInEnums;
-		int order;
+		Object event = ConversionEvents.begin(Kind.WRITE_MESSAGE);
 
 		writeMessageDocumentation(message.getDoc(), message.getNamespace());
 
@@ -241,19 +496,15 @@ public class XSDParser implements ErrorHandler {
 			messageName = marshaller.getNameMapping(messageName);
 		}
 
-		os(message.getNamespace()).write(marshaller.writeStructHeader(escape(messageName.substring(messageSubScope.length()))).getBytes());
+		String structName = escape(messageName.substring(messageSubScope.length()));
+		emit(message.getNamespace(), m -> m.writeStructHeader(structName));
+		describe(message.getNamespace(), file -> file.startMessage(structName));
+		indentLevel++;
 
-		itf = message.getFields().iterator();
 		usedInEnums = new TreeSet<String>();
 		LinkedHashSet<Message> subMessages = new LinkedHashSet<>();
-		order = 1;
-		while (itf.hasNext()) {
-			field = itf.next();
-			fieldName = field.getName();
-			if (marshaller.getNameMapping(fieldName) != null) {
-				fieldName = marshaller.getNameMapping(fieldName);
-			}
-
+		for (ResolvedField resolved : resolveFields(message)) {
+			field = resolved.field;
 			fieldType = field.getType();
 			if (fieldType == null) {
 				fieldType = field.getName();
@@ -262,6 +513,92 @@ public class XSDParser implements ErrorHandler {
 				usedInEnums.add(fieldType);
 				writeEnum(fieldType);
 			}
+			if (resolved.inclusion != null) {
+				writer.addInclusion(message.getNamespace(), resolved.inclusion);
+			}
+
+			fieldName = resolved.name;
+			fieldType = resolved.type;
+			String typeNameSpace = resolved.typeNameSpace;
+			SimpleTypeDesc specialisedSimpleFieldType = resolved.simpleType;
+
+			String doc = includeFieldDocs ? field.getDoc() : null;
+			if (doc == null) {
+				doc = "";
+			}
+
+			// nested type
+			Message subMessage = map.get(fieldType);
+			if (fieldType.startsWith(messageName) && !declared.contains(fieldType)) {
+				subMessages.add(subMessage);
+				fieldType = fieldType.substring(messageName.length());
+			} else {
+				fieldType = typeNameSpace + escapeType(fieldType);
+
+				if (specialisedSimpleFieldType != null) {
+					if (StringUtils.isNotBlank(doc)) {
+						doc += " | ";
+					}
+
+					if (!specialisedSimpleFieldType.getName().startsWith("Anonymous")) {
+						doc += "XSD type: " + specialisedSimpleFieldType.getName();
+					}
+					if (includeFieldDocs && specialisedSimpleFieldType.getDocumentation() != null) {
+						doc += " | " + specialisedSimpleFieldType.getDocumentation();
+					}
+				}
+			}
+
+			int fieldOrder = resolved.number;
+			boolean required = field.isRequired();
+			boolean repeat = field.isRepeat();
+			String escapedName = escape(fieldName);
+			String type = fieldType;
+			String fieldDoc = doc;
+			boolean splitBySchema = writer.isSplitBySchema();
+			List<Facet> facets = (specialisedSimpleFieldType != null) ? specialisedSimpleFieldType.getFacets() : null;
+			emit(message.getNamespace(), m -> m.writeStructParameter(fieldOrder, required, repeat, escapedName, type, fieldDoc, splitBySchema, facets));
+			describe(message.getNamespace(), file -> file.field(fieldOrder, repeat, marshaller.fieldName(escapedName), marshaller.typeName(type, splitBySchema),
+					type, facets != null && !facets.isEmpty() ? marshaller.validationRules(type, facets) : null));
+		}
+
+		for (Message subMessage : subMessages) {
+			writeMessage(subMessage, declared, messageName + '.');
+		}
+
+		emit(message.getNamespace(), m -> m.writeStructFooter());
+		describe(message.getNamespace(), file -> file.endMessage());
+		indentLevel--;
+		declared.add(message.getName());
+
+		if (ConversionEvents.shouldCommit(event)) {
+			int depth = 0;
+			for (Message ancestor = map.get(message.getParent()); ancestor != null && depth < map.size(); ancestor = map.get(ancestor.getParent())) {
+				depth++;
+			}
+			ConversionEvents.commit(event, message.getName(), message.getNamespace(), message.getFields().size(), depth);
+		}
+	}
+
+	/**
+	 * Resolves the names, types and numbers the fields of a message are written with. Both the output and {@link #getProtoSchema()} go through here, so that
+	 * transcoded instances always agree with the generated files.
+	 */
+	private List<ResolvedField> resolveFields(Message message) {
+		List<ResolvedField> resolved = new ArrayList<>(message.getFields().size());
+		int number = 1;
+		for (Field field : message.getFields()) {
+			ResolvedField r = new ResolvedField(field, number++);
+			String fieldName = field.getName();
+			if (marshaller.getNameMapping(fieldName) != null) {
+				fieldName = marshaller.getNameMapping(fieldName);
+			}
+
+			String fieldType = field.getType();
+			if (fieldType == null) {
+				fieldType = field.getName();
+			}
+			r.xsdType = fieldType;
 
 			boolean customTypeMapping = false;
 			String typeNameSpace = "";
@@ -271,32 +608,29 @@ public class XSDParser implements ErrorHandler {
 				int qualifyingDot = fieldType.lastIndexOf('.');
 				if (qualifyingDot > -1) {
 					typeNameSpace = fieldType.substring(0, qualifyingDot + 1);
-					String inclusionPath;
 					if (marshaller.getImport(fieldType) != null) {
-						inclusionPath = marshaller.getImport(fieldType);
+						r.inclusion = marshaller.getImport(fieldType);
 					} else {
-						inclusionPath = fieldType.substring(0, qualifyingDot);
+						r.inclusion = fieldType.substring(0, qualifyingDot);
 					}
-					writer.addInclusion(message.getNamespace(), inclusionPath);
 					fieldType = fieldType.substring(qualifyingDot + 1);
 				}
 			} else if (!basicTypes.contains(fieldType) && field.getTypeNamespace() != null && !field.getTypeNamespace().equals(message.getNamespace())) {
 				typeNameSpace = field.getTypeNamespace() + ".";
-				writer.addInclusion(message.getNamespace(), field.getTypeNamespace());
+				r.inclusion = field.getTypeNamespace();
 			}
 
-			SimpleTypeDesc specialisedSimpleFieldType = null;
 			if (!customTypeMapping) {
 
 				if (simpleTypes.containsKey(fieldType)) {
-					specialisedSimpleFieldType = simpleTypes.get(fieldType);
-					fieldType = specialisedSimpleFieldType.getBaseType();
+					r.simpleType = simpleTypes.get(fieldType);
+					fieldType = r.simpleType.getBaseType();
 				}
 
 				if (!map.keySet().contains(fieldType) && !basicTypes.contains(fieldType) && !enums.containsKey(fieldType)) {
 					fieldType = "binary";
 				}
-
+				r.xsdType = fieldType;
 
 				if (marshaller.getTypeMapping(fieldType) != null) {
 					// Message-type has been overridden, need to override all usage
@@ -307,54 +641,44 @@ public class XSDParser implements ErrorHandler {
 			if (fieldType.equals(fieldName)) {
 				fieldName = "_" + fieldName;
 			}
-
-			String doc = field.getDoc();
-			if (doc == null) {
-				doc = "";
-			}
-
-			// nested type
-			Message subMessage = map.get(fieldType);
-			if (fieldType.startsWith(messageName) && !declared.contains(fieldType)) {
-				subMessages.add(subMessage);
-				fieldType = fieldType.substring(messageName.length());
-			} else {
-				fieldType = typeNameSpace + escapeType(fieldType);
-
-
-				if (specialisedSimpleFieldType != null) {
-					if (StringUtils.isNotBlank(doc)) {
-						doc += " | ";
-					}
-
-					if (!specialisedSimpleFieldType.getName().startsWith("Anonymous")) {
-						doc += "XSD type: " + specialisedSimpleFieldType.getName();
-					}
-					if (specialisedSimpleFieldType.getDocumentation() != null) {
-						doc += " | " + specialisedSimpleFieldType.getDocumentation();
-					}
-				}
-			}
-
-
-
-			os(message.getNamespace())
-					.write(marshaller.writeStructParameter(order, field.isRequired(), field.isRepeat(), escape(fieldName), fieldType, doc, writer.isSplitBySchema(),
-							(specialisedSimpleFieldType != null) ? specialisedSimpleFieldType.getFacets() : null).getBytes());
-
-
-			order = order + 1;
+			r.name = fieldName;
+			r.type = fieldType;
+			r.typeNameSpace = typeNameSpace;
+			resolved.add(r);
 		}
+		return resolved;
+	}
 
-		for (Message subMessage : subMessages) {
-			writeMessage(subMessage, declared, messageName + '.');
+	/**
+	 * A field of the model as written: see {@link XSDParser#resolveFields(Message)}.
+	 */
+	private static class ResolvedField {
+		private final Field field;
+		private final int number;
+		/** field name, mapped */
+		private String name;
+		/** output type, mapped, without its qualifying namespace */
+		private String type;
+		/** qualifying namespace of the type, with a trailing dot, or empty */
+		private String typeNameSpace;
+		/** schema type the output type was mapped from */
+		private String xsdType;
+		/** the restricted simple type of the field, if any */
+		private SimpleTypeDesc simpleType;
+		/** namespace or file to import for the type, if any */
+		private String inclusion;
+
+		ResolvedField(Field field, int number) {
+			this.field = field;
+			this.number = number;
 		}
+	}
 
-		os(message.getNamespace()).write(marshaller.writeStructFooter().getBytes());
-		declared.add(message.getName());
+	private void writeMessageDocumentation(String doc, String namespace) {
+		emit(namespace, m -> formatMessageDocumentation(doc));
 	}
 
-	private void writeMessageDocumentation(String doc, String namespace) throws IOException {
+	private CharSequence formatMessageDocumentation(String doc) {
 		StringBuilder sb = new StringBuilder();
 		if (includeMessageDocs && doc != null) {
 			sb.append("\n/*\n");
@@ -366,34 +690,22 @@ public class XSDParser implements ErrorHandler {
 		} else {
 			sb.append("\n");
 		}
-		os(namespace).write(sb.toString().getBytes());
+		return sb;
 	}
 
-	private Iterator<Field> orderedIteratorForFields(List<Field> fields) {
-		Collections.sort(fields, new Comparator<Field>() {
-			@Override
-			public int compare(Field o1, Field o2) {
-				if (o1 == null) {
-					if (o2 == null)
-						return 0;
-					return 1;
-				}
-				return o1.getName().compareTo(o2.getName());
-			}
-		});
-		return fields.iterator();
-	}
-
-	private void writeEnum(String type) throws IOException {
+	private void writeEnum(String type) {
 		String enumValue;
 		Enumeration en;
 		Iterator<String> itg;
+		Object event = ConversionEvents.begin(Kind.WRITE_ENUM);
 		en = enums.get(type);
 		enumValue = escape(en.getName());
 
 		writeMessageDocumentation(en.getDoc(), en.getNamespace());
 
-		os(en.getNamespace()).write(marshaller.writeEnumHeader(enumValue).getBytes());
+		emit(en.getNamespace(), m -> m.writeEnumHeader(enumValue));
+		describe(en.getNamespace(), file -> file.startEnum(enumValue));
+		indentLevel++;
 		itg = en.iterator();
 		int enumOrder = this.enumOrderStart;
 		String typePrefix;
@@ -404,19 +716,30 @@ public class XSDParser implements ErrorHandler {
 		}
 
 		// Adding a default-value as "UNSPECIFIED"
-		os(en.getNamespace()).write(marshaller.writeEnumValue(enumOrder, escape(typePrefix + "unspecified")).getBytes());
+		writeEnumValue(en.getNamespace(), enumOrder, escape(typePrefix + "unspecified"));
 		enumOrder++;
 
 		if (itg.hasNext()) {
 			while (itg.hasNext()) {
-				os(en.getNamespace()).write(marshaller.writeEnumValue(enumOrder, escape(typePrefix + itg.next())).getBytes());
+				writeEnumValue(en.getNamespace(), enumOrder, escape(typePrefix + itg.next()));
 				enumOrder++;
 			}
 		} else {
-			os(en.getNamespace()).write(marshaller.writeEnumValue(enumOrder, escape(typePrefix + "UnspecifiedValue")).getBytes());
+			writeEnumValue(en.getNamespace(), enumOrder, escape(typePrefix + "UnspecifiedValue"));
 		}
 
-		os(en.getNamespace()).write(marshaller.writeEnumFooter().getBytes());
+		emit(en.getNamespace(), m -> m.writeEnumFooter());
+		describe(en.getNamespace(), file -> file.endEnum());
+		indentLevel--;
+
+		if (ConversionEvents.shouldCommit(event)) {
+			ConversionEvents.commitEnum(event, en.getName(), en.getNamespace(), enumOrder - enumOrderStart - 1);
+		}
+	}
+
+	private void writeEnumValue(String namespace, int order, String value) {
+		emit(namespace, m -> m.writeEnumValue(order, value));
+		describe(namespace, file -> file.enumValue(order, marshaller.enumValueName(value)));
 	}
 
 	private String escape(String name) {
@@ -449,7 +772,13 @@ public class XSDParser implements ErrorHandler {
 		return res;
 	}
 
-	private void interpretResult(XSSchemaSet sset) {
+	/**
+	 * Builds the message, enum and simple type registries from the schema set.
+	 *
+	 * Registration is ordered: type names are first come, first served, base types are looked up as they have been registered so far and anonymous types are
+	 * numbered in discovery order, so it is sequential.
+	 */
+	void interpretResult(XSSchemaSet sset) {
 		XSSchema xs;
 		Iterator<XSSchema> it;
 		Iterator<XSElementDecl> itt;
@@ -480,9 +809,15 @@ public class XSDParser implements ErrorHandler {
 				}
 			}
 		}
+
+		Map<Field, Field> pool = new HashMap<>();
+		for (Message message : map.values()) {
+			message.compact(pool);
+		}
 	}
 
 	private List<Field> processModelGroup(XSModelGroup modelGroup, String ownerTypeName, XSSchemaSet xsset) {
+		Object event = ConversionEvents.begin(Kind.MODEL_GROUP);
 
 		List<Field> groupFields = new ArrayList<>();
 
@@ -513,20 +848,23 @@ public class XSDParser implements ErrorHandler {
 						XSSimpleType xsSimpleType = type.asSimpleType();
 						String typeName = processSimpleType(xsSimpleType, term.getName());
 
-						f = new Field(term.getName(), term.getTargetNamespace(), typeName, child.isRepeated(), null, doc,
-								child.getMinOccurs().intValue() > 0);
+						f = new Field(term.getName(), term.getTargetNamespace(), typeName, child.isRepeated(), null, doc, child.getMinOccurs().intValue() > 0);
 					} else {
 
 						f = new Field(term.getName(), term.getTargetNamespace(), type.getName(), child.isRepeated(), null, doc,
 								child.getMinOccurs().intValue() > 0);
 					}
-
+					f.setXmlNamespace(term.getTargetNamespace());
 
 					groupFields.add(f);
 				}
 			}
 		}
 
+		if (ConversionEvents.shouldCommit(event)) {
+			ConversionEvents.commitModelGroup(event, ownerTypeName, modelGroup.getOwnerSchema().getTargetNamespace(), groupFields.size(),
+					modelGroup.getCompositor().toString(), modelGroup.getSize());
+		}
 		return groupFields;
 	}
 
@@ -548,9 +886,12 @@ public class XSDParser implements ErrorHandler {
 	 * @param elementName
 	 */
 	private String processSimpleType(XSSimpleType xs, String elementName) {
+		Object event = ConversionEvents.begin(Kind.SIMPLE_TYPE);
+		XSSimpleType simpleType = xs;
 
-		if (elementName != null && marshaller.getNameMapping(elementName) != null) {
-			elementName = marshaller.getNameMapping(elementName);
+		String mappedName = elementName != null ? interpretedName(elementName) : null;
+		if (mappedName != null) {
+			elementName = mappedName;
 		}
 
 		String typeName = xs.getName();
@@ -573,10 +914,12 @@ public class XSDParser implements ErrorHandler {
 			// it to the type
 			String doc = resolveDocumentationAnnotation(xs);
 			String baseTypeName = typeName;
-			List<XSFacet> facets = new ArrayList<>();
+			List<Facet> facets = new ArrayList<>();
 			while (xs != null && !basicTypes.contains(baseTypeName)) {
 				if (xs.isRestriction()) {
-					facets.addAll(((XSRestrictionSimpleType)xs).getDeclaredFacets());
+					for (XSFacet facet : ((XSRestrictionSimpleType) xs).getDeclaredFacets()) {
+						facets.add(new Facet(facet.getName(), facet.getValue().value));
+					}
 				}
 				xs = xs.getBaseType().asSimpleType();
 
@@ -584,7 +927,7 @@ public class XSDParser implements ErrorHandler {
 					baseTypeName = xs.getName();
 				}
 			}
-			SimpleTypeDesc  desc = new SimpleTypeDesc(typeName, xs != null ? xs.getName() : "string");
+			SimpleTypeDesc desc = new SimpleTypeDesc(typeName, xs != null ? xs.getName() : "string");
 			desc.setDocumentation(doc);
 			desc.setFacets(facets);
 
@@ -592,6 +935,12 @@ public class XSDParser implements ErrorHandler {
 
 			addDocumentation(typeName, doc);
 		}
+
+		if (ConversionEvents.shouldCommit(event)) {
+			SimpleTypeDesc desc = simpleTypes.get(typeName);
+			ConversionEvents.commit(event, typeName, namespace, desc != null && desc.getFacets() != null ? desc.getFacets().size() : 0,
+					inheritanceDepth(simpleType));
+		}
 		return typeName;
 	}
 
@@ -607,13 +956,15 @@ public class XSDParser implements ErrorHandler {
 	 * @param sset
 	 */
 	private String processComplexType(XSComplexType cType, String elementName, String elementOwnerType, XSSchemaSet sset) {
+		Object event = ConversionEvents.begin(Kind.COMPLEX_TYPE);
 		Message st = null;
 		XSType parent;
 		String typeName = cType.getName();
 		String nameSpace = cType.getTargetNamespace();
 
-		if (elementName != null && marshaller.getNameMapping(elementName) != null) {
-			elementName = marshaller.getNameMapping(elementName);
+		String mappedName = elementName != null ? interpretedName(elementName) : null;
+		if (mappedName != null) {
+			elementName = mappedName;
 		} else if (cType.getScope() != null) {
 			elementName = cType.getScope().getName();
 		}
@@ -630,6 +981,7 @@ public class XSDParser implements ErrorHandler {
 			st.setDoc(doc);
 
 			map.put(typeName, st);
+			inProgress.add(st);
 			XSComplexType asCtype = cType.asComplexType();
 			if (cType.asComplexType() != null && cType != asCtype) {
 				processComplexType(asCtype, elementName, typeName, sset);
@@ -667,16 +1019,24 @@ public class XSDParser implements ErrorHandler {
 
 					if (decl.getType().getPrimitiveType() != null) {
 						String fieldName = decl.getName();
+						Field field;
 
 						if (decl.getType().isRestriction() && decl.getType().getFacet("enumeration") != null) {
-							st.addField(fieldName, createEnum(fieldName, decl.getTargetNamespace(), decl.getType().asRestriction()), false, false, null, null,
-									xsdMapping);
+							field = st.addField(fieldName, createEnum(fieldName, decl.getTargetNamespace(), decl.getType().asRestriction()), false, false, null,
+									null, xsdMapping);
 						} else {
-							st.addField(fieldName, decl.getType().getPrimitiveType().getName(), false, false, null, null, xsdMapping);
+							field = st.addField(fieldName, decl.getType().getPrimitiveType().getName(), false, false, null, null, xsdMapping);
+						}
+						if (field != null) {
+							field.setXmlNamespace(decl.getTargetNamespace());
+							field.setAttribute(true);
 						}
 					}
 				}
 			}
+			// Inherit the fields of the ancestors. An ancestor that was flattened already holds the fields of its own ancestors, so the walk
+			// stops there and every type copies the inherited fields once, whatever the depth of the hierarchy.
+			boolean complete = true;
 			parent = cType;
 			while (parent != sset.getAnyType()) {
 				if (parent.isComplexType()) {
@@ -688,48 +1048,81 @@ public class XSDParser implements ErrorHandler {
 						parentMessage = map.get(((ComplexTypeImpl) parent).getScope().getName());
 					}
 
-					if (parentMessage != null) {
-						List<Field> parentStructFields = parentMessage.getFields();
-						parentStructFields.removeIf(f -> f.getType() != null && f.getType().endsWith("/XMLSchema"));
-						st.addFields(parentStructFields, xsdMapping);
+					if (parentMessage != null && parentMessage != st) {
+						st.inheritFields(parentMessage.getFields(), xsdMapping);
+						if (flattened.contains(parentMessage)) {
+							break;
+						}
+						// still being interpreted, its fields are not final yet
+						complete &= !inProgress.contains(parentMessage);
+					} else if (parentMessage == null && parent != cType) {
+						// not interpreted yet, its fields are missing
+						complete = false;
 					}
-
-//					write(st, parent.asComplexType(), true, sset);
 				}
 				parent = parent.getBaseType();
 			}
+			inProgress.remove(st);
+			if (complete) {
+				flattened.add(st);
+			}
 
 			st.setParent(cType.getBaseType().getName());
 		}
+
+		if (ConversionEvents.shouldCommit(event)) {
+			ConversionEvents.commit(event, typeName, nameSpace, st != null ? st.getFields().size() : 0, inheritanceDepth(cType));
+		}
 		return typeName;
 	}
 
+	/**
+	 * @return the derivation steps from the type up to xs:anyType
+	 */
+	private static int inheritanceDepth(XSType type) {
+		int depth = 0;
+		for (XSType base = type.getBaseType(); base != null && base != type; base = type.getBaseType()) {
+			depth++;
+			type = base;
+		}
+		return depth;
+	}
+
+	/**
+	 * Resolves the name mapping of an element during interpretation, and records it for {@link ModelSnapshot}.
+	 */
+	private String interpretedName(String elementName) {
+		String mappedName = marshaller.getNameMapping(elementName);
+		interpretedNames.put(elementName, mappedName);
+		return mappedName;
+	}
+
 	private String resolveDocumentationAnnotation(XSComponent xsComponent) {
-		String doc = null;
-		if (xsComponent.getAnnotation() != null && xsComponent.getAnnotation().getAnnotation() != null) {
-			if (xsComponent.getAnnotation().getAnnotation() instanceof Node) {
-				Node annotationEl = (Node) xsComponent.getAnnotation().getAnnotation();
-				NodeList annotations = annotationEl.getChildNodes();
-
-				for (int i = 0; i < annotations.getLength(); i++) {
-					Node annotation = annotations.item(i);
-					if ("documentation".equals(annotation.getLocalName())) {
-
-						NodeList childNodes = annotation.getChildNodes();
-						for (int j = 0; j < childNodes.getLength(); j++) {
-							if (childNodes.item(j) != null && childNodes.item(j) instanceof Text) {
-								doc = childNodes.item(j).getNodeValue();
-							}
-						}
-					}
-				}
-			}
+		if (!isDocumented()) {
+			return null;
+		}
+		return readDocumentation(xsComponent);
+	}
+
+	/**
+	 * @return the text of the documentation annotation of the component, or null
+	 */
+	static String readDocumentation(XSComponent xsComponent) {
+		// see DocumentationAnnotationParserFactory, without it the annotations are not parsed
+		XSAnnotation annotation = xsComponent.getAnnotation();
+		if (annotation != null && annotation.getAnnotation() instanceof String) {
+			return (String) annotation.getAnnotation();
 		}
-		return doc;
+		return null;
 	}
 
 	private int anonymousCounter = 0;
 
+	/** messages whose fields include the fields of all their ancestors */
+	private final Set<Message> flattened = Collections.newSetFromMap(new IdentityHashMap<>());
+	/** messages whose complex type is being interpreted */
+	private final Set<Message> inProgress = Collections.newSetFromMap(new IdentityHashMap<>());
+
 	/**
 	 * @return
 	 */
@@ -762,22 +1155,22 @@ public class XSDParser implements ErrorHandler {
 		return typeName;
 	}
 
+	/**
+	 * Stops the parsing, {@link #interpret()} reports the error as an {@link InvalidXSDException}.
+	 */
 	@Override
 	public void error(SAXParseException exception) throws SAXException {
-		LOGGER.error(exception.getMessage() + " at " + exception.getSystemId());
-		exception.printStackTrace();
+		throw exception;
 	}
 
 	@Override
 	public void fatalError(SAXParseException exception) throws SAXException {
-		LOGGER.error(exception.getMessage() + " at " + exception.getSystemId());
-		exception.printStackTrace();
+		throw exception;
 	}
 
 	@Override
 	public void warning(SAXParseException exception) throws SAXException {
 		LOGGER.warn(exception.getMessage() + " at " + exception.getSystemId());
-		exception.printStackTrace();
 	}
 
 	public void addMarshaller(ProtobufMarshaller marshaller) {
@@ -792,14 +1185,67 @@ public class XSDParser implements ErrorHandler {
 		return nestEnums;
 	}
 
-	private OutputStream os(String namespace) throws IOException {
-		return writer.getStream(namespace);
+	private StringBuilder out(String namespace) {
+		return writer.getBuffer(namespace);
+	}
+
+	/**
+	 * Appends a piece of marshaller output to the file of the namespace, or queues it when files are rendered in parallel.
+	 */
+	private void emit(String namespace, Function<ProtobufMarshaller, CharSequence> render) {
+		StringBuilder target = out(namespace);
+		if (deferred == null) {
+			target.append(render.apply(marshaller));
+		} else {
+			deferred.computeIfAbsent(target, k -> new ArrayList<>()).add(new Chunk(indentLevel, render));
+		}
+	}
+
+	/**
+	 * Adds a piece of output to the descriptor of the file of the namespace, when descriptors are written.
+	 */
+	private void describe(String namespace, Consumer<DescriptorSetBuilder.File> event) {
+		DescriptorSetBuilder descriptors = writer.getDescriptorSet();
+		if (descriptors != null) {
+			event.accept(descriptors.file(writer.getFileNamespace(namespace)));
+		}
+	}
+
+	/**
+	 * Renders the queued output, one file per task, each with its own copy of the marshaller.
+	 */
+	private void renderDeferred() {
+		deferred.entrySet().parallelStream().forEach(e -> {
+			ProtobufMarshaller m = marshaller.copy();
+			StringBuilder target = e.getKey();
+			for (Chunk chunk : e.getValue()) {
+				m.setIndentLevel(chunk.indentLevel);
+				target.append(chunk.render.apply(m));
+			}
+		});
+	}
+
+	/**
+	 * A piece of output, with the indentation level the marshaller had when it was emitted.
+	 */
+	private static class Chunk {
+		private final int indentLevel;
+		private final Function<ProtobufMarshaller, CharSequence> render;
+
+		Chunk(int indentLevel, Function<ProtobufMarshaller, CharSequence> render) {
+			this.indentLevel = indentLevel;
+			this.render = render;
+		}
 	}
 
 	public void setWriter(OutputWriter writer) {
 		this.writer = writer;
 	}
 
+	public OutputWriter getWriter() {
+		return writer;
+	}
+
 	public void setEnumOrderStart(int enumOrderStart) {
 		this.enumOrderStart = enumOrderStart;
 	}
@@ -815,4 +1261,57 @@ public class XSDParser implements ErrorHandler {
 	public void setIncludeFieldDocs(boolean includeFieldDocs) {
 		this.includeFieldDocs = includeFieldDocs;
 	}
+
+	/**
+	 * @return true if the documentation of the schema is needed, either in the output or in the saved model
+	 */
+	boolean isDocumented() {
+		return includeMessageDocs || includeFieldDocs || saveModel != null;
+	}
+
+	/**
+	 * @param schemaSetCache cache to take the parsed schema set from, and to put it in after parsing
+	 */
+	public void setSchemaSetCache(SchemaSetCache schemaSetCache) {
+		this.schemaSetCache = schemaSetCache;
+	}
+
+	/**
+	 * @param catalogs OASIS XML catalog files resolving the schema documents, see {@link XmlCatalog}
+	 */
+	public void setCatalogs(List<String> catalogs) {
+		this.catalogs = catalogs;
+	}
+
+	/**
+	 * Parses these schemas, into one schema set, instead of the file given to the constructor.
+	 */
+	public void setSources(List<SchemaSource> sources) {
+		this.sources = sources;
+	}
+
+	/**
+	 * @param listener notified as the phases of the conversion finish
+	 */
+	public void addListener(ConversionListener listener) {
+		report.addListener(listener);
+	}
+
+	/**
+	 * @return the cost of the conversion so far
+	 */
+	public ConversionReport getReport() {
+		return report;
+	}
+
+	List<String> getCatalogs() {
+		return catalogs;
+	}
+
+	/**
+	 * @param saveModel file to save the interpreted model to, see {@link #saveModel(Path)}
+	 */
+	public void setSaveModel(String saveModel) {
+		this.saveModel = saveModel;
+	}
 }
@@ -0,0 +1,219 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * OASIS XML catalog, mapping public identifiers, system identifiers and URIs of schema documents to local copies.
+ *
+ * Supports the <code>public</code>, <code>system</code>, <code>rewriteSystem</code>, <code>systemSuffix</code>, <code>uri</code>, <code>rewriteURI</code>,
+ * <code>uriSuffix</code> and <code>nextCatalog</code> entries, <code>group</code> and <code>xml:base</code>. As in the specification, exact matches win over
+ * the longest rewrite prefix, which wins over the longest suffix, and next catalogs are only consulted when nothing matched. XSOM passes the target namespace
+ * of an import as public identifier, so it is looked up as a URI as well.
+ */
+class XmlCatalog {
+
+	static final String NAMESPACE = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+
+	private final URI location;
+	private final Map<String, String> publicIds = new HashMap<>();
+	private final Map<String, String> systemIds = new HashMap<>();
+	private final Map<String, String> systemRewrites = new HashMap<>();
+	private final Map<String, String> systemSuffixes = new HashMap<>();
+	private final Map<String, String> uris = new HashMap<>();
+	private final Map<String, String> uriRewrites = new HashMap<>();
+	private final Map<String, String> uriSuffixes = new HashMap<>();
+	private final List<URI> nextCatalogs = new ArrayList<>();
+	private List<XmlCatalog> next;
+
+	private XmlCatalog(URI location) {
+		this.location = location;
+	}
+
+	static XmlCatalog load(URI location) throws IOException {
+		XmlCatalog catalog = new XmlCatalog(location);
+		try {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			// catalogs usually declare the OASIS DTD, which is not needed and would go to the network
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			InputSource source = new InputSource(location.toString());
+			factory.newSAXParser().parse(source, catalog.new Reader());
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Invalid XML catalog " + location + ": " + e.getMessage(), e);
+		}
+		return catalog;
+	}
+
+	URI getLocation() {
+		return location;
+	}
+
+	/**
+	 * @return the catalog files this catalog consists of, next catalogs included
+	 */
+	List<URI> getLocations() throws IOException {
+		List<URI> locations = new ArrayList<>();
+		locations.add(location);
+		for (XmlCatalog catalog : next()) {
+			locations.addAll(catalog.getLocations());
+		}
+		return locations;
+	}
+
+	/**
+	 * @return the mapped location of a system identifier, or null
+	 */
+	String resolveSystem(String systemId) throws IOException {
+		String resolved = resolve(systemId, systemIds, systemRewrites, systemSuffixes);
+		if (resolved == null) {
+			for (XmlCatalog catalog : next()) {
+				resolved = catalog.resolveSystem(systemId);
+				if (resolved != null) {
+					break;
+				}
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * @return the mapped location of a URI, or null
+	 */
+	String resolveUri(String uri) throws IOException {
+		String resolved = resolve(uri, uris, uriRewrites, uriSuffixes);
+		if (resolved == null) {
+			for (XmlCatalog catalog : next()) {
+				resolved = catalog.resolveUri(uri);
+				if (resolved != null) {
+					break;
+				}
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * @return the mapped location of a public identifier, or null
+	 */
+	String resolvePublic(String publicId) throws IOException {
+		String resolved = publicIds.get(publicId);
+		if (resolved == null) {
+			for (XmlCatalog catalog : next()) {
+				resolved = catalog.resolvePublic(publicId);
+				if (resolved != null) {
+					break;
+				}
+			}
+		}
+		return resolved;
+	}
+
+	private static String resolve(String id, Map<String, String> exact, Map<String, String> rewrites, Map<String, String> suffixes) {
+		if (id == null) {
+			return null;
+		}
+		String resolved = exact.get(id);
+		if (resolved != null) {
+			return resolved;
+		}
+		String prefix = longest(id, rewrites, true);
+		if (prefix != null) {
+			return rewrites.get(prefix) + id.substring(prefix.length());
+		}
+		String suffix = longest(id, suffixes, false);
+		return suffix != null ? suffixes.get(suffix) : null;
+	}
+
+	private static String longest(String id, Map<String, String> candidates, boolean prefix) {
+		String match = null;
+		for (String candidate : candidates.keySet()) {
+			if ((prefix ? id.startsWith(candidate) : id.endsWith(candidate)) && (match == null || candidate.length() > match.length())) {
+				match = candidate;
+			}
+		}
+		return match;
+	}
+
+	private synchronized List<XmlCatalog> next() throws IOException {
+		if (next == null) {
+			List<XmlCatalog> catalogs = new ArrayList<>();
+			for (URI uri : nextCatalogs) {
+				catalogs.add(load(uri));
+			}
+			next = catalogs;
+		}
+		return next;
+	}
+
+	private class Reader extends DefaultHandler {
+
+		private final Deque<URI> bases = new ArrayDeque<>();
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			URI base = bases.isEmpty() ? location : bases.peek();
+			String xmlBase = attributes.getValue(XMLConstants.XML_NS_URI, "base");
+			if (xmlBase != null) {
+				base = base.resolve(xmlBase);
+			}
+			bases.push(base);
+			if (!NAMESPACE.equals(uri)) {
+				return;
+			}
+
+			switch (localName) {
+			case "public":
+				publicIds.put(attributes.getValue("publicId"), resolve(base, attributes.getValue("uri")));
+				break;
+			case "system":
+				systemIds.put(attributes.getValue("systemId"), resolve(base, attributes.getValue("uri")));
+				break;
+			case "rewriteSystem":
+				systemRewrites.put(attributes.getValue("systemIdStartString"), resolve(base, attributes.getValue("rewritePrefix")));
+				break;
+			case "systemSuffix":
+				systemSuffixes.put(attributes.getValue("systemIdSuffix"), resolve(base, attributes.getValue("uri")));
+				break;
+			case "uri":
+				uris.put(attributes.getValue("name"), resolve(base, attributes.getValue("uri")));
+				break;
+			case "rewriteURI":
+				uriRewrites.put(attributes.getValue("uriStartString"), resolve(base, attributes.getValue("rewritePrefix")));
+				break;
+			case "uriSuffix":
+				uriSuffixes.put(attributes.getValue("uriSuffix"), resolve(base, attributes.getValue("uri")));
+				break;
+			case "nextCatalog":
+				nextCatalogs.add(base.resolve(attributes.getValue("catalog")));
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			bases.pop();
+		}
+
+		private String resolve(URI base, String reference) {
+			return base.resolve(reference).toString();
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("xsd2proto.ComplexType")
+@Label("Complex Type Interpretation")
+@Description("Interpretation of a complex type into a message, nested anonymous types and inherited fields included")
+@Threshold("20 ms")
+class ComplexTypeEvent extends SchemaComponentEvent {
+
+	@Label("Inheritance Depth")
+	int inheritanceDepth;
+}
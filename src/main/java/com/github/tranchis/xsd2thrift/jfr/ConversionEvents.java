@@ -0,0 +1,89 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+/**
+ * Java Flight Recorder events of the conversion, one per schema component interpreted or written, so that a recording of a slow run points at the schema
+ * components that take the time.
+ *
+ * The events are enabled by default with a threshold, see the event classes, so they can stay on in production: below the threshold, or without a recording, an
+ * event costs a small allocation and two clock reads. Thresholds can be changed in the recording settings, by event name, for instance
+ * <code>xsd2proto.ComplexType</code>. On a JVM without Flight Recorder, this class does nothing.
+ *
+ * <pre>
+ * Object event = ConversionEvents.begin(Kind.COMPLEX_TYPE);
+ * ...
+ * if (ConversionEvents.shouldCommit(event)) {
+ * 	ConversionEvents.commit(event, name, namespace, fields, depth);
+ * }
+ * </pre>
+ */
+public final class ConversionEvents {
+
+	/**
+	 * What an event measures.
+	 */
+	public enum Kind {
+		COMPLEX_TYPE,
+		MODEL_GROUP,
+		SIMPLE_TYPE,
+		WRITE_MESSAGE,
+		WRITE_ENUM
+	}
+
+	private static final boolean AVAILABLE = isAvailable();
+
+	private ConversionEvents() {
+	}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Starts timing a component.
+	 *
+	 * @return the event, or null when Flight Recorder is not available or the event is disabled
+	 */
+	public static Object begin(Kind kind) {
+		return AVAILABLE ? JfrEvents.begin(kind) : null;
+	}
+
+	/**
+	 * Stops timing a component.
+	 *
+	 * @return true if the event is recorded, its fields are then given with one of the commit methods
+	 */
+	public static boolean shouldCommit(Object event) {
+		return event != null && JfrEvents.shouldCommit(event);
+	}
+
+	/**
+	 * Records a {@link Kind#COMPLEX_TYPE}, {@link Kind#SIMPLE_TYPE} or {@link Kind#WRITE_MESSAGE} event.
+	 *
+	 * @param fieldCount       fields of the message, facets of a simple type
+	 * @param inheritanceDepth derivation steps up to xs:anyType, or parents of a message
+	 */
+	public static void commit(Object event, String typeName, String namespace, int fieldCount, int inheritanceDepth) {
+		JfrEvents.commit(event, typeName, namespace, fieldCount, inheritanceDepth, null, 0);
+	}
+
+	/**
+	 * Records a {@link Kind#MODEL_GROUP} event.
+	 *
+	 * @param ownerTypeName the type the fields of the group go to
+	 */
+	public static void commitModelGroup(Object event, String ownerTypeName, String namespace, int fieldCount, String compositor, int particleCount) {
+		JfrEvents.commit(event, ownerTypeName, namespace, fieldCount, 0, compositor, particleCount);
+	}
+
+	/**
+	 * Records a {@link Kind#WRITE_ENUM} event.
+	 */
+	public static void commitEnum(Object event, String typeName, String namespace, int valueCount) {
+		JfrEvents.commit(event, typeName, namespace, valueCount, 0, null, 0);
+	}
+}
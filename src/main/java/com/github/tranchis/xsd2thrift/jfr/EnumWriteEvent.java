@@ -0,0 +1,13 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("xsd2proto.WriteEnum")
+@Label("Enumeration Output")
+@Description("Rendering of an enumeration, the field count is the number of values")
+@Threshold("5 ms")
+class EnumWriteEvent extends SchemaComponentEvent {
+}
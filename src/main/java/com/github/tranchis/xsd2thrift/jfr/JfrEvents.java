@@ -0,0 +1,60 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+/**
+ * The only class touching the event classes, loaded by {@link ConversionEvents} once Flight Recorder is known to be available.
+ */
+final class JfrEvents {
+
+	private JfrEvents() {
+	}
+
+	static Object begin(ConversionEvents.Kind kind) {
+		SchemaComponentEvent event;
+		switch (kind) {
+		case COMPLEX_TYPE:
+			event = new ComplexTypeEvent();
+			break;
+		case MODEL_GROUP:
+			event = new ModelGroupEvent();
+			break;
+		case SIMPLE_TYPE:
+			event = new SimpleTypeEvent();
+			break;
+		case WRITE_MESSAGE:
+			event = new MessageWriteEvent();
+			break;
+		default:
+			event = new EnumWriteEvent();
+			break;
+		}
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	static boolean shouldCommit(Object event) {
+		SchemaComponentEvent e = (SchemaComponentEvent) event;
+		e.end();
+		return e.shouldCommit();
+	}
+
+	static void commit(Object event, String typeName, String namespace, int fieldCount, int depth, String compositor, int particleCount) {
+		SchemaComponentEvent e = (SchemaComponentEvent) event;
+		e.typeName = typeName;
+		e.namespace = namespace;
+		e.fieldCount = fieldCount;
+		if (e instanceof ComplexTypeEvent) {
+			((ComplexTypeEvent) e).inheritanceDepth = depth;
+		} else if (e instanceof SimpleTypeEvent) {
+			((SimpleTypeEvent) e).inheritanceDepth = depth;
+		} else if (e instanceof MessageWriteEvent) {
+			((MessageWriteEvent) e).inheritanceDepth = depth;
+		} else if (e instanceof ModelGroupEvent) {
+			((ModelGroupEvent) e).compositor = compositor;
+			((ModelGroupEvent) e).particleCount = particleCount;
+		}
+		e.commit();
+	}
+}
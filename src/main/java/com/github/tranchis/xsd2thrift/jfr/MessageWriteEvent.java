@@ -0,0 +1,16 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("xsd2proto.WriteMessage")
+@Label("Message Output")
+@Description("Rendering of a message, nested messages included")
+@Threshold("20 ms")
+class MessageWriteEvent extends SchemaComponentEvent {
+
+	@Label("Inheritance Depth")
+	int inheritanceDepth;
+}
@@ -0,0 +1,19 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("xsd2proto.ModelGroup")
+@Label("Model Group Interpretation")
+@Description("Interpretation of a sequence, choice or all group into fields of its owner type, nested groups included")
+@Threshold("20 ms")
+class ModelGroupEvent extends SchemaComponentEvent {
+
+	@Label("Compositor")
+	String compositor;
+
+	@Label("Particle Count")
+	int particleCount;
+}
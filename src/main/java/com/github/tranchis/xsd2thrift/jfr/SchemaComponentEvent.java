@@ -0,0 +1,24 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Time spent on one schema component, only recorded above the threshold of the event.
+ */
+@Category({ "xsd2proto" })
+@Enabled(true)
+@StackTrace(false)
+abstract class SchemaComponentEvent extends jdk.jfr.Event {
+
+	@Label("Type Name")
+	String typeName;
+
+	@Label("Namespace")
+	String namespace;
+
+	@Label("Field Count")
+	int fieldCount;
+}
@@ -0,0 +1,16 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("xsd2proto.SimpleType")
+@Label("Simple Type Interpretation")
+@Description("Interpretation of a simple type into an enumeration or a restricted base type, the field count is the number of facets")
+@Threshold("5 ms")
+class SimpleTypeEvent extends SchemaComponentEvent {
+
+	@Label("Derivation Depth")
+	int inheritanceDepth;
+}
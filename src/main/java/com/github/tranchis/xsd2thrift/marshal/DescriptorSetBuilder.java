@@ -0,0 +1,318 @@
+package com.github.tranchis.xsd2thrift.marshal;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumDescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumValueDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldOptions;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.DescriptorProtos.FileOptions;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.UnknownFieldSet;
+
+/**
+ * Builds the <code>FileDescriptorProto</code>s of the output as it is written, from the same names, numbers and types as the text of
+ * {@link ProtobufMarshaller}, so that a <code>FileDescriptorSet</code> can be written without running <code>protoc --descriptor_set_out</code> on the generated
+ * files.
+ *
+ * Type names are resolved as <code>protoc</code> resolves them when the set is built, and <code>validate.rules</code> are set as the unknown extension field
+ * 1071 of the field options, which readers with the extensions of protoc-gen-validate registered parse as usual. Like <code>protoc</code> without
+ * <code>--include_imports</code>, the set only holds the generated files, not the well-known types and <code>validate/validate.proto</code> they import.
+ */
+public class DescriptorSetBuilder {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DescriptorSetBuilder.class);
+
+	/** the number of the <code>(validate.rules)</code> extension of <code>FieldOptions</code> */
+	private static final int VALIDATE_RULES = 1071;
+	private static final int REPEATED_RULES = 18;
+	private static final int REPEATED_ITEMS = 4;
+
+	private static final Map<String, FieldDescriptorProto.Type> SCALARS = new HashMap<>();
+	/** the fields of <code>validate.FieldRules</code> by scalar type */
+	private static final Map<String, Integer> TYPE_RULES = new HashMap<>();
+
+	static {
+		String[] scalars = { "float", "double", "int32", "int64", "uint32", "uint64", "sint32", "sint64", "fixed32", "fixed64", "sfixed32", "sfixed64", "bool",
+				"string", "bytes" };
+		for (int i = 0; i < scalars.length; i++) {
+			SCALARS.put(scalars[i], FieldDescriptorProto.Type.valueOf("TYPE_" + scalars[i].toUpperCase()));
+			TYPE_RULES.put(scalars[i], i + 1);
+		}
+	}
+
+	private final Map<String, File> files = new LinkedHashMap<>();
+
+	/**
+	 * @param key the namespace of the output file, or null for the single output file
+	 * @return the file, created on first use
+	 */
+	public File file(String key) {
+		return files.computeIfAbsent(key, k -> new File());
+	}
+
+	/**
+	 * @return the files by the namespace they were built for
+	 */
+	public Map<String, File> getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return the files, with the type names of their fields resolved
+	 */
+	public FileDescriptorSet build() {
+		Map<String, FieldDescriptorProto.Type> symbols = new HashMap<>();
+		for (File file : files.values()) {
+			String scope = file.proto.getPackage().isEmpty() ? "" : "." + file.proto.getPackage();
+			for (DescriptorProto.Builder message : file.proto.getMessageTypeBuilderList()) {
+				collect(scope, message, symbols);
+			}
+			for (EnumDescriptorProto enumeration : file.proto.getEnumTypeList()) {
+				symbols.put(scope + "." + enumeration.getName(), FieldDescriptorProto.Type.TYPE_ENUM);
+			}
+		}
+		FileDescriptorSet.Builder set = FileDescriptorSet.newBuilder();
+		for (File file : files.values()) {
+			String scope = file.proto.getPackage().isEmpty() ? "" : "." + file.proto.getPackage();
+			for (DescriptorProto.Builder message : file.proto.getMessageTypeBuilderList()) {
+				resolve(scope, message, symbols);
+			}
+			set.addFile(file.proto);
+		}
+		return set.build();
+	}
+
+	private static void collect(String scope, DescriptorProto.Builder message, Map<String, FieldDescriptorProto.Type> symbols) {
+		String name = scope + "." + message.getName();
+		symbols.put(name, FieldDescriptorProto.Type.TYPE_MESSAGE);
+		for (DescriptorProto.Builder nested : message.getNestedTypeBuilderList()) {
+			collect(name, nested, symbols);
+		}
+		for (EnumDescriptorProto enumeration : message.getEnumTypeList()) {
+			symbols.put(name + "." + enumeration.getName(), FieldDescriptorProto.Type.TYPE_ENUM);
+		}
+	}
+
+	/**
+	 * Qualifies the type names of the fields of a message, looking them up from the innermost scope outwards. Names of types outside the set, such as custom
+	 * type mappings, are left as written, for readers to resolve against the imports.
+	 */
+	private static void resolve(String scope, DescriptorProto.Builder message, Map<String, FieldDescriptorProto.Type> symbols) {
+		String name = scope + "." + message.getName();
+		for (FieldDescriptorProto.Builder field : message.getFieldBuilderList()) {
+			if (!field.hasTypeName() || field.getTypeName().startsWith(".")) {
+				continue;
+			}
+			for (String outer = name;; outer = outer.substring(0, outer.lastIndexOf('.'))) {
+				FieldDescriptorProto.Type type = symbols.get(outer + "." + field.getTypeName());
+				if (type != null) {
+					field.setTypeName(outer + "." + field.getTypeName()).setType(type);
+					break;
+				} else if (outer.isEmpty()) {
+					if (field.getTypeName().startsWith("google.protobuf.")) {
+						field.setTypeName("." + field.getTypeName()).setType(FieldDescriptorProto.Type.TYPE_MESSAGE);
+					}
+					break;
+				}
+			}
+		}
+		for (DescriptorProto.Builder nested : message.getNestedTypeBuilderList()) {
+			resolve(name, nested, symbols);
+		}
+	}
+
+	/**
+	 * An output file, built in the order of the text: messages and enumerations open and close around their fields, values and nested types.
+	 */
+	public static class File {
+		private final FileDescriptorProto.Builder proto = FileDescriptorProto.newBuilder().setSyntax("proto3");
+		private final Deque<DescriptorProto.Builder> messages = new ArrayDeque<>();
+		private EnumDescriptorProto.Builder enumeration;
+
+		/**
+		 * Sets what {@link ProtobufMarshaller#writeHeader(String)} and the imports write at the top of the file.
+		 *
+		 * @param name        the path of the file, as imported by the others
+		 * @param packageName the package, or null
+		 * @param options     file options by name, such as <code>java_package</code>, or null
+		 */
+		public void header(String name, String packageName, List<String> dependencies, Map<String, Object> options) {
+			proto.setName(name).clearDependency().addAllDependency(dependencies);
+			if (packageName != null) {
+				proto.setPackage(packageName);
+			}
+			if (options != null) {
+				FileOptions.Builder fileOptions = FileOptions.newBuilder();
+				for (Map.Entry<String, Object> option : options.entrySet()) {
+					FieldDescriptor field = FileOptions.getDescriptor().findFieldByName(option.getKey());
+					if (field == null) {
+						LOGGER.warn("Unknown file option {}, left out of the descriptor of {}", option.getKey(), name);
+					} else if (field.getJavaType() == FieldDescriptor.JavaType.BOOLEAN) {
+						fileOptions.setField(field, Boolean.valueOf(String.valueOf(option.getValue())));
+					} else if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+						EnumDescriptor values = field.getEnumType();
+						fileOptions.setField(field, values.findValueByName(String.valueOf(option.getValue())));
+					} else {
+						fileOptions.setField(field, String.valueOf(option.getValue()));
+					}
+				}
+				proto.setOptions(fileOptions);
+			}
+		}
+
+		public void startEnum(String name) {
+			enumeration = EnumDescriptorProto.newBuilder().setName(name);
+		}
+
+		public void enumValue(int number, String name) {
+			enumeration.addValue(EnumValueDescriptorProto.newBuilder().setName(name).setNumber(number));
+		}
+
+		public void endEnum() {
+			if (messages.isEmpty()) {
+				proto.addEnumType(enumeration);
+			} else {
+				messages.peek().addEnumType(enumeration);
+			}
+			enumeration = null;
+		}
+
+		public void startMessage(String name) {
+			messages.push(DescriptorProto.newBuilder().setName(name));
+		}
+
+		/**
+		 * @param type  the type as written, see {@link ProtobufMarshaller#typeName(String, boolean)}
+		 * @param rules the <code>validate.rules</code> of the field for its type as given to the marshaller, see
+		 *              {@link ProtobufMarshaller#validationRules(String, List)}, or null
+		 */
+		public void field(int number, boolean repeated, String name, String type, String rulesType, Map<String, Object> rules) {
+			FieldDescriptorProto.Builder field = FieldDescriptorProto.newBuilder()
+					.setName(name)
+					.setNumber(number)
+					.setLabel(repeated ? FieldDescriptorProto.Label.LABEL_REPEATED : FieldDescriptorProto.Label.LABEL_OPTIONAL);
+			FieldDescriptorProto.Type scalar = SCALARS.get(type);
+			if (scalar != null) {
+				field.setType(scalar);
+			} else {
+				field.setTypeName(type);
+			}
+			if (rules != null && !rules.isEmpty()) {
+				if (TYPE_RULES.containsKey(rulesType)) {
+					ByteString fieldRules = fieldRules(rulesType, rules);
+					if (repeated) {
+						fieldRules = message(REPEATED_RULES, message(REPEATED_ITEMS, fieldRules));
+					}
+					field.setOptions(FieldOptions.newBuilder().setUnknownFields(fields(VALIDATE_RULES, fieldRules)));
+				} else {
+					LOGGER.warn("No validate.rules for type {}, left out of the descriptor of field {}", rulesType, name);
+				}
+			}
+			messages.peek().addField(field);
+		}
+
+		public void endMessage() {
+			DescriptorProto.Builder message = messages.pop();
+			if (messages.isEmpty()) {
+				proto.addMessageType(message);
+			} else {
+				messages.peek().addNestedType(message);
+			}
+		}
+	}
+
+	/**
+	 * @return a <code>validate.FieldRules</code> with the rules of a scalar type
+	 */
+	private static ByteString fieldRules(String type, Map<String, Object> rules) {
+		UnknownFieldSet.Builder typeRules = UnknownFieldSet.newBuilder();
+		for (Map.Entry<String, Object> rule : rules.entrySet()) {
+			UnknownFieldSet.Field.Builder value = UnknownFieldSet.Field.newBuilder();
+			if (rule.getValue() instanceof String) {
+				value.addLengthDelimited(ByteString.copyFromUtf8((String) rule.getValue()));
+			} else {
+				long number = clamp((BigInteger) rule.getValue());
+				switch (type) {
+				case "sint32":
+				case "sint64":
+					value.addVarint(number << 1 ^ number >> 63);
+					break;
+				case "fixed32":
+				case "sfixed32":
+					value.addFixed32((int) number);
+					break;
+				case "fixed64":
+				case "sfixed64":
+					value.addFixed64(number);
+					break;
+				case "float":
+					value.addFixed32(Float.floatToIntBits(number));
+					break;
+				case "double":
+					value.addFixed64(Double.doubleToLongBits(number));
+					break;
+				default:
+					value.addVarint(number);
+				}
+			}
+			typeRules.addField(ruleNumber(type, rule.getKey()), value.build());
+		}
+		return message(TYPE_RULES.get(type), typeRules.build().toByteString());
+	}
+
+	/**
+	 * @return the field number of a rule in the <code>validate.*Rules</code> message of a type
+	 */
+	private static int ruleNumber(String type, String rule) {
+		switch (rule) {
+		case "len":
+			return "bytes".equals(type) ? 13 : 19;
+		case "min_len":
+			return 2;
+		case "max_len":
+			return 3;
+		case "pattern":
+			return "bytes".equals(type) ? 4 : 6;
+		case "lt":
+			return 2;
+		case "lte":
+			return 3;
+		case "gt":
+			return 4;
+		case "gte":
+			return 5;
+		default:
+			throw new IllegalArgumentException("Unknown rule " + rule);
+		}
+	}
+
+	/**
+	 * Bounds wider than 64 bits, from a large <code>totalDigits</code>, hold for any value.
+	 */
+	private static long clamp(BigInteger value) {
+		return value.max(BigInteger.valueOf(Long.MIN_VALUE)).min(BigInteger.valueOf(Long.MAX_VALUE)).longValue();
+	}
+
+	private static ByteString message(int number, ByteString content) {
+		return fields(number, content).toByteString();
+	}
+
+	private static UnknownFieldSet fields(int number, ByteString content) {
+		return UnknownFieldSet.newBuilder().addField(number, UnknownFieldSet.Field.newBuilder().addLengthDelimited(content).build()).build();
+	}
+}
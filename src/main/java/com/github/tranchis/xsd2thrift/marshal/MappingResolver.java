@@ -0,0 +1,213 @@
+package com.github.tranchis.xsd2thrift.marshal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Resolves a name against an ordered list of pattern/replacement rules, as used for type and name mappings.
+ *
+ * The first rule (in priority order) whose pattern matches the whole name wins, and the name is rewritten with <code>matcher.replaceAll(replacement)</code>.
+ * Custom rules take precedence over built-in rules, and within each group rules are tried in the order they were added.
+ *
+ * Results are cached per name. Literal patterns such as <code>^int$</code> are resolved with a hash lookup, and the remaining patterns are matched together in
+ * a single pass over an alternation of all of them.
+ */
+public class MappingResolver {
+
+	private static final String NO_MATCH = new String();
+
+	private final List<Rule> customRules = new ArrayList<>();
+	private final List<Rule> builtInRules = new ArrayList<>();
+	private final Map<String, String> cache = new ConcurrentHashMap<>();
+	private volatile CompiledRules compiled;
+
+	/**
+	 * Adds a built-in rule, tried after all custom rules.
+	 */
+	public synchronized void addRule(Pattern pattern, String replacement) {
+		builtInRules.add(new Rule(pattern, replacement));
+		invalidate();
+	}
+
+	/**
+	 * Adds a custom rule, tried before all built-in rules and after the custom rules added before it.
+	 */
+	public synchronized void addCustomRule(Pattern pattern, String replacement) {
+		customRules.add(new Rule(pattern, replacement));
+		invalidate();
+	}
+
+	/**
+	 * @return the rewritten name, or null if no rule matches
+	 */
+	public String resolve(String name) {
+		String result = cache.get(name);
+		if (result == null) {
+			result = compiled().resolve(name);
+			if (result == null) {
+				result = NO_MATCH;
+			}
+			cache.put(name, result);
+		}
+		return result == NO_MATCH ? null : result;
+	}
+
+	private void invalidate() {
+		compiled = null;
+		cache.clear();
+	}
+
+	private CompiledRules compiled() {
+		CompiledRules c = compiled;
+		if (c == null) {
+			synchronized (this) {
+				c = compiled;
+				if (c == null) {
+					List<Rule> rules = new ArrayList<>(customRules);
+					rules.addAll(builtInRules);
+					c = new CompiledRules(rules.toArray(new Rule[0]));
+					compiled = c;
+				}
+			}
+		}
+		return c;
+	}
+
+	private static class Rule {
+		private final Pattern pattern;
+		private final String replacement;
+
+		Rule(Pattern pattern, String replacement) {
+			this.pattern = pattern;
+			this.replacement = replacement;
+		}
+
+		String apply(String name) {
+			return pattern.matcher(name).replaceAll(replacement);
+		}
+	}
+
+	private static class CompiledRules {
+		private final Rule[] rules;
+		private final Map<String, Integer> literals = new HashMap<>();
+		private Pattern combined;
+		private int[] combinedGroups;
+		private int[] combinedRules;
+		private final int[] individualRules;
+
+		CompiledRules(Rule[] rules) {
+			this.rules = rules;
+
+			List<Integer> combinable = new ArrayList<>();
+			List<Integer> individual = new ArrayList<>();
+			for (int i = 0; i < rules.length; i++) {
+				Pattern p = rules[i].pattern;
+				String literal = literal(p);
+				if (literal != null) {
+					literals.putIfAbsent(literal, i);
+				} else if (isCombinable(p)) {
+					combinable.add(i);
+				} else {
+					individual.add(i);
+				}
+			}
+
+			if (!combinable.isEmpty()) {
+				StringBuilder alternation = new StringBuilder();
+				combinedGroups = new int[combinable.size()];
+				combinedRules = new int[combinable.size()];
+				int group = 1;
+				for (int i = 0; i < combinable.size(); i++) {
+					Pattern p = rules[combinable.get(i)].pattern;
+					if (i > 0) {
+						alternation.append('|');
+					}
+					alternation.append('(').append(p.pattern()).append(')');
+					combinedGroups[i] = group;
+					combinedRules[i] = combinable.get(i);
+					group += 1 + p.matcher("").groupCount();
+				}
+				try {
+					combined = Pattern.compile(alternation.toString());
+				} catch (PatternSyntaxException e) {
+					combined = null;
+					individual.addAll(combinable);
+					individual.sort(null);
+				}
+			}
+
+			individualRules = individual.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		String resolve(String name) {
+			int best = rules.length;
+
+			Integer literal = literals.get(name);
+			if (literal != null) {
+				best = literal;
+			}
+
+			if (combined != null) {
+				Matcher m = combined.matcher(name);
+				if (m.matches()) {
+					for (int i = 0; i < combinedGroups.length; i++) {
+						if (m.start(combinedGroups[i]) >= 0) {
+							best = Math.min(best, combinedRules[i]);
+							break;
+						}
+					}
+				}
+			}
+
+			for (int i : individualRules) {
+				if (i >= best) {
+					break;
+				}
+				if (rules[i].pattern.matcher(name).matches()) {
+					best = i;
+					break;
+				}
+			}
+
+			return best < rules.length ? rules[best].apply(name) : null;
+		}
+
+		/**
+		 * @return the only string matched by the pattern if it is a plain literal, optionally anchored, otherwise null
+		 */
+		private static String literal(Pattern p) {
+			if (p.flags() != 0) {
+				return null;
+			}
+			String s = p.pattern();
+			int start = s.startsWith("^") ? 1 : 0;
+			int end = s.endsWith("$") ? s.length() - 1 : s.length();
+			if (end < start) {
+				return null;
+			}
+			for (int i = start; i < end; i++) {
+				if ("\\.[]{}()*+?^$|".indexOf(s.charAt(i)) >= 0) {
+					return null;
+				}
+			}
+			return s.substring(start, end);
+		}
+
+		/**
+		 * Patterns with flags, back references, named groups, quoting or comments cannot safely be embedded in an alternation.
+		 */
+		private static boolean isCombinable(Pattern p) {
+			if (p.flags() != 0) {
+				return false;
+			}
+			String s = p.pattern();
+			return !s.matches("(?s).*(\\\\[0-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\\\Q|#).*");
+		}
+	}
+}
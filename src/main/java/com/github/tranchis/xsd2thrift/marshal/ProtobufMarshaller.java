@@ -23,74 +23,92 @@
  */
 package com.github.tranchis.xsd2thrift.marshal;
 
-import com.github.tranchis.xsd2thrift.NamespaceConverter;
-import com.google.common.base.CaseFormat;
-import com.sun.xml.xsom.XSFacet;
-import org.apache.commons.lang3.StringUtils;
-
+import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
+
+import com.github.tranchis.xsd2thrift.Facet;
+import com.github.tranchis.xsd2thrift.NamespaceConverter;
+import com.google.common.base.CaseFormat;
+
 public class ProtobufMarshaller {
-	private HashMap<Pattern, String> typeMapping;
-	private HashMap<Pattern, String> nameMapping;
+	/** imported by every file, for the <code>validate.rules</code> of restricted simple types */
+	public static final String VALIDATE_IMPORT = "validate/validate.proto";
+
+	private MappingResolver typeMapping;
+	private MappingResolver nameMapping;
 	private String indent = "";
 	public HashMap<String, String> imports;
 	private Map<String, Object> options;
 
 	public ProtobufMarshaller() {
-		typeMapping = new HashMap<>();
-		typeMapping.put(Pattern.compile("^positiveInteger$"), "int64");
-		typeMapping.put(Pattern.compile("^nonPositiveInteger$"), "sint64");
-		typeMapping.put(Pattern.compile("^negativeInteger$"), "sint64");
-		typeMapping.put(Pattern.compile("^nonNegativeInteger$"), "int64");
-		typeMapping.put(Pattern.compile("^int$"), "int32");
-		typeMapping.put(Pattern.compile("^integer$"), "int64");
-
-		typeMapping.put(Pattern.compile("^unsignedLong$"), "uint64");
-		typeMapping.put(Pattern.compile("^unsignedInt$"), "uint32");
-		typeMapping.put(Pattern.compile("^unsignedShort$"), "uint32"); // No 16-bit int in protobuf
-		typeMapping.put(Pattern.compile("^unsignedByte$"), "uint32"); // No 8-bit int in protobuf
-
-		typeMapping.put(Pattern.compile("^short$"), "int32"); // No 16-bit int in protobuf
-		typeMapping.put(Pattern.compile("^long$"), "int64");
-		typeMapping.put(Pattern.compile("^decimal$"), "double");
-		typeMapping.put(Pattern.compile("^ID$"), "string");
-		typeMapping.put(Pattern.compile("^Name$"), "string");
-		typeMapping.put(Pattern.compile("^IDREF$"), "string");
-		typeMapping.put(Pattern.compile("^NMTOKEN$"), "string");
-		typeMapping.put(Pattern.compile("^NMTOKENS$"), "string"); // TODO: Fix this
-		typeMapping.put(Pattern.compile("^anySimpleType$"), "string");
-		typeMapping.put(Pattern.compile("^anyType$"), "string");
-		typeMapping.put(Pattern.compile("^anyURI$"), "string");
-		typeMapping.put(Pattern.compile("^normalizedString$"), "string");
-		typeMapping.put(Pattern.compile("^boolean$"), "bool");
-		typeMapping.put(Pattern.compile("^binary$"), "bytes"); // UnspecifiedType.object is
+		typeMapping = new MappingResolver();
+		typeMapping.addRule(Pattern.compile("^positiveInteger$"), "int64");
+		typeMapping.addRule(Pattern.compile("^nonPositiveInteger$"), "sint64");
+		typeMapping.addRule(Pattern.compile("^negativeInteger$"), "sint64");
+		typeMapping.addRule(Pattern.compile("^nonNegativeInteger$"), "int64");
+		typeMapping.addRule(Pattern.compile("^int$"), "int32");
+		typeMapping.addRule(Pattern.compile("^integer$"), "int64");
+
+		typeMapping.addRule(Pattern.compile("^unsignedLong$"), "uint64");
+		typeMapping.addRule(Pattern.compile("^unsignedInt$"), "uint32");
+		typeMapping.addRule(Pattern.compile("^unsignedShort$"), "uint32"); // No 16-bit int in protobuf
+		typeMapping.addRule(Pattern.compile("^unsignedByte$"), "uint32"); // No 8-bit int in protobuf
+
+		typeMapping.addRule(Pattern.compile("^short$"), "int32"); // No 16-bit int in protobuf
+		typeMapping.addRule(Pattern.compile("^long$"), "int64");
+		typeMapping.addRule(Pattern.compile("^decimal$"), "double");
+		typeMapping.addRule(Pattern.compile("^ID$"), "string");
+		typeMapping.addRule(Pattern.compile("^Name$"), "string");
+		typeMapping.addRule(Pattern.compile("^IDREF$"), "string");
+		typeMapping.addRule(Pattern.compile("^NMTOKEN$"), "string");
+		typeMapping.addRule(Pattern.compile("^NMTOKENS$"), "string"); // TODO: Fix this
+		typeMapping.addRule(Pattern.compile("^anySimpleType$"), "string");
+		typeMapping.addRule(Pattern.compile("^anyType$"), "string");
+		typeMapping.addRule(Pattern.compile("^anyURI$"), "string");
+		typeMapping.addRule(Pattern.compile("^normalizedString$"), "string");
+		typeMapping.addRule(Pattern.compile("^boolean$"), "bool");
+		typeMapping.addRule(Pattern.compile("^binary$"), "bytes"); // UnspecifiedType.object is
 		// declared binary
-		typeMapping.put(Pattern.compile("^hexBinary$"), "bytes");
-		typeMapping.put(Pattern.compile("^base64Binary$"), "bytes");
-		typeMapping.put(Pattern.compile("^byte$"), "bytes");
-		typeMapping.put(Pattern.compile("^date$"), "int32"); // Number of days since January 1st),
+		typeMapping.addRule(Pattern.compile("^hexBinary$"), "bytes");
+		typeMapping.addRule(Pattern.compile("^base64Binary$"), "bytes");
+		typeMapping.addRule(Pattern.compile("^byte$"), "bytes");
+		typeMapping.addRule(Pattern.compile("^date$"), "int32"); // Number of days since January 1st),
 		// 1970
-		typeMapping.put(Pattern.compile("^dateTime$"), "google.protobuf.Timestamp"); // Number of milliseconds since
+		typeMapping.addRule(Pattern.compile("^dateTime$"), "google.protobuf.Timestamp"); // Number of milliseconds since
 		// January 1st), 1970
 
-		typeMapping.put(Pattern.compile("^time$"), "google.protobuf.Timestamp");
-		typeMapping.put(Pattern.compile("^duration$"), "google.protobuf.Duration");
+		typeMapping.addRule(Pattern.compile("^time$"), "google.protobuf.Timestamp");
+		typeMapping.addRule(Pattern.compile("^duration$"), "google.protobuf.Duration");
 
-		nameMapping = new HashMap<>();
+		nameMapping = new MappingResolver();
 
 		imports = new HashMap<String, String>();
 		imports.put("google.protobuf.Timestamp", "google/protobuf/timestamp");
 		imports.put("google.protobuf.Duration", "google/protobuf/duration");
 	}
 
+	private ProtobufMarshaller(ProtobufMarshaller other) {
+		typeMapping = other.typeMapping;
+		nameMapping = other.nameMapping;
+		imports = other.imports;
+		options = other.options;
+	}
+
+	/**
+	 * @return a marshaller sharing the mappings, imports and options of this one, with its own indentation
+	 */
+	public ProtobufMarshaller copy() {
+		return new ProtobufMarshaller(this);
+	}
+
 	public String writeHeader(String namespace) {
 
 		StringBuilder b = new StringBuilder();
@@ -121,7 +139,7 @@ public class ProtobufMarshaller {
 			}
 		}
 
-		b.append("import \"validate/validate.proto\";\n\n");
+		b.append("import \"" + VALIDATE_IMPORT + "\";\n\n");
 
 		return b.toString();
 	}
@@ -140,7 +158,14 @@ public class ProtobufMarshaller {
 	}
 
 	public String writeEnumValue(int order, String value) {
-		return (writeIndent() + CaseFormat.UPPER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, value) + " = " + order + ";\n");
+		return (writeIndent() + enumValueName(value) + " = " + order + ";\n");
+	}
+
+	/**
+	 * @return the name of an enumeration constant as written
+	 */
+	public String enumValueName(String value) {
+		return CaseFormat.UPPER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, value);
 	}
 
 	public String writeEnumFooter() {
@@ -155,26 +180,45 @@ public class ProtobufMarshaller {
 	}
 
 	public String writeStructParameter(int order, boolean required, boolean repeated, String name, String type, String fieldDocumentation,
-									   boolean splitByNamespace, List<XSFacet> facets) {
+			boolean splitByNamespace, List<Facet> facets) {
 		String sRequired = "";
 
 		if (fieldDocumentation != null) {
 			fieldDocumentation = fieldDocumentation.replaceAll("[\n\r\t\\s]+", " ").trim();
 		}
 
-
 		if (repeated) {
 			sRequired = "repeated ";
 		}
-		if (StringUtils.isAllUpperCase(name)) {
-			name = StringUtils.lowerCase(name);
+
+		String fieldName = fieldName(name);
+
+		String convertedType = typeName(type, splitByNamespace);
+
+		String validation = "";
+		if (facets != null && facets.size() > 0) {
+			validation = " [(validate.rules)." + ((repeated) ? "repeated.items." : "") + type + " = {";
+			validation += validationRules(type, facets).entrySet()
+					.stream()
+					.map(rule -> rule.getKey() + ": "
+							+ (rule.getValue() instanceof String ? "\"" + rule.getValue().toString().replaceAll("\\\\", "\\\\\\\\") + "\"" : rule.getValue()))
+					.collect(Collectors.joining(", "));
+			validation += "}]";
 		}
 
-		String fieldName = CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, name);
-		fieldName = fieldName.replaceAll("_i_d", "_id");
-		fieldName = fieldName.replaceAll("_m_s", "_ms");
+		if (StringUtils.isNotBlank(validation)) {
+			validation = "\t\t" + validation;
+		}
 
+		return writeIndent() + sRequired + convertedType + " " + fieldName + " = " + order + validation + ";"
+				+ (StringUtils.isNotBlank(fieldDocumentation) ? " // " + fieldDocumentation : "") + "\n";
+	}
 
+	/**
+	 * @param type the type of a field, qualified by its namespace when it is declared in another one
+	 * @return the type as written, qualified by its package when output is split by namespace
+	 */
+	public String typeName(String type, boolean splitByNamespace) {
 		String convertedType = NamespaceConverter.convertFromSchema(type);
 
 		if (imports.containsKey(type)) {
@@ -182,80 +226,100 @@ public class ProtobufMarshaller {
 		} else if (!splitByNamespace) {
 			convertedType = convertedType.substring(convertedType.lastIndexOf(".") + 1);
 		}
+		return convertedType;
+	}
 
-		String validation =  "";
-		if (facets  != null && facets.size() > 0) {
-			LinkedHashMap<String,XSFacet> consolidated = new LinkedHashMap<>();
-			for (XSFacet facet : facets) {
-				XSFacet previous = consolidated.get(facet.getName());
-				if (previous != null) {
-					switch (facet.getName()) {
-						case "maxLength":
-							if (Integer.valueOf(facet.getValue().value) < Integer.valueOf(previous.getValue().value)) {
-								consolidated.put(facet.getName(), facet);
-							}
-							break;
-						case "minLength":
-							if (Integer.valueOf(facet.getValue().value) > Integer.valueOf(previous.getValue().value)) {
-								consolidated.put(facet.getName(), facet);
-							}
-							break;
+	/**
+	 * Translates the facets of the restricted simple type of a field to <code>validate.rules</code>: the lengths and patterns of strings and bytes, and the
+	 * bounds of integers.
+	 *
+	 * @return the rules of the field by name, with {@link BigInteger} or {@link String} values
+	 * @throws UnsupportedOperationException if a facet has no rule for the type
+	 */
+	public Map<String, Object> validationRules(String type, List<Facet> facets) {
+		LinkedHashMap<String, Facet> consolidated = new LinkedHashMap<>();
+		for (Facet facet : facets) {
+			Facet previous = consolidated.get(facet.getName());
+			if (previous != null) {
+				switch (facet.getName()) {
+				case "maxLength":
+					if (Integer.valueOf(facet.getValue()) < Integer.valueOf(previous.getValue())) {
+						consolidated.put(facet.getName(), facet);
 					}
-				} else {
-					consolidated.put(facet.getName(), facet);
+					break;
+				case "minLength":
+					if (Integer.valueOf(facet.getValue()) > Integer.valueOf(previous.getValue())) {
+						consolidated.put(facet.getName(), facet);
+					}
+					break;
 				}
+			} else {
+				consolidated.put(facet.getName(), facet);
 			}
+		}
 
-			validation = " [(validate.rules)." + ((repeated) ? "repeated.items." : "") + type + " = {";
-			validation += consolidated.values().stream()
-					.map(f -> {
-						switch (f.getName()) {
-							case "length":
-								return "len: " + f.getValue();
-							case "pattern":
-								return "pattern: \"" + f.getValue().toString().replaceAll("\\\\","\\\\\\\\") + "\"";
-							case "maxLength":
-								return "max_len: " + f.getValue();
-							case "minLength":
-								return "min_len: " + f.getValue();
-							case "totalDigits":
-								int digits = Integer.parseInt(f.getValue().value);
-								switch (type) {
-									case "int64":
-										return "gte: -" + StringUtils.repeat('9', digits) + ",lte: " + StringUtils.repeat('9', digits);
-									default:
-										throw new UnsupportedOperationException("not yet supported " + f + " on " + type);
-								}
-							case "minInclusive":
-								switch (type) {
-									case "int64":
-										int value = Integer.parseInt(f.getValue().value);
-										return "gte: " + value;
-									default:
-										throw new UnsupportedOperationException("not yet supported " + f + " on " + type);
-								}
-							case "maxInclusive":
-								switch (type) {
-									case "int64":
-										int value = Integer.parseInt(f.getValue().value);
-										return "lte: " + value;
-									default:
-										throw new UnsupportedOperationException("not yet supported " + f + " on " + type);
-								}
-							default:
-								throw new UnsupportedOperationException("not yet supported" + f);
-						}
-
-					}).collect(Collectors.joining(", "));
-			validation += "}]";
+		Map<String, Object> rules = new LinkedHashMap<>();
+		for (Facet f : consolidated.values()) {
+			switch (f.getName()) {
+			case "length":
+				rules.put("len", new BigInteger(f.getValue()));
+				break;
+			case "pattern":
+				rules.put("pattern", f.getValue());
+				break;
+			case "maxLength":
+				rules.put("max_len", new BigInteger(f.getValue()));
+				break;
+			case "minLength":
+				rules.put("min_len", new BigInteger(f.getValue()));
+				break;
+			case "totalDigits":
+				int digits = Integer.parseInt(f.getValue());
+				switch (type) {
+				case "int64":
+					rules.put("gte", new BigInteger("-" + StringUtils.repeat('9', digits)));
+					rules.put("lte", new BigInteger(StringUtils.repeat('9', digits)));
+					break;
+				default:
+					throw new UnsupportedOperationException("not yet supported " + f + " on " + type);
+				}
+				break;
+			case "minInclusive":
+				switch (type) {
+				case "int64":
+					rules.put("gte", BigInteger.valueOf(Integer.parseInt(f.getValue())));
+					break;
+				default:
+					throw new UnsupportedOperationException("not yet supported " + f + " on " + type);
+				}
+				break;
+			case "maxInclusive":
+				switch (type) {
+				case "int64":
+					rules.put("lte", BigInteger.valueOf(Integer.parseInt(f.getValue())));
+					break;
+				default:
+					throw new UnsupportedOperationException("not yet supported " + f + " on " + type);
+				}
+				break;
+			default:
+				throw new UnsupportedOperationException("not yet supported" + f);
+			}
 		}
+		return rules;
+	}
 
-		if (StringUtils.isNotBlank(validation)) {
-			validation = "\t\t" + validation;
+	/**
+	 * @return the name of a field as written
+	 */
+	public String fieldName(String name) {
+		if (StringUtils.isAllUpperCase(name)) {
+			name = StringUtils.lowerCase(name);
 		}
 
-		return writeIndent() + sRequired + convertedType + " " + fieldName + " = " + order + validation + ";"
-				+ (StringUtils.isNotBlank(fieldDocumentation) ? " // " + fieldDocumentation : "") + "\n";
+		String fieldName = CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, name);
+		fieldName = fieldName.replaceAll("_i_d", "_id");
+		return fieldName.replaceAll("_m_s", "_ms");
 	}
 
 	public String writeStructFooter() {
@@ -264,25 +328,11 @@ public class ProtobufMarshaller {
 	}
 
 	public String getTypeMapping(String type) {
-		for (Pattern p : typeMapping.keySet()) {
-			Matcher m = p.matcher(type);
-			if (m.matches()) {
-				return m.replaceAll(typeMapping.get(p));
-			}
-		}
-
-		return null;
+		return typeMapping.resolve(type);
 	}
 
 	public String getNameMapping(String type) {
-		for (Pattern p : nameMapping.keySet()) {
-			Matcher m = p.matcher(type);
-			if (m.matches()) {
-				return m.replaceAll(nameMapping.get(p));
-			}
-		}
-
-		return null;
+		return nameMapping.resolve(type);
 	}
 
 	public boolean isNestedEnums() {
@@ -293,6 +343,10 @@ public class ProtobufMarshaller {
 		return true;
 	}
 
+	public void setIndentLevel(int level) {
+		indent = StringUtils.repeat("  ", level);
+	}
+
 	private void increaseIndent() {
 		indent += "  ";
 	}
@@ -308,8 +362,8 @@ public class ProtobufMarshaller {
 	public String writeInclude(String namespace) {
 		String res;
 
-		if (namespace != null && !namespace.isEmpty()) {
-			res = "import \"" + namespace + ".proto\";\n";
+		if (importPath(namespace) != null) {
+			res = "import \"" + importPath(namespace) + "\";\n";
 		} else {
 			res = "";
 		}
@@ -317,10 +371,17 @@ public class ProtobufMarshaller {
 		return res;
 	}
 
+	/**
+	 * @return the file imported for a namespace or custom import, or null if there is none
+	 */
+	public String importPath(String namespace) {
+		return namespace != null && !namespace.isEmpty() ? namespace + ".proto" : null;
+	}
+
 	public void setCustomTypeMappings(Map<Pattern, String> customTypeMappings) {
 		if (customTypeMappings != null) {
 			for (Entry<Pattern, String> entry : customTypeMappings.entrySet()) {
-				typeMapping.put(entry.getKey(), entry.getValue());
+				typeMapping.addCustomRule(entry.getKey(), entry.getValue());
 			}
 		}
 	}
@@ -328,7 +389,7 @@ public class ProtobufMarshaller {
 	public void setCustomNameMappings(Map<Pattern, String> customNameMappings) {
 		if (customNameMappings != null) {
 			for (Entry<Pattern, String> entry : customNameMappings.entrySet()) {
-				nameMapping.put(entry.getKey(), entry.getValue());
+				nameMapping.addCustomRule(entry.getKey(), entry.getValue());
 			}
 		}
 	}
@@ -344,6 +405,13 @@ public class ProtobufMarshaller {
 		this.options = options;
 	}
 
+	/**
+	 * @return the file options written in every header, or null
+	 */
+	public Map<String, Object> getOptions() {
+		return options;
+	}
+
 	public void setCustomImports(Map<String, String> customImports) {
 		this.imports.putAll(customImports);
 	}
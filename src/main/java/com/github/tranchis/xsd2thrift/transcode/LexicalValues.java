@@ -0,0 +1,364 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Parses the lexical forms of XML Schema values straight from the text buffer of the parser, without building strings: numbers, booleans and the usual forms of
+ * dates and times are read character by character, and only unusual forms (exponents or more than 15 significant digits in a double, years beyond four digits,
+ * durations) go through the JDK parsers.
+ *
+ * Values are read from <code>s[start, end)</code>, surrounding whitespace excluded. The nanoseconds of the last date, time or duration parsed are left in
+ * {@link #nanos}, so an instance is not thread-safe.
+ */
+final class LexicalValues {
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+			1e19, 1e20, 1e21, 1e22 };
+	private static final long UNSIGNED_LIMIT = Long.divideUnsigned(-1L, 10);
+
+	/** nanoseconds of the last date, time or duration parsed */
+	int nanos;
+
+	static int trimStart(CharSequence s, int start, int end) {
+		while (start < end && isWhitespace(s.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+
+	static int trimEnd(CharSequence s, int start, int end) {
+		while (end > start && isWhitespace(s.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+	}
+
+	boolean parseBoolean(CharSequence s, int start, int end) {
+		if (matches(s, start, end, "true") || matches(s, start, end, "1")) {
+			return true;
+		} else if (matches(s, start, end, "false") || matches(s, start, end, "0")) {
+			return false;
+		}
+		throw new IllegalArgumentException("not a boolean");
+	}
+
+	private static boolean matches(CharSequence s, int start, int end, String value) {
+		if (end - start != value.length()) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (s.charAt(start + i) != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	int parseInt(CharSequence s, int start, int end) {
+		long value = parseLong(s, start, end);
+		if (value != (int) value) {
+			throw new NumberFormatException("out of range");
+		}
+		return (int) value;
+	}
+
+	long parseLong(CharSequence s, int start, int end) {
+		boolean negative = false;
+		if (start < end && (s.charAt(start) == '-' || s.charAt(start) == '+')) {
+			negative = s.charAt(start) == '-';
+			start++;
+		}
+		if (start == end) {
+			throw new NumberFormatException("no digits");
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = digit(s.charAt(i));
+			// accumulated negatively, as Long.MIN_VALUE has no positive counterpart
+			if (value < (Long.MIN_VALUE + digit) / 10) {
+				throw new NumberFormatException("out of range");
+			}
+			value = value * 10 - digit;
+		}
+		if (!negative && value == Long.MIN_VALUE) {
+			throw new NumberFormatException("out of range");
+		}
+		return negative ? value : -value;
+	}
+
+	int parseUnsignedInt(CharSequence s, int start, int end) {
+		long value = parseUnsignedLong(s, start, end);
+		if (Long.compareUnsigned(value, 0xffffffffL) > 0) {
+			throw new NumberFormatException("out of range");
+		}
+		return (int) value;
+	}
+
+	long parseUnsignedLong(CharSequence s, int start, int end) {
+		if (start < end && s.charAt(start) == '+') {
+			start++;
+		}
+		if (start == end) {
+			throw new NumberFormatException("no digits");
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = digit(s.charAt(i));
+			if (Long.compareUnsigned(value, UNSIGNED_LIMIT) > 0) {
+				throw new NumberFormatException("out of range");
+			}
+			long next = value * 10 + digit;
+			if (Long.compareUnsigned(next, value * 10) < 0) {
+				throw new NumberFormatException("out of range");
+			}
+			value = next;
+		}
+		return value;
+	}
+
+	private static int digit(char c) {
+		if (c < '0' || c > '9') {
+			throw new NumberFormatException("not a digit: " + c);
+		}
+		return c - '0';
+	}
+
+	/**
+	 * Reads <code>[+-]digits[.digits]</code> with up to 15 significant digits exactly, as a double division by a power of ten is then correctly rounded;
+	 * anything else is left to {@link Double#parseDouble(String)}.
+	 */
+	double parseDouble(CharSequence s, int start, int end) {
+		if (matches(s, start, end, "INF") || matches(s, start, end, "+INF")) {
+			return Double.POSITIVE_INFINITY;
+		} else if (matches(s, start, end, "-INF")) {
+			return Double.NEGATIVE_INFINITY;
+		} else if (matches(s, start, end, "NaN")) {
+			return Double.NaN;
+		}
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+			negative = s.charAt(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean point = false;
+		boolean any = false;
+		for (; i < end; i++) {
+			char c = s.charAt(i);
+			if (c == '.' && !point) {
+				point = true;
+			} else if (c >= '0' && c <= '9') {
+				any = true;
+				if (mantissa == 0 && c == '0') {
+					// leading zeros are not significant
+					scale += point ? 1 : 0;
+					continue;
+				}
+				if (++digits > 15) {
+					break;
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				scale += point ? 1 : 0;
+			} else {
+				break;
+			}
+		}
+		if (i < end || !any || scale > 22) {
+			return Double.parseDouble(s.subSequence(start, end).toString());
+		}
+		double value = mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * <code>xs:date</code>, as days since 1970-01-01; a time zone is ignored.
+	 */
+	long parseEpochDay(CharSequence s, int start, int end) {
+		if (end - start >= 10 && isDate(s, start) && (end - start == 10 || isZone(s, start + 10, end))) {
+			return epochDay(s, start);
+		}
+		return LocalDate.parse(s.subSequence(start, end), DateTimeFormatter.ISO_DATE).toEpochDay();
+	}
+
+	/**
+	 * <code>xs:dateTime</code>, as seconds since the epoch, in UTC when it has no time zone.
+	 */
+	long parseEpochSecond(CharSequence s, int start, int end) {
+		if (end - start >= 19 && isDate(s, start) && s.charAt(start + 10) == 'T') {
+			int zone = time(s, start + 11, end);
+			if (zone >= 0 && (zone == end || isZone(s, zone, end))) {
+				return epochDay(s, start) * 86400 + secondOfDay(s, start + 11) - offsetSeconds(s, zone, end);
+			}
+		}
+		TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parse(s.subSequence(start, end));
+		Instant instant = parsed.isSupported(ChronoField.OFFSET_SECONDS) ? Instant.from(parsed) : LocalDateTime.from(parsed).toInstant(ZoneOffset.UTC);
+		nanos = instant.getNano();
+		return instant.getEpochSecond();
+	}
+
+	/**
+	 * <code>xs:time</code>, as seconds since 1970-01-01T00:00:00Z, in UTC when it has no time zone.
+	 */
+	long parseSecondOfDay(CharSequence s, int start, int end) {
+		int zone = end - start >= 8 ? time(s, start, end) : -1;
+		if (zone >= 0 && (zone == end || isZone(s, zone, end))) {
+			return secondOfDay(s, start) - offsetSeconds(s, zone, end);
+		}
+		TemporalAccessor parsed = DateTimeFormatter.ISO_TIME.parse(s.subSequence(start, end));
+		LocalTime time = LocalTime.from(parsed);
+		nanos = time.getNano();
+		return time.toSecondOfDay() - (parsed.isSupported(ChronoField.OFFSET_SECONDS) ? parsed.getLong(ChronoField.OFFSET_SECONDS) : 0);
+	}
+
+	/**
+	 * <code>xs:duration</code>, as seconds, years, months and days counted from 1970-01-01. Seconds and nanoseconds have the same sign, as in
+	 * <code>google.protobuf.Duration</code>.
+	 */
+	long parseDuration(CharSequence s, int start, int end) {
+		String value = s.subSequence(start, end).toString();
+		boolean negative = value.startsWith("-");
+		String positive = negative ? value.substring(1) : value;
+		int t = positive.indexOf('T');
+		String date = t < 0 ? positive : positive.substring(0, t);
+		java.time.Duration duration = java.time.Duration.ZERO;
+		if (date.length() > 1) {
+			duration = java.time.Duration.ofDays(LocalDate.ofEpochDay(0).plus(Period.parse(date)).toEpochDay());
+		} else if (t < 0) {
+			throw new IllegalArgumentException("empty duration");
+		}
+		if (t >= 0) {
+			duration = duration.plus(java.time.Duration.parse("P" + positive.substring(t)));
+		}
+		if (negative) {
+			duration = duration.negated();
+		}
+		long seconds = duration.getSeconds();
+		nanos = duration.getNano();
+		if (seconds < 0 && nanos > 0) {
+			seconds++;
+			nanos -= 1_000_000_000;
+		}
+		return seconds;
+	}
+
+	/**
+	 * @return true for <code>YYYY-MM-DD</code> at <code>start</code>
+	 */
+	private static boolean isDate(CharSequence s, int start) {
+		return isDigits(s, start, 4) && s.charAt(start + 4) == '-' && isDigits(s, start + 5, 2) && s.charAt(start + 7) == '-' && isDigits(s, start + 8, 2);
+	}
+
+	private static boolean isDigits(CharSequence s, int start, int count) {
+		for (int i = start; i < start + count; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int number(CharSequence s, int start, int count) {
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			value = value * 10 + s.charAt(i) - '0';
+		}
+		return value;
+	}
+
+	/**
+	 * Days since 1970-01-01 of the date at <code>start</code>, after checking it exists.
+	 */
+	private static long epochDay(CharSequence s, int start) {
+		int year = number(s, start, 4);
+		int month = number(s, start + 5, 2);
+		int day = number(s, start + 8, 2);
+		if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+			throw new IllegalArgumentException("invalid date");
+		}
+		// days from the civil calendar, counted in 400-year eras starting on March 1st
+		int y = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * Reads <code>hh:mm:ss[.fraction]</code> at <code>start</code> into {@link #nanos}.
+	 *
+	 * @return where the time ends, or -1 if it is not in that form
+	 */
+	private int time(CharSequence s, int start, int end) {
+		if (end - start < 8 || !isDigits(s, start, 2) || s.charAt(start + 2) != ':' || !isDigits(s, start + 3, 2) || s.charAt(start + 5) != ':'
+				|| !isDigits(s, start + 6, 2)) {
+			return -1;
+		}
+		if (number(s, start, 2) > 23 || number(s, start + 3, 2) > 59 || number(s, start + 6, 2) > 59) {
+			return -1;
+		}
+		nanos = 0;
+		int i = start + 8;
+		if (i < end && s.charAt(i) == '.') {
+			int scale = 100_000_000;
+			for (i++; i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+				nanos += (s.charAt(i) - '0') * scale;
+				scale /= 10;
+			}
+		}
+		return i;
+	}
+
+	private static int secondOfDay(CharSequence s, int start) {
+		return number(s, start, 2) * 3600 + number(s, start + 3, 2) * 60 + number(s, start + 6, 2);
+	}
+
+	/**
+	 * @return true for <code>Z</code> or <code>(+|-)hh:mm</code>
+	 */
+	private static boolean isZone(CharSequence s, int start, int end) {
+		if (end - start == 1) {
+			return s.charAt(start) == 'Z';
+		}
+		return end - start == 6 && (s.charAt(start) == '+' || s.charAt(start) == '-') && isDigits(s, start + 1, 2) && s.charAt(start + 3) == ':'
+				&& isDigits(s, start + 4, 2);
+	}
+
+	private static int offsetSeconds(CharSequence s, int start, int end) {
+		if (end - start != 6) {
+			return 0;
+		}
+		int offset = number(s, start + 1, 2) * 3600 + number(s, start + 4, 2) * 60;
+		return s.charAt(start) == '-' ? -offset : offset;
+	}
+}
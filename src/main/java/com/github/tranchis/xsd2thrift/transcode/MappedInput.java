@@ -0,0 +1,92 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file mapped in memory, in mappings of 1 GiB so that files beyond the 2 GiB of a single buffer can be read. The mappings are released by the garbage
+ * collector. Not thread-safe, as copies move the position of the mappings.
+ */
+final class MappedInput {
+
+	private static final int SHIFT = 30;
+	private static final long MASK = (1L << SHIFT) - 1;
+
+	private final ByteBuffer[] mappings;
+	private final long length;
+
+	MappedInput(FileChannel channel) throws IOException {
+		length = channel.size();
+		mappings = new ByteBuffer[(int) ((length + MASK) >>> SHIFT)];
+		for (int i = 0; i < mappings.length; i++) {
+			long start = (long) i << SHIFT;
+			mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << SHIFT, length - start));
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	byte get(long position) {
+		return mappings[(int) (position >>> SHIFT)].get((int) (position & MASK));
+	}
+
+	/**
+	 * Copies bytes of the file to a buffer.
+	 */
+	void copyTo(long position, int count, WireBuffer out) {
+		while (count > 0) {
+			ByteBuffer mapping = mappings[(int) (position >>> SHIFT)];
+			int offset = (int) (position & MASK);
+			int n = Math.min(count, mapping.limit() - offset);
+			// through Buffer, whose position(int) is the one a Java 8 runtime has
+			((Buffer) mapping).position(offset);
+			out.writeBytes(mapping, n);
+			position += n;
+			count -= n;
+		}
+	}
+
+	/**
+	 * ASCII bytes of the file seen as characters, for values and names to be parsed and looked up where they are.
+	 */
+	static final class Ascii implements CharSequence {
+		private MappedInput input;
+		private long offset;
+		private int length;
+
+		Ascii of(MappedInput input, long start, long end) {
+			this.input = input;
+			offset = start;
+			length = (int) (end - start);
+			return this;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) input.get(offset + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++) {
+				chars[i] = charAt(i);
+			}
+			return new String(chars);
+		}
+	}
+}
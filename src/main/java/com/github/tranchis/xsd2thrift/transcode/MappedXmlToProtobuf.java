@@ -0,0 +1,772 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+
+import com.github.tranchis.xsd2thrift.transcode.TranscodingPlan.FieldSlot;
+import com.github.tranchis.xsd2thrift.transcode.TranscodingPlan.MessagePlan;
+
+/**
+ * Transcodes XML files like {@link XmlToProtobuf}, but maps them in memory and reads their UTF-8 bytes in place instead of going through a parser: element and
+ * attribute names are looked up from the mapped bytes, values are parsed from them, and strings without character references or carriage returns are copied
+ * from the mapping into the output, as they are already UTF-8. Only values with references or non-ASCII characters to parse are decoded.
+ *
+ * The tokenizer reads the element structure of well-formed UTF-8 documents: comments, processing instructions and CDATA sections are supported, a document type
+ * declaration is skipped and only the predefined entities can be referenced, as when {@link XmlToProtobuf} runs with DTDs disabled. Errors are reported as
+ * {@link XMLStreamException}s with their line and column. Instances are not thread-safe.
+ */
+public class MappedXmlToProtobuf {
+
+	private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+	private final TranscodingPlan plan;
+	private final ValueEncoder encoder = new ValueEncoder();
+	private final MappedInput.Ascii ascii = new MappedInput.Ascii();
+	private final StringBuilder scratch = new StringBuilder();
+	private TranscodingFrame[] frames = new TranscodingFrame[16];
+	/** start and length of the name of the element at each depth */
+	private long[] nameStarts = new long[16];
+	private int[] nameLengths = new int[16];
+
+	/** the attributes of the start tag being read */
+	private int attributeCount;
+	private long[] attributeStarts = new long[8];
+	private long[] attributeLocalStarts = new long[8];
+	private long[] attributeEnds = new long[8];
+	private long[] valueStarts = new long[8];
+	private long[] valueEnds = new long[8];
+	private int[] valueFlags = new int[8];
+
+	/** namespace prefixes declared by the open elements, with whether they are bound to the XML Schema instance namespace */
+	private int prefixCount;
+	private byte[][] prefixes = new byte[8][];
+	private boolean[] instancePrefixes = new boolean[8];
+	private int[] prefixDepths = new int[8];
+
+	private Path file;
+	private MappedInput input;
+	private long position;
+	private long end;
+	private OutputStream out;
+	private int depth;
+	/** the depth of the element whose text so far is exactly the bytes from rawStart to rawEnd, or -1 */
+	private int rawDepth;
+	private long rawStart;
+	private long rawEnd;
+	private int rawFlags;
+
+	/** the bytes have no reference or carriage return to decode */
+	private static final int CLEAN = 1;
+	/** the bytes are all ASCII */
+	private static final int ASCII = 2;
+
+	public MappedXmlToProtobuf(ProtoSchema schema) {
+		this(TranscodingPlan.compile(schema));
+	}
+
+	public MappedXmlToProtobuf(TranscodingPlan plan) {
+		this.plan = plan;
+	}
+
+	/**
+	 * Transcodes a document.
+	 *
+	 * @param rootMessage the model name of the message of the root element
+	 */
+	public void transcode(Path file, String rootMessage, OutputStream out) throws XMLStreamException, IOException {
+		MessagePlan root = plan.getMessage(rootMessage);
+		if (root == null) {
+			throw new IllegalArgumentException("Unknown message " + rootMessage);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			this.file = file;
+			this.out = out;
+			input = new MappedInput(channel);
+			end = input.length();
+			position = 0;
+			depth = 0;
+			rawDepth = -1;
+			prefixCount = 0;
+			prolog();
+			run(root);
+		} finally {
+			input = null;
+			this.out = null;
+		}
+	}
+
+	/**
+	 * Reads up to the start tag of the root element.
+	 */
+	private void prolog() throws XMLStreamException, IOException {
+		if (end >= 3 && input.get(0) == (byte) 0xef && input.get(1) == (byte) 0xbb && input.get(2) == (byte) 0xbf) {
+			position = 3;
+		} else if (end >= 2 && (input.get(0) == (byte) 0xfe || input.get(0) == (byte) 0xff)) {
+			throw new IOException("Only UTF-8 documents are supported, not UTF-16");
+		}
+		StringBuilder head = new StringBuilder();
+		for (long i = position; i < Math.min(end, position + 256); i++) {
+			head.append((char) (input.get(i) & 0xff));
+		}
+		RecordScanner.checkDeclaredEncoding(head.toString());
+		while (true) {
+			skipWhitespace();
+			if (lookingAt("<?")) {
+				skipPast("?>");
+			} else if (lookingAt("<!--")) {
+				skipPast("-->");
+			} else if (lookingAt("<!DOCTYPE")) {
+				skipDoctype();
+			} else if (lookingAt("<")) {
+				position++;
+				return;
+			} else {
+				throw error(position < end ? "Content is not allowed in prolog" : "No element to transcode", position);
+			}
+		}
+	}
+
+	private void run(MessagePlan root) throws XMLStreamException, IOException {
+		TranscodingFrame frame = frame(0);
+		frame.message(root);
+		boolean empty = startTag();
+		attributes(frame);
+		if (empty && end()) {
+			return;
+		}
+		while (true) {
+			frame = frames[depth];
+			characters(frame);
+			if (position >= end) {
+				throw error("Unexpected end of document", position);
+			}
+			position++;
+			int b = read();
+			if (b == '/') {
+				endTag();
+				if (end()) {
+					return;
+				}
+			} else if (b == '!') {
+				if (lookingAt("--")) {
+					skipPast("-->");
+				} else if (lookingAt("[CDATA[")) {
+					position += 7;
+					long start = position;
+					skipPast("]]>");
+					if (frame.text != null) {
+						cdata(frame, start, position - 3);
+					}
+				} else {
+					throw error("Unexpected markup", position - 2);
+				}
+			} else if (b == '?') {
+				skipPast("?>");
+			} else {
+				position--;
+				startElement(frame);
+			}
+		}
+	}
+
+	private TranscodingFrame frame(int depth) {
+		if (depth == frames.length) {
+			frames = Arrays.copyOf(frames, depth * 2);
+			nameStarts = Arrays.copyOf(nameStarts, depth * 2);
+			nameLengths = Arrays.copyOf(nameLengths, depth * 2);
+		}
+		TranscodingFrame frame = frames[depth];
+		if (frame == null) {
+			frame = frames[depth] = new TranscodingFrame();
+		}
+		return frame;
+	}
+
+	/**
+	 * Reads character data up to the next markup, collecting it if the element has simple content.
+	 */
+	private void characters(TranscodingFrame frame) throws XMLStreamException {
+		long start = position;
+		if (frame.text == null) {
+			while (position < end && input.get(position) != '<') {
+				position++;
+			}
+			return;
+		}
+		int flags = CLEAN | ASCII;
+		for (byte b; position < end && (b = input.get(position)) != '<'; position++) {
+			if (b == '&' || b == '\r') {
+				flags &= ~CLEAN;
+			} else if (b < 0) {
+				flags &= ~ASCII;
+			}
+		}
+		collect(frame, start, position, flags, true);
+	}
+
+	/**
+	 * Collects the content of a CDATA section, in which nothing is a reference.
+	 */
+	private void cdata(TranscodingFrame frame, long start, long end) throws XMLStreamException {
+		int flags = CLEAN | ASCII;
+		for (long i = start; i < end; i++) {
+			byte b = input.get(i);
+			if (b == '\r') {
+				flags &= ~CLEAN;
+			} else if (b < 0) {
+				flags &= ~ASCII;
+			}
+		}
+		collect(frame, start, end, flags, false);
+	}
+
+	/**
+	 * Collects text, as raw bytes if it is the first text of the element and has nothing to decode.
+	 */
+	private void collect(TranscodingFrame frame, long start, long end, int flags, boolean references) throws XMLStreamException {
+		if (start == end) {
+			return;
+		} else if (rawDepth < 0 && frame.text.length() == 0 && (flags & CLEAN) != 0) {
+			rawDepth = depth;
+			rawStart = start;
+			rawEnd = end;
+			rawFlags = flags;
+		} else {
+			materialize(frame);
+			decode(start, end, references, false, frame.text);
+		}
+	}
+
+	/**
+	 * Moves the text collected as raw bytes for the current element into its builder.
+	 */
+	private void materialize(TranscodingFrame frame) throws XMLStreamException {
+		if (rawDepth == depth) {
+			rawDepth = -1;
+			decode(rawStart, rawEnd, false, false, frame.text);
+		}
+	}
+
+	private void startElement(TranscodingFrame parent) throws XMLStreamException, IOException {
+		if (rawDepth == depth && parent.text != null) {
+			materialize(parent);
+		}
+		rawDepth = -1;
+		TranscodingFrame frame = frame(++depth);
+		boolean empty = startTag();
+		if (parent.kind != TranscodingFrame.MESSAGE) {
+			// markup within a value, or within an element being skipped
+			frame.skip();
+		} else {
+			long nameStart = nameStarts[depth];
+			long nameEnd = nameStart + nameLengths[depth];
+			CharSequence localName = name(localStart(nameStart, nameEnd), nameEnd);
+			FieldSlot field = parent.message.element(localName, 0, localName.length());
+			if (field == null) {
+				throw error("Element " + localName + " is not a field of " + parent.message.name, nameStart);
+			} else if (field.kind == ValueKind.UNSUPPORTED) {
+				throw error("Field " + field.protoName + " of " + parent.message.name + " has a custom type", nameStart);
+			} else if (field.kind == ValueKind.MESSAGE) {
+				frame.message(field.message);
+				frame.field = field;
+				attributes(frame);
+			} else {
+				frame.value(field);
+			}
+		}
+		if (empty) {
+			end();
+		}
+	}
+
+	/**
+	 * Reads a start tag after its <code>&lt;</code>, recording its name and attributes and the namespace prefixes it declares.
+	 *
+	 * @return true for an empty-element tag
+	 */
+	private boolean startTag() throws XMLStreamException {
+		long start = position;
+		skipName();
+		nameStarts[depth] = start;
+		nameLengths[depth] = (int) (position - start);
+		attributeCount = 0;
+		while (true) {
+			skipWhitespace();
+			int b = read();
+			if (b == '>') {
+				return false;
+			} else if (b == '/') {
+				expect('>');
+				return true;
+			}
+			position--;
+			attribute();
+		}
+	}
+
+	private void attribute() throws XMLStreamException {
+		if (attributeCount == attributeStarts.length) {
+			int size = attributeCount * 2;
+			attributeStarts = Arrays.copyOf(attributeStarts, size);
+			attributeLocalStarts = Arrays.copyOf(attributeLocalStarts, size);
+			attributeEnds = Arrays.copyOf(attributeEnds, size);
+			valueStarts = Arrays.copyOf(valueStarts, size);
+			valueEnds = Arrays.copyOf(valueEnds, size);
+			valueFlags = Arrays.copyOf(valueFlags, size);
+		}
+		int i = attributeCount++;
+		attributeStarts[i] = position;
+		skipName();
+		attributeEnds[i] = position;
+		attributeLocalStarts[i] = localStart(attributeStarts[i], position);
+		skipWhitespace();
+		expect('=');
+		skipWhitespace();
+		int quote = read();
+		if (quote != '"' && quote != '\'') {
+			throw error("Attribute values must be quoted", position - 1);
+		}
+		valueStarts[i] = position;
+		int flags = CLEAN | ASCII;
+		for (byte b; (b = input.get(position)) != quote; position++) {
+			if (b == '<') {
+				throw error("'<' is not allowed in attribute values", position);
+			} else if (b == '&' || b == '\r' || b == '\n' || b == '\t') {
+				flags &= ~CLEAN;
+			} else if (b < 0) {
+				flags &= ~ASCII;
+			}
+			if (position + 1 == end) {
+				throw error("Unexpected end of document", end);
+			}
+		}
+		valueEnds[i] = position++;
+		valueFlags[i] = flags;
+		if (attributeLocalStarts[i] == attributeStarts[i] + 6 && lookingAt(attributeStarts[i], "xmlns:")) {
+			declare(attributeLocalStarts[i], attributeEnds[i], valueStarts[i], valueEnds[i]);
+		}
+	}
+
+	private void declare(long prefixStart, long prefixEnd, long uriStart, long uriEnd) {
+		if (prefixCount == prefixes.length) {
+			prefixes = Arrays.copyOf(prefixes, prefixCount * 2);
+			instancePrefixes = Arrays.copyOf(instancePrefixes, prefixCount * 2);
+			prefixDepths = Arrays.copyOf(prefixDepths, prefixCount * 2);
+		}
+		byte[] prefix = new byte[(int) (prefixEnd - prefixStart)];
+		for (int i = 0; i < prefix.length; i++) {
+			prefix[i] = input.get(prefixStart + i);
+		}
+		prefixes[prefixCount] = prefix;
+		instancePrefixes[prefixCount] = uriEnd - uriStart == XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.length()
+				&& lookingAt(uriStart, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+		prefixDepths[prefixCount++] = depth;
+	}
+
+	/**
+	 * @return true if the prefix of an attribute name is bound to the XML Schema instance namespace
+	 */
+	private boolean isInstanceAttribute(long nameStart, long localStart) {
+		int length = (int) (localStart - nameStart - 1);
+		for (int i = prefixCount - 1; i >= 0; i--) {
+			byte[] prefix = prefixes[i];
+			if (prefix.length == length) {
+				boolean matches = true;
+				for (int j = 0; matches && j < length; j++) {
+					matches = prefix[j] == input.get(nameStart + j);
+				}
+				if (matches) {
+					return instancePrefixes[i];
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the attributes of the start tag just read to a message.
+	 */
+	private void attributes(TranscodingFrame frame) throws XMLStreamException {
+		for (int i = 0; i < attributeCount; i++) {
+			long nameStart = attributeStarts[i];
+			long localStart = attributeLocalStarts[i];
+			if (localStart > nameStart && (lookingAt(nameStart, "xmlns:") || isInstanceAttribute(nameStart, localStart))
+					|| attributeEnds[i] - nameStart == 5 && lookingAt(nameStart, "xmlns")) {
+				continue;
+			}
+			CharSequence localName = name(localStart, attributeEnds[i]);
+			FieldSlot field = frame.message.attribute(localName, 0, localName.length());
+			if (field == null || field.kind == ValueKind.MESSAGE || field.kind == ValueKind.UNSUPPORTED) {
+				throw error("Attribute " + localName + " is not a field of " + frame.message.name, nameStart);
+			}
+			if ((valueFlags[i] & CLEAN) != 0) {
+				writeRaw(frame, field, valueStarts[i], valueEnds[i], valueFlags[i]);
+			} else {
+				scratch.setLength(0);
+				decode(valueStarts[i], valueEnds[i], true, true, scratch);
+				writeValue(frame, field, scratch, valueStarts[i]);
+			}
+		}
+	}
+
+	private void endTag() throws XMLStreamException {
+		long start = position;
+		skipName();
+		long nameStart = nameStarts[depth];
+		int length = nameLengths[depth];
+		boolean matches = position - start == length;
+		for (int i = 0; matches && i < length; i++) {
+			matches = input.get(start + i) == input.get(nameStart + i);
+		}
+		if (!matches) {
+			throw error("The end tag does not match the start tag " + name(nameStart, nameStart + length), start);
+		}
+		skipWhitespace();
+		expect('>');
+	}
+
+	/**
+	 * Completes the current element.
+	 *
+	 * @return true at the end of the root element
+	 */
+	private boolean end() throws XMLStreamException, IOException {
+		TranscodingFrame frame = frames[depth];
+		if (frame.kind == TranscodingFrame.MESSAGE) {
+			if (frame.message.text != null) {
+				writeText(frame, frame.message.text, frame);
+			}
+			frame.finish();
+		}
+		while (prefixCount > 0 && prefixDepths[prefixCount - 1] == depth) {
+			prefixes[--prefixCount] = null;
+		}
+		if (depth == 0) {
+			frame.buffer.writeTo(out);
+			frame.buffer.reset();
+			return true;
+		}
+		TranscodingFrame parent = frames[depth - 1];
+		if (frame.kind == TranscodingFrame.MESSAGE) {
+			parent.buffer.writeTag(frame.field.tag);
+			parent.buffer.writeLengthDelimited(frame.buffer);
+		} else if (frame.kind == TranscodingFrame.VALUE) {
+			writeText(parent, frame.field, frame);
+		}
+		rawDepth = -1;
+		depth--;
+		if (depth == 0 && parent.buffer.size() >= FLUSH_THRESHOLD) {
+			parent.buffer.writeTo(out);
+			parent.buffer.reset();
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the text collected for the current element.
+	 */
+	private void writeText(TranscodingFrame target, FieldSlot field, TranscodingFrame source) throws XMLStreamException {
+		if (rawDepth == depth) {
+			rawDepth = -1;
+			writeRaw(target, field, rawStart, rawEnd, rawFlags);
+		} else {
+			writeValue(target, field, source.text, position);
+		}
+	}
+
+	/**
+	 * Writes a value with nothing to decode: strings are copied, ASCII values parsed in place.
+	 */
+	private void writeRaw(TranscodingFrame target, FieldSlot field, long start, long end, int flags) throws XMLStreamException {
+		if (field.kind == ValueKind.STRING || field.kind == ValueKind.BYTES) {
+			if ((flags & ASCII) == 0) {
+				checkUtf8(start, end);
+			}
+			int length = (int) (end - start);
+			if (field.repeated || length > 0) {
+				target.buffer.writeTag(field.tag);
+				target.buffer.writeVarint(length);
+				input.copyTo(start, length, target.buffer);
+			}
+		} else if ((flags & ASCII) != 0) {
+			writeValue(target, field, ascii.of(input, start, end), start);
+		} else {
+			scratch.setLength(0);
+			decode(start, end, false, false, scratch);
+			writeValue(target, field, scratch, start);
+		}
+	}
+
+	private void writeValue(TranscodingFrame target, FieldSlot field, CharSequence text, long at) throws XMLStreamException {
+		try {
+			encoder.write(target, field, text);
+		} catch (RuntimeException e) {
+			throw error("Invalid value '" + text + "' for field " + field.protoName + ": " + e.getMessage(), at);
+		}
+	}
+
+	/**
+	 * Decodes UTF-8 bytes, normalizing line ends and, in attribute values, whitespace.
+	 *
+	 * @param references whether character and entity references are to be replaced, as outside CDATA sections
+	 */
+	private void decode(long start, long end, boolean references, boolean attribute, StringBuilder into) throws XMLStreamException {
+		for (long i = start; i < end;) {
+			int b = input.get(i) & 0xff;
+			if (b == '&' && references) {
+				i = reference(i, end, into);
+			} else if (b == '\r') {
+				into.append(attribute ? ' ' : '\n');
+				i += i + 1 < end && input.get(i + 1) == '\n' ? 2 : 1;
+			} else if (b < 0x80) {
+				into.append(attribute && (b == '\n' || b == '\t') ? ' ' : (char) b);
+				i++;
+			} else {
+				int length = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 0;
+				if (length == 0 || i + length > end) {
+					throw error("Invalid UTF-8", i);
+				}
+				int codePoint = b & (0x3f >> (length - 1));
+				for (int j = 1; j < length; j++) {
+					int next = input.get(i + j) & 0xff;
+					if ((next & 0xc0) != 0x80) {
+						throw error("Invalid UTF-8", i);
+					}
+					codePoint = codePoint << 6 | next & 0x3f;
+				}
+				into.appendCodePoint(codePoint);
+				i += length;
+			}
+		}
+	}
+
+	private void checkUtf8(long start, long end) throws XMLStreamException {
+		for (long i = start; i < end;) {
+			int b = input.get(i) & 0xff;
+			int length = b < 0x80 ? 1 : b >= 0xf8 ? 0 : b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc2 ? 2 : 0;
+			if (length == 0 || i + length > end) {
+				throw error("Invalid UTF-8", i);
+			}
+			for (int j = 1; j < length; j++) {
+				if ((input.get(i + j) & 0xc0) != 0x80) {
+					throw error("Invalid UTF-8", i);
+				}
+			}
+			i += length;
+		}
+	}
+
+	/**
+	 * Appends the character a reference stands for.
+	 *
+	 * @return the position after the reference
+	 */
+	private long reference(long start, long end, StringBuilder into) throws XMLStreamException {
+		long semicolon = start + 1;
+		while (semicolon < end && semicolon - start < 12 && input.get(semicolon) != ';') {
+			semicolon++;
+		}
+		if (semicolon == end || input.get(semicolon) != ';') {
+			throw error("Unterminated reference", start);
+		}
+		if (input.get(start + 1) == '#') {
+			boolean hexadecimal = input.get(start + 2) == 'x';
+			long digits = start + (hexadecimal ? 3 : 2);
+			if (digits == semicolon) {
+				throw error("Invalid character reference", start);
+			}
+			int codePoint = 0;
+			for (long i = digits; i < semicolon; i++) {
+				int digit = Character.digit((char) input.get(i), hexadecimal ? 16 : 10);
+				if (digit < 0) {
+					throw error("Invalid character reference", start);
+				}
+				codePoint = codePoint * (hexadecimal ? 16 : 10) + digit;
+			}
+			if (!Character.isValidCodePoint(codePoint)) {
+				throw error("Invalid character reference", start);
+			}
+			into.appendCodePoint(codePoint);
+		} else if (lookingAt(start, "&lt;")) {
+			into.append('<');
+		} else if (lookingAt(start, "&gt;")) {
+			into.append('>');
+		} else if (lookingAt(start, "&amp;")) {
+			into.append('&');
+		} else if (lookingAt(start, "&quot;")) {
+			into.append('"');
+		} else if (lookingAt(start, "&apos;")) {
+			into.append('\'');
+		} else {
+			throw error("The entity " + name(start + 1, semicolon) + " was referenced, but not declared", start);
+		}
+		return semicolon + 1;
+	}
+
+	/**
+	 * @return a name for lookup: ASCII bytes seen in place, others decoded
+	 */
+	private CharSequence name(long start, long end) throws XMLStreamException {
+		for (long i = start; i < end; i++) {
+			if (input.get(i) < 0) {
+				scratch.setLength(0);
+				decode(start, end, false, false, scratch);
+				return scratch;
+			}
+		}
+		return ascii.of(input, start, end);
+	}
+
+	private long localStart(long start, long end) {
+		for (long i = end - 1; i >= start; i--) {
+			if (input.get(i) == ':') {
+				return i + 1;
+			}
+		}
+		return start;
+	}
+
+	private void skipName() throws XMLStreamException {
+		long start = position;
+		while (position < end) {
+			byte b = input.get(position);
+			if (b == '>' || b == '/' || b == '=' || isWhitespace(b)) {
+				break;
+			}
+			position++;
+		}
+		if (position == start) {
+			throw error(position < end ? "Name expected" : "Unexpected end of document", position);
+		}
+	}
+
+	private void skipWhitespace() {
+		while (position < end && isWhitespace(input.get(position))) {
+			position++;
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+	}
+
+	private void skipPast(String terminator) throws XMLStreamException {
+		long start = position;
+		while (position < end) {
+			if (lookingAt(terminator)) {
+				position += terminator.length();
+				return;
+			}
+			position++;
+		}
+		throw error("Unterminated markup", start);
+	}
+
+	private void skipDoctype() throws XMLStreamException {
+		long start = position;
+		int brackets = 0;
+		for (; position < end; position++) {
+			byte b = input.get(position);
+			if (b == '[') {
+				brackets++;
+			} else if (b == ']') {
+				brackets--;
+			} else if (b == '>' && brackets == 0) {
+				position++;
+				return;
+			}
+		}
+		throw error("Unterminated document type declaration", start);
+	}
+
+	private boolean lookingAt(String s) {
+		return lookingAt(position, s);
+	}
+
+	private boolean lookingAt(long at, String s) {
+		if (at + s.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (input.get(at + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int read() throws XMLStreamException {
+		if (position >= end) {
+			throw error("Unexpected end of document", position);
+		}
+		return input.get(position++);
+	}
+
+	private void expect(char c) throws XMLStreamException {
+		if (read() != c) {
+			throw error("'" + c + "' expected", position - 1);
+		}
+	}
+
+	private XMLStreamException error(String message, long at) {
+		int line = 1;
+		long lineStart = 0;
+		for (long i = 0; i < at && i < end; i++) {
+			if (input.get(i) == '\n') {
+				line++;
+				lineStart = i + 1;
+			}
+		}
+		return new XMLStreamException(message, new ByteLocation(file.toUri().toString(), line, (int) (at - lineStart + 1), at));
+	}
+
+	/**
+	 * A position in a mapped file.
+	 */
+	private static final class ByteLocation implements Location {
+		private final String systemId;
+		private final int line;
+		private final int column;
+		private final long offset;
+
+		ByteLocation(String systemId, int line, int column, long offset) {
+			this.systemId = systemId;
+			this.line = line;
+			this.column = column;
+			this.offset = offset;
+		}
+
+		@Override
+		public int getLineNumber() {
+			return line;
+		}
+
+		@Override
+		public int getColumnNumber() {
+			return column;
+		}
+
+		@Override
+		public int getCharacterOffset() {
+			return (int) Math.min(offset, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public String getPublicId() {
+			return null;
+		}
+
+		@Override
+		public String getSystemId() {
+			return systemId;
+		}
+	}
+}
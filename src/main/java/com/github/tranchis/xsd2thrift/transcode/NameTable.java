@@ -0,0 +1,177 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A minimal perfect hash over a fixed set of names, built with hash and displace: names are grouped in buckets, and each bucket is given the seed that sends
+ * all its names to free slots. A lookup is two hashes and one comparison, and names can be looked up from any char sequence, so text read by the parser is
+ * matched without building a string. The names of a bucket that no seed separates, such as names sharing a hash code, are kept in a short overflow list
+ * instead.
+ */
+final class NameTable {
+
+	private static final NameTable EMPTY = new NameTable(new String[0]);
+
+	/** The seeds tried for a bucket before its names go to the overflow list. */
+	private static final int MAX_SEED = 1 << 12;
+	/** The seed of a bucket whose names are in the overflow list. */
+	private static final int OVERFLOW = -1;
+
+	private final String[] keys;
+	private final int[] values;
+	private final int[] seeds;
+	private final int slotMask;
+	private final int bucketMask;
+	private final String[] overflowKeys;
+	private final int[] overflowValues;
+
+	/**
+	 * @param names the names, mapped to their index; a repeated name keeps its first index
+	 */
+	NameTable(String[] names) {
+		int slots = Integer.highestOneBit(Math.max(1, names.length) * 2 - 1) * 2;
+		int buckets = Math.max(1, slots / 4);
+		slotMask = slots - 1;
+		bucketMask = buckets - 1;
+		keys = new String[slots];
+		values = new int[slots];
+		seeds = new int[buckets];
+
+		List<List<Integer>> byBucket = new ArrayList<>();
+		for (int b = 0; b < buckets; b++) {
+			byBucket.add(new ArrayList<>());
+		}
+		Set<String> unique = new HashSet<>();
+		for (int i = 0; i < names.length; i++) {
+			if (unique.add(names[i])) {
+				byBucket.get(bucket(names[i].hashCode())).add(i);
+			}
+		}
+		Integer[] order = new Integer[buckets];
+		for (int b = 0; b < buckets; b++) {
+			order[b] = b;
+		}
+		// the largest buckets first, while most slots are free
+		Arrays.sort(order, (a, b) -> byBucket.get(b).size() - byBucket.get(a).size());
+
+		int[] taken = new int[byBucket.isEmpty() ? 0 : byBucket.get(order[0]).size()];
+		List<Integer> overflow = new ArrayList<>();
+		for (int b : order) {
+			List<Integer> members = byBucket.get(b);
+			if (members.isEmpty()) {
+				break;
+			}
+			seeds[b] = OVERFLOW;
+			for (int seed = 1; seed <= MAX_SEED; seed++) {
+				int placed = 0;
+				for (int member : members) {
+					int slot = slot(names[member].hashCode(), seed);
+					if (keys[slot] != null || contains(taken, placed, slot)) {
+						break;
+					}
+					taken[placed++] = slot;
+				}
+				if (placed == members.size()) {
+					seeds[b] = seed;
+					for (int m = 0; m < placed; m++) {
+						keys[taken[m]] = names[members.get(m)];
+						values[taken[m]] = members.get(m);
+					}
+					break;
+				}
+			}
+			if (seeds[b] == OVERFLOW) {
+				overflow.addAll(members);
+			}
+		}
+		overflowKeys = new String[overflow.size()];
+		overflowValues = new int[overflow.size()];
+		for (int i = 0; i < overflowKeys.length; i++) {
+			overflowKeys[i] = names[overflow.get(i)];
+			overflowValues[i] = overflow.get(i);
+		}
+	}
+
+	static NameTable empty() {
+		return EMPTY;
+	}
+
+	private static boolean contains(int[] slots, int count, int slot) {
+		for (int i = 0; i < count; i++) {
+			if (slots[i] == slot) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int bucket(int hash) {
+		return mix(hash, 0) & bucketMask;
+	}
+
+	private int slot(int hash, int seed) {
+		return mix(hash, seed) & slotMask;
+	}
+
+	private static int mix(int hash, int seed) {
+		int x = hash * 0x9e3779b9 + seed * 0x85ebca6b;
+		x ^= x >>> 15;
+		x *= 0x2c1b3c6d;
+		return x ^ x >>> 12;
+	}
+
+	/**
+	 * @return the index of the name, or -1
+	 */
+	int find(String name) {
+		int hash = name.hashCode();
+		int seed = seeds[bucket(hash)];
+		if (seed == OVERFLOW) {
+			return findOverflow(name, 0, name.length());
+		}
+		int slot = slot(hash, seed);
+		String key = keys[slot];
+		return key == name || key != null && key.equals(name) ? values[slot] : -1;
+	}
+
+	/**
+	 * @return the index of the name <code>s[start, end)</code>, or -1
+	 */
+	int find(CharSequence s, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + s.charAt(i);
+		}
+		int seed = seeds[bucket(hash)];
+		if (seed == OVERFLOW) {
+			return findOverflow(s, start, end);
+		}
+		int slot = slot(hash, seed);
+		return matches(keys[slot], s, start, end) ? values[slot] : -1;
+	}
+
+	private int findOverflow(CharSequence s, int start, int end) {
+		for (int i = 0; i < overflowKeys.length; i++) {
+			if (matches(overflowKeys[i], s, start, end)) {
+				return overflowValues[i];
+			}
+		}
+		return -1;
+	}
+
+	private static boolean matches(String key, CharSequence s, int start, int end) {
+		if (key == null || key.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != s.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
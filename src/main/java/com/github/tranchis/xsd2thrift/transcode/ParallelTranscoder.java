@@ -0,0 +1,164 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Transcodes documents made of many repeated records, such as the journeys of a NeTEx <code>PublicationDelivery</code>, on several threads: the records are
+ * found by a scan of the bytes of the document, transcoded by a pool of {@link XmlToProtobuf}s, and written in document order, each message preceded by its
+ * varint length as with protobuf's <code>writeDelimitedTo</code>. Anything outside the records is ignored.
+ *
+ * Consecutive records are transcoded in batches of about 64 KiB, so that small records do not each pay for a parser and a hand-off between threads. At most
+ * <code>window</code> batches are read ahead of the one being written, so memory is bounded by the window times the size of a batch, whatever the size of the
+ * document. The input must be UTF-8.
+ */
+public class ParallelTranscoder {
+
+	private static final int BATCH_SIZE = 64 * 1024;
+
+	private final TranscodingPlan plan;
+	private final Executor executor;
+	private final int window;
+	private final Queue<XmlToProtobuf> transcoders = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Transcodes on the common fork-join pool, with two batches per core in flight.
+	 */
+	public ParallelTranscoder(TranscodingPlan plan) {
+		this(plan, ForkJoinPool.commonPool(), 2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param executor runs the transcoding of each batch of records, for instance a fork-join pool or a virtual thread per task executor
+	 * @param window   the largest number of batches in flight
+	 */
+	public ParallelTranscoder(TranscodingPlan plan, Executor executor, int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("The window must hold at least one batch");
+		}
+		this.plan = plan;
+		this.executor = executor;
+		this.window = window;
+	}
+
+	/**
+	 * Transcodes the records of a document.
+	 *
+	 * @param recordPath    the local names of the elements from the root to the records, separated by <code>/</code>
+	 * @param recordMessage the model name of the message of the records
+	 * @return the number of records written
+	 */
+	public long transcode(InputStream in, String recordPath, String recordMessage, OutputStream out) throws XMLStreamException, IOException {
+		if (plan.getMessage(recordMessage) == null) {
+			throw new IllegalArgumentException("Unknown message " + recordMessage);
+		}
+		RecordScanner scanner = new RecordScanner(in, recordPath);
+		Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>(window);
+		ByteArrayOutputStream batch = new ByteArrayOutputStream(2 * BATCH_SIZE);
+		byte[] wrapper = null;
+		int batched = 0;
+		long records = 0;
+		try {
+			for (byte[] record = scanner.next(); record != null; record = scanner.next()) {
+				if (batched > 0 && (scanner.wrapper() != wrapper || batch.size() + record.length > BATCH_SIZE)) {
+					submit(batch, records - batched + 1, batched, recordPath, recordMessage, pending, out);
+					batched = 0;
+				}
+				if (batched == 0) {
+					wrapper = scanner.wrapper();
+					batch.reset();
+					batch.write(wrapper);
+				}
+				batch.write(record);
+				batched++;
+				records++;
+			}
+			if (batched > 0) {
+				submit(batch, records - batched + 1, batched, recordPath, recordMessage, pending, out);
+			}
+			while (!pending.isEmpty()) {
+				write(pending.poll(), out);
+			}
+		} finally {
+			for (CompletableFuture<byte[]> future : pending) {
+				future.cancel(false);
+			}
+		}
+		return records;
+	}
+
+	private void submit(ByteArrayOutputStream batch, long first, int count, String recordPath, String recordMessage, Deque<CompletableFuture<byte[]>> pending,
+			OutputStream out) throws XMLStreamException, IOException {
+		if (pending.size() == window) {
+			write(pending.poll(), out);
+		}
+		batch.write(RecordScanner.WRAPPER_END);
+		byte[] xml = batch.toByteArray();
+		pending.add(CompletableFuture.supplyAsync(() -> encode(xml, first, count, recordPath, recordMessage), executor));
+	}
+
+	/**
+	 * @return the messages of a batch of records, each preceded by its length
+	 */
+	private byte[] encode(byte[] xml, long first, int count, String recordPath, String recordMessage) {
+		XmlToProtobuf transcoder = transcoders.poll();
+		if (transcoder == null) {
+			transcoder = new XmlToProtobuf(plan);
+		}
+		ByteArrayOutputStream messages = new ByteArrayOutputStream(xml.length / 2);
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		WireBuffer length = new WireBuffer(10);
+		int i = 0;
+		try {
+			XMLStreamReader reader = transcoder.createReader(new ByteArrayInputStream(xml));
+			try {
+				reader.nextTag();
+				for (; i < count; i++) {
+					reader.nextTag();
+					message.reset();
+					transcoder.transcode(reader, recordMessage, message);
+					length.reset();
+					length.writeVarint(message.size());
+					length.writeTo(messages);
+					message.writeTo(messages);
+				}
+			} finally {
+				reader.close();
+			}
+			return messages.toByteArray();
+		} catch (XMLStreamException e) {
+			throw new CompletionException(new XMLStreamException("Record " + (first + i) + " at " + recordPath + ": " + e.getMessage(), e));
+		} catch (IOException e) {
+			throw new CompletionException(e);
+		} finally {
+			transcoders.offer(transcoder);
+		}
+	}
+
+	private static void write(CompletableFuture<byte[]> future, OutputStream out) throws XMLStreamException, IOException {
+		try {
+			out.write(future.join());
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof XMLStreamException) {
+				throw (XMLStreamException) e.getCause();
+			} else if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
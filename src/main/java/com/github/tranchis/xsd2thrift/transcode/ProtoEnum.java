@@ -0,0 +1,51 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An enumeration as written to the <code>.proto</code>: the lexical values of the schema and the numbers of their constants.
+ */
+public class ProtoEnum {
+
+	private final String name;
+	private final Map<String, Integer> numbers = new LinkedHashMap<>();
+	private final Map<Integer, String> values = new HashMap<>();
+
+	public ProtoEnum(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void addValue(String value, int number) {
+		numbers.put(value, number);
+		values.put(number, value);
+	}
+
+	/**
+	 * @return the lexical values, in the order of their constants
+	 */
+	public List<String> getValues() {
+		return new ArrayList<>(numbers.keySet());
+	}
+
+	/**
+	 * @return the number of the constant for a lexical value, or null if the value is not enumerated
+	 */
+	public Integer getNumber(String value) {
+		return numbers.get(value);
+	}
+
+	/**
+	 * @return the lexical value of a constant, or null for the unspecified constant or an unknown number
+	 */
+	public String getValue(int number) {
+		return values.get(number);
+	}
+}
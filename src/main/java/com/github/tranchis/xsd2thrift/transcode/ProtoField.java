@@ -0,0 +1,135 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+/**
+ * A field as written to the <code>.proto</code>, with the element or attribute it is read from.
+ */
+public class ProtoField {
+
+	/**
+	 * What a field is read from.
+	 */
+	public enum Form {
+		ELEMENT,
+		ATTRIBUTE,
+		/** the simple content of the element of the message */
+		TEXT
+	}
+
+	private final int number;
+	private final String xmlNamespace;
+	private final String xmlName;
+	private final Form form;
+	private final String protoName;
+	private final ValueKind kind;
+	private final boolean repeated;
+	private final boolean required;
+	private final String typeName;
+	private final int index;
+	private final int packedIndex;
+	private ProtoMessage message;
+	private ProtoEnum enumeration;
+
+	ProtoField(int number, String xmlNamespace, String xmlName, Form form, String protoName, ValueKind kind, boolean repeated, boolean required,
+			String typeName, int index, int packedIndex) {
+		this.number = number;
+		this.xmlNamespace = xmlNamespace != null ? xmlNamespace : "";
+		this.xmlName = xmlName;
+		this.form = form;
+		this.protoName = protoName;
+		this.kind = kind;
+		this.repeated = repeated;
+		this.required = required;
+		this.typeName = typeName;
+		this.index = index;
+		this.packedIndex = packedIndex;
+	}
+
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return the namespace URI of the element or attribute, empty if it is unqualified
+	 */
+	public String getXmlNamespace() {
+		return xmlNamespace;
+	}
+
+	/**
+	 * @return the local name of the element or attribute
+	 */
+	public String getXmlName() {
+		return xmlName;
+	}
+
+	public Form getForm() {
+		return form;
+	}
+
+	public String getProtoName() {
+		return protoName;
+	}
+
+	public ValueKind getKind() {
+		return kind;
+	}
+
+	public boolean isRepeated() {
+		return repeated;
+	}
+
+	/**
+	 * @return true if the schema requires the element
+	 */
+	public boolean isRequired() {
+		return required;
+	}
+
+	/**
+	 * @return the model name of the message or enumeration type, or null for other kinds
+	 */
+	public String getTypeName() {
+		return typeName;
+	}
+
+	/**
+	 * @return the message type, for {@link ValueKind#MESSAGE} fields
+	 */
+	public ProtoMessage getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return the enumeration type, for {@link ValueKind#ENUM} fields
+	 */
+	public ProtoEnum getEnumeration() {
+		return enumeration;
+	}
+
+	/**
+	 * @return the position of the field in its message
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the index of the field among the packed fields of its message, or -1 if it is not packed
+	 */
+	int getPackedIndex() {
+		return packedIndex;
+	}
+
+	void setMessage(ProtoMessage message) {
+		this.message = message;
+	}
+
+	void setEnumeration(ProtoEnum enumeration) {
+		this.enumeration = enumeration;
+	}
+
+	@Override
+	public String toString() {
+		return protoName + " = " + number;
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message as written to the <code>.proto</code>, with its fields looked up by the local name of their element or attribute.
+ */
+public class ProtoMessage {
+
+	private final String name;
+	private final String namespace;
+	private final List<ProtoField> fields = new ArrayList<>();
+	private final Map<String, ProtoField> byXmlName = new HashMap<>();
+	private final List<ProtoField> packed = new ArrayList<>();
+	private ProtoField[] byNumber = new ProtoField[8];
+	private ProtoField textField;
+
+	public ProtoMessage(String name, String namespace) {
+		this.name = name;
+		this.namespace = namespace;
+	}
+
+	/**
+	 * @return the name of the message in the model, before name mappings and escaping
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public String getNamespace() {
+		return namespace;
+	}
+
+	/**
+	 * Adds a field, in the order of the <code>.proto</code>.
+	 *
+	 * @param xmlNamespace the namespace URI of the element or attribute, empty or null if it is unqualified
+	 * @param typeName     the model name of the message or enumeration type, null for other kinds
+	 */
+	public ProtoField addField(int number, String xmlNamespace, String xmlName, ProtoField.Form form, String protoName, ValueKind kind, boolean repeated,
+			boolean required, String typeName) {
+		ProtoField field = new ProtoField(number, xmlNamespace, xmlName, form, protoName, kind, repeated, required, typeName, fields.size(),
+				repeated && kind.isPackable() ? packed.size() : -1);
+		fields.add(field);
+		byXmlName.putIfAbsent(xmlName, field);
+		if (number >= byNumber.length) {
+			byNumber = Arrays.copyOf(byNumber, Math.max(number + 1, byNumber.length * 2));
+		}
+		byNumber[number] = field;
+		if (field.getPackedIndex() >= 0) {
+			packed.add(field);
+		}
+		if (form == ProtoField.Form.TEXT) {
+			textField = field;
+		}
+		return field;
+	}
+
+	public List<ProtoField> getFields() {
+		return Collections.unmodifiableList(fields);
+	}
+
+	/**
+	 * @return the field read from the element or attribute with that local name, or null
+	 */
+	public ProtoField getField(String xmlName) {
+		return byXmlName.get(xmlName);
+	}
+
+	/**
+	 * @return the field with that number, or null
+	 */
+	public ProtoField getField(int number) {
+		return number > 0 && number < byNumber.length ? byNumber[number] : null;
+	}
+
+	/**
+	 * @return the field holding the simple content of the element, or null
+	 */
+	public ProtoField getTextField() {
+		return textField;
+	}
+
+	int getPackedCount() {
+		return packed.size();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
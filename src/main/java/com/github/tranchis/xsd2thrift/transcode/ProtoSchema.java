@@ -0,0 +1,83 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The messages and enumerations of a conversion as written to the <code>.proto</code> files: field names and numbers, enumeration constants, and how values are
+ * encoded. Built by {@link com.github.tranchis.xsd2thrift.XSDParser#getProtoSchema()} from the same resolution as the output, and shared by the transcoders.
+ *
+ * Immutable once {@link #link()} has been called, and then safe to share between threads.
+ */
+public class ProtoSchema {
+
+	private final Map<String, ProtoMessage> messages = new LinkedHashMap<>();
+	private final Map<String, ProtoEnum> enums = new LinkedHashMap<>();
+	private final Set<String> xmlNamespaces = new LinkedHashSet<>();
+
+	public ProtoMessage addMessage(ProtoMessage message) {
+		messages.put(message.getName(), message);
+		return message;
+	}
+
+	public ProtoEnum addEnum(ProtoEnum enumeration) {
+		enums.put(enumeration.getName(), enumeration);
+		return enumeration;
+	}
+
+	/**
+	 * Resolves the message and enumeration types of the fields.
+	 *
+	 * @throws IllegalStateException if a type is missing
+	 */
+	public ProtoSchema link() {
+		for (ProtoMessage message : messages.values()) {
+			for (ProtoField field : message.getFields()) {
+				if (!field.getXmlNamespace().isEmpty()) {
+					xmlNamespaces.add(field.getXmlNamespace());
+				}
+				if (field.getKind() == ValueKind.MESSAGE) {
+					field.setMessage(require(messages, field));
+				} else if (field.getKind() == ValueKind.ENUM) {
+					field.setEnumeration(require(enums, field));
+				}
+			}
+		}
+		return this;
+	}
+
+	private static <T> T require(Map<String, T> types, ProtoField field) {
+		T type = types.get(field.getTypeName());
+		if (type == null) {
+			throw new IllegalStateException("Type " + field.getTypeName() + " of field " + field.getProtoName() + " is not declared");
+		}
+		return type;
+	}
+
+	/**
+	 * @param name the name of the message in the model
+	 * @return the message, or null
+	 */
+	public ProtoMessage getMessage(String name) {
+		return messages.get(name);
+	}
+
+	public Collection<ProtoMessage> getMessages() {
+		return Collections.unmodifiableCollection(messages.values());
+	}
+
+	public ProtoEnum getEnum(String name) {
+		return enums.get(name);
+	}
+
+	/**
+	 * @return the namespace URIs of the qualified elements and attributes
+	 */
+	public Set<String> getXmlNamespaces() {
+		return Collections.unmodifiableSet(xmlNamespaces);
+	}
+}
@@ -0,0 +1,481 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes the protobuf binary encoding of a generated message back as an XML instance of the schema, the inverse of {@link XmlToProtobuf}.
+ *
+ * Fields are written as the elements and attributes they were read from, with their namespaces and the lexical values of enumerations; the unspecified constant
+ * and unknown fields are left out. Attributes are written first and elements in the order of the schema, whatever the order of the fields on the wire, and
+ * required singular elements left out as proto3 defaults are written with their default value.
+ *
+ * The encoded message is read in memory, which is its compact form, and the XML streamed out: each nesting level keeps an index of the positions of its fields,
+ * reused from one message to the next. Instances are not thread-safe: use one per thread, over a shared {@link ProtoSchema}.
+ */
+public class ProtobufToXml {
+
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ISO_LOCAL_TIME;
+
+	private final ProtoSchema schema;
+	private final Map<String, String> prefixes = new LinkedHashMap<>();
+	private Level[] levels = new Level[16];
+	private byte[] data;
+	private int pos;
+
+	public ProtobufToXml(ProtoSchema schema) {
+		this.schema = schema;
+		// xml:lang and the like are bound without a declaration
+		prefixes.put(XMLConstants.XML_NS_URI, XMLConstants.XML_NS_PREFIX);
+		for (String namespace : schema.getXmlNamespaces()) {
+			prefixes.putIfAbsent(namespace, "ns" + (prefixes.size() - 1));
+		}
+	}
+
+	/**
+	 * Writes a document.
+	 *
+	 * @param message the model name of the message
+	 * @param element the name of the root element
+	 */
+	public void transcode(InputStream in, String message, QName element, XMLStreamWriter out) throws IOException, XMLStreamException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+			bytes.write(buffer, 0, n);
+		}
+		out.writeStartDocument();
+		transcode(bytes.toByteArray(), message, element, out);
+		out.writeEndDocument();
+		out.flush();
+	}
+
+	/**
+	 * Writes a message as an element, declaring the namespaces of the schema on it.
+	 *
+	 * @param message the model name of the message
+	 * @param element the name of the element
+	 */
+	public void transcode(byte[] encoded, String message, QName element, XMLStreamWriter out) throws IOException, XMLStreamException {
+		ProtoMessage root = schema.getMessage(message);
+		if (root == null) {
+			throw new IllegalArgumentException("Unknown message " + message);
+		}
+		data = encoded;
+		try {
+			String namespace = element.getNamespaceURI();
+			if (namespace.isEmpty()) {
+				out.writeStartElement(element.getLocalPart());
+			} else {
+				prefixes.computeIfAbsent(namespace, ns -> "ns" + (prefixes.size() - 1));
+				out.writeStartElement(prefixes.get(namespace), element.getLocalPart(), namespace);
+			}
+			for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+				if (!XMLConstants.XML_NS_URI.equals(prefix.getKey())) {
+					out.writeNamespace(prefix.getValue(), prefix.getKey());
+				}
+			}
+			writeMessage(root, 0, encoded.length, 0, out);
+			out.writeEndElement();
+		} finally {
+			data = null;
+		}
+	}
+
+	/**
+	 * Writes the attributes, content and child elements of a message encoded in <code>data[start, end)</code>.
+	 */
+	private void writeMessage(ProtoMessage message, int start, int end, int depth, XMLStreamWriter out) throws IOException, XMLStreamException {
+		List<ProtoField> fields = message.getFields();
+		Level level = level(depth, fields.size());
+		index(message, start, end, level);
+
+		for (int i = 0; i < fields.size(); i++) {
+			ProtoField field = fields.get(i);
+			if (field.getForm() == ProtoField.Form.ATTRIBUTE && level.count(i) > 0) {
+				// the last value wins, as when merging
+				String value = scalar(field, level.wireType(level.last(i)), level.offset(level.last(i)));
+				if (value != null) {
+					if (field.getXmlNamespace().isEmpty()) {
+						out.writeAttribute(field.getXmlName(), value);
+					} else {
+						out.writeAttribute(prefixes.get(field.getXmlNamespace()), field.getXmlNamespace(), field.getXmlName(), value);
+					}
+				}
+			}
+		}
+
+		ProtoField text = message.getTextField();
+		if (text != null) {
+			int i = text.getIndex();
+			String value = level.count(i) > 0 ? scalar(text, level.wireType(level.last(i)), level.offset(level.last(i))) : defaultValue(text);
+			if (value != null) {
+				out.writeCharacters(value);
+			}
+		}
+
+		for (int i = 0; i < fields.size(); i++) {
+			ProtoField field = fields.get(i);
+			if (field.getForm() != ProtoField.Form.ELEMENT) {
+				continue;
+			}
+			if (level.count(i) == 0) {
+				String value = field.isRequired() && !field.isRepeated() ? defaultValue(field) : null;
+				if (value != null) {
+					startElement(field, out);
+					out.writeCharacters(value);
+					out.writeEndElement();
+				}
+				continue;
+			}
+			for (int o = level.first(i); o < level.first(i) + level.count(i); o++) {
+				int occurrence = level.sorted[o];
+				int wireType = level.wireType(occurrence);
+				pos = level.offset(occurrence);
+				if (field.getKind() == ValueKind.MESSAGE) {
+					int length = (int) readVarint();
+					startElement(field, out);
+					writeMessage(field.getMessage(), pos, pos + length, depth + 1, out);
+					out.writeEndElement();
+				} else if (wireType == WireFormat.LENGTH_DELIMITED && field.getKind().isPackable()) {
+					int length = (int) readVarint();
+					int packedEnd = pos + length;
+					while (pos < packedEnd) {
+						writeElement(field, scalar(field, field.getKind().getWireType(), pos), out);
+					}
+				} else {
+					writeElement(field, scalar(field, wireType, pos), out);
+				}
+			}
+		}
+	}
+
+	private void startElement(ProtoField field, XMLStreamWriter out) throws XMLStreamException {
+		if (field.getXmlNamespace().isEmpty()) {
+			out.writeStartElement(field.getXmlName());
+		} else {
+			out.writeStartElement(prefixes.get(field.getXmlNamespace()), field.getXmlName(), field.getXmlNamespace());
+		}
+	}
+
+	private void writeElement(ProtoField field, String value, XMLStreamWriter out) throws XMLStreamException {
+		if (value != null) {
+			startElement(field, out);
+			out.writeCharacters(value);
+			out.writeEndElement();
+		}
+	}
+
+	/**
+	 * Records where each field of the message is, grouped by field in the order of the <code>.proto</code>.
+	 */
+	private void index(ProtoMessage message, int start, int end, Level level) throws IOException {
+		pos = start;
+		while (pos < end) {
+			long tag = readVarint();
+			int number = (int) (tag >>> 3);
+			int wireType = (int) (tag & 7);
+			ProtoField field = message.getField(number);
+			if (field != null) {
+				level.add(field.getIndex(), wireType, pos);
+			}
+			skip(wireType);
+		}
+		if (pos != end) {
+			throw new IOException("Truncated message " + message.getName() + " at offset " + end);
+		}
+		level.sort();
+	}
+
+	private void skip(int wireType) throws IOException {
+		switch (wireType) {
+		case WireFormat.VARINT:
+			readVarint();
+			break;
+		case WireFormat.FIXED64:
+			pos += 8;
+			break;
+		case WireFormat.LENGTH_DELIMITED:
+			int length = (int) readVarint();
+			pos += length;
+			break;
+		case WireFormat.FIXED32:
+			pos += 4;
+			break;
+		default:
+			throw new IOException("Unsupported wire type " + wireType + " at offset " + pos);
+		}
+		if (pos > data.length) {
+			throw new IOException("Truncated input");
+		}
+	}
+
+	/**
+	 * Reads the value at <code>offset</code>, leaving {@link #pos} after it.
+	 *
+	 * @return its lexical form, or null for the unspecified or an unknown constant of an enumeration
+	 */
+	private String scalar(ProtoField field, int wireType, int offset) throws IOException {
+		pos = offset;
+		ValueKind kind = field.getKind();
+		if (wireType != kind.getWireType()) {
+			throw new IOException("Field " + field.getProtoName() + " has wire type " + wireType + " at offset " + offset);
+		}
+		if (kind.isPackable()) {
+			long value = wireType == WireFormat.FIXED32 ? readFixed32() & 0xffffffffL : wireType == WireFormat.FIXED64 ? readFixed64() : readVarint();
+			return lexical(field, value);
+		}
+
+		int length = (int) readVarint();
+		int start = pos;
+		pos += length;
+		if (pos > data.length) {
+			throw new IOException("Truncated input");
+		}
+		switch (kind) {
+		case STRING:
+		case BYTES:
+			return new String(data, start, length, StandardCharsets.UTF_8);
+		case BASE64_BINARY:
+			return Base64.getEncoder().encodeToString(Arrays.copyOfRange(data, start, pos));
+		case HEX_BINARY:
+			StringBuilder hex = new StringBuilder(length * 2);
+			for (int i = start; i < pos; i++) {
+				hex.append(Character.toUpperCase(Character.forDigit(data[i] >> 4 & 0xf, 16)));
+				hex.append(Character.toUpperCase(Character.forDigit(data[i] & 0xf, 16)));
+			}
+			return hex.toString();
+		case BYTE:
+			return length > 0 ? Byte.toString(data[start]) : "0";
+		case TIMESTAMP:
+		case TIME:
+		case DURATION:
+			long seconds = 0;
+			int nanos = 0;
+			int end = pos;
+			pos = start;
+			while (pos < end) {
+				long tag = readVarint();
+				if (tag == WireFormat.tag(1, WireFormat.VARINT)) {
+					seconds = readVarint();
+				} else if (tag == WireFormat.tag(2, WireFormat.VARINT)) {
+					nanos = (int) readVarint();
+				} else {
+					skip((int) (tag & 7));
+				}
+			}
+			return seconds(kind, seconds, nanos);
+		default:
+			throw new IOException("Field " + field.getProtoName() + " has a custom type");
+		}
+	}
+
+	private static String lexical(ProtoField field, long value) {
+		switch (field.getKind()) {
+		case BOOL:
+			return value != 0 ? "true" : "false";
+		case INT32:
+		case SFIXED32:
+			return Integer.toString((int) value);
+		case INT64:
+		case SFIXED64:
+			return Long.toString(value);
+		case UINT32:
+		case FIXED32:
+			return Integer.toUnsignedString((int) value);
+		case UINT64:
+		case FIXED64:
+			return Long.toUnsignedString(value);
+		case SINT32:
+			int i = (int) value;
+			return Integer.toString(i >>> 1 ^ -(i & 1));
+		case SINT64:
+			return Long.toString(value >>> 1 ^ -(value & 1));
+		case FLOAT:
+			return xsdDouble(Float.intBitsToFloat((int) value), Float.toString(Float.intBitsToFloat((int) value)));
+		case DOUBLE:
+			return xsdDouble(Double.longBitsToDouble(value), Double.toString(Double.longBitsToDouble(value)));
+		case DECIMAL:
+			return BigDecimal.valueOf(Double.longBitsToDouble(value)).stripTrailingZeros().toPlainString();
+		case DATE:
+			return LocalDate.ofEpochDay((int) value).toString();
+		case ENUM:
+			return field.getEnumeration().getValue((int) value);
+		default:
+			throw new IllegalStateException(field.getKind().name());
+		}
+	}
+
+	private static String xsdDouble(double value, String lexical) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		} else if (Double.isInfinite(value)) {
+			return value > 0 ? "INF" : "-INF";
+		}
+		return lexical;
+	}
+
+	private static String seconds(ValueKind kind, long seconds, int nanos) {
+		if (kind == ValueKind.TIMESTAMP) {
+			return Instant.ofEpochSecond(seconds, nanos).toString();
+		} else if (kind == ValueKind.TIME) {
+			return LocalTime.ofSecondOfDay(Math.floorMod(seconds, 86400L)).withNano(nanos).format(TIME) + "Z";
+		}
+		BigDecimal total = BigDecimal.valueOf(seconds).add(BigDecimal.valueOf(nanos, 9));
+		return (total.signum() < 0 ? "-PT" : "PT") + total.abs().stripTrailingZeros().toPlainString() + "S";
+	}
+
+	/**
+	 * @return the lexical form of the proto3 default of a scalar field, or null if it has none
+	 */
+	private static String defaultValue(ProtoField field) {
+		switch (field.getKind()) {
+		case STRING:
+		case BYTES:
+		case BASE64_BINARY:
+		case HEX_BINARY:
+			return "";
+		case BYTE:
+			return "0";
+		case MESSAGE:
+		case TIMESTAMP:
+		case TIME:
+		case DURATION:
+		case UNSUPPORTED:
+			return null;
+		default:
+			return lexical(field, 0);
+		}
+	}
+
+	private long readVarint() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (pos >= data.length) {
+				throw new IOException("Truncated input");
+			}
+			byte b = data[pos++];
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint at offset " + pos);
+	}
+
+	private int readFixed32() throws IOException {
+		if (pos + 4 > data.length) {
+			throw new IOException("Truncated input");
+		}
+		int value = data[pos] & 0xff | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff) << 16 | (data[pos + 3] & 0xff) << 24;
+		pos += 4;
+		return value;
+	}
+
+	private long readFixed64() throws IOException {
+		return readFixed32() & 0xffffffffL | (long) readFixed32() << 32;
+	}
+
+	private Level level(int depth, int fieldCount) {
+		if (depth == levels.length) {
+			levels = Arrays.copyOf(levels, depth * 2);
+		}
+		Level level = levels[depth];
+		if (level == null) {
+			level = levels[depth] = new Level();
+		}
+		level.reset(fieldCount);
+		return level;
+	}
+
+	/**
+	 * The positions of the fields of the message being written at some depth, grouped by field with a counting sort.
+	 */
+	private static class Level {
+		/** field index, wire type and offset of each occurrence, in wire order */
+		private int[] occurrences = new int[48];
+		private int size;
+		/** occurrences grouped by field, then in wire order */
+		private int[] sorted = new int[16];
+		/** per field, the number of occurrences, then where they start in sorted */
+		private int[] counts = new int[16];
+		private int[] starts = new int[16];
+		private int[] next = new int[16];
+		private int fields;
+
+		void reset(int fieldCount) {
+			size = 0;
+			fields = fieldCount;
+			if (counts.length < fieldCount) {
+				counts = new int[fieldCount];
+				starts = new int[fieldCount];
+				next = new int[fieldCount];
+			} else {
+				Arrays.fill(counts, 0, fieldCount, 0);
+			}
+		}
+
+		void add(int field, int wireType, int offset) {
+			if (size * 3 == occurrences.length) {
+				occurrences = Arrays.copyOf(occurrences, occurrences.length * 2);
+			}
+			occurrences[size * 3] = field;
+			occurrences[size * 3 + 1] = wireType;
+			occurrences[size * 3 + 2] = offset;
+			counts[field]++;
+			size++;
+		}
+
+		void sort() {
+			int start = 0;
+			for (int i = 0; i < fields; i++) {
+				starts[i] = start;
+				next[i] = start;
+				start += counts[i];
+			}
+			if (sorted.length < size) {
+				sorted = new int[occurrences.length / 3];
+			}
+			for (int o = 0; o < size; o++) {
+				sorted[next[occurrences[o * 3]]++] = o;
+			}
+		}
+
+		int count(int field) {
+			return counts[field];
+		}
+
+		int first(int field) {
+			return starts[field];
+		}
+
+		int last(int field) {
+			return sorted[starts[field] + counts[field] - 1];
+		}
+
+		int wireType(int occurrence) {
+			return occurrences[occurrence * 3 + 1];
+		}
+
+		int offset(int occurrence) {
+			return occurrences[occurrence * 3 + 2];
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a UTF-8 XML document into the elements found at a path of local names, such as <code>PublicationDelivery/dataObjects/...</code>, by scanning its bytes
+ * for markup rather than parsing it: comments, CDATA sections, processing instructions and quoted attribute values are skipped, everything else is left to the
+ * parser of each record.
+ *
+ * Records are returned as they are in the document; to be parsed, they are wrapped in {@link #wrapper()}, an element declaring the namespaces their ancestors
+ * declared so that their prefixes still resolve, and {@link #WRAPPER_END}. Only one record is held at a time.
+ */
+final class RecordScanner {
+
+	private static final int TEXT = 0;
+	private static final int MARKUP = 1;
+	private static final int START_NAME = 2;
+	private static final int START_TAG = 3;
+	private static final int ATTRIBUTE_VALUE = 4;
+	private static final int END_TAG = 5;
+	private static final int BANG = 6;
+	private static final int COMMENT = 7;
+	private static final int CDATA = 8;
+	private static final int DECLARATION = 9;
+	private static final int PROCESSING_INSTRUCTION = 10;
+
+	private static final Pattern NAMESPACE = Pattern.compile("\\s(xmlns(?::[^\\s=]+)?)\\s*=\\s*(\"[^\"]*\"|'[^']*')");
+	private static final Pattern ENCODING = Pattern.compile("^<\\?xml[^>]*encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+	static final byte[] WRAPPER_END = "</_>".getBytes(StandardCharsets.UTF_8);
+
+	private final InputStream in;
+	private final byte[][] path;
+	private final List<Map<String, String>> declarations = new ArrayList<>();
+	private final byte[] buffer = new byte[64 * 1024];
+	private int position;
+	private int limit;
+	private boolean started;
+
+	private int state = TEXT;
+	private int depth;
+	/** how many elements of the path the open elements match */
+	private int matched;
+	private boolean candidate;
+	private boolean capturing;
+	private byte[] captured = new byte[4096];
+	private int capturedLength;
+	private byte[] name = new byte[64];
+	private int nameLength;
+	private byte quote;
+	private boolean slash;
+	private int count;
+	private byte[] wrapperTag;
+	private byte[] record;
+
+	/**
+	 * @param path the local names of the elements from the root to the records, separated by <code>/</code>
+	 */
+	RecordScanner(InputStream in, String path) {
+		this.in = in;
+		String[] names = path.replaceAll("^/+|/+$", "").split("/+");
+		this.path = new byte[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			this.path[i] = names[i].getBytes(StandardCharsets.UTF_8);
+			if (i < names.length - 1) {
+				declarations.add(new LinkedHashMap<>());
+			}
+		}
+	}
+
+	/**
+	 * @return the next record, or null at the end of the document
+	 */
+	byte[] next() throws IOException {
+		while (true) {
+			if (position == limit && !fill()) {
+				if (capturing) {
+					throw new IOException("Unexpected end of document within a record");
+				}
+				return null;
+			}
+			scan(buffer[position++]);
+			if (record != null) {
+				byte[] next = record;
+				record = null;
+				return next;
+			}
+		}
+	}
+
+	private boolean fill() throws IOException {
+		limit = in.read(buffer);
+		position = 0;
+		if (limit <= 0) {
+			limit = 0;
+			return false;
+		}
+		if (!started) {
+			started = true;
+			checkEncoding();
+		}
+		return true;
+	}
+
+	private void checkEncoding() throws IOException {
+		if (limit >= 2 && (buffer[0] == (byte) 0xfe && buffer[1] == (byte) 0xff || buffer[0] == (byte) 0xff && buffer[1] == (byte) 0xfe)) {
+			throw new IOException("Only UTF-8 documents are supported, not UTF-16");
+		}
+		if (limit >= 3 && buffer[0] == (byte) 0xef && buffer[1] == (byte) 0xbb && buffer[2] == (byte) 0xbf) {
+			position = 3;
+		}
+		checkDeclaredEncoding(new String(buffer, position, Math.min(limit - position, 256), StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Checks the encoding of the XML declaration, if any, at the start of a document.
+	 */
+	static void checkDeclaredEncoding(String head) throws IOException {
+		Matcher encoding = ENCODING.matcher(head);
+		if (encoding.find() && !encoding.group(1).equalsIgnoreCase("UTF-8") && !encoding.group(1).equalsIgnoreCase("US-ASCII")) {
+			throw new IOException("Only UTF-8 documents are supported, not " + encoding.group(1));
+		}
+	}
+
+	private void scan(byte b) {
+		if (capturing) {
+			capture(b);
+		}
+		switch (state) {
+		case TEXT:
+			if (b == '<') {
+				state = MARKUP;
+				candidate = !capturing && matched == depth && depth < path.length;
+				if (candidate) {
+					capturing = true;
+					capturedLength = 0;
+					capture(b);
+				}
+			}
+			break;
+		case MARKUP:
+			if (b == '/' || b == '!' || b == '?') {
+				state = b == '/' ? END_TAG : b == '!' ? BANG : PROCESSING_INSTRUCTION;
+				count = 0;
+				if (candidate) {
+					candidate = capturing = false;
+				}
+			} else {
+				state = START_NAME;
+				nameLength = 0;
+				slash = false;
+				name(b);
+			}
+			break;
+		case START_NAME:
+			if (b == '>' || b == '/' || isWhitespace(b)) {
+				startName();
+				state = START_TAG;
+				if (b == '>') {
+					startTag(false);
+				} else {
+					slash = b == '/';
+				}
+			} else {
+				name(b);
+			}
+			break;
+		case START_TAG:
+			if (b == '"' || b == '\'') {
+				quote = b;
+				state = ATTRIBUTE_VALUE;
+			} else if (b == '>') {
+				startTag(slash);
+			} else if (!isWhitespace(b)) {
+				slash = b == '/';
+			}
+			break;
+		case ATTRIBUTE_VALUE:
+			if (b == quote) {
+				state = START_TAG;
+				slash = false;
+			}
+			break;
+		case END_TAG:
+			if (b == '>') {
+				state = TEXT;
+				endTag();
+			}
+			break;
+		case BANG:
+			state = b == '-' ? COMMENT : b == '[' ? CDATA : DECLARATION;
+			count = 0;
+			break;
+		case COMMENT:
+			// count dashes, from the second one of the opening --
+			if (b == '-') {
+				count++;
+			} else if (b == '>' && count >= 2) {
+				state = TEXT;
+			} else {
+				count = 0;
+			}
+			break;
+		case CDATA:
+			// count closing brackets
+			if (b == ']') {
+				count++;
+			} else if (b == '>' && count >= 2) {
+				state = TEXT;
+			} else {
+				count = 0;
+			}
+			break;
+		case DECLARATION:
+			// count the brackets of an internal subset
+			if (b == '[') {
+				count++;
+			} else if (b == ']') {
+				count--;
+			} else if (b == '>' && count <= 0) {
+				state = TEXT;
+			}
+			break;
+		case PROCESSING_INSTRUCTION:
+			if (b == '>' && count == 1) {
+				state = TEXT;
+			} else {
+				count = b == '?' ? 1 : 0;
+			}
+			break;
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+	}
+
+	private void capture(byte b) {
+		if (capturedLength == captured.length) {
+			captured = Arrays.copyOf(captured, captured.length * 2);
+		}
+		captured[capturedLength++] = b;
+	}
+
+	private void name(byte b) {
+		if (candidate) {
+			if (nameLength == name.length) {
+				name = Arrays.copyOf(name, name.length * 2);
+			}
+			name[nameLength++] = b;
+		}
+	}
+
+	/**
+	 * Matches the name of a start tag against the path, once read.
+	 */
+	private void startName() {
+		if (!candidate) {
+			return;
+		}
+		int local = nameLength;
+		while (local > 0 && name[local - 1] != ':') {
+			local--;
+		}
+		byte[] expected = path[depth];
+		boolean matches = nameLength - local == expected.length;
+		for (int i = 0; matches && i < expected.length; i++) {
+			matches = name[local + i] == expected[i];
+		}
+		if (matches) {
+			matched = depth + 1;
+		} else {
+			candidate = capturing = false;
+		}
+	}
+
+	private void startTag(boolean empty) {
+		state = TEXT;
+		if (candidate) {
+			candidate = false;
+			if (depth < path.length - 1) {
+				// an ancestor of the records
+				capturing = false;
+				Map<String, String> namespaces = declarations.get(depth);
+				namespaces.clear();
+				Matcher declaration = NAMESPACE.matcher(new String(captured, 0, capturedLength, StandardCharsets.UTF_8));
+				while (declaration.find()) {
+					namespaces.put(declaration.group(1), declaration.group(2));
+				}
+				wrapperTag = null;
+			} else if (empty) {
+				emit();
+			}
+		}
+		if (empty) {
+			matched = Math.min(matched, depth);
+		} else {
+			depth++;
+		}
+	}
+
+	private void endTag() {
+		depth--;
+		matched = Math.min(matched, depth);
+		if (capturing && depth == path.length - 1) {
+			emit();
+		}
+	}
+
+	private void emit() {
+		capturing = false;
+		record = Arrays.copyOf(captured, capturedLength);
+	}
+
+	/**
+	 * @return the start tag of an element declaring the namespaces in scope for the last record, the same array as long as they do not change
+	 */
+	byte[] wrapper() {
+		if (wrapperTag == null) {
+			Map<String, String> scope = new LinkedHashMap<>();
+			for (Map<String, String> namespaces : declarations) {
+				scope.putAll(namespaces);
+			}
+			StringBuilder wrapper = new StringBuilder("<_");
+			for (Entry<String, String> namespace : scope.entrySet()) {
+				wrapper.append(' ').append(namespace.getKey()).append('=').append(namespace.getValue());
+			}
+			wrapperTag = wrapper.append('>').toString().getBytes(StandardCharsets.UTF_8);
+		}
+		return wrapperTag;
+	}
+}
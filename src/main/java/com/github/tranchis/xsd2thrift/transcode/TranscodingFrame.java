@@ -0,0 +1,82 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.Arrays;
+
+import com.github.tranchis.xsd2thrift.transcode.TranscodingPlan.FieldSlot;
+import com.github.tranchis.xsd2thrift.transcode.TranscodingPlan.MessagePlan;
+
+/**
+ * An element being transcoded, at some depth: a message with its encoded fields and packed values so far, a value whose text is being collected, or an element
+ * being skipped. Frames and their buffers are reused from one element to the next.
+ */
+final class TranscodingFrame {
+
+	static final int MESSAGE = 0;
+	static final int VALUE = 1;
+	static final int SKIP = 2;
+
+	int kind;
+	MessagePlan message;
+	FieldSlot field;
+	final WireBuffer buffer = new WireBuffer(256);
+	WireBuffer[] packed = new WireBuffer[0];
+	/** the text collected, or null if the element has no simple content */
+	StringBuilder text;
+	private StringBuilder textBuffer;
+
+	void message(MessagePlan message) {
+		kind = MESSAGE;
+		this.message = message;
+		field = null;
+		buffer.reset();
+		int packedCount = message.packed.length;
+		if (packed.length < packedCount) {
+			int from = packed.length;
+			packed = Arrays.copyOf(packed, packedCount);
+			for (int i = from; i < packed.length; i++) {
+				packed[i] = new WireBuffer(64);
+			}
+		}
+		for (int i = 0; i < packedCount; i++) {
+			packed[i].reset();
+		}
+		text = message.text != null ? text() : null;
+	}
+
+	void value(FieldSlot field) {
+		kind = VALUE;
+		message = null;
+		this.field = field;
+		text = text();
+	}
+
+	void skip() {
+		kind = SKIP;
+		message = null;
+		field = null;
+		text = null;
+	}
+
+	/**
+	 * Writes the packed fields of a message, once all its elements are read.
+	 */
+	void finish() {
+		FieldSlot[] packedFields = message.packed;
+		for (int i = 0; i < packedFields.length; i++) {
+			WireBuffer values = packed[i];
+			if (values.size() > 0) {
+				buffer.writeTag(packedFields[i].tag);
+				buffer.writeLengthDelimited(values);
+				values.reset();
+			}
+		}
+	}
+
+	private StringBuilder text() {
+		if (textBuffer == null) {
+			textBuffer = new StringBuilder();
+		}
+		textBuffer.setLength(0);
+		return textBuffer;
+	}
+}
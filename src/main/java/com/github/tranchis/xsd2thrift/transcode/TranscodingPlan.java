@@ -0,0 +1,158 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The messages of a {@link ProtoSchema} compiled for transcoding: element and attribute names are looked up through a perfect hash, and each field is a slot
+ * with its tag, packing and codec worked out beforehand, so the transcoding loop does no map lookups, boxing or string building.
+ *
+ * Immutable, and meant to be compiled once and shared by the transcoders of all threads.
+ */
+public final class TranscodingPlan {
+
+	private final ProtoSchema schema;
+	private final Map<String, MessagePlan> messages = new HashMap<>();
+
+	private TranscodingPlan(ProtoSchema schema) {
+		this.schema = schema;
+	}
+
+	public static TranscodingPlan compile(ProtoSchema schema) {
+		TranscodingPlan plan = new TranscodingPlan(schema);
+		for (ProtoMessage message : schema.getMessages()) {
+			plan.messages.put(message.getName(), new MessagePlan(message.getName()));
+		}
+		for (ProtoMessage message : schema.getMessages()) {
+			plan.messages.get(message.getName()).compile(message, plan.messages);
+		}
+		return plan;
+	}
+
+	public ProtoSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the plan of the message with that model name, or null
+	 */
+	MessagePlan getMessage(String name) {
+		return messages.get(name);
+	}
+
+	/**
+	 * A message: its element and attribute fields by local name, its simple content and its packed fields.
+	 */
+	static final class MessagePlan {
+		final String name;
+		NameTable elementNames;
+		FieldSlot[] elements;
+		NameTable attributeNames;
+		FieldSlot[] attributes;
+		FieldSlot text;
+		FieldSlot[] packed;
+
+		private MessagePlan(String name) {
+			this.name = name;
+		}
+
+		private void compile(ProtoMessage message, Map<String, MessagePlan> plans) {
+			List<FieldSlot> elementSlots = new ArrayList<>();
+			List<FieldSlot> attributeSlots = new ArrayList<>();
+			packed = new FieldSlot[message.getPackedCount()];
+			for (ProtoField field : message.getFields()) {
+				FieldSlot slot = new FieldSlot(field, field.getMessage() != null ? plans.get(field.getMessage().getName()) : null);
+				if (field.getForm() == ProtoField.Form.ATTRIBUTE) {
+					attributeSlots.add(slot);
+				} else if (field.getForm() == ProtoField.Form.TEXT) {
+					text = slot;
+				} else {
+					elementSlots.add(slot);
+				}
+				if (slot.packedIndex >= 0) {
+					packed[slot.packedIndex] = slot;
+				}
+			}
+			elements = elementSlots.toArray(new FieldSlot[0]);
+			elementNames = names(elements);
+			attributes = attributeSlots.toArray(new FieldSlot[0]);
+			attributeNames = names(attributes);
+		}
+
+		private static NameTable names(FieldSlot[] slots) {
+			String[] names = new String[slots.length];
+			for (int i = 0; i < slots.length; i++) {
+				names[i] = slots[i].xmlName;
+			}
+			return new NameTable(names);
+		}
+
+		FieldSlot element(String localName) {
+			int i = elementNames.find(localName);
+			return i < 0 ? null : elements[i];
+		}
+
+		FieldSlot attribute(String localName) {
+			int i = attributeNames.find(localName);
+			return i < 0 ? null : attributes[i];
+		}
+
+		FieldSlot element(CharSequence s, int start, int end) {
+			int i = elementNames.find(s, start, end);
+			return i < 0 ? null : elements[i];
+		}
+
+		FieldSlot attribute(CharSequence s, int start, int end) {
+			int i = attributeNames.find(s, start, end);
+			return i < 0 ? null : attributes[i];
+		}
+	}
+
+	/**
+	 * A field, with everything needed to encode its values.
+	 */
+	static final class FieldSlot {
+		final int number;
+		final String xmlName;
+		final String protoName;
+		final ValueKind kind;
+		final int wireType;
+		/** the tag of the field, or of its packed values */
+		final int tag;
+		final boolean repeated;
+		final int packedIndex;
+		final MessagePlan message;
+		/** for enumerations, the lexical values and their numbers */
+		final NameTable enumValues;
+		final int[] enumNumbers;
+		final String enumName;
+
+		private FieldSlot(ProtoField field, MessagePlan message) {
+			number = field.getNumber();
+			xmlName = field.getXmlName();
+			protoName = field.getProtoName();
+			kind = field.getKind();
+			wireType = kind.getWireType();
+			packedIndex = field.getPackedIndex();
+			tag = WireFormat.tag(number, packedIndex >= 0 ? WireFormat.LENGTH_DELIMITED : wireType);
+			repeated = field.isRepeated();
+			this.message = message;
+			ProtoEnum enumeration = field.getEnumeration();
+			if (enumeration != null) {
+				List<String> values = enumeration.getValues();
+				enumValues = new NameTable(values.toArray(new String[0]));
+				enumNumbers = new int[values.size()];
+				for (int i = 0; i < enumNumbers.length; i++) {
+					enumNumbers[i] = enumeration.getNumber(values.get(i));
+				}
+				enumName = enumeration.getName();
+			} else {
+				enumValues = null;
+				enumNumbers = null;
+				enumName = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import com.github.tranchis.xsd2thrift.transcode.TranscodingPlan.FieldSlot;
+
+/**
+ * Encodes the lexical values of fields, as read from XML, in the protobuf encoding of their type. Not thread-safe.
+ */
+final class ValueEncoder {
+
+	private static final int TAG_SECONDS = WireFormat.tag(1, WireFormat.VARINT);
+	private static final int TAG_NANOS = WireFormat.tag(2, WireFormat.VARINT);
+
+	private final LexicalValues lexical = new LexicalValues();
+
+	/**
+	 * Encodes a value of a field into a message frame: in its packed values for a repeated numeric field, in its buffer otherwise.
+	 *
+	 * @throws RuntimeException if the value does not parse
+	 */
+	void write(TranscodingFrame frame, FieldSlot field, CharSequence text) {
+		ValueKind kind = field.kind;
+		WireBuffer out = frame.buffer;
+		int start = LexicalValues.trimStart(text, 0, text.length());
+		int end = LexicalValues.trimEnd(text, start, text.length());
+		if (kind.isPackable()) {
+			long value = numeric(field, text, start, end);
+			if (field.repeated) {
+				writeRaw(frame.packed[field.packedIndex], field.wireType, value);
+			} else if (value != 0) {
+				out.writeTag(field.tag);
+				writeRaw(out, field.wireType, value);
+			}
+			return;
+		}
+
+		switch (kind) {
+		case STRING:
+		case BYTES:
+			if (field.repeated || text.length() > 0) {
+				out.writeTag(field.tag);
+				out.writeString(text);
+			}
+			break;
+		case BASE64_BINARY:
+			if (field.repeated || start < end) {
+				out.writeTag(field.tag);
+				writeBase64(out, text, start, end);
+			}
+			break;
+		case HEX_BINARY:
+			if (field.repeated || start < end) {
+				out.writeTag(field.tag);
+				writeHex(out, text, start, end);
+			}
+			break;
+		case BYTE:
+			int b = lexical.parseInt(text, start, end);
+			if (b != (byte) b) {
+				throw new NumberFormatException("out of range");
+			}
+			out.writeTag(field.tag);
+			out.writeVarint(1);
+			out.writeByte(b);
+			break;
+		case TIMESTAMP:
+			writeSeconds(out, field, lexical.parseEpochSecond(text, start, end), lexical.nanos);
+			break;
+		case TIME:
+			writeSeconds(out, field, lexical.parseSecondOfDay(text, start, end), lexical.nanos);
+			break;
+		case DURATION:
+			writeSeconds(out, field, lexical.parseDuration(text, start, end), lexical.nanos);
+			break;
+		default:
+			throw new IllegalStateException(kind.name());
+		}
+	}
+
+	private long numeric(FieldSlot field, CharSequence s, int start, int end) {
+		switch (field.kind) {
+		case BOOL:
+			return lexical.parseBoolean(s, start, end) ? 1 : 0;
+		case INT32:
+			return lexical.parseInt(s, start, end);
+		case INT64:
+		case SFIXED64:
+			return lexical.parseLong(s, start, end);
+		case UINT32:
+		case FIXED32:
+			return lexical.parseUnsignedInt(s, start, end) & 0xffffffffL;
+		case UINT64:
+		case FIXED64:
+			return lexical.parseUnsignedLong(s, start, end);
+		case SINT32:
+			int i = lexical.parseInt(s, start, end);
+			return (i << 1 ^ i >> 31) & 0xffffffffL;
+		case SINT64:
+			long l = lexical.parseLong(s, start, end);
+			return l << 1 ^ l >> 63;
+		case SFIXED32:
+			return lexical.parseInt(s, start, end) & 0xffffffffL;
+		case FLOAT:
+			return Float.floatToRawIntBits((float) lexical.parseDouble(s, start, end)) & 0xffffffffL;
+		case DOUBLE:
+		case DECIMAL:
+			return Double.doubleToRawLongBits(lexical.parseDouble(s, start, end));
+		case DATE:
+			return Math.toIntExact(lexical.parseEpochDay(s, start, end));
+		case ENUM:
+			int index = field.enumValues.find(s, start, end);
+			if (index < 0) {
+				throw new IllegalArgumentException("not a value of " + field.enumName);
+			}
+			return field.enumNumbers[index];
+		default:
+			throw new IllegalStateException(field.kind.name());
+		}
+	}
+
+	private static void writeRaw(WireBuffer out, int wireType, long value) {
+		if (wireType == WireFormat.FIXED32) {
+			out.writeFixed32((int) value);
+		} else if (wireType == WireFormat.FIXED64) {
+			out.writeFixed64(value);
+		} else {
+			out.writeVarint(value);
+		}
+	}
+
+	/**
+	 * Writes the length and the bytes of an <code>xs:base64Binary</code> value, counting its digits first; whitespace is ignored and padding optional.
+	 */
+	private static void writeBase64(WireBuffer out, CharSequence s, int start, int end) {
+		int digits = 0;
+		int padding = 0;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c == '=') {
+				padding++;
+			} else if (base64(c) >= 0 && padding == 0) {
+				digits++;
+			} else if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				throw new IllegalArgumentException("not base64");
+			}
+		}
+		if (digits % 4 == 1 || padding > 0 && (digits + padding) % 4 != 0) {
+			throw new IllegalArgumentException("truncated base64");
+		}
+		out.writeVarint(digits * 6 / 8);
+		int bits = 0;
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			int value = base64(s.charAt(i));
+			if (value >= 0) {
+				bits = bits << 6 | value;
+				count += 6;
+				if (count >= 8) {
+					count -= 8;
+					out.writeByte(bits >> count);
+				}
+			}
+		}
+	}
+
+	private static int base64(char c) {
+		if (c >= 'A' && c <= 'Z') {
+			return c - 'A';
+		} else if (c >= 'a' && c <= 'z') {
+			return c - 'a' + 26;
+		} else if (c >= '0' && c <= '9') {
+			return c - '0' + 52;
+		} else if (c == '+') {
+			return 62;
+		} else if (c == '/') {
+			return 63;
+		}
+		return -1;
+	}
+
+	private static void writeHex(WireBuffer out, CharSequence s, int start, int end) {
+		if ((end - start) % 2 != 0) {
+			throw new IllegalArgumentException("odd number of digits");
+		}
+		out.writeVarint((end - start) / 2);
+		for (int i = start; i < end; i += 2) {
+			int high = Character.digit(s.charAt(i), 16);
+			int low = Character.digit(s.charAt(i + 1), 16);
+			if (high < 0 || low < 0) {
+				throw new IllegalArgumentException("not hexadecimal");
+			}
+			out.writeByte(high << 4 | low);
+		}
+	}
+
+	/**
+	 * Writes a <code>google.protobuf.Timestamp</code> or <code>google.protobuf.Duration</code>.
+	 */
+	private static void writeSeconds(WireBuffer out, FieldSlot field, long seconds, int nanos) {
+		int length = 0;
+		if (seconds != 0) {
+			length += 1 + WireFormat.varintSize(seconds);
+		}
+		if (nanos != 0) {
+			length += 1 + WireFormat.varintSize(nanos);
+		}
+		out.writeTag(field.tag);
+		out.writeVarint(length);
+		if (seconds != 0) {
+			out.writeTag(TAG_SECONDS);
+			out.writeVarint(seconds);
+		}
+		if (nanos != 0) {
+			out.writeTag(TAG_NANOS);
+			out.writeVarint(nanos);
+		}
+	}
+}
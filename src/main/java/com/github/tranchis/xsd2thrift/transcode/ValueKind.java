@@ -0,0 +1,112 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+/**
+ * How the XML value of a field is encoded: the protobuf type of the field, refined by the schema type it was mapped from where the lexical form matters, such
+ * as <code>xs:date</code> written as an <code>int32</code> count of days.
+ */
+public enum ValueKind {
+	STRING(WireFormat.LENGTH_DELIMITED),
+	/** text of an unresolved type, as UTF-8 */
+	BYTES(WireFormat.LENGTH_DELIMITED),
+	BASE64_BINARY(WireFormat.LENGTH_DELIMITED),
+	HEX_BINARY(WireFormat.LENGTH_DELIMITED),
+	/** <code>xs:byte</code>, one byte */
+	BYTE(WireFormat.LENGTH_DELIMITED),
+	BOOL(WireFormat.VARINT),
+	INT32(WireFormat.VARINT),
+	INT64(WireFormat.VARINT),
+	UINT32(WireFormat.VARINT),
+	UINT64(WireFormat.VARINT),
+	SINT32(WireFormat.VARINT),
+	SINT64(WireFormat.VARINT),
+	FIXED32(WireFormat.FIXED32),
+	FIXED64(WireFormat.FIXED64),
+	SFIXED32(WireFormat.FIXED32),
+	SFIXED64(WireFormat.FIXED64),
+	FLOAT(WireFormat.FIXED32),
+	DOUBLE(WireFormat.FIXED64),
+	/** <code>xs:decimal</code> as a <code>double</code>, written back without exponent */
+	DECIMAL(WireFormat.FIXED64),
+	/** <code>xs:date</code> as an <code>int32</code> count of days since 1970-01-01 */
+	DATE(WireFormat.VARINT),
+	/** <code>xs:dateTime</code> as a <code>google.protobuf.Timestamp</code> */
+	TIMESTAMP(WireFormat.LENGTH_DELIMITED),
+	/** <code>xs:time</code> as a <code>google.protobuf.Timestamp</code> on 1970-01-01 */
+	TIME(WireFormat.LENGTH_DELIMITED),
+	/** <code>xs:duration</code> as a <code>google.protobuf.Duration</code>, years and months counted from 1970-01-01 */
+	DURATION(WireFormat.LENGTH_DELIMITED),
+	ENUM(WireFormat.VARINT),
+	MESSAGE(WireFormat.LENGTH_DELIMITED),
+	/** a type given by a custom type mapping, which the transcoders cannot encode */
+	UNSUPPORTED(WireFormat.LENGTH_DELIMITED);
+
+	private final int wireType;
+
+	ValueKind(int wireType) {
+		this.wireType = wireType;
+	}
+
+	public int getWireType() {
+		return wireType;
+	}
+
+	/**
+	 * @return true if repeated values are packed, as proto3 does by default for scalar numeric types
+	 */
+	public boolean isPackable() {
+		return wireType != WireFormat.LENGTH_DELIMITED;
+	}
+
+	/**
+	 * @param protoType the protobuf type of a field, qualified for message types
+	 * @param xsdType   the schema type it was mapped from
+	 * @return the kind of a scalar or well-known type, or null for enumerations and messages
+	 */
+	public static ValueKind of(String protoType, String xsdType) {
+		switch (protoType) {
+		case "string":
+			return STRING;
+		case "bytes":
+			if ("base64Binary".equals(xsdType)) {
+				return BASE64_BINARY;
+			} else if ("hexBinary".equals(xsdType)) {
+				return HEX_BINARY;
+			} else if ("byte".equals(xsdType)) {
+				return BYTE;
+			}
+			return BYTES;
+		case "bool":
+			return BOOL;
+		case "int32":
+			return "date".equals(xsdType) ? DATE : INT32;
+		case "int64":
+			return INT64;
+		case "uint32":
+			return UINT32;
+		case "uint64":
+			return UINT64;
+		case "sint32":
+			return SINT32;
+		case "sint64":
+			return SINT64;
+		case "fixed32":
+			return FIXED32;
+		case "fixed64":
+			return FIXED64;
+		case "sfixed32":
+			return SFIXED32;
+		case "sfixed64":
+			return SFIXED64;
+		case "float":
+			return FLOAT;
+		case "double":
+			return "decimal".equals(xsdType) ? DECIMAL : DOUBLE;
+		case "google.protobuf.Timestamp":
+			return "time".equals(xsdType) ? TIME : TIMESTAMP;
+		case "google.protobuf.Duration":
+			return DURATION;
+		default:
+			return null;
+		}
+	}
+}
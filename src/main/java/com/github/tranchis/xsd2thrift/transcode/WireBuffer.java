@@ -0,0 +1,143 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable buffer of protobuf-encoded bytes, reused from one message to the next.
+ */
+final class WireBuffer {
+
+	private byte[] data;
+	private int size;
+
+	WireBuffer(int capacity) {
+		data = new byte[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	void reset() {
+		size = 0;
+	}
+
+	private void ensure(int extra) {
+		if (size + extra > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+		}
+	}
+
+	void writeTag(int number, int wireType) {
+		writeVarint(WireFormat.tag(number, wireType) & 0xffffffffL);
+	}
+
+	/**
+	 * Writes a tag computed beforehand with {@link WireFormat#tag(int, int)}.
+	 */
+	void writeTag(int tag) {
+		writeVarint(tag & 0xffffffffL);
+	}
+
+	void writeVarint(long value) {
+		ensure(10);
+		while ((value & ~0x7fL) != 0) {
+			data[size++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		data[size++] = (byte) value;
+	}
+
+	void writeByte(int value) {
+		ensure(1);
+		data[size++] = (byte) value;
+	}
+
+	void writeFixed32(int value) {
+		ensure(4);
+		data[size++] = (byte) value;
+		data[size++] = (byte) (value >> 8);
+		data[size++] = (byte) (value >> 16);
+		data[size++] = (byte) (value >> 24);
+	}
+
+	void writeFixed64(long value) {
+		writeFixed32((int) value);
+		writeFixed32((int) (value >> 32));
+	}
+
+	void writeBytes(byte[] bytes, int offset, int length) {
+		ensure(length);
+		System.arraycopy(bytes, offset, data, size, length);
+		size += length;
+	}
+
+	/**
+	 * Writes the bytes of a buffer from its position.
+	 */
+	void writeBytes(ByteBuffer bytes, int length) {
+		ensure(length);
+		bytes.get(data, size, length);
+		size += length;
+	}
+
+	/**
+	 * Writes the length and the bytes of another buffer, as a length-delimited value.
+	 */
+	void writeLengthDelimited(WireBuffer other) {
+		writeVarint(other.size);
+		writeBytes(other.data, 0, other.size);
+	}
+
+	/**
+	 * Writes the length and the UTF-8 encoding of a string, as a length-delimited value. Unpaired surrogates are written as '?', as
+	 * {@link String#getBytes(java.nio.charset.Charset)} does.
+	 */
+	void writeString(CharSequence s) {
+		int length = s.length();
+		int utf8 = length;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x800) {
+				if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+					i++;
+					utf8 += 2;
+				} else {
+					utf8 += Character.isSurrogate(c) ? 0 : 2;
+				}
+			} else if (c >= 0x80) {
+				utf8++;
+			}
+		}
+		writeVarint(utf8);
+		ensure(utf8);
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				data[size++] = (byte) c;
+			} else if (c < 0x800) {
+				data[size++] = (byte) (0xc0 | c >> 6);
+				data[size++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				data[size++] = (byte) (0xf0 | cp >> 18);
+				data[size++] = (byte) (0x80 | cp >> 12 & 0x3f);
+				data[size++] = (byte) (0x80 | cp >> 6 & 0x3f);
+				data[size++] = (byte) (0x80 | cp & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				data[size++] = '?';
+			} else {
+				data[size++] = (byte) (0xe0 | c >> 12);
+				data[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+				data[size++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	void writeTo(OutputStream out) throws IOException {
+		out.write(data, 0, size);
+	}
+}
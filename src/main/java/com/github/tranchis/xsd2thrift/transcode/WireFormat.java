@@ -0,0 +1,28 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+/**
+ * Wire types and tags of the protobuf encoding.
+ */
+final class WireFormat {
+
+	static final int VARINT = 0;
+	static final int FIXED64 = 1;
+	static final int LENGTH_DELIMITED = 2;
+	static final int FIXED32 = 5;
+
+	private WireFormat() {
+	}
+
+	static int tag(int number, int wireType) {
+		return number << 3 | wireType;
+	}
+
+	static int varintSize(long value) {
+		int size = 1;
+		while ((value & ~0x7fL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+}
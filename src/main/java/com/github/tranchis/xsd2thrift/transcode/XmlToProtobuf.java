@@ -0,0 +1,196 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.github.tranchis.xsd2thrift.transcode.TranscodingPlan.FieldSlot;
+import com.github.tranchis.xsd2thrift.transcode.TranscodingPlan.MessagePlan;
+
+/**
+ * Transcodes XML instances of the schema to the protobuf binary encoding of the generated messages, in one pass and without building an object model: elements
+ * are read with StAX and their values encoded as they end.
+ *
+ * Elements and attributes are matched to fields by local name, and encoded with the field numbers of the <code>.proto</code>; the simple content of an element
+ * goes to the field the generator declared for it. Fields are written in document order, repeated numeric fields packed at the end of their message, and proto3
+ * default values of singular scalar fields are left out. Elements that do not belong to their message, values that do not parse and types given by custom
+ * mappings are reported as {@link XMLStreamException}s with their location.
+ *
+ * Transcoding follows a {@link TranscodingPlan}, and values are parsed straight from the text collected for them, so once the reused buffers have grown to the
+ * largest message the loop allocates nothing per element, apart from what the StAX parser itself allocates (attribute values). The top-level fields of the root
+ * message are flushed to the output as they accumulate, so a large document is not held in memory. Instances are not thread-safe: use one per thread, over a
+ * shared plan.
+ */
+public class XmlToProtobuf {
+
+	private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+	private final TranscodingPlan plan;
+	private final XMLInputFactory factory;
+	private final ValueEncoder encoder = new ValueEncoder();
+	private TranscodingFrame[] frames = new TranscodingFrame[16];
+
+	public XmlToProtobuf(ProtoSchema schema) {
+		this(TranscodingPlan.compile(schema));
+	}
+
+	public XmlToProtobuf(TranscodingPlan plan) {
+		this.plan = plan;
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+	}
+
+	/**
+	 * Transcodes a document.
+	 *
+	 * @param rootMessage the model name of the message of the root element
+	 */
+	public void transcode(InputStream in, String rootMessage, OutputStream out) throws XMLStreamException, IOException {
+		XMLStreamReader reader = createReader(in);
+		try {
+			transcode(reader, rootMessage, out);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Transcodes the next element of a reader, leaving the reader on its end tag.
+	 *
+	 * @param rootMessage the model name of the message of the element
+	 */
+	public void transcode(XMLStreamReader reader, String rootMessage, OutputStream out) throws XMLStreamException, IOException {
+		MessagePlan root = plan.getMessage(rootMessage);
+		if (root == null) {
+			throw new IllegalArgumentException("Unknown message " + rootMessage);
+		}
+		while (!reader.isStartElement()) {
+			if (!reader.hasNext()) {
+				throw new XMLStreamException("No element to transcode", reader.getLocation());
+			}
+			reader.next();
+		}
+
+		int depth = 0;
+		TranscodingFrame frame = frame(0);
+		frame.message(root);
+		attributes(reader, frame);
+		while (true) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				TranscodingFrame parent = frames[depth];
+				frame = frame(++depth);
+				if (parent.kind != TranscodingFrame.MESSAGE) {
+					// markup within a value, or within an element being skipped
+					frame.skip();
+					break;
+				}
+				FieldSlot field = parent.message.element(reader.getLocalName());
+				if (field == null) {
+					throw new XMLStreamException("Element " + reader.getLocalName() + " is not a field of " + parent.message.name, reader.getLocation());
+				} else if (field.kind == ValueKind.UNSUPPORTED) {
+					throw new XMLStreamException("Field " + field.protoName + " of " + parent.message.name + " has a custom type", reader.getLocation());
+				} else if (field.kind == ValueKind.MESSAGE) {
+					frame.message(field.message);
+					frame.field = field;
+					attributes(reader, frame);
+				} else {
+					frame.value(field);
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				frame = frames[depth];
+				if (frame.text != null) {
+					frame.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				frame = frames[depth];
+				if (frame.kind == TranscodingFrame.MESSAGE) {
+					finish(frame, reader);
+				}
+				if (depth == 0) {
+					frame.buffer.writeTo(out);
+					frame.buffer.reset();
+					return;
+				}
+				parent = frames[--depth];
+				if (frame.kind == TranscodingFrame.MESSAGE) {
+					parent.buffer.writeTag(frame.field.tag);
+					parent.buffer.writeLengthDelimited(frame.buffer);
+				} else if (frame.kind == TranscodingFrame.VALUE) {
+					writeValue(parent, frame.field, frame.text, reader);
+				}
+				if (depth == 0 && parent.buffer.size() >= FLUSH_THRESHOLD) {
+					parent.buffer.writeTo(out);
+					parent.buffer.reset();
+				}
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				throw new XMLStreamException("Unexpected end of document", reader.getLocation());
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return a reader configured like the one of {@link #transcode(InputStream, String, OutputStream)}
+	 */
+	XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+		return factory.createXMLStreamReader(in);
+	}
+
+	private TranscodingFrame frame(int depth) {
+		if (depth == frames.length) {
+			frames = Arrays.copyOf(frames, depth * 2);
+		}
+		TranscodingFrame frame = frames[depth];
+		if (frame == null) {
+			frame = frames[depth] = new TranscodingFrame();
+		}
+		return frame;
+	}
+
+	private void attributes(XMLStreamReader reader, TranscodingFrame frame) throws XMLStreamException {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			if (XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.equals(reader.getAttributeNamespace(i))) {
+				continue;
+			}
+			FieldSlot field = frame.message.attribute(reader.getAttributeLocalName(i));
+			if (field == null || field.kind == ValueKind.MESSAGE || field.kind == ValueKind.UNSUPPORTED) {
+				throw new XMLStreamException("Attribute " + reader.getAttributeLocalName(i) + " is not a field of " + frame.message.name, reader.getLocation());
+			}
+			writeValue(frame, field, reader.getAttributeValue(i), reader);
+		}
+	}
+
+	/**
+	 * Writes the simple content and the packed fields of a message.
+	 */
+	private void finish(TranscodingFrame frame, XMLStreamReader reader) throws XMLStreamException {
+		if (frame.message.text != null) {
+			writeValue(frame, frame.message.text, frame.text, reader);
+		}
+		frame.finish();
+	}
+
+	private void writeValue(TranscodingFrame frame, FieldSlot field, CharSequence text, XMLStreamReader reader) throws XMLStreamException {
+		try {
+			encoder.write(frame, field, text);
+		} catch (RuntimeException e) {
+			throw new XMLStreamException("Invalid value '" + text + "' for field " + field.protoName + ": " + e.getMessage(), reader.getLocation());
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ConversionDaemonTest {
+
+	@Test
+	public void jobArgumentsAreSeparatedByTabs() {
+		assertArrayEquals(new String[] { "--directory=my protos", "my schemas/a b.xsd" },
+				ConversionDaemon.parseJob("--directory=my protos\t\tmy schemas/a b.xsd"));
+	}
+
+	@Test
+	public void jobsAreAnsweredOnTheSocket(@TempDir Path dir) throws Exception {
+		Path schemas = Files.createDirectories(dir.resolve("my schemas"));
+		Path xsd = Files.copy(Paths.get("src/test/resources/xsd/shiporder.xsd"), schemas.resolve("ship order.xsd"));
+		Path output = Files.createDirectories(dir.resolve("my protos"));
+
+		ServerSocket server = new ConversionDaemon(new String[0], false, 0).acceptJobs();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+			out.write("--filename=shiporder.proto\t--directory=" + output + "\t" + xsd + "\n");
+			out.flush();
+			String reply = in.readLine();
+			assertTrue(reply.startsWith("OK "), reply);
+			assertTrue(Files.exists(output.resolve("shiporder.proto")));
+
+			out.write("--directory=" + output + "\t" + schemas.resolve("missing.xsd") + "\n");
+			out.flush();
+			reply = in.readLine();
+			assertTrue(reply.startsWith("FAILED "), reply);
+		} finally {
+			server.close();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+
+public class ConversionReportTest {
+
+	@Test
+	public void phasesAndModelSizeAreReported(@TempDir Path dir) throws Exception {
+		Path xsd = new SchemaGenerator().typeCount(20).fieldsPerType(3).namespaceCount(2).generate(dir);
+		XSDParser parser = new XSDParser(xsd.toString(), new HashMap<>());
+		ProtobufMarshaller marshaller = new ProtobufMarshaller();
+		parser.addMarshaller(marshaller);
+		OutputWriter writer = new OutputWriter();
+		writer.setMarshaller(marshaller);
+		writer.setDefaultExtension("proto");
+		writer.setDirectory(dir.toString());
+		writer.setFilename("out.proto");
+		parser.setWriter(writer);
+
+		List<String> phases = new ArrayList<>();
+		List<ConversionReport> finished = new ArrayList<>();
+		parser.addListener(new ConversionListener() {
+			@Override
+			public void phaseFinished(ConversionReport report, ConversionReport.Phase phase) {
+				phases.add(phase.getName());
+			}
+
+			@Override
+			public void conversionFinished(ConversionReport report) {
+				finished.add(report);
+			}
+		});
+		parser.parse();
+
+		ConversionReport report = parser.getReport();
+		assertEquals(Arrays.asList("parse", "interpret", "write", "output"), phases);
+		assertSame(report, finished.get(0));
+		assertEquals(2, report.getSchemas());
+		assertTrue(report.getMessages() >= 20);
+		assertTrue(report.getFields() >= 60);
+		assertEquals(1, report.getFilesWritten());
+		assertTrue(report.getPhases().get(0).getNanos() > 0);
+		String json = ConversionReport.toJson(Collections.singletonList(report));
+		assertTrue(json.contains("\"name\": \"interpret\""), json);
+		assertTrue(json.contains("\"messages\": " + report.getMessages()), json);
+	}
+
+	@Test
+	public void failedPhasesAreReported(@TempDir Path dir) {
+		XSDParser parser = new XSDParser(dir.resolve("missing.xsd").toString(), new HashMap<>());
+		parser.addMarshaller(new ProtobufMarshaller());
+		assertThrows(Exception.class, parser::parse);
+
+		assertEquals(1, parser.getReport().getPhases().size());
+		assertEquals("parse", parser.getReport().getPhases().get(0).getName());
+	}
+
+	@Test
+	public void upToDateConversionsFinish() {
+		XSDParser parser = new XSDParser("unused.xsd", new HashMap<>());
+		List<ConversionReport> finished = new ArrayList<>();
+		parser.addListener(new ConversionListener() {
+			@Override
+			public void conversionFinished(ConversionReport report) {
+				finished.add(report);
+			}
+		});
+		parser.skipUpToDate();
+
+		assertEquals(1, finished.size());
+		assertTrue(finished.get(0).isUpToDate());
+		assertTrue(finished.get(0).getPhases().isEmpty());
+	}
+}
@@ -0,0 +1,39 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import com.sun.xml.xsom.XSSchemaSet;
+import com.sun.xml.xsom.parser.XSOMParser;
+
+public class DocumentationAnnotationParserFactoryTest {
+
+	private static final String SCHEMA = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:test'>"
+			+ "<xs:complexType name='Documented'><xs:annotation>" + "<xs:appinfo>ignored</xs:appinfo>"
+			+ "<xs:documentation>A <b>bold</b> &amp; <![CDATA[<raw>]]> text</xs:documentation>" + "<xs:documentation>Second</xs:documentation>"
+			+ "</xs:annotation><xs:sequence/></xs:complexType>"
+			+ "<xs:complexType name='AppinfoOnly'><xs:annotation><xs:appinfo>ignored</xs:appinfo></xs:annotation><xs:sequence/></xs:complexType>"
+			+ "</xs:schema>";
+
+	@Test
+	public void keepsAllTheTextOfDocumentationElements() throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		XSOMParser parser = new XSOMParser(factory);
+		parser.setAnnotationParser(new DocumentationAnnotationParserFactory());
+		InputSource source = new InputSource(new StringReader(SCHEMA));
+		source.setSystemId("urn:test.xsd");
+		parser.parse(source);
+		XSSchemaSet sset = parser.getResult();
+
+		assertEquals("A bold & <raw> text\nSecond", XSDParser.readDocumentation(sset.getComplexType("urn:test", "Documented")));
+		assertNull(XSDParser.readDocumentation(sset.getComplexType("urn:test", "AppinfoOnly")));
+	}
+}
@@ -0,0 +1,39 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IncrementalBuildTest {
+
+	@Test
+	public void changesToInputsOutputsOrConfigurationAreDetected(@TempDir Path dir) throws IOException {
+		Path xsd = Files.write(dir.resolve("a.xsd"), "<schema/>".getBytes(StandardCharsets.UTF_8));
+		Path proto = Files.write(dir.resolve("a.proto"), "message A {}".getBytes(StandardCharsets.UTF_8));
+		Path manifest = IncrementalBuild.manifestFor(dir.toString(), xsd.toString());
+
+		assertFalse(new IncrementalBuild(manifest, "config").isUpToDate());
+		new IncrementalBuild(manifest, "config").save(Collections.singleton(xsd.toUri().toString()), Collections.singleton(proto));
+
+		assertTrue(new IncrementalBuild(manifest, "config").isUpToDate());
+		assertFalse(new IncrementalBuild(manifest, "other config").isUpToDate());
+
+		Files.write(proto, "message B {}".getBytes(StandardCharsets.UTF_8));
+		assertFalse(new IncrementalBuild(manifest, "config").isUpToDate());
+		new IncrementalBuild(manifest, "config").save(Collections.singleton(xsd.toUri().toString()), Collections.singleton(proto));
+
+		Files.write(xsd, "<schema></schema>".getBytes(StandardCharsets.UTF_8));
+		assertFalse(new IncrementalBuild(manifest, "config").isUpToDate());
+
+		Files.delete(xsd);
+		assertFalse(new IncrementalBuild(manifest, "config").isUpToDate());
+	}
+}
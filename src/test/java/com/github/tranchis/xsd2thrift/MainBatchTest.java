@@ -0,0 +1,75 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MainBatchTest {
+
+	private static final String XSD = Paths.get("src/test/resources/xsd/ns-person.xsd").toAbsolutePath().toString();
+
+	@Test
+	public void configsSharingASchemaAreInterpretedOnceAndConvertLikeSeparateRuns(@TempDir Path dir) throws Exception {
+		String split = "splitBySchema: true\nnamespace: schemas.com.domain.common\ncustomNameMappings:\n  name: fullName\n";
+		String single = "filename: person.proto\nnamespace: person\nnestEnums: true\ncustomNameMappings:\n  name: fullName\n";
+
+		List<ConversionReport> reports = new ArrayList<>();
+		assertTrue(Main.runBatch(Arrays.asList(config(dir, "batch-split", split), config(dir, "batch-single", single)), XSD, new SchemaSetCache(), reports));
+		assertTrue(Main.run(new String[] { "--configFile=" + config(dir, "split", split), XSD }, null));
+		assertTrue(Main.run(new String[] { "--configFile=" + config(dir, "single", single), XSD }, null));
+
+		assertEquals(2, reports.size());
+		assertTrue(phases(reports.get(0)).containsAll(Arrays.asList("parse", "interpret")), phases(reports.get(0)).toString());
+		assertFalse(phases(reports.get(1)).contains("parse"), phases(reports.get(1)).toString());
+		assertFalse(phases(reports.get(1)).contains("interpret"), phases(reports.get(1)).toString());
+
+		assertSameFiles(dir.resolve("split"), dir.resolve("batch-split"));
+		assertSameFiles(dir.resolve("single"), dir.resolve("batch-single"));
+	}
+
+	/**
+	 * Writes a config file generating into the directory of the same name.
+	 */
+	private static String config(Path dir, String name, String content) throws IOException {
+		Path output = Files.createDirectories(dir.resolve(name));
+		return Files.write(dir.resolve(name + ".yml"), (content + "directory: " + output + "\n").getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	private static void assertSameFiles(Path expected, Path actual) throws IOException {
+		List<String> names = list(expected);
+		assertFalse(names.isEmpty());
+		assertEquals(names, list(actual));
+		for (String name : names) {
+			assertArrayEquals(Files.readAllBytes(expected.resolve(name)), Files.readAllBytes(actual.resolve(name)), name);
+		}
+	}
+
+	private static List<String> list(Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static List<String> phases(ConversionReport report) {
+		List<String> phases = new ArrayList<>();
+		for (ConversionReport.Phase phase : report.getPhases()) {
+			phases.add(phase.getName());
+		}
+		return phases;
+	}
+}
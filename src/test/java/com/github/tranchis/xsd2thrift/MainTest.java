@@ -2,10 +2,23 @@ package com.github.tranchis.xsd2thrift;
 
 import static com.github.tranchis.xsd2thrift.TestHelper.compareExpectedAndGenerated;
 import static com.github.tranchis.xsd2thrift.TestHelper.generateProtobuf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class MainTest {
 
@@ -78,4 +91,54 @@ public class MainTest {
 				"org.myrecipies"));
 	}
 
+	@Test
+	public void incrementalRunsOnlyRewriteWhatChanged(@TempDir Path dir) throws IOException {
+		Path schemas = Files.createDirectories(dir.resolve("schemas"));
+		for (String name : new String[] { "ns-person.xsd", "ns-common.xsd", "ns-address.xsd" }) {
+			Files.copy(Paths.get("src/test/resources/xsd", name), schemas.resolve(name));
+		}
+		Path output = Files.createDirectories(dir.resolve("output"));
+		String[] args = { "--splitBySchema=true", "--incremental=true", "--directory=" + output, schemas.resolve("ns-person.xsd").toString() };
+
+		assertTrue(Main.run(args, null));
+		Map<String, FileTime> generated = backdate(output);
+		assertEquals(Arrays.asList(".ns-person.xsd.xsd2proto", "schemas_com_domain_address.proto", "schemas_com_domain_common.proto",
+				"schemas_com_domain_person.proto"), generated.keySet().stream().collect(Collectors.toList()));
+
+		// nothing changed: nothing is written
+		assertTrue(Main.run(args, null));
+		assertEquals(generated, times(output));
+
+		// an imported schema changed: only its file and the manifest are written
+		Path address = schemas.resolve("ns-address.xsd");
+		Files.write(address, new String(Files.readAllBytes(address), StandardCharsets.UTF_8).replace("Any lines of the address", "All lines of the address")
+				.getBytes(StandardCharsets.UTF_8));
+		assertTrue(Main.run(args, null));
+		Map<String, FileTime> rewritten = times(output);
+		rewritten.entrySet().removeIf(file -> file.getValue().equals(generated.get(file.getKey())));
+		assertEquals(Arrays.asList(".ns-person.xsd.xsd2proto", "schemas_com_domain_address.proto"), rewritten.keySet().stream().collect(Collectors.toList()));
+	}
+
+	/**
+	 * Moves the modification time of the files back, so that any rewrite shows.
+	 */
+	private static Map<String, FileTime> backdate(Path dir) throws IOException {
+		FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : files.collect(Collectors.toList())) {
+				Files.setLastModifiedTime(file, past);
+			}
+		}
+		return times(dir);
+	}
+
+	private static Map<String, FileTime> times(Path dir) throws IOException {
+		Map<String, FileTime> times = new TreeMap<>();
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : files.collect(Collectors.toList())) {
+				times.put(file.getFileName().toString(), Files.getLastModifiedTime(file));
+			}
+		}
+		return times;
+	}
 }
@@ -0,0 +1,60 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+
+/**
+ * Checks the sharing that keeps the interpreted model compact, rather than measuring the heap, which depends on the garbage collector. The heap per field is
+ * measured by the <code>interpretResult</code> benchmark of <code>ConversionBenchmark</code> with <code>-prof gc</code>.
+ */
+public class ModelFootprintTest {
+
+	private static final int TYPES = 10_000;
+	private static final int FIELDS_PER_TYPE = 10;
+
+	@Test
+	public void interpretedModelSharesFieldsAndNames(@TempDir Path dir) throws Exception {
+		Path xsd = new SchemaGenerator().typeCount(TYPES).fieldsPerType(FIELDS_PER_TYPE).inheritanceDepth(4).namespaceCount(4).generate(dir);
+		XSDParser parser = new XSDParser(xsd.toString(), new HashMap<>());
+		parser.addMarshaller(new ProtobufMarshaller());
+		parser.interpretResult(parser.parseSchema());
+
+		Map<Field, Field> distinct = new HashMap<>();
+		Set<Field> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+		long fields = 0;
+		for (Message message : parser.getModel().messages.values()) {
+			assertSame(message.getNamespace(), intern(message.getNamespace()), message.getName());
+			for (Field field : message.getFields()) {
+				fields++;
+				// equal fields are one instance
+				assertSame(distinct.computeIfAbsent(field, f -> f), field, field.toString());
+				instances.add(field);
+				assertSame(field.getName(), intern(field.getName()));
+				assertSame(field.getType(), intern(field.getType()));
+				assertSame(field.getTypeNamespace(), intern(field.getTypeNamespace()));
+			}
+		}
+		assertTrue(fields >= TYPES * FIELDS_PER_TYPE, fields + " fields");
+		assertEquals(distinct.size(), instances.size());
+		// the fields inherited along the extension chains are stored once
+		long total = fields;
+		assertTrue(instances.size() < total / 2, () -> instances.size() + " field instances for " + total + " fields");
+	}
+
+	private static String intern(String s) {
+		return s != null ? s.intern() : null;
+	}
+}
@@ -0,0 +1,68 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class ModelSnapshotTest {
+
+	@Test
+	public void registriesSurviveARoundTrip() throws IOException {
+		LinkedHashMap<String, Message> messages = new LinkedHashMap<>();
+		Message order = new Message("Order", "com.example");
+		order.setDoc("An order");
+		order.setParent("Base");
+		order.addField("id", "string", true, false, null, null, new HashMap<>());
+		order.addField("item", "http://example.com", "Item", false, true, null, "Ordered items", new HashMap<>());
+		messages.put(order.getName(), order);
+
+		LinkedHashMap<String, Enumeration> enums = new LinkedHashMap<>();
+		Enumeration color = new Enumeration("Color", "com.example");
+		color.addString("RED");
+		color.addString("BLUE");
+		enums.put(color.getName(), color);
+
+		LinkedHashMap<String, SimpleTypeDesc> simpleTypes = new LinkedHashMap<>();
+		SimpleTypeDesc code = new SimpleTypeDesc("Code", "string");
+		code.setFacets(Arrays.asList(new Facet("maxLength", "8"), new Facet("pattern", "[A-Z]+")));
+		simpleTypes.put(code.getName(), code);
+
+		Map<String, String> names = new HashMap<>();
+		names.put("order", null);
+		names.put("item", "entry");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new ModelSnapshot(messages, enums, simpleTypes, names).write(bytes);
+		ModelSnapshot read = ModelSnapshot.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+		Message readOrder = read.messages.get("Order");
+		assertEquals("com.example", readOrder.getNamespace());
+		assertEquals("An order", readOrder.getDoc());
+		assertEquals("Base", readOrder.getParent());
+		assertEquals(order.getFields(), readOrder.getFields());
+		assertEquals(order.getTypes(), readOrder.getTypes());
+
+		Iterator<String> values = read.enums.get("Color").iterator();
+		assertEquals("BLUE", values.next());
+		assertEquals("RED", values.next());
+
+		SimpleTypeDesc readCode = read.simpleTypes.get("Code");
+		assertEquals("string", readCode.getBaseType());
+		assertNull(readCode.getDocumentation());
+		assertEquals("[A-Z]+", readCode.getFacets().get(1).getValue());
+
+		assertEquals(names, read.interpretedNames);
+		assertEquals(Collections.singletonList("item"), read.changedNameMappings(Collections.singletonMap("item", "other")));
+	}
+}
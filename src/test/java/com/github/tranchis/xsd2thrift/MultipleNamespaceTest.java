@@ -1,13 +1,17 @@
 package com.github.tranchis.xsd2thrift;
 
 import static com.github.tranchis.xsd2thrift.TestHelper.compareExpectedAndGenerated;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class MultipleNamespaceTest {
 
@@ -40,4 +44,18 @@ public class MultipleNamespaceTest {
 		compareExpectedAndGenerated("src/test/resources/expectedproto/schemas_com_domain_address.proto",
 				"target/generated-proto/schemas_com_domain_address.proto");
 	}
+
+	@Test
+	public void parallelOutputIsIdenticalToSerialOutput(@TempDir Path dir) throws Exception {
+		for (String output : new String[] { "serial", "parallel" }) {
+			Files.createDirectories(dir.resolve(output));
+			Main.main(new String[] { "--splitBySchema=true", "--parallelOutput=" + output.equals("parallel"), "--directory=" + dir.resolve(output),
+					"--package=schemas.com.domain.common", "--customNameMappings=name:fullName", "--descriptorSetOut=" + dir.resolve(output).resolve("set.pb"),
+					"src/test/resources/xsd/ns-person.xsd" });
+		}
+		for (String file : new String[] { "schemas_com_domain_person.proto", "schemas_com_domain_common.proto", "schemas_com_domain_address.proto",
+				"set.pb" }) {
+			assertArrayEquals(Files.readAllBytes(dir.resolve("serial").resolve(file)), Files.readAllBytes(dir.resolve("parallel").resolve(file)), file);
+		}
+	}
 }
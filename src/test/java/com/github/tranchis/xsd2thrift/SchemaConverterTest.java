@@ -0,0 +1,144 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SchemaConverterTest {
+
+	private static final Path XSD = Paths.get("src/test/resources/xsd");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void documentsInMemoryConvertLikeFiles() throws Exception {
+		Main.main(new String[] { "--splitBySchema=true", "--directory=" + dir, "--package=schemas.com.domain.common",
+				"--descriptorSetOut=" + dir.resolve("set.pb"), XSD.resolve("ns-person.xsd").toString() });
+
+		ConversionOptions options = ConversionOptions.builder().splitBySchema(true).namespace("schemas.com.domain.common").descriptorSetOut("set.pb").build();
+		Map<String, byte[]> files = new SchemaConverter(options).convert(inMemory());
+
+		assertEquals(Arrays.asList("schemas_com_domain_address.proto", "schemas_com_domain_common.proto", "schemas_com_domain_person.proto", "set.pb"),
+				new ArrayList<>(files.keySet()));
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			assertArrayEquals(Files.readAllBytes(dir.resolve(file.getKey())), file.getValue(), file.getKey());
+		}
+	}
+
+	@Test
+	public void conversionsRunConcurrently() throws Exception {
+		SchemaConverter single = new SchemaConverter(ConversionOptions.builder().filename("shiporder.proto").namespace("shiporder").build());
+		SchemaConverter split = new SchemaConverter(ConversionOptions.builder().splitBySchema(true).parallelOutput(true).build());
+		Map<String, byte[]> shiporder = single.convert(SchemaSource.of(XSD.resolve("shiporder.xsd")));
+		Map<String, byte[]> person = split.convert(inMemory());
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Map<String, byte[]>>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> single.convert(SchemaSource.of(XSD.resolve("shiporder.xsd")))));
+				results.add(executor.submit(() -> split.convert(inMemory())));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				Map<String, byte[]> expected = i % 2 == 0 ? shiporder : person;
+				Map<String, byte[]> actual = results.get(i).get();
+				assertEquals(expected.keySet(), actual.keySet());
+				for (String name : expected.keySet()) {
+					assertArrayEquals(expected.get(name), actual.get(name), name);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void convertersShareParsedSchemas() throws Exception {
+		SchemaSetCache cache = new SchemaSetCache();
+		SchemaSource person = SchemaSource.of(XSD.resolve("ns-person.xsd"));
+		ConversionReport first = new SchemaConverter(ConversionOptions.builder().build(), cache).convert(Arrays.asList(person), (name, content) -> {
+		});
+		ConversionReport second = new SchemaConverter(ConversionOptions.builder().splitBySchema(true).build(), cache).convert(Arrays.asList(person),
+				(name, content) -> {
+				});
+
+		assertEquals(3, first.getSchemaFiles().size());
+		assertEquals(first.getSchemaFiles(), second.getSchemaFiles());
+		assertEquals(Arrays.asList("parse", "interpret"), phases(first).subList(0, 2));
+		assertEquals("interpret", phases(second).get(0));
+	}
+
+	@Test
+	public void schemasParsedThroughOtherCatalogsAreNotShared() throws Exception {
+		write("main.xsd", "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:c='urn:common' targetNamespace='urn:main'>"
+				+ "<xs:import namespace='urn:common' schemaLocation='http://schemas.invalid/common.xsd'/>"
+				+ "<xs:element name='order'><xs:complexType><xs:sequence><xs:element name='code' type='c:Code'/></xs:sequence></xs:complexType></xs:element>"
+				+ "</xs:schema>");
+		SchemaSetCache cache = new SchemaSetCache();
+		List<Map<String, byte[]>> outputs = new ArrayList<>();
+		for (String field : new String[] { "value", "label" }) {
+			Files.createDirectories(dir.resolve(field));
+			write(field + "/common.xsd", "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:common'><xs:complexType name='Code'>"
+					+ "<xs:sequence><xs:element name='" + field + "' type='xs:string'/></xs:sequence></xs:complexType></xs:schema>");
+			Path catalog = write(field + "-catalog.xml", "<catalog xmlns='urn:oasis:names:tc:entity:xmlns:xml:catalog'>"
+					+ "<rewriteSystem systemIdStartString='http://schemas.invalid/' rewritePrefix='" + field + "/'/></catalog>");
+			ConversionOptions options = ConversionOptions.builder().filename("order.proto").catalogs(Arrays.asList(catalog.toString())).build();
+			outputs.add(new SchemaConverter(options, cache).convert(SchemaSource.of(dir.resolve("main.xsd"))));
+		}
+
+		String value = new String(outputs.get(0).get("order.proto"), StandardCharsets.UTF_8);
+		String label = new String(outputs.get(1).get("order.proto"), StandardCharsets.UTF_8);
+		assertTrue(value.contains(" value = "), value);
+		assertTrue(label.contains(" label = "), label);
+	}
+
+	@Test
+	public void invalidSchemasAreReported() {
+		byte[] schema = ("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" + "<xs:element name='a' type='missingType'/>\n" + "</xs:schema>")
+				.getBytes(StandardCharsets.UTF_8);
+		SchemaConverter converter = new SchemaConverter(ConversionOptions.builder().build());
+
+		InvalidXSDException e = assertThrows(InvalidXSDException.class, () -> converter.convert(SchemaSource.of("invalid.xsd", schema)));
+		assertTrue(e.getMessage().contains("invalid.xsd:2"), e.getMessage());
+	}
+
+	private Path write(String name, String content) throws Exception {
+		return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<String> phases(ConversionReport report) {
+		List<String> phases = new ArrayList<>();
+		for (ConversionReport.Phase phase : report.getPhases()) {
+			phases.add(phase.getName());
+		}
+		return phases;
+	}
+
+	/**
+	 * @return the person schema and the schemas it imports, by their relative names
+	 */
+	private static List<SchemaSource> inMemory() throws Exception {
+		List<SchemaSource> sources = new ArrayList<>();
+		for (String name : new String[] { "ns-person.xsd", "ns-common.xsd", "ns-address.xsd" }) {
+			sources.add(SchemaSource.of("schemas/" + name, Files.readAllBytes(XSD.resolve(name))));
+		}
+		return sources;
+	}
+}
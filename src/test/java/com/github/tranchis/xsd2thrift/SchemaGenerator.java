@@ -0,0 +1,154 @@
+package com.github.tranchis.xsd2thrift;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates synthetic schema sets of a configurable size, used by the benchmarks and by tests that need large inputs.
+ *
+ * Complex types are spread round-robin over the namespaces, so references between types usually cross namespace boundaries. Every <code>inheritanceDepth</code>
+ * consecutive types form one extension chain.
+ */
+public class SchemaGenerator {
+
+	private static final String XS = "http://www.w3.org/2001/XMLSchema";
+
+	private int typeCount = 100;
+	private int inheritanceDepth = 1;
+	private int namespaceCount = 1;
+	private int enumSize = 10;
+	private int fieldsPerType = 10;
+
+	public SchemaGenerator typeCount(int typeCount) {
+		this.typeCount = typeCount;
+		return this;
+	}
+
+	public SchemaGenerator inheritanceDepth(int inheritanceDepth) {
+		this.inheritanceDepth = Math.max(1, inheritanceDepth);
+		return this;
+	}
+
+	public SchemaGenerator namespaceCount(int namespaceCount) {
+		this.namespaceCount = Math.max(1, namespaceCount);
+		return this;
+	}
+
+	public SchemaGenerator enumSize(int enumSize) {
+		this.enumSize = enumSize;
+		return this;
+	}
+
+	public SchemaGenerator fieldsPerType(int fieldsPerType) {
+		this.fieldsPerType = fieldsPerType;
+		return this;
+	}
+
+	public static String namespace(int ns) {
+		return "http://example.com/bench/ns" + ns;
+	}
+
+	public static String typeName(int type) {
+		return String.format("Type%05d", type);
+	}
+
+	/**
+	 * Writes one schema file per namespace into <code>directory</code>.
+	 *
+	 * @return the root schema, which imports all other namespaces
+	 */
+	public Path generate(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		for (int ns = 0; ns < namespaceCount; ns++) {
+			try (Writer w = Files.newBufferedWriter(directory.resolve(fileName(ns)), StandardCharsets.UTF_8)) {
+				writeSchema(w, ns);
+			}
+		}
+		return directory.resolve(fileName(0));
+	}
+
+	private static String fileName(int ns) {
+		return "ns" + ns + ".xsd";
+	}
+
+	private void writeSchema(Writer w, int ns) throws IOException {
+		w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		w.write("<xs:schema xmlns:xs=\"" + XS + "\" targetNamespace=\"" + namespace(ns) + "\" elementFormDefault=\"qualified\"");
+		for (int other = 0; other < namespaceCount; other++) {
+			w.write(" xmlns:n" + other + "=\"" + namespace(other) + "\"");
+		}
+		w.write(">\n");
+		for (int other = 0; other < namespaceCount; other++) {
+			if (other != ns) {
+				w.write("  <xs:import namespace=\"" + namespace(other) + "\" schemaLocation=\"" + fileName(other) + "\"/>\n");
+			}
+		}
+
+		w.write("  <xs:simpleType name=\"Code" + ns + "\">\n");
+		w.write("    <xs:annotation><xs:documentation>Code list of namespace " + ns + "</xs:documentation></xs:annotation>\n");
+		w.write("    <xs:restriction base=\"xs:string\">\n");
+		for (int v = 0; v < enumSize; v++) {
+			w.write("      <xs:enumeration value=\"Value" + v + "\"/>\n");
+		}
+		w.write("    </xs:restriction>\n  </xs:simpleType>\n");
+
+		w.write("  <xs:simpleType name=\"Text" + ns + "\">\n    <xs:restriction base=\"xs:string\">\n");
+		w.write("      <xs:minLength value=\"1\"/>\n      <xs:maxLength value=\"64\"/>\n");
+		w.write("    </xs:restriction>\n  </xs:simpleType>\n");
+
+		for (int t = ns; t < typeCount; t += namespaceCount) {
+			writeComplexType(w, t);
+		}
+		if (ns == 0 && typeCount > 0) {
+			w.write("  <xs:element name=\"Root\" type=\"n0:" + typeName(0) + "\"/>\n");
+		}
+		w.write("</xs:schema>\n");
+	}
+
+	private void writeComplexType(Writer w, int t) throws IOException {
+		String indent = "    ";
+		w.write("  <xs:complexType name=\"" + typeName(t) + "\">\n");
+		w.write("    <xs:annotation><xs:documentation>Generated type " + t + "</xs:documentation></xs:annotation>\n");
+		boolean derived = t % inheritanceDepth != 0;
+		if (derived) {
+			w.write("    <xs:complexContent>\n      <xs:extension base=\"" + prefixed(t - 1) + "\">\n");
+			indent = "        ";
+		}
+		w.write(indent + "<xs:sequence>\n");
+		for (int f = 0; f < fieldsPerType; f++) {
+			w.write(indent + "  <xs:element name=\"field" + t + "_" + f + "\" type=\"" + fieldType(t, f) + "\" minOccurs=\"0\""
+					+ (f % 5 == 4 ? " maxOccurs=\"unbounded\"" : "") + "/>\n");
+		}
+		w.write(indent + "</xs:sequence>\n");
+		w.write(indent + "<xs:attribute name=\"id" + t + "\" type=\"xs:ID\"/>\n");
+		if (derived) {
+			w.write("      </xs:extension>\n    </xs:complexContent>\n");
+		}
+		w.write("  </xs:complexType>\n");
+	}
+
+	private String fieldType(int t, int f) {
+		int ns = t % namespaceCount;
+		switch (f % 5) {
+		case 0:
+			return "xs:string";
+		case 1:
+			return "xs:int";
+		case 2:
+			return "n" + ns + ":Code" + ns;
+		case 3:
+			return "n" + ns + ":Text" + ns;
+		default:
+			// reference an earlier type, usually living in another namespace; halving keeps reference chains (and the
+			// parser's recursion) logarithmic in the type count
+			return t > 0 ? prefixed(t / 2) : "xs:dateTime";
+		}
+	}
+
+	private String prefixed(int t) {
+		return "n" + (t % namespaceCount) + ":" + typeName(t);
+	}
+}
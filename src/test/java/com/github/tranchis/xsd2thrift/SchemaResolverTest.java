@@ -0,0 +1,57 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+import com.sun.xml.xsom.XSSchemaSet;
+
+public class SchemaResolverTest {
+
+	@Test
+	public void remoteImportsResolveThroughTheCatalog(@TempDir Path dir) throws Exception {
+		Files.createDirectories(dir.resolve("local/common"));
+		write(dir.resolve("local/common/common.xsd"), "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:common'>"
+				+ "<xs:complexType name='Code'><xs:sequence><xs:element name='value' type='xs:string'/></xs:sequence></xs:complexType></xs:schema>");
+		write(dir.resolve("main.xsd"), "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:c='urn:common' targetNamespace='urn:main'>"
+				+ "<xs:import namespace='urn:common' schemaLocation='http://schemas.invalid/common/common.xsd'/>"
+				+ "<xs:element name='order'><xs:complexType><xs:sequence><xs:element name='code' type='c:Code'/></xs:sequence></xs:complexType></xs:element>"
+				+ "</xs:schema>");
+		Path catalog = write(dir.resolve("catalog.xml"), "<catalog xmlns='urn:oasis:names:tc:entity:xmlns:xml:catalog'>"
+				+ "<rewriteSystem systemIdStartString='http://schemas.invalid/' rewritePrefix='local/'/></catalog>");
+
+		XSDParser parser = new XSDParser(dir.resolve("main.xsd").toString(), new HashMap<>());
+		parser.addMarshaller(new ProtobufMarshaller());
+		parser.setCatalogs(Collections.singletonList(catalog.toString()));
+		XSSchemaSet sset = parser.parseSchema();
+
+		assertNotNull(sset.getComplexType("urn:common", "Code"));
+		assertTrue(parser.getSchemaFiles().contains(dir.resolve("local/common/common.xsd").toRealPath().toFile().toURI().toString()));
+		assertTrue(parser.getSchemaFiles().contains(catalog.toFile().toURI().toString()));
+	}
+
+	@Test
+	public void aDocumentHasOneIdentityWhateverThePath(@TempDir Path dir) throws Exception {
+		Files.createDirectories(dir.resolve("sub"));
+		write(dir.resolve("common.xsd"), "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'/>");
+
+		SchemaResolver resolver = new SchemaResolver(Collections.emptyList());
+		String direct = resolver.resolveEntity(null, dir.resolve("common.xsd").toUri().toString()).getSystemId();
+		String indirect = resolver.resolveEntity(null, dir.toUri() + "sub/../common.xsd").getSystemId();
+		assertEquals(direct, indirect);
+	}
+
+	private static Path write(Path file, String content) throws Exception {
+		return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,49 @@
+package com.github.tranchis.xsd2thrift;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class TypeDependencyGraphTest {
+
+	private static Message message(String name, String... fieldTypes) {
+		Message m = new Message(name, "test");
+		for (String type : fieldTypes) {
+			m.addField("f" + type, type, false, false, null, null, new HashMap<>());
+		}
+		return m;
+	}
+
+	private static List<String> names(List<Message> messages) {
+		return messages.stream().map(Message::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	public void dependenciesComeFirstInTopologicalOrder() {
+		TypeDependencyGraph graph = new TypeDependencyGraph(Arrays.asList(message("A", "C", "string"), message("B", "A"), message("C"), message("D", "B", "C")),
+				Collections.singleton("string"));
+
+		assertEquals(Arrays.asList("C", "A", "B", "D"), names(graph.getTopologicalOrder()));
+		assertEquals(Arrays.asList("A", "B", "C", "D"), names(graph.getNameOrder()));
+		assertTrue(graph.getCycles().isEmpty());
+		assertTrue(graph.getUnresolvedTypes().isEmpty());
+	}
+
+	@Test
+	public void cyclesAndUnresolvedTypesAreReported() {
+		TypeDependencyGraph graph = new TypeDependencyGraph(
+				Arrays.asList(message("A", "B"), message("B", "C"), message("C", "A", "Missing"), message("D", "A")), Collections.emptySet());
+
+		assertEquals(1, graph.getCycles().size());
+		assertEquals(Arrays.asList("A", "B", "C"), names(graph.getCycles().get(0)));
+		assertEquals(Collections.singleton("Missing"), graph.getUnresolvedTypes());
+		assertEquals("D", graph.getTopologicalOrder().get(3).getName());
+	}
+}
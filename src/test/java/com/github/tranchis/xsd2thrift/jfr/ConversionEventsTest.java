@@ -0,0 +1,60 @@
+package com.github.tranchis.xsd2thrift.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tranchis.xsd2thrift.OutputWriter;
+import com.github.tranchis.xsd2thrift.SchemaGenerator;
+import com.github.tranchis.xsd2thrift.XSDParser;
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+
+public class ConversionEventsTest {
+
+	@Test
+	public void slowComponentsAreRecorded(@TempDir Path dir) throws Exception {
+		Path xsd = new SchemaGenerator().typeCount(10).fieldsPerType(3).inheritanceDepth(3).generate(dir);
+		XSDParser parser = new XSDParser(xsd.toString(), new HashMap<>());
+		ProtobufMarshaller marshaller = new ProtobufMarshaller();
+		parser.addMarshaller(marshaller);
+		OutputWriter writer = new OutputWriter();
+		writer.setMarshaller(marshaller);
+		writer.setDefaultExtension("proto");
+		writer.setDirectory(dir.toString());
+		writer.setFilename("out.proto");
+		parser.setWriter(writer);
+
+		Path file = dir.resolve("conversion.jfr");
+		try (Recording recording = new Recording()) {
+			// every event, whatever its duration
+			recording.enable("xsd2proto.ComplexType").withThreshold(Duration.ZERO);
+			recording.enable("xsd2proto.WriteMessage").withThreshold(Duration.ZERO);
+			recording.start();
+			parser.parse();
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		List<RecordedEvent> types = events.stream().filter(e -> e.getEventType().getName().equals("xsd2proto.ComplexType")).collect(Collectors.toList());
+		assertTrue(types.size() >= 10, events.toString());
+		RecordedEvent type = types.stream().filter(e -> e.getString("typeName").equals(SchemaGenerator.typeName(8))).findFirst().get();
+		assertEquals(SchemaGenerator.namespace(0), type.getString("namespace"));
+		// Type00008 extends Type00007, which extends Type00006
+		assertEquals(3, type.getInt("inheritanceDepth"), type.toString());
+		assertTrue(type.getInt("fieldCount") > 6, type.toString());
+		assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("xsd2proto.WriteMessage")));
+	}
+}
@@ -0,0 +1,124 @@
+package com.github.tranchis.xsd2thrift.marshal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tranchis.xsd2thrift.Main;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.UnknownFieldSet;
+import com.squareup.wire.schema.Field;
+import com.squareup.wire.schema.Location;
+import com.squareup.wire.schema.internal.parser.FieldElement;
+import com.squareup.wire.schema.internal.parser.MessageElement;
+import com.squareup.wire.schema.internal.parser.ProtoParser;
+import com.squareup.wire.schema.internal.parser.TypeElement;
+
+public class DescriptorSetBuilderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void descriptorsMatchTheWrittenFile() throws Exception {
+		FileDescriptor file = generate("src/test/resources/xsd/recipeml.xsd");
+		Path proto = dir.resolve("out.proto");
+		List<TypeElement> types = ProtoParser.parse(Location.get(proto.toString()), new String(Files.readAllBytes(proto), StandardCharsets.UTF_8)).types();
+
+		assertEquals("recipeml", file.getPackage());
+		assertEquals(types.size(), file.getMessageTypes().size() + file.getEnumTypes().size());
+		List<Descriptor> messages = new ArrayList<>(file.getMessageTypes());
+		for (int i = 0; i < messages.size(); i++) {
+			messages.addAll(messages.get(i).getNestedTypes());
+		}
+		int compared = 0;
+		for (TypeElement type : all(types)) {
+			if (type instanceof MessageElement) {
+				Descriptor message = messages.stream()
+						.filter(m -> m.getFullName().equals("recipeml." + type.name())
+								|| m.getFullName().endsWith("." + type.name()) && m.getContainingType() != null)
+						.findFirst()
+						.orElse(null);
+				assertNotNull(message, type.name());
+				for (FieldElement field : ((MessageElement) type).fields()) {
+					FieldDescriptor descriptor = message.findFieldByNumber(field.tag());
+					assertEquals(field.name(), descriptor.getName());
+					assertEquals(field.label() == Field.Label.REPEATED, descriptor.isRepeated());
+					String typeName = descriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE ? descriptor.getMessageType().getFullName()
+							: descriptor.getJavaType() == FieldDescriptor.JavaType.ENUM ? descriptor.getEnumType().getFullName()
+									: descriptor.getType().name().toLowerCase();
+					assertEquals(field.type(), typeName.substring(typeName.length() - field.type().length()), field.name());
+					compared++;
+				}
+			}
+		}
+		assertEquals(compared, messages.stream().mapToInt(m -> m.getFields().size()).sum());
+	}
+
+	@Test
+	public void facetsAreValidationRules() throws Exception {
+		Path xsd = Files.write(dir.resolve("rules.xsd"),
+				("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'><xs:complexType name='Code'><xs:sequence>"
+						+ "<xs:element name='label'><xs:simpleType><xs:restriction base='xs:string'><xs:maxLength value='10'/><xs:pattern value='[a-z]+'/>"
+						+ "</xs:restriction></xs:simpleType></xs:element>"
+						+ "<xs:element name='digit' maxOccurs='unbounded'><xs:simpleType><xs:restriction base='xs:integer'><xs:totalDigits value='3'/>"
+						+ "</xs:restriction></xs:simpleType></xs:element>" + "</xs:sequence></xs:complexType></xs:schema>").getBytes(StandardCharsets.UTF_8));
+		Descriptor code = generate(xsd.toString()).findMessageTypeByName("Code");
+
+		UnknownFieldSet label = rules(code.findFieldByName("label"), 14);
+		assertEquals(10L, (long) label.getField(3).getVarintList().get(0));
+		assertEquals("[a-z]+", label.getField(6).getLengthDelimitedList().get(0).toStringUtf8());
+
+		UnknownFieldSet repeated = rules(code.findFieldByName("digit"), 18);
+		UnknownFieldSet digit = rules(UnknownFieldSet.parseFrom(repeated.getField(4).getLengthDelimitedList().get(0)), 4);
+		assertEquals(-999L, (long) digit.getField(5).getVarintList().get(0));
+		assertEquals(999L, (long) digit.getField(3).getVarintList().get(0));
+	}
+
+	/**
+	 * Generates <code>out.proto</code> and its descriptor, which must load without the files it imports.
+	 */
+	private FileDescriptor generate(String xsd) throws Exception {
+		Path set = dir.resolve("out.pb");
+		Main.main(new String[] { "--filename=" + dir.resolve("out.proto"), "--package=recipeml", "--descriptorSetOut=" + set, xsd });
+		FileDescriptorSet descriptors = FileDescriptorSet.parseFrom(Files.readAllBytes(set));
+		assertEquals(1, descriptors.getFileCount());
+		FileDescriptorProto file = descriptors.getFile(0);
+		assertEquals("out.proto", file.getName());
+		assertEquals(ProtobufMarshaller.VALIDATE_IMPORT, file.getDependency(file.getDependencyCount() - 1));
+		return FileDescriptor.buildFrom(file, new FileDescriptor[] { Timestamp.getDescriptor().getFile(), Duration.getDescriptor().getFile() }, true);
+	}
+
+	/**
+	 * @return the rules of a field of <code>validate.FieldRules</code>, in the options of a field
+	 */
+	private static UnknownFieldSet rules(FieldDescriptor field, int number) throws Exception {
+		return rules(UnknownFieldSet.parseFrom(field.getOptions().getUnknownFields().getField(1071).getLengthDelimitedList().get(0)), number);
+	}
+
+	private static UnknownFieldSet rules(UnknownFieldSet fieldRules, int number) throws Exception {
+		return UnknownFieldSet.parseFrom(fieldRules.getField(number).getLengthDelimitedList().get(0));
+	}
+
+	private static List<TypeElement> all(List<TypeElement> types) {
+		List<TypeElement> all = new ArrayList<>(types);
+		for (int i = 0; i < all.size(); i++) {
+			all.addAll(all.get(i).nestedTypes());
+		}
+		return all;
+	}
+}
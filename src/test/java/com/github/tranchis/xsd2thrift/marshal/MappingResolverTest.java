@@ -0,0 +1,54 @@
+package com.github.tranchis.xsd2thrift.marshal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+public class MappingResolverTest {
+
+	@Test
+	public void customRulesTakePrecedenceOverBuiltInRules() {
+		MappingResolver resolver = new MappingResolver();
+		resolver.addRule(Pattern.compile("^date$"), "int32");
+		resolver.addCustomRule(Pattern.compile("^date$"), "string");
+
+		assertEquals("string", resolver.resolve("date"));
+	}
+
+	@Test
+	public void firstMatchingRuleWinsAcrossLiteralAndRegexRules() {
+		MappingResolver resolver = new MappingResolver();
+		resolver.addCustomRule(Pattern.compile("^CT\\d+_.+$"), "code_table.$0");
+		resolver.addCustomRule(Pattern.compile("^CT1_Literal$"), "literal");
+		resolver.addCustomRule(Pattern.compile("(a)\\1"), "double-a");
+		resolver.addCustomRule(Pattern.compile("^.*Type$"), "$0Mapped");
+
+		assertEquals("code_table.CT1_Literal", resolver.resolve("CT1_Literal"));
+		assertEquals("double-a", resolver.resolve("aa"));
+		assertEquals("FooTypeMapped", resolver.resolve("FooType"));
+		assertNull(resolver.resolve("Foo"));
+	}
+
+	@Test
+	public void literalRuleBeforeRegexRuleWins() {
+		MappingResolver resolver = new MappingResolver();
+		resolver.addCustomRule(Pattern.compile("TimeStampType"), "google.protobuf.Timestamp");
+		resolver.addCustomRule(Pattern.compile("^.*Type$"), "string");
+
+		assertEquals("google.protobuf.Timestamp", resolver.resolve("TimeStampType"));
+		assertEquals("string", resolver.resolve("OtherType"));
+	}
+
+	@Test
+	public void addingRulesInvalidatesCachedResults() {
+		MappingResolver resolver = new MappingResolver();
+		assertNull(resolver.resolve("int"));
+
+		resolver.addRule(Pattern.compile("^int$"), "int32");
+
+		assertEquals("int32", resolver.resolve("int"));
+	}
+}
@@ -0,0 +1,62 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedXmlToProtobufTest {
+
+	@TempDir
+	Path dir;
+	private TranscodingPlan plan;
+
+	@BeforeEach
+	public void generate() throws Exception {
+		plan = TranscodingPlan.compile(XmlToProtobufTest.protoSchema(dir));
+	}
+
+	@Test
+	public void encodesLikeTheStreamingTranscoder() throws Exception {
+		assertSameEncoding(XmlToProtobufTest.XML);
+	}
+
+	@Test
+	public void decodesReferencesSectionsAndLineEnds() throws Exception {
+		assertSameEncoding("\uFEFF<?xml version='1.0' encoding='UTF-8'?>\r\n<!DOCTYPE order>\n<!-- comment -->\n"
+				+ "<s:order xmlns:s='urn:shop' xmlns:i='http://www.w3.org/2001/XMLSchema-instance' i:type='s:Order' priority='&#x33;'>\r\n"
+				+ "<s:orderId>A&amp;B &lt;é&gt;\r\n<![CDATA[<&>]]> ü</s:orderId><s:status><!-- before -->Open<?pi?></s:status><s:paid>1</s:paid>"
+				+ "<s:placed>2020-01-02T03:04:05+01:00</s:placed><s:due>2020-02-01Z</s:due>"
+				+ "<s:line><s:sku>Ωmega</s:sku><s:quantity> 12 </s:quantity><s:price currency='E&quot;U\tR'>0.125</s:price></s:line>"
+				+ "<s:line><s:sku/><s:quantity>0</s:quantity><s:price>7</s:price></s:line><s:tag>1</s:tag><s:tag>-2</s:tag></s:order>");
+	}
+
+	@Test
+	public void errorsHaveTheirLineAndColumn() throws Exception {
+		Path file = Files.write(dir.resolve("order.xml"), XmlToProtobufTest.XML.replace("<paid>false", "\n  <paid>maybe").getBytes(StandardCharsets.UTF_8));
+		XMLStreamException e = assertThrows(XMLStreamException.class,
+				() -> new MappedXmlToProtobuf(plan).transcode(file, "Order", new ByteArrayOutputStream()));
+		assertEquals(2, e.getLocation().getLineNumber());
+		assertEquals(9, e.getLocation().getColumnNumber());
+	}
+
+	private void assertSameEncoding(String xml) throws Exception {
+		byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new XmlToProtobuf(plan).transcode(new ByteArrayInputStream(bytes), "Order", expected);
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		new MappedXmlToProtobuf(plan).transcode(Files.write(dir.resolve("order.xml"), bytes), "Order", actual);
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+}
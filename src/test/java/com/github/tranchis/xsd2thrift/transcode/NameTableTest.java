@@ -0,0 +1,37 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class NameTableTest {
+
+	@Test
+	public void namesSharingAHashCodeAreFound() {
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		NameTable table = new NameTable(new String[] { "Aa", "BB", "x" });
+
+		assertEquals(0, table.find("Aa"));
+		assertEquals(1, table.find("BB"));
+		assertEquals(2, table.find("x"));
+		assertEquals(1, table.find("<BB>", 1, 3));
+		assertEquals(0, table.find("xAa", 1, 3));
+		assertEquals(-1, table.find("C#"));
+		assertEquals(-1, table.find("y"));
+	}
+
+	@Test
+	public void everyNameIsFound() {
+		String[] names = new String[1000];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "name" + i;
+		}
+		NameTable table = new NameTable(names);
+
+		for (int i = 0; i < names.length; i++) {
+			assertEquals(i, table.find(names[i]));
+			assertEquals(i, table.find(new StringBuilder(names[i]), 0, names[i].length()));
+		}
+		assertEquals(-1, table.find("name1000"));
+	}
+}
@@ -0,0 +1,89 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnknownFieldSet;
+
+public class ParallelTranscoderTest {
+
+	private TranscodingPlan plan;
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void generate(@TempDir Path dir) throws Exception {
+		plan = TranscodingPlan.compile(XmlToProtobufTest.protoSchema(dir));
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterEach
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void recordsAreWrittenInDocumentOrder() throws Exception {
+		// several batches, more than the window holds
+		byte[] xml = document(2000, "1");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long count = new ParallelTranscoder(plan, executor, 3).transcode(new ByteArrayInputStream(xml), "/order/line", "Line", out);
+
+		assertEquals(2000, count);
+		List<ByteString> records = new ArrayList<>();
+		CodedInputStream in = CodedInputStream.newInstance(out.toByteArray());
+		while (!in.isAtEnd()) {
+			records.add(in.readBytes());
+		}
+		// the same messages as the lines of the whole order
+		ByteArrayOutputStream order = new ByteArrayOutputStream();
+		new XmlToProtobuf(plan).transcode(new ByteArrayInputStream(xml), "Order", order);
+		int line = plan.getMessage("Order").element("line").number;
+		assertEquals(UnknownFieldSet.parseFrom(order.toByteArray()).getField(line).getLengthDelimitedList(), records);
+	}
+
+	@Test
+	public void failuresNameTheirRecord() {
+		byte[] xml = document(10, "x");
+		XMLStreamException e = assertThrows(XMLStreamException.class,
+				() -> new ParallelTranscoder(plan, executor, 2).transcode(new ByteArrayInputStream(xml), "order/line", "Line", new ByteArrayOutputStream()));
+		assertTrue(e.getMessage().startsWith("Record 8 at order/line: "), e.getMessage());
+	}
+
+	/**
+	 * An order with prefixed names, whose 8th line has the given quantity, and markup the scanner must skip.
+	 */
+	private static byte[] document(int lines, String quantity) {
+		StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<!-- <s:line> -->\n<s:order xmlns:s='urn:shop' priority='2'>")
+				.append("<s:orderId>A-1</s:orderId><s:status>Open</s:status><s:paid>true</s:paid><s:placed>2020-01-02T03:04:05Z</s:placed>")
+				.append("<s:due>2020-02-01</s:due>");
+		for (int i = 1; i <= lines; i++) {
+			xml.append("\n  <s:line><s:sku><![CDATA[</s:line>")
+					.append(i)
+					.append("]]></s:sku><s:quantity>")
+					.append(i == 8 ? quantity : i)
+					.append("</s:quantity><s:price currency='a>b'>")
+					.append(i)
+					.append(".5</s:price></s:line><?pi <s:line>?><!-- </s:line> -->");
+		}
+		return xml.append("<s:tag>1</s:tag></s:order>").toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,77 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ProtobufToXmlTest {
+
+	@Test
+	public void transcodedInstancesComeBackSchemaValid(@TempDir Path dir) throws Exception {
+		ProtoSchema schema = XmlToProtobufTest.protoSchema(dir);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		new XmlToProtobuf(schema).transcode(new ByteArrayInputStream(XmlToProtobufTest.XML.getBytes(StandardCharsets.UTF_8)), "Order", encoded);
+
+		StringWriter xml = new StringWriter();
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(xml);
+		new ProtobufToXml(schema).transcode(new ByteArrayInputStream(encoded.toByteArray()), "Order", new QName("urn:shop", "order"), writer);
+
+		String expected = "<ns0:order xmlns:ns0=\"urn:shop\" priority=\"2\"><ns0:orderId>A-1 é€</ns0:orderId><ns0:status>Closed</ns0:status>"
+				+ "<ns0:paid>false</ns0:paid><ns0:placed>2020-01-02T03:04:05.500Z</ns0:placed><ns0:due>2020-02-01</ns0:due>"
+				+ "<ns0:line><ns0:sku>X</ns0:sku><ns0:quantity>3</ns0:quantity><ns0:price currency=\"EUR\">1.5</ns0:price></ns0:line>"
+				+ "<ns0:line><ns0:sku>Y</ns0:sku><ns0:quantity>-1</ns0:quantity><ns0:price>2</ns0:price></ns0:line>"
+				+ "<ns0:tag>7</ns0:tag><ns0:tag>300</ns0:tag></ns0:order>";
+		String actual = xml.toString();
+		assertEquals(expected, actual.substring(actual.indexOf("?>") + 2));
+
+		SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+				.newSchema(dir.resolve("shop.xsd").toFile())
+				.newValidator()
+				.validate(new StreamSource(new StringReader(actual)));
+	}
+
+	@Test
+	public void xmlLangIsWrittenWithTheReservedPrefix(@TempDir Path dir) throws Exception {
+		String xmlXsd = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='http://www.w3.org/XML/1998/namespace'>"
+				+ "<xs:attribute name='lang' type='xs:language'/></xs:schema>";
+		Files.write(dir.resolve("xml.xsd"), xmlXsd.getBytes(StandardCharsets.UTF_8));
+		String xsd = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns='urn:note' targetNamespace='urn:note'" + " elementFormDefault='qualified'>"
+				+ "<xs:import namespace='http://www.w3.org/XML/1998/namespace' schemaLocation='xml.xsd'/>"
+				+ "<xs:complexType name='Note'><xs:simpleContent><xs:extension base='xs:string'><xs:attribute ref='xml:lang'/></xs:extension>"
+				+ "</xs:simpleContent></xs:complexType><xs:element name='note' type='Note'/></xs:schema>";
+		ProtoSchema schema = XmlToProtobufTest.protoSchema(Files.write(dir.resolve("note.xsd"), xsd.getBytes(StandardCharsets.UTF_8)), dir);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		String xml = "<note xmlns='urn:note' xml:lang='nb'>Hei</note>";
+		new XmlToProtobuf(schema).transcode(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "Note", encoded);
+
+		StringWriter written = new StringWriter();
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(written);
+		new ProtobufToXml(schema).transcode(new ByteArrayInputStream(encoded.toByteArray()), "Note", new QName("urn:note", "note"), writer);
+
+		String actual = written.toString();
+		assertFalse(actual.contains(XMLConstants.XML_NS_URI), actual);
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(actual));
+		reader.nextTag();
+		assertEquals("nb", reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang"));
+		assertEquals("Hei", reader.getElementText());
+	}
+}
@@ -0,0 +1,226 @@
+package com.github.tranchis.xsd2thrift.transcode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tranchis.xsd2thrift.OutputWriter;
+import com.github.tranchis.xsd2thrift.XSDParser;
+import com.github.tranchis.xsd2thrift.marshal.ProtobufMarshaller;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnknownFieldSet;
+import com.squareup.wire.schema.Location;
+import com.squareup.wire.schema.internal.parser.EnumConstantElement;
+import com.squareup.wire.schema.internal.parser.EnumElement;
+import com.squareup.wire.schema.internal.parser.FieldElement;
+import com.squareup.wire.schema.internal.parser.MessageElement;
+import com.squareup.wire.schema.internal.parser.ProtoParser;
+import com.squareup.wire.schema.internal.parser.TypeElement;
+
+public class XmlToProtobufTest {
+
+	static final String XSD = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns='urn:shop' targetNamespace='urn:shop'"
+			+ " elementFormDefault='qualified'>"
+			+ "<xs:simpleType name='Status'><xs:restriction base='xs:string'><xs:enumeration value='Open'/><xs:enumeration value='Closed'/>"
+			+ "</xs:restriction></xs:simpleType>"
+			+ "<xs:complexType name='Price'><xs:simpleContent><xs:extension base='xs:decimal'><xs:attribute name='currency' type='xs:string'/>"
+			+ "</xs:extension></xs:simpleContent></xs:complexType>"
+			+ "<xs:complexType name='Line'><xs:sequence><xs:element name='sku' type='xs:string'/><xs:element name='quantity' type='xs:int'/>"
+			+ "<xs:element name='price' type='Price'/></xs:sequence></xs:complexType>"
+			+ "<xs:complexType name='Order'><xs:sequence><xs:element name='orderId' type='xs:string'/><xs:element name='status' type='Status'/>"
+			+ "<xs:element name='paid' type='xs:boolean'/><xs:element name='placed' type='xs:dateTime'/><xs:element name='due' type='xs:date'/>"
+			+ "<xs:element name='line' type='Line' maxOccurs='unbounded'/><xs:element name='tag' type='xs:int' minOccurs='0' maxOccurs='unbounded'/>"
+			+ "</xs:sequence><xs:attribute name='priority' type='xs:int'/></xs:complexType>" + "<xs:element name='order' type='Order'/></xs:schema>";
+
+	static final String XML = "<order xmlns='urn:shop' priority='2'><orderId>A-1 é€</orderId><status>Closed</status><paid>false</paid>"
+			+ "<placed>2020-01-02T03:04:05.5Z</placed><due>2020-02-01</due>"
+			+ "<line><sku>X</sku><quantity>3</quantity><price currency='EUR'>1.5</price></line><line><sku>Y</sku><quantity>-1</quantity>"
+			+ "<price>2</price></line><tag>7</tag><tag>300</tag></order>";
+
+	private ProtoSchema schema;
+	private Map<String, TypeElement> types = new HashMap<>();
+
+	@BeforeEach
+	public void generate(@TempDir Path dir) throws Exception {
+		schema = protoSchema(dir);
+		Path proto = dir.resolve("shop.proto");
+		collect(ProtoParser.parse(Location.get(proto.toString()), new String(Files.readAllBytes(proto), StandardCharsets.UTF_8)).types());
+	}
+
+	/**
+	 * Generates <code>shop.proto</code> from {@link #XSD} in <code>dir</code>.
+	 */
+	static ProtoSchema protoSchema(Path dir) throws Exception {
+		return protoSchema(Files.write(dir.resolve("shop.xsd"), XSD.getBytes(StandardCharsets.UTF_8)), dir);
+	}
+
+	/**
+	 * Generates the <code>.proto</code> of a schema into <code>dir</code>.
+	 *
+	 * @return its model
+	 */
+	static ProtoSchema protoSchema(Path xsd, Path dir) throws Exception {
+		XSDParser parser = new XSDParser(xsd.toString(), new HashMap<>());
+		ProtobufMarshaller marshaller = new ProtobufMarshaller();
+		parser.addMarshaller(marshaller);
+		OutputWriter writer = new OutputWriter();
+		writer.setMarshaller(marshaller);
+		writer.setDefaultExtension("proto");
+		writer.setDirectory(dir.toString());
+		writer.setFilename(xsd.getFileName().toString().replaceFirst("\\.xsd$", ".proto"));
+		parser.setWriter(writer);
+		parser.parse();
+		return parser.getProtoSchema();
+	}
+
+	private void collect(List<TypeElement> elements) {
+		for (TypeElement type : elements) {
+			types.put(type.name(), type);
+			collect(type.nestedTypes());
+		}
+	}
+
+	@Test
+	public void fieldsAndConstantsMatchTheGeneratedFile() {
+		for (String name : Arrays.asList("Order", "Line", "Price")) {
+			MessageElement message = (MessageElement) types.get(name);
+			ProtoMessage protoMessage = schema.getMessage(name);
+			assertEquals(message.fields().size(), protoMessage.getFields().size(), name);
+			for (FieldElement field : message.fields()) {
+				assertEquals(field.tag(), fieldNumber(name, field.name()), name + "." + field.name());
+			}
+		}
+		EnumElement status = (EnumElement) types.get("Status");
+		ProtoEnum protoEnum = schema.getEnum("Status");
+		Map<String, Integer> constants = new HashMap<>();
+		for (EnumConstantElement constant : status.constants()) {
+			constants.put(constant.name(), constant.tag());
+		}
+		assertEquals(constants.get("STATUS__OPEN"), protoEnum.getNumber("Open"));
+		assertEquals(constants.get("STATUS__CLOSED"), protoEnum.getNumber("Closed"));
+	}
+
+	@Test
+	public void instancesAreEncodedWithTheGeneratedNumbers() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new XmlToProtobuf(schema).transcode(new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)), "Order", out);
+		UnknownFieldSet order = UnknownFieldSet.parseFrom(out.toByteArray());
+
+		assertEquals("A-1 é€", order.getField(fieldNumber("Order", "order_id")).getLengthDelimitedList().get(0).toStringUtf8());
+		// attributes are declared with their primitive type
+		assertEquals(Arrays.asList(Double.doubleToLongBits(2)), order.getField(fieldNumber("Order", "priority")).getFixed64List());
+		assertEquals(Arrays.asList(schema.getEnum("Status").getNumber("Closed").longValue()), order.getField(fieldNumber("Order", "status")).getVarintList());
+		// false is the default value
+		assertEquals(0, order.getField(fieldNumber("Order", "paid")).getVarintList().size());
+		assertEquals(Arrays.asList(LocalDate.of(2020, 2, 1).toEpochDay()), order.getField(fieldNumber("Order", "due")).getVarintList());
+
+		UnknownFieldSet placed = UnknownFieldSet.parseFrom(order.getField(fieldNumber("Order", "placed")).getLengthDelimitedList().get(0));
+		assertEquals(Arrays.asList(Instant.parse("2020-01-02T03:04:05Z").getEpochSecond()), placed.getField(1).getVarintList());
+		assertEquals(Arrays.asList(500_000_000L), placed.getField(2).getVarintList());
+
+		// packed
+		ByteString tags = order.getField(fieldNumber("Order", "tag")).getLengthDelimitedList().get(0);
+		CodedInputStream packed = tags.newCodedInput();
+		assertEquals(7, packed.readInt32());
+		assertEquals(300, packed.readInt32());
+
+		List<ByteString> lines = order.getField(fieldNumber("Order", "line")).getLengthDelimitedList();
+		assertEquals(2, lines.size());
+		UnknownFieldSet second = UnknownFieldSet.parseFrom(lines.get(1));
+		assertEquals("Y", second.getField(fieldNumber("Line", "sku")).getLengthDelimitedList().get(0).toStringUtf8());
+		assertEquals(Arrays.asList(-1L), second.getField(fieldNumber("Line", "quantity")).getVarintList());
+		UnknownFieldSet price = UnknownFieldSet
+				.parseFrom(UnknownFieldSet.parseFrom(lines.get(0)).getField(fieldNumber("Line", "price")).getLengthDelimitedList().get(0));
+		ProtoField amount = schema.getMessage("Price").getTextField();
+		assertNotNull(amount);
+		assertEquals(Arrays.asList(Double.doubleToLongBits(1.5)), price.getField(amount.getNumber()).getFixed64List());
+		assertEquals("EUR", price.getField(fieldNumber("Price", "currency")).getLengthDelimitedList().get(0).toStringUtf8());
+	}
+
+	@Test
+	public void invalidValuesAreReportedWithTheirLocation() {
+		String xml = XML.replace("<quantity>3</quantity>", "<quantity>three</quantity>");
+		XMLStreamException e = assertThrows(XMLStreamException.class, () -> new XmlToProtobuf(schema)
+				.transcode(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "Order", new ByteArrayOutputStream()));
+		assertEquals(1, e.getLocation().getLineNumber());
+	}
+
+	@Test
+	public void elementsAreTranscodedWithoutAllocating() throws Exception {
+		// attributes are left out, as the parser builds a string for each of their values
+		String line = "<line><sku>X</sku><quantity>3</quantity><price>1.5</price></line>";
+		String head = "<order xmlns='urn:shop'><orderId>A-1</orderId><status>Closed</status><paid>true</paid><placed>2020-01-02T03:04:05.5Z</placed>"
+				+ "<due>2020-02-01</due>";
+		byte[] small = document(head, line, 1_000);
+		byte[] large = document(head, line, 2_000);
+		XmlToProtobuf transcoder = new XmlToProtobuf(TranscodingPlan.compile(schema));
+		OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+		for (int i = 0; i < 20; i++) {
+			transcoder.transcode(new ByteArrayInputStream(large), "Order", out);
+		}
+		long extra = allocated(transcoder, large, out) - allocated(transcoder, small, out);
+		// 1 000 more lines, each of 5 elements, 4 values and a <tag>
+		assertTrue(extra < 6_000, extra + " bytes for 6 000 more elements");
+	}
+
+	private static byte[] document(String head, String line, int lines) {
+		StringBuilder xml = new StringBuilder(head);
+		for (int i = 0; i < lines; i++) {
+			xml.append(line);
+		}
+		for (int i = 0; i < lines; i++) {
+			xml.append("<tag>").append(i % 100).append("</tag>");
+		}
+		return xml.append("</order>").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static long allocated(XmlToProtobuf transcoder, byte[] xml, OutputStream out) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long least = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			long before = threads.getCurrentThreadAllocatedBytes();
+			transcoder.transcode(new ByteArrayInputStream(xml), "Order", out);
+			least = Math.min(least, threads.getCurrentThreadAllocatedBytes() - before);
+		}
+		return least;
+	}
+
+	private int fieldNumber(String message, String protoName) {
+		for (ProtoField field : schema.getMessage(message).getFields()) {
+			if (field.getProtoName().equals(protoName)) {
+				return field.getNumber();
+			}
+		}
+		throw new AssertionError(message + "." + protoName);
+	}
+}
@@ -0,0 +1,15 @@
+def log = new File(basedir, 'build.log').text
+
+assert new File(basedir, 'single/target/generated-sources/proto/person.proto').isFile()
+assert new File(basedir, 'split/target/generated-sources/proto').list().sort() == [
+	'schemas_com_domain_address.proto',
+	'schemas_com_domain_common.proto',
+	'schemas_com_domain_person.proto'
+]
+
+// the first build parses the schema for the first module only
+assert log.count('Generated ') == 2
+assert log.count('Reusing the parsed schema set of') == 1
+
+// the second build generates nothing
+assert log.count('are up to date') == 2
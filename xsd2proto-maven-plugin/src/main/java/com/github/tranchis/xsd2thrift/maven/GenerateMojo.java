@@ -0,0 +1,255 @@
+package com.github.tranchis.xsd2thrift.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import com.github.tranchis.xsd2thrift.ConfigFile;
+import com.github.tranchis.xsd2thrift.ConversionOptions;
+import com.github.tranchis.xsd2thrift.ConversionReport;
+import com.github.tranchis.xsd2thrift.IncrementalBuild;
+import com.github.tranchis.xsd2thrift.InvalidXSDException;
+import com.github.tranchis.xsd2thrift.SchemaConverter;
+import com.github.tranchis.xsd2thrift.SchemaSetCache;
+import com.github.tranchis.xsd2thrift.SchemaSource;
+
+/**
+ * Generates the <code>.proto</code> files of a schema in the build, with the settings of a config file or of the plugin configuration.
+ *
+ * Generation is skipped while the configuration, every document of the schema closure and every generated file are as the last generation left
+ * them, as with <code>--incremental</code>; files whose content does not change are not rewritten. Maven loads the plugin once per build, so
+ * the modules of a reactor build share the parsed schemas: a schema closure used by several modules is parsed once.
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenerateMojo extends AbstractMojo {
+
+	private static final SchemaSetCache SCHEMA_SETS = new SchemaSetCache();
+
+	@Parameter(defaultValue = "${project}", readonly = true, required = true)
+	private MavenProject project;
+
+	@Parameter(defaultValue = "${mojoExecution}", readonly = true, required = true)
+	private MojoExecution execution;
+
+	/**
+	 * The schema to convert; defaults to the <code>xsd</code> of the config file.
+	 */
+	@Parameter(property = "xsd2proto.xsd")
+	private File xsd;
+
+	/**
+	 * A YAML config file, as given to <code>--configFile</code>; its directory, incremental and saveModel settings are ignored. When given, the
+	 * settings below are not used.
+	 */
+	@Parameter(property = "xsd2proto.configFile")
+	private File configFile;
+
+	@Parameter(defaultValue = "${project.build.directory}/generated-sources/proto", required = true)
+	private File outputDirectory;
+
+	@Parameter
+	private String filename;
+
+	@Parameter
+	private String namespace;
+
+	@Parameter(defaultValue = "false")
+	private boolean splitBySchema;
+
+	@Parameter
+	private Map<String, String> customTypeMappings;
+
+	@Parameter
+	private Map<String, String> customNameMappings;
+
+	@Parameter
+	private Map<String, String> customImports;
+
+	/**
+	 * File options of the output, such as <code>java_package</code>.
+	 */
+	@Parameter
+	private Map<String, String> options;
+
+	@Parameter(defaultValue = "true")
+	private boolean nestEnums;
+
+	@Parameter(defaultValue = "true")
+	private boolean typeInEnums;
+
+	@Parameter(defaultValue = "true")
+	private boolean includeMessageDocs;
+
+	@Parameter(defaultValue = "true")
+	private boolean includeFieldDocs;
+
+	@Parameter
+	private List<File> catalogs;
+
+	/**
+	 * The name of a <code>FileDescriptorSet</code> of the output to write in the output directory.
+	 */
+	@Parameter
+	private String descriptorSetOut;
+
+	/**
+	 * Adds the output directory to the resources of the project, to package the <code>.proto</code> files.
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean addResources;
+
+	/**
+	 * Adds the output directory to the compile source roots of the project, for the plugins compiling <code>.proto</code> files found there.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean addCompileSourceRoot;
+
+	@Parameter(property = "xsd2proto.skip", defaultValue = "false")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (skip) {
+			getLog().info("Skipping xsd2proto");
+			return;
+		}
+		File schema = xsd;
+		ConversionOptions conversionOptions;
+		if (configFile != null) {
+			ConfigFile config = readConfigFile();
+			if (schema == null && config.xsd != null) {
+				schema = resolve(config.xsd);
+			}
+			ConversionOptions.Builder builder = ConversionOptions.builder(config);
+			if (config.catalogs != null) {
+				List<String> resolved = new ArrayList<>();
+				for (String catalog : config.catalogs) {
+					resolved.add(resolve(catalog).getPath());
+				}
+				builder.catalogs(resolved);
+			}
+			conversionOptions = builder.build();
+		} else {
+			conversionOptions = configuredOptions();
+		}
+		if (schema == null) {
+			throw new MojoExecutionException("No xsd given, neither in the plugin configuration nor in the config file");
+		}
+
+		Path output = outputDirectory.toPath().toAbsolutePath();
+		Path manifest = new File(project.getBuild().getDirectory(), "xsd2proto/" + execution.getExecutionId() + ".manifest").toPath();
+		String configuration = conversionOptions + "\n" + schema.getAbsolutePath() + "\n" + output + "\n"
+				+ execution.getMojoDescriptor().getPluginDescriptor().getVersion();
+		IncrementalBuild build = new IncrementalBuild(manifest, configuration);
+		if (build.isUpToDate()) {
+			getLog().info("The files generated from " + schema + " are up to date");
+		} else {
+			generate(schema, conversionOptions, output, build);
+		}
+
+		if (addResources && project.getResources().stream().noneMatch(resource -> output.toString().equals(resource.getDirectory()))) {
+			Resource resource = new Resource();
+			resource.setDirectory(output.toString());
+			project.addResource(resource);
+		}
+		if (addCompileSourceRoot) {
+			project.addCompileSourceRoot(output.toString());
+		}
+	}
+
+	private void generate(File schema, ConversionOptions conversionOptions, Path output, IncrementalBuild build)
+			throws MojoExecutionException, MojoFailureException {
+		Set<Path> outputs = new TreeSet<>();
+		int[] written = new int[1];
+		try {
+			Files.createDirectories(output);
+			ConversionReport report = new SchemaConverter(conversionOptions, SCHEMA_SETS)
+					.convert(Collections.singletonList(SchemaSource.of(schema.toPath())), (name, content) -> {
+						Path file = output.resolve(name);
+						outputs.add(file);
+						if (!Files.isRegularFile(file) || !Arrays.equals(Files.readAllBytes(file), content)) {
+							Files.createDirectories(file.getParent());
+							Files.write(file, content);
+							written[0]++;
+						}
+					});
+			Files.createDirectories(build.getManifest().getParent());
+			build.save(report.getSchemaFiles(), outputs);
+		} catch (InvalidXSDException e) {
+			throw new MojoFailureException("Unable to convert " + schema + ": " + e.getMessage(), e);
+		} catch (Exception e) {
+			throw new MojoExecutionException("Error converting " + schema, e);
+		}
+		getLog().info("Generated " + outputs.size() + " files from " + schema + " in " + output + ", " + written[0] + " of them changed");
+	}
+
+	private ConfigFile readConfigFile() throws MojoExecutionException {
+		try (InputStream in = Files.newInputStream(configFile.toPath())) {
+			return new Yaml().loadAs(in, ConfigFile.class);
+		} catch (IOException | YAMLException e) {
+			throw new MojoExecutionException("Unable to read config file " + configFile, e);
+		}
+	}
+
+	private ConversionOptions configuredOptions() {
+		ConversionOptions.Builder builder = ConversionOptions.builder()
+				.filename(filename)
+				.namespace(namespace)
+				.splitBySchema(splitBySchema)
+				.nestEnums(nestEnums)
+				.typeInEnums(typeInEnums)
+				.includeMessageDocs(includeMessageDocs)
+				.includeFieldDocs(includeFieldDocs)
+				.descriptorSetOut(descriptorSetOut);
+		if (customTypeMappings != null) {
+			builder.customTypeMappings(customTypeMappings);
+		}
+		if (customNameMappings != null) {
+			builder.customNameMappings(customNameMappings);
+		}
+		if (customImports != null) {
+			builder.customImports(customImports);
+		}
+		if (options != null) {
+			builder.options(new LinkedHashMap<String, Object>(options));
+		}
+		if (catalogs != null) {
+			List<String> paths = new ArrayList<>();
+			for (File catalog : catalogs) {
+				paths.add(catalog.getAbsolutePath());
+			}
+			builder.catalogs(paths);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return a path of the config file, relative to the directory of the module
+	 */
+	private File resolve(String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(project.getBasedir(), path);
+	}
+}